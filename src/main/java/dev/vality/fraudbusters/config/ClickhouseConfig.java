@@ -1,6 +1,9 @@
 package dev.vality.fraudbusters.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
 import dev.vality.fraudbusters.config.properties.ClickhouseProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,43 +16,108 @@ import ru.yandex.clickhouse.settings.ClickHouseQueryParam;
 import javax.sql.DataSource;
 import java.util.Properties;
 
+/**
+ * Every kind of traffic gets its own bounded connection pool over the same ClickHouse,
+ * so a heavy historical export or a large batch insert waits for its own connections instead of
+ * taking them from the inspection aggregates. The pools publish the hikaricp metrics tagged by pool name:
+ * acquire is the wait for a connection, active and pending are the connections in use and the waiting threads,
+ * usage is the time a connection is held, which is the latency of one query of the template.
+ */
 @Configuration
 @RequiredArgsConstructor
 public class ClickhouseConfig {
 
+    private static final String POOL_PREFIX = "clickhouse-";
+
     private final ClickhouseProperties clickhouseProperties;
 
     @Bean
     public ClickHouseDataSource clickHouseDataSource() {
-        Properties info = new Properties();
-        info.put(ClickHouseQueryParam.USER.getKey(), clickhouseProperties.getUser());
-        info.put(ClickHouseQueryParam.PASSWORD.getKey(), clickhouseProperties.getPassword());
+        Properties info = createInfo();
         info.put(ClickHouseQueryParam.COMPRESS.getKey(), clickhouseProperties.getCompress());
         return new ClickHouseDataSource(clickhouseProperties.getUrl(), info);
     }
 
     @Bean
-    public JdbcTemplate jdbcTemplate(DataSource clickHouseDataSource) {
-        return new JdbcTemplate(clickHouseDataSource);
-    }
-
-    @Bean
-    public JdbcTemplate longQueryJdbcTemplate() {
-        Properties info = new Properties();
-        info.put(ClickHouseQueryParam.USER.getKey(), clickhouseProperties.getUser());
-        info.put(ClickHouseQueryParam.PASSWORD.getKey(), clickhouseProperties.getPassword());
+    public ClickHouseDataSource longQueryClickHouseDataSource() {
+        Properties info = createInfo();
         info.put(ClickHouseQueryParam.COMPRESS.getKey(), true);
         info.put(ClickHouseQueryParam.CONNECT_TIMEOUT.getKey(), clickhouseProperties.getConnectionTimeout());
         info.put(ClickHouseConnectionSettings.CONNECTION_TIMEOUT.getKey(),
                 Integer.parseInt(clickhouseProperties.getConnectionTimeout()));
         info.put(ClickHouseConnectionSettings.SOCKET_TIMEOUT.getKey(),
                 Integer.parseInt(clickhouseProperties.getSocketTimeout()));
-        return new JdbcTemplate(new ClickHouseDataSource(clickhouseProperties.getUrl(), info));
+        return new ClickHouseDataSource(clickhouseProperties.getUrl(), info);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource inspectionDataSource(DataSource clickHouseDataSource, MeterRegistry meterRegistry) {
+        return createPool("inspection", clickhouseProperties.getInspectionPool(), clickHouseDataSource,
+                meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource ingestionDataSource(DataSource clickHouseDataSource, MeterRegistry meterRegistry) {
+        return createPool("ingestion", clickhouseProperties.getIngestionPool(), clickHouseDataSource,
+                meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource historicalDataSource(
+            DataSource longQueryClickHouseDataSource,
+            MeterRegistry meterRegistry) {
+        return createPool("historical", clickhouseProperties.getHistoricalPool(), longQueryClickHouseDataSource,
+                meterRegistry);
     }
 
     @Bean
-    public NamedParameterJdbcTemplate namedParameterJdbcTemplate(ClickHouseDataSource clickHouseDataSource) {
-        return new NamedParameterJdbcTemplate(clickHouseDataSource);
+    public JdbcTemplate jdbcTemplate(DataSource inspectionDataSource) {
+        return new JdbcTemplate(inspectionDataSource);
+    }
+
+    @Bean
+    public JdbcTemplate ingestionJdbcTemplate(DataSource ingestionDataSource) {
+        return new JdbcTemplate(ingestionDataSource);
+    }
+
+    @Bean
+    public JdbcTemplate longQueryJdbcTemplate(DataSource historicalDataSource) {
+        return new JdbcTemplate(historicalDataSource);
+    }
+
+    @Bean
+    public NamedParameterJdbcTemplate namedParameterJdbcTemplate(DataSource historicalDataSource) {
+        return new NamedParameterJdbcTemplate(historicalDataSource);
+    }
+
+    private Properties createInfo() {
+        Properties info = new Properties();
+        info.put(ClickHouseQueryParam.USER.getKey(), clickhouseProperties.getUser());
+        info.put(ClickHouseQueryParam.PASSWORD.getKey(), clickhouseProperties.getPassword());
+        if (clickhouseProperties.getDistributedConnectionsPoolSize() != null) {
+            info.put(ClickHouseQueryParam.DISTRIBUTED_CONNECTIONS_POOL_SIZE.getKey(),
+                    clickhouseProperties.getDistributedConnectionsPoolSize());
+        }
+        if (clickhouseProperties.getMaxDistributedConnections() != null) {
+            info.put(ClickHouseQueryParam.MAX_DISTRIBUTED_CONNECTIONS.getKey(),
+                    clickhouseProperties.getMaxDistributedConnections());
+        }
+        return info;
+    }
+
+    private static HikariDataSource createPool(
+            String name,
+            ClickhouseProperties.PoolProperties poolProperties,
+            DataSource dataSource,
+            MeterRegistry meterRegistry) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(POOL_PREFIX + name);
+        pool.setDataSource(dataSource);
+        pool.setMaximumPoolSize(poolProperties.getMaxSize());
+        pool.setMinimumIdle(Math.min(poolProperties.getMinIdle(), poolProperties.getMaxSize()));
+        pool.setConnectionTimeout(poolProperties.getAcquireTimeout());
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
     }
 
 }
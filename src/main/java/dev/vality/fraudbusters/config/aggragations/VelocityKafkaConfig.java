@@ -0,0 +1,88 @@
+package dev.vality.fraudbusters.config.aggragations;
+
+import dev.vality.damsel.fraudbusters.Chargeback;
+import dev.vality.damsel.fraudbusters.Payment;
+import dev.vality.damsel.fraudbusters.Refund;
+import dev.vality.fraudbusters.config.service.ListenersConfigurationService;
+import dev.vality.fraudbusters.converter.PaymentToCheckedPaymentConverter;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import dev.vality.fraudbusters.listener.events.velocity.VelocityEventListener;
+import dev.vality.fraudbusters.listener.events.velocity.VelocityRebalanceListener;
+import dev.vality.fraudbusters.serde.ChargebackDeserializer;
+import dev.vality.fraudbusters.serde.PaymentDeserializer;
+import dev.vality.fraudbusters.serde.RefundDeserializer;
+import dev.vality.fraudbusters.service.ConsumerGroupIdService;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+
+import java.time.Clock;
+import java.util.Map;
+
+@SuppressWarnings("LineLength")
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "fraud.velocity.enabled", havingValue = "true")
+public class VelocityKafkaConfig {
+
+    private static final String VELOCITY_GROUP = "velocity";
+
+    private final ListenersConfigurationService listenersConfigurationService;
+    private final ConsumerGroupIdService consumerGroupIdService;
+
+    @Bean
+    public VelocityEventListener velocityEventListener(
+            VelocityCounter paymentVelocityCounter,
+            VelocityCounter refundVelocityCounter,
+            VelocityCounter chargebackVelocityCounter,
+            UniqueVelocityCounter uniqueVelocityCounter,
+            PaymentToCheckedPaymentConverter paymentToCheckedPaymentConverter) {
+        return new VelocityEventListener(
+                paymentVelocityCounter,
+                refundVelocityCounter,
+                chargebackVelocityCounter,
+                uniqueVelocityCounter,
+                paymentToCheckedPaymentConverter
+        );
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Payment> kafkaVelocityPaymentListenerContainerFactory(
+            VelocityCounter paymentVelocityCounter) {
+        return createFactory(new PaymentDeserializer(), paymentVelocityCounter);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Refund> kafkaVelocityRefundListenerContainerFactory(
+            VelocityCounter refundVelocityCounter) {
+        return createFactory(new RefundDeserializer(), refundVelocityCounter);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Chargeback> kafkaVelocityChargebackListenerContainerFactory(
+            VelocityCounter chargebackVelocityCounter) {
+        return createFactory(new ChargebackDeserializer(), chargebackVelocityCounter);
+    }
+
+    private <T> ConcurrentKafkaListenerContainerFactory<String, T> createFactory(
+            Deserializer<T> deserializer,
+            VelocityCounter velocityCounter) {
+        Map<String, Object> props = listenersConfigurationService.createDefaultProperties(
+                consumerGroupIdService.generateRandomGroupId(VELOCITY_GROUP)
+        );
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        ConcurrentKafkaListenerContainerFactory<String, T> factory =
+                listenersConfigurationService.createFactoryWithProps(deserializer, props);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setConsumerRebalanceListener(
+                new VelocityRebalanceListener(velocityCounter, Clock.systemUTC())
+        );
+        return factory;
+    }
+
+}
@@ -2,11 +2,13 @@ package dev.vality.fraudbusters.config.payment;
 
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
 import dev.vality.fraudbusters.pool.HistoricalPool;
 import dev.vality.fraudbusters.pool.HistoricalPoolImpl;
 import dev.vality.fraudbusters.stream.impl.FullRuleApplierImpl;
 import dev.vality.fraudbusters.stream.impl.RuleCheckingApplierImpl;
 import dev.vality.fraudbusters.util.CheckedResultFactory;
+import dev.vality.fraudbusters.util.RetainedSizeUtil;
 import dev.vality.fraudo.payment.visitor.impl.FirstFindVisitorImpl;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.springframework.context.annotation.Bean;
@@ -19,22 +21,25 @@ public class HistoricalPaymentPoolConfig {
 
     @Bean
     public HistoricalPool<List<String>> timeGroupPoolImpl() {
-        return new HistoricalPoolImpl<>("time-group-pool");
+        return new HistoricalPoolImpl<>("time-group-pool", value -> {
+        }, RetainedSizeUtil::sizeOf);
     }
 
     @Bean
     public HistoricalPool<String> timeReferencePoolImpl() {
-        return new HistoricalPoolImpl<>("time-reference-pool");
+        return new HistoricalPoolImpl<>("time-reference-pool", value -> {
+        }, RetainedSizeUtil::sizeOf);
     }
 
     @Bean
     public HistoricalPool<String> timeGroupReferencePoolImpl() {
-        return new HistoricalPoolImpl<>("time-group-reference-pool");
+        return new HistoricalPoolImpl<>("time-group-reference-pool", value -> {
+        }, RetainedSizeUtil::sizeOf);
     }
 
     @Bean
-    public HistoricalPool<ParserRuleContext> timeTemplatePoolImpl() {
-        return new HistoricalPoolImpl<>("time-template-pool");
+    public HistoricalPool<ParserRuleContext> timeTemplatePoolImpl(PaymentTemplateInterner paymentTemplateInterner) {
+        return new HistoricalPoolImpl<>("time-template-pool", paymentTemplateInterner::release);
     }
 
     @Bean
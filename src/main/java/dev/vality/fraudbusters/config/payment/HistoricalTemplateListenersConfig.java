@@ -3,17 +3,22 @@ package dev.vality.fraudbusters.config.payment;
 import dev.vality.damsel.fraudbusters.Command;
 import dev.vality.fraudbusters.config.service.ListenersConfigurationService;
 import dev.vality.fraudbusters.constant.GroupPostfix;
+import dev.vality.fraudbusters.listener.snapshot.PoolSnapshotService;
 import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.RecordInterceptor;
 
 @Configuration
 @RequiredArgsConstructor
 public class HistoricalTemplateListenersConfig {
 
     private final ListenersConfigurationService listenersConfigurationService;
+    private final PoolSnapshotService poolSnapshotService;
 
     @Bean
     public ConsumerFactory<String, Command> timeReferenceListenerFactory() {
@@ -38,26 +43,53 @@ public class HistoricalTemplateListenersConfig {
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> timeGroupListenerContainerFactory(
             ConsumerFactory<String, Command> timeGroupListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(timeGroupListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                timeGroupListenerFactory,
+                snapshotInterceptor()
+        );
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> timeReferenceListenerContainerFactory(
             ConsumerFactory<String, Command> timeReferenceListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(timeReferenceListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                timeReferenceListenerFactory,
+                snapshotInterceptor()
+        );
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> timeTemplateListenerContainerFactory(
             ConsumerFactory<String, Command> timeTemplateListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(timeTemplateListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                timeTemplateListenerFactory,
+                snapshotInterceptor()
+        );
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> timeGroupReferenceListenerContainerFactory(
             ConsumerFactory<String, Command> timeGroupReferenceListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(timeGroupReferenceListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                timeGroupReferenceListenerFactory,
+                snapshotInterceptor()
+        );
     }
 
+    private RecordInterceptor<String, Command> snapshotInterceptor() {
+        return new RecordInterceptor<>() {
+            @Override
+            public ConsumerRecord<String, Command> intercept(
+                    ConsumerRecord<String, Command> record,
+                    Consumer<String, Command> consumer) {
+                return record;
+            }
+
+            @Override
+            public void success(ConsumerRecord<String, Command> record, Consumer<String, Command> consumer) {
+                poolSnapshotService.append(record);
+            }
+        };
+    }
 
 }
@@ -1,6 +1,18 @@
 package dev.vality.fraudbusters.config.payment;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import dev.vality.damsel.wb_list.ListType;
 import dev.vality.damsel.wb_list.WbListServiceSrv;
+import dev.vality.fraudbusters.constant.ChargebackStatus;
+import dev.vality.fraudbusters.constant.RefundStatus;
+import dev.vality.fraudbusters.fraud.aggregate.AggregateKeyResolver;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
+import dev.vality.fraudbusters.fraud.aggregate.ContextCountAggregatorDecorator;
+import dev.vality.fraudbusters.fraud.aggregate.ContextPaymentRepositoryDecorator;
+import dev.vality.fraudbusters.fraud.aggregate.ContextSumAggregatorDecorator;
+import dev.vality.fraudbusters.fraud.aggregate.ContextUniqueValueAggregatorDecorator;
+import dev.vality.fraudbusters.fraud.aggregate.DeltaCachePaymentRepositoryDecorator;
+import dev.vality.fraudbusters.fraud.aggregate.WindowDeltaCache;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
 import dev.vality.fraudbusters.fraud.localstorage.LocalResultStorageRepository;
 import dev.vality.fraudbusters.fraud.localstorage.aggregator.LocalCountAggregatorDecorator;
@@ -20,6 +32,11 @@ import dev.vality.fraudbusters.fraud.payment.resolver.CountryResolverImpl;
 import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
 import dev.vality.fraudbusters.fraud.payment.resolver.DgraphEntityResolver;
 import dev.vality.fraudbusters.fraud.payment.resolver.PaymentModelFieldResolver;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityAggregationRepositoryDecorator;
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityPaymentRepositoryDecorator;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
 import dev.vality.fraudbusters.repository.DgraphAggregatesRepository;
 import dev.vality.fraudbusters.repository.PaymentRepository;
 import dev.vality.fraudbusters.repository.clickhouse.impl.ChargebackRepository;
@@ -42,51 +59,212 @@ import dev.vality.fraudo.payment.resolver.PaymentTypeResolver;
 import dev.vality.fraudo.payment.visitor.impl.FirstFindVisitorImpl;
 import dev.vality.fraudo.resolver.CountryResolver;
 import dev.vality.fraudo.resolver.FieldResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class PaymentFraudoConfig {
 
     @Bean
-    public CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregator(
+    public CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregatorImpl(
             PaymentRepository paymentRepository,
             RefundRepository refundRepository,
             ChargebackRepository chargebackRepository,
             DatabasePaymentFieldResolver databasePaymentFieldResolver,
-            TimeBoundaryService timeBoundaryService) {
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext,
+            @Nullable VelocityCounter paymentVelocityCounter,
+            @Nullable VelocityCounter refundVelocityCounter,
+            @Nullable VelocityCounter chargebackVelocityCounter,
+            @Nullable UniqueVelocityCounter uniqueVelocityCounter,
+            WindowDeltaCache windowDeltaCache) {
         return new CountAggregatorImpl(
                 databasePaymentFieldResolver,
-                paymentRepository,
-                refundRepository,
-                chargebackRepository,
+                new ContextPaymentRepositoryDecorator(
+                        VelocityPaymentRepositoryDecorator.decorate(
+                                new DeltaCachePaymentRepositoryDecorator(paymentRepository, windowDeltaCache),
+                                paymentVelocityCounter,
+                                uniqueVelocityCounter
+                        ),
+                        aggregationContext,
+                        false
+                ),
+                VelocityAggregationRepositoryDecorator.decorate(
+                        refundRepository,
+                        refundVelocityCounter,
+                        RefundStatus.succeeded.name()
+                ),
+                VelocityAggregationRepositoryDecorator.decorate(
+                        chargebackRepository,
+                        chargebackVelocityCounter,
+                        ChargebackStatus.accepted.name()
+                ),
                 timeBoundaryService
         );
     }
 
     @Bean
-    public SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregator(
+    public SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregatorImpl(
             PaymentRepository paymentRepository,
             RefundRepository refundRepository,
             ChargebackRepository chargebackRepository,
             DatabasePaymentFieldResolver databasePaymentFieldResolver,
-            TimeBoundaryService timeBoundaryService) {
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext,
+            @Nullable VelocityCounter paymentVelocityCounter,
+            @Nullable VelocityCounter refundVelocityCounter,
+            @Nullable VelocityCounter chargebackVelocityCounter,
+            @Nullable UniqueVelocityCounter uniqueVelocityCounter,
+            WindowDeltaCache windowDeltaCache) {
         return new SumAggregatorImpl(
                 databasePaymentFieldResolver,
-                paymentRepository,
-                refundRepository,
-                chargebackRepository,
+                new ContextPaymentRepositoryDecorator(
+                        VelocityPaymentRepositoryDecorator.decorate(
+                                new DeltaCachePaymentRepositoryDecorator(paymentRepository, windowDeltaCache),
+                                paymentVelocityCounter,
+                                uniqueVelocityCounter
+                        ),
+                        aggregationContext,
+                        false
+                ),
+                VelocityAggregationRepositoryDecorator.decorate(
+                        refundRepository,
+                        refundVelocityCounter,
+                        RefundStatus.succeeded.name()
+                ),
+                VelocityAggregationRepositoryDecorator.decorate(
+                        chargebackRepository,
+                        chargebackVelocityCounter,
+                        ChargebackStatus.accepted.name()
+                ),
                 timeBoundaryService
         );
     }
 
     @Bean
-    public UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregator(
+    public UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregatorImpl(
             PaymentRepository paymentRepository,
             DatabasePaymentFieldResolver databasePaymentFieldResolver,
-            TimeBoundaryService timeBoundaryService) {
-        return new UniqueValueAggregatorImpl(databasePaymentFieldResolver, paymentRepository, timeBoundaryService);
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext,
+            @Nullable VelocityCounter paymentVelocityCounter,
+            @Nullable UniqueVelocityCounter uniqueVelocityCounter) {
+        return new UniqueValueAggregatorImpl(
+                databasePaymentFieldResolver,
+                new ContextPaymentRepositoryDecorator(
+                        VelocityPaymentRepositoryDecorator.decorate(
+                                paymentRepository,
+                                paymentVelocityCounter,
+                                uniqueVelocityCounter
+                        ),
+                        aggregationContext,
+                        false
+                ),
+                timeBoundaryService
+        );
+    }
+
+    @Bean
+    public UniqueValueAggregator<PaymentModel, PaymentCheckedField> exactUniqueValueAggregatorImpl(
+            PaymentRepository paymentRepository,
+            DatabasePaymentFieldResolver databasePaymentFieldResolver,
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext) {
+        return new UniqueValueAggregatorImpl(
+                databasePaymentFieldResolver,
+                new ContextPaymentRepositoryDecorator(paymentRepository, aggregationContext, true),
+                timeBoundaryService
+        );
+    }
+
+    @Bean
+    public CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregator(
+            CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregatorImpl,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver) {
+        return new ContextCountAggregatorDecorator(countAggregatorImpl, aggregationContext, aggregateKeyResolver);
+    }
+
+    @Bean
+    public SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregator(
+            SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregatorImpl,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver) {
+        return new ContextSumAggregatorDecorator(sumAggregatorImpl, aggregationContext, aggregateKeyResolver);
+    }
+
+    @Bean
+    public UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregator(
+            UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregatorImpl,
+            UniqueValueAggregator<PaymentModel, PaymentCheckedField> exactUniqueValueAggregatorImpl,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver) {
+        return new ContextUniqueValueAggregatorDecorator(
+                uniqueValueAggregatorImpl,
+                exactUniqueValueAggregatorImpl,
+                aggregationContext,
+                aggregateKeyResolver
+        );
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService aggregatePrefetchExecutor(
+            @Value("${fraud.aggregate.prefetch.pool-size:32}") int poolSize,
+            @Value("${fraud.aggregate.prefetch.queue-size:1024}") int queueSize) {
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("aggregate-prefetch-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aggregateDeadlineExecutor(
+            @Value("${fraud.aggregate.deadline.pool-size:32}") int poolSize,
+            @Value("${fraud.aggregate.deadline.queue-size:256}") int queueSize) {
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("aggregate-deadline-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @Bean
+    public WindowDeltaCache windowDeltaCache(
+            @Value("${fraud.aggregate.delta-cache.enabled:false}") boolean enabled,
+            @Value("${fraud.aggregate.delta-cache.min-window-hours:24}") long minWindowHours,
+            @Value("${fraud.aggregate.delta-cache.freeze-lag-minutes:10}") long freezeLagMinutes,
+            @Value("${fraud.aggregate.delta-cache.maximum-bytes:67108864}") long maximumBytes,
+            @Value("${fraud.aggregate.delta-cache.ttl-minutes:60}") long ttlMinutes,
+            MeterRegistry meterRegistry) {
+        return new WindowDeltaCache(
+                enabled,
+                TimeUnit.HOURS.toMillis(minWindowHours),
+                TimeUnit.MINUTES.toMillis(freezeLagMinutes),
+                maximumBytes,
+                TimeUnit.MINUTES.toMillis(ttlMinutes),
+                Clock.systemUTC(),
+                meterRegistry
+        );
     }
 
     @Bean
@@ -102,9 +280,27 @@ public class PaymentFraudoConfig {
     @Bean
     public InListFinder<PaymentModel, PaymentCheckedField> paymentInListFinder(
             WbListServiceSrv.Iface wbListServiceSrv,
+            WbListReplica wbListReplica,
             PaymentRepository paymentRepository,
-            DatabasePaymentFieldResolver databasePaymentFieldResolver) {
-        return new PaymentInListFinderImpl(wbListServiceSrv, databasePaymentFieldResolver, paymentRepository);
+            DatabasePaymentFieldResolver databasePaymentFieldResolver,
+            AggregationContext aggregationContext,
+            @Value("${fraud.inspection.degraded.in-list.black:true}") boolean degradedInBlackList,
+            @Value("${fraud.inspection.degraded.in-list.white:false}") boolean degradedInWhiteList,
+            @Value("${fraud.inspection.degraded.in-list.grey:false}") boolean degradedInGreyList,
+            @Value("${fraud.inspection.degraded.in-list.naming:false}") boolean degradedInNamingList) {
+        return new PaymentInListFinderImpl(
+                wbListServiceSrv,
+                wbListReplica,
+                databasePaymentFieldResolver,
+                paymentRepository,
+                aggregationContext,
+                Map.of(
+                        ListType.black, degradedInBlackList,
+                        ListType.white, degradedInWhiteList,
+                        ListType.grey, degradedInGreyList,
+                        ListType.naming, degradedInNamingList
+                )
+        );
     }
 
     @Bean
@@ -139,21 +335,28 @@ public class PaymentFraudoConfig {
             RefundRepository refundRepository,
             ChargebackRepository chargebackRepository,
             DatabasePaymentFieldResolver databasePaymentFieldResolver,
-            TimeBoundaryService timeBoundaryService) {
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver) {
 
         CountAggregatorImpl countAggregatorDecorator = new CountAggregatorImpl(
                 databasePaymentFieldResolver,
-                paymentRepositoryImpl,
+                new ContextPaymentRepositoryDecorator(paymentRepositoryImpl, aggregationContext, false),
                 refundRepository,
                 chargebackRepository,
                 timeBoundaryService
         );
-        return new LocalCountAggregatorDecorator(
+        LocalCountAggregatorDecorator localCountAggregatorDecorator = new LocalCountAggregatorDecorator(
                 countAggregatorDecorator,
                 databasePaymentFieldResolver,
                 localResultStorageRepository,
                 timeBoundaryService
         );
+        return new ContextCountAggregatorDecorator(
+                localCountAggregatorDecorator,
+                aggregationContext,
+                aggregateKeyResolver
+        );
     }
 
     @Bean
@@ -163,21 +366,24 @@ public class PaymentFraudoConfig {
             RefundRepository refundRepository,
             ChargebackRepository chargebackRepository,
             DatabasePaymentFieldResolver databasePaymentFieldResolver,
-            TimeBoundaryService timeBoundaryService) {
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver) {
 
         SumAggregatorImpl sumAggregator = new SumAggregatorImpl(
                 databasePaymentFieldResolver,
-                paymentRepositoryImpl,
+                new ContextPaymentRepositoryDecorator(paymentRepositoryImpl, aggregationContext, false),
                 refundRepository,
                 chargebackRepository,
                 timeBoundaryService
         );
-        return new LocalSumAggregatorDecorator(
+        LocalSumAggregatorDecorator localSumAggregatorDecorator = new LocalSumAggregatorDecorator(
                 sumAggregator,
                 databasePaymentFieldResolver,
                 localResultStorageRepository,
                 timeBoundaryService
         );
+        return new ContextSumAggregatorDecorator(localSumAggregatorDecorator, aggregationContext, aggregateKeyResolver);
     }
 
     @Bean
@@ -185,16 +391,28 @@ public class PaymentFraudoConfig {
             LocalResultStorageRepository localResultStorageRepository,
             PaymentRepository fraudResultRepository,
             DatabasePaymentFieldResolver databasePaymentFieldResolver,
-            TimeBoundaryService timeBoundaryService) {
-        UniqueValueAggregatorImpl uniqueValueAggregator =
-                new UniqueValueAggregatorImpl(databasePaymentFieldResolver, fraudResultRepository, timeBoundaryService);
-
-        return new LocalUniqueValueAggregatorDecorator(
-                uniqueValueAggregator,
+            TimeBoundaryService timeBoundaryService,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver) {
+        UniqueValueAggregatorImpl uniqueValueAggregator = new UniqueValueAggregatorImpl(
                 databasePaymentFieldResolver,
-                localResultStorageRepository,
+                new ContextPaymentRepositoryDecorator(fraudResultRepository, aggregationContext, false),
                 timeBoundaryService
         );
+
+        LocalUniqueValueAggregatorDecorator localUniqueValueAggregatorDecorator =
+                new LocalUniqueValueAggregatorDecorator(
+                        uniqueValueAggregator,
+                        databasePaymentFieldResolver,
+                        localResultStorageRepository,
+                        timeBoundaryService
+                );
+        return new ContextUniqueValueAggregatorDecorator(
+                localUniqueValueAggregatorDecorator,
+                localUniqueValueAggregatorDecorator,
+                aggregationContext,
+                aggregateKeyResolver
+        );
     }
 
     @Bean
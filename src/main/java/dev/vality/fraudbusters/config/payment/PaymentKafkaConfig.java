@@ -5,13 +5,19 @@ import dev.vality.fraudbusters.config.service.KafkaTemplateConfigurationService;
 import dev.vality.fraudbusters.config.service.ListenersConfigurationService;
 import dev.vality.fraudbusters.constant.GroupPostfix;
 import dev.vality.fraudbusters.domain.FraudResult;
+import dev.vality.fraudbusters.listener.snapshot.PoolSnapshotService;
+import dev.vality.fraudbusters.pool.EvaluationPlanPool;
+import dev.vality.fraudbusters.service.RuleSetMetricsService;
 import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.RecordInterceptor;
 
 @Configuration
 @RequiredArgsConstructor
@@ -19,6 +25,9 @@ public class PaymentKafkaConfig {
 
     private final ListenersConfigurationService listenersConfigurationService;
     private final KafkaTemplateConfigurationService kafkaTemplateConfigurationService;
+    private final RuleSetMetricsService ruleSetMetricsService;
+    private final PoolSnapshotService poolSnapshotService;
+    private final EvaluationPlanPool evaluationPlanPool;
 
     @Bean
     public ConsumerFactory<String, Command> templateListenerFactory() {
@@ -43,25 +52,37 @@ public class PaymentKafkaConfig {
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> groupListenerContainerFactory(
             ConsumerFactory<String, Command> groupListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(groupListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                groupListenerFactory,
+                ruleSetVisibilityInterceptor()
+        );
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> templateListenerContainerFactory(
             ConsumerFactory<String, Command> templateListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(templateListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                templateListenerFactory,
+                ruleSetVisibilityInterceptor()
+        );
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> referenceListenerContainerFactory(
             ConsumerFactory<String, Command> referenceListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(referenceListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                referenceListenerFactory,
+                ruleSetVisibilityInterceptor()
+        );
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Command> groupReferenceListenerContainerFactory(
             ConsumerFactory<String, Command> groupReferenceListenerFactory) {
-        return listenersConfigurationService.createDefaultFactory(groupReferenceListenerFactory);
+        return listenersConfigurationService.createPoolFactory(
+                groupReferenceListenerFactory,
+                ruleSetVisibilityInterceptor()
+        );
     }
 
     @Bean
@@ -70,4 +91,27 @@ public class PaymentKafkaConfig {
                 new DefaultKafkaProducerFactory<>(kafkaTemplateConfigurationService.producerJsonConfigs())
         );
     }
+
+    private RecordInterceptor<String, Command> ruleSetVisibilityInterceptor() {
+        return new RecordInterceptor<>() {
+            @Override
+            public ConsumerRecord<String, Command> intercept(
+                    ConsumerRecord<String, Command> record,
+                    Consumer<String, Command> consumer) {
+                return record;
+            }
+
+            @Override
+            public void success(ConsumerRecord<String, Command> record, Consumer<String, Command> consumer) {
+                ruleSetMetricsService.commandApplied(record.timestamp());
+                poolSnapshotService.append(record);
+            }
+
+            @Override
+            public void clearThreadState(Consumer<?, ?> consumer) {
+                evaluationPlanPool.publish();
+            }
+        };
+    }
+
 }
@@ -1,16 +1,25 @@
 package dev.vality.fraudbusters.config.payment;
 
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateLoader;
+import dev.vality.fraudbusters.pool.LazyTemplatePool;
 import dev.vality.fraudbusters.pool.Pool;
 import dev.vality.fraudbusters.pool.PoolImpl;
+import dev.vality.fraudbusters.service.RuleSetMetricsService;
 import dev.vality.fraudbusters.stream.impl.RuleApplierImpl;
 import dev.vality.fraudbusters.util.CheckedResultFactory;
 import dev.vality.fraudo.payment.visitor.impl.FirstFindVisitorImpl;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -36,12 +45,41 @@ public class PaymentPoolConfig {
         return new PoolImpl<>("template");
     }
 
+    /**
+     * The parsed templates own the interned parse trees, the template pool only shares them.
+     */
+    @Bean
+    public LazyTemplatePool parsedTemplatePoolImpl(
+            PaymentTemplateLoader paymentTemplateLoader,
+            PaymentTemplateInterner paymentTemplateInterner,
+            RuleSetMetricsService ruleSetMetricsService,
+            @Value("${fraud.template.load-retry.interval-ms:1000}") long retryInterval,
+            @Value("${fraud.template.load-retry.max-interval-ms:300000}") long maxRetryInterval) {
+        return new LazyTemplatePool(
+                "parsed-template",
+                paymentTemplateLoader::load,
+                parsedTemplate -> paymentTemplateInterner.release(parsedTemplate.getContext()),
+                ruleSetMetricsService::templateLoadFailed,
+                Duration.ofMillis(retryInterval),
+                Duration.ofMillis(maxRetryInterval),
+                Clock.systemUTC()
+        );
+    }
+
     @Bean
     public RuleApplierImpl<PaymentModel> ruleApplier(
             FirstFindVisitorImpl<PaymentModel, PaymentCheckedField> paymentRuleVisitor,
             Pool<ParserRuleContext> templatePoolImpl,
-            CheckedResultFactory checkedResultFactory) {
-        return new RuleApplierImpl<>(paymentRuleVisitor, templatePoolImpl, checkedResultFactory);
+            Pool<ParsedTemplate> parsedTemplatePoolImpl,
+            CheckedResultFactory checkedResultFactory,
+            AggregationContext aggregationContext) {
+        return new RuleApplierImpl<>(
+                paymentRuleVisitor,
+                templatePoolImpl,
+                parsedTemplatePoolImpl,
+                checkedResultFactory,
+                aggregationContext
+        );
     }
 
 }
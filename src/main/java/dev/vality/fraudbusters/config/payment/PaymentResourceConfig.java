@@ -1,12 +1,15 @@
 package dev.vality.fraudbusters.config.payment;
 
+import dev.vality.damsel.domain.RiskScore;
 import dev.vality.damsel.proxy_inspector.InspectorProxySrv;
 import dev.vality.damsel.wb_list.WbListServiceSrv;
 import dev.vality.fraudbusters.converter.CheckedResultToRiskScoreConverter;
 import dev.vality.fraudbusters.converter.ContextToFraudRequestConverter;
 import dev.vality.fraudbusters.domain.FraudResult;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
 import dev.vality.fraudbusters.resource.payment.handler.FraudInspectorHandler;
 import dev.vality.fraudbusters.stream.impl.TemplateVisitorImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -18,20 +21,28 @@ public class PaymentResourceConfig {
     @Value("${kafka.topic.result}")
     private String resultTopic;
 
+    @Value("${fraud.inspection.fallback-score:high}")
+    private RiskScore fallbackRiskScore;
+
     @Bean
     public InspectorProxySrv.Iface fraudInspectorHandler(
             KafkaTemplate<String, FraudResult> kafkaFraudResultTemplate,
             CheckedResultToRiskScoreConverter checkedResultToRiskScoreConverter,
             ContextToFraudRequestConverter requestConverter,
             TemplateVisitorImpl templateVisitor,
-            WbListServiceSrv.Iface wbListServiceSrv) {
+            WbListServiceSrv.Iface wbListServiceSrv,
+            WbListReplica wbListReplica,
+            MeterRegistry meterRegistry) {
         return new FraudInspectorHandler(
                 resultTopic,
                 checkedResultToRiskScoreConverter,
                 requestConverter,
                 templateVisitor,
                 kafkaFraudResultTemplate,
-                wbListServiceSrv
+                wbListServiceSrv,
+                wbListReplica,
+                fallbackRiskScore,
+                meterRegistry
         );
     }
 
@@ -0,0 +1,69 @@
+package dev.vality.fraudbusters.config.payment;
+
+import dev.vality.fraudbusters.constant.ChargebackStatus;
+import dev.vality.fraudbusters.constant.PaymentStatus;
+import dev.vality.fraudbusters.constant.RefundStatus;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnProperty(value = "fraud.velocity.enabled", havingValue = "true")
+public class VelocityConfig {
+
+    @Value("${fraud.velocity.retention-minutes:60}")
+    private long retentionMinutes;
+    @Value("${fraud.velocity.fields:cardToken,fingerprint,email,ip,phone,bin}")
+    private String[] fields;
+    @Value("${fraud.velocity.unique.fields:cardToken,fingerprint,email,ip,phone,bin}")
+    private String[] uniqueFields;
+    @Value("${fraud.velocity.unique.bucket-seconds:60}")
+    private long uniqueBucketSeconds;
+    @Value("${fraud.velocity.unique.max-error:0.02}")
+    private double uniqueMaxError;
+
+    @Bean
+    public VelocityCounter paymentVelocityCounter() {
+        return createCounter("payment", Arrays.stream(PaymentStatus.values()).map(Enum::name).toList());
+    }
+
+    @Bean
+    public VelocityCounter refundVelocityCounter() {
+        return createCounter("refund", List.of(RefundStatus.succeeded.name()));
+    }
+
+    @Bean
+    public VelocityCounter chargebackVelocityCounter() {
+        return createCounter("chargeback", List.of(ChargebackStatus.accepted.name()));
+    }
+
+    @Bean
+    public UniqueVelocityCounter uniqueVelocityCounter(VelocityCounter paymentVelocityCounter) {
+        return new UniqueVelocityCounter(
+                paymentVelocityCounter,
+                List.of(uniqueFields),
+                TimeUnit.SECONDS.toMillis(uniqueBucketSeconds),
+                uniqueMaxError,
+                Clock.systemUTC()
+        );
+    }
+
+    private VelocityCounter createCounter(String name, List<String> statuses) {
+        return new VelocityCounter(
+                name,
+                statuses,
+                List.of(fields),
+                TimeUnit.MINUTES.toMillis(retentionMinutes),
+                Clock.systemUTC()
+        );
+    }
+
+}
@@ -0,0 +1,55 @@
+package dev.vality.fraudbusters.config.payment;
+
+import dev.vality.damsel.wb_list.Event;
+import dev.vality.fraudbusters.config.service.ListenersConfigurationService;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
+import dev.vality.fraudbusters.listener.events.wblist.WbListEventListener;
+import dev.vality.fraudbusters.listener.events.wblist.WbListRebalanceListener;
+import dev.vality.fraudbusters.serde.WbListEventDeserializer;
+import dev.vality.fraudbusters.service.ConsumerGroupIdService;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+
+import java.util.Map;
+
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "fraud.wb-list.replica.enabled", havingValue = "true")
+public class WbListKafkaConfig {
+
+    private static final String WB_LIST_GROUP = "wb-list-replica";
+    private static final long IDLE_EVENTS_PER_STALENESS = 3L;
+
+    private final ListenersConfigurationService listenersConfigurationService;
+    private final ConsumerGroupIdService consumerGroupIdService;
+
+    @Bean
+    public WbListEventListener wbListEventListener(WbListReplica wbListReplica) {
+        return new WbListEventListener(wbListReplica);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Event> kafkaWbListEventListenerContainerFactory(
+            WbListReplica wbListReplica,
+            @Value("${fraud.wb-list.replica.max-staleness-ms:60000}") long maxStalenessMs) {
+        Map<String, Object> props = listenersConfigurationService.createDefaultProperties(
+                consumerGroupIdService.generateRandomGroupId(WB_LIST_GROUP)
+        );
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        ConcurrentKafkaListenerContainerFactory<String, Event> factory =
+                listenersConfigurationService.createFactoryWithProps(new WbListEventDeserializer(), props);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setConsumerRebalanceListener(new WbListRebalanceListener(wbListReplica));
+        if (maxStalenessMs > 0) {
+            long idleEventInterval = Math.max(1L, maxStalenessMs / IDLE_EVENTS_PER_STALENESS);
+            factory.getContainerProperties().setIdleEventInterval(idleEventInterval);
+        }
+        return factory;
+    }
+
+}
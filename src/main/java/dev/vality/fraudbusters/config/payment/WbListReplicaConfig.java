@@ -0,0 +1,20 @@
+package dev.vality.fraudbusters.config.payment;
+
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+@Configuration
+public class WbListReplicaConfig {
+
+    @Bean
+    public WbListReplica wbListReplica(
+            @Value("${fraud.wb-list.replica.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${fraud.wb-list.replica.max-staleness-ms:60000}") long maxStalenessMs) {
+        return new WbListReplica(falsePositiveRate, maxStalenessMs, Clock.systemUTC());
+    }
+
+}
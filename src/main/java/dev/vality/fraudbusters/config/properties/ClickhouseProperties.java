@@ -15,5 +15,19 @@ public class ClickhouseProperties {
     private String compress;
     private String connectionTimeout;
     private String socketTimeout;
+    private Integer distributedConnectionsPoolSize;
+    private Integer maxDistributedConnections;
+    private PoolProperties inspectionPool = new PoolProperties();
+    private PoolProperties ingestionPool = new PoolProperties();
+    private PoolProperties historicalPool = new PoolProperties();
+
+    @Data
+    public static class PoolProperties {
+
+        private int maxSize = 10;
+        private int minIdle = 1;
+        private long acquireTimeout = 30000;
+
+    }
 
 }
@@ -15,6 +15,7 @@ import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.RecordInterceptor;
 import org.springframework.retry.RetryPolicy;
 import org.springframework.retry.backoff.BackOffPolicy;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
@@ -66,6 +67,18 @@ public class ListenersConfigurationService {
         return factory;
     }
 
+    /**
+     * Factory of the pool topic listeners, the interceptor sees every applied record and the end of every poll.
+     */
+    public ConcurrentKafkaListenerContainerFactory<String, Command> createPoolFactory(
+            ConsumerFactory<String, Command> stringCommandConsumerFactory,
+            RecordInterceptor<String, Command> recordInterceptor) {
+        ConcurrentKafkaListenerContainerFactory<String, Command> factory =
+                createDefaultFactory(stringCommandConsumerFactory);
+        factory.setRecordInterceptor(recordInterceptor);
+        return factory;
+    }
+
     /*
      * Retry template.
      */
@@ -0,0 +1,22 @@
+package dev.vality.fraudbusters.domain;
+
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AggregateWindow {
+
+    private AggregateType type;
+    private String onField;
+    private String errorCode;
+    private Long from;
+    private Long to;
+    private boolean exact;
+    private List<FieldModel> groupingFields;
+
+}
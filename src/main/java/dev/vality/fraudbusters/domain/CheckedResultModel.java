@@ -11,5 +11,6 @@ public class CheckedResultModel {
 
     private ConcreteResultModel resultModel;
     private String checkedTemplate;
+    private Boolean degraded;
 
 }
@@ -0,0 +1,10 @@
+package dev.vality.fraudbusters.fraud;
+
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+public interface TemplateCallExtractor {
+
+    ParsedTemplate extract(ParserRuleContext context);
+
+}
@@ -0,0 +1,24 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+public class AggregateKey {
+
+    private AggregateType type;
+    private String fieldName;
+    private Object value;
+    private TimeBound timeBound;
+    private List<FieldModel> groupingFields;
+    private String onField;
+    private String errorCode;
+    private boolean exact;
+
+}
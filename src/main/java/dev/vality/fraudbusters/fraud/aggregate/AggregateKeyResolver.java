@@ -0,0 +1,49 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
+import dev.vality.fraudbusters.service.TimeBoundaryService;
+import dev.vality.fraudbusters.util.TimestampUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AggregateKeyResolver {
+
+    private final DatabasePaymentFieldResolver databasePaymentFieldResolver;
+    private final TimeBoundaryService timeBoundaryService;
+
+    public AggregateKey resolve(AggregateCall aggregateCall, PaymentModel paymentModel) {
+        try {
+            TimeBound timeBound = timeBoundaryService.getBoundary(
+                    TimestampUtil.instantFromPaymentModel(paymentModel),
+                    aggregateCall.getTimeWindow()
+            );
+            FieldModel resolve = databasePaymentFieldResolver.resolve(aggregateCall.getCheckedField(), paymentModel);
+            return AggregateKey.builder()
+                    .type(aggregateCall.getType())
+                    .fieldName(resolve.getName())
+                    .value(resolve.getValue())
+                    .timeBound(timeBound)
+                    .groupingFields(databasePaymentFieldResolver.resolveListFields(
+                            paymentModel,
+                            aggregateCall.getGroupingFields())
+                    )
+                    .onField(aggregateCall.getOnField() != null
+                            ? databasePaymentFieldResolver.resolve(aggregateCall.getOnField())
+                            : null)
+                    .errorCode(aggregateCall.getErrorCode())
+                    .build();
+        } catch (Exception e) {
+            log.debug("AggregateKeyResolver can't resolve key for aggregateCall: {} e: ", aggregateCall, e);
+            return null;
+        }
+    }
+
+}
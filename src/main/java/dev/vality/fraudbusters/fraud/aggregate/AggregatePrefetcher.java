@@ -0,0 +1,246 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityPaymentRepositoryDecorator;
+import dev.vality.fraudbusters.pool.Pool;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import dev.vality.fraudo.aggregator.UniqueValueAggregator;
+import dev.vality.fraudo.payment.aggregator.CountPaymentAggregator;
+import dev.vality.fraudo.payment.aggregator.SumPaymentAggregator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Issues every aggregate call of the templates that can be reached for a payment concurrently,
+ * before the rules are evaluated, and publishes the pending results to {@link AggregationContext}.
+ * Payment calls over the same key and grouping differ only by window and status filter,
+ * so they are fused into one query and split back through the aggregators.
+ */
+@Slf4j
+@Component
+public class AggregatePrefetcher {
+
+    private static final int MIN_PREFETCH_CALLS = 2;
+    private static final Set<AggregateType> FUSIBLE_TYPES = EnumSet.of(
+            AggregateType.COUNT,
+            AggregateType.COUNT_SUCCESS,
+            AggregateType.COUNT_ERROR,
+            AggregateType.COUNT_PENDING,
+            AggregateType.SUM,
+            AggregateType.SUM_SUCCESS,
+            AggregateType.SUM_ERROR,
+            AggregateType.UNIQUE
+    );
+
+    private final Pool<ParsedTemplate> parsedTemplatePoolImpl;
+    private final AggregationContext aggregationContext;
+    private final AggregateKeyResolver aggregateKeyResolver;
+    private final CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregatorImpl;
+    private final SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregatorImpl;
+    private final UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregatorImpl;
+    private final UniqueValueAggregator<PaymentModel, PaymentCheckedField> exactUniqueValueAggregatorImpl;
+    private final PaymentRepository windowRepository;
+    private final ExecutorService aggregatePrefetchExecutor;
+
+    @Value("${fraud.aggregate.prefetch.enabled:true}")
+    private boolean prefetchEnabled;
+
+    public AggregatePrefetcher(
+            Pool<ParsedTemplate> parsedTemplatePoolImpl,
+            AggregationContext aggregationContext,
+            AggregateKeyResolver aggregateKeyResolver,
+            CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregatorImpl,
+            SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregatorImpl,
+            UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregatorImpl,
+            UniqueValueAggregator<PaymentModel, PaymentCheckedField> exactUniqueValueAggregatorImpl,
+            PaymentRepository paymentRepository,
+            @Nullable VelocityCounter paymentVelocityCounter,
+            @Nullable UniqueVelocityCounter uniqueVelocityCounter,
+            WindowDeltaCache windowDeltaCache,
+            ExecutorService aggregatePrefetchExecutor) {
+        this.parsedTemplatePoolImpl = parsedTemplatePoolImpl;
+        this.aggregationContext = aggregationContext;
+        this.aggregateKeyResolver = aggregateKeyResolver;
+        this.countAggregatorImpl = countAggregatorImpl;
+        this.sumAggregatorImpl = sumAggregatorImpl;
+        this.uniqueValueAggregatorImpl = uniqueValueAggregatorImpl;
+        this.exactUniqueValueAggregatorImpl = exactUniqueValueAggregatorImpl;
+        this.windowRepository = VelocityPaymentRepositoryDecorator.decorate(
+                new DeltaCachePaymentRepositoryDecorator(paymentRepository, windowDeltaCache),
+                paymentVelocityCounter,
+                uniqueVelocityCounter
+        );
+        this.aggregatePrefetchExecutor = aggregatePrefetchExecutor;
+    }
+
+    public void prefetch(PaymentModel paymentModel, List<String> templateKeys) {
+        if (!prefetchEnabled || !aggregationContext.isActive()) {
+            return;
+        }
+        Map<AggregateKey, AggregateCall> aggregateCalls = new LinkedHashMap<>();
+        for (String templateKey : templateKeys) {
+            ParsedTemplate parsedTemplate = parsedTemplatePoolImpl.get(templateKey);
+            if (parsedTemplate != null) {
+                boolean exactUnique = aggregationContext.isExactUniqueTemplate(templateKey);
+                for (AggregateCall aggregateCall : parsedTemplate.getAggregateCalls()) {
+                    AggregateKey key = aggregateKeyResolver.resolve(aggregateCall, paymentModel);
+                    if (key != null && exactUnique && key.getType() == AggregateType.UNIQUE) {
+                        key = key.toBuilder().exact(true).build();
+                    }
+                    if (key != null) {
+                        aggregateCalls.putIfAbsent(key, aggregateCall);
+                    }
+                }
+            }
+        }
+        if (aggregateCalls.size() < MIN_PREFETCH_CALLS) {
+            return;
+        }
+        log.debug("AggregatePrefetcher prefetch aggregateCalls: {}", aggregateCalls.values());
+        Map<List<Object>, Map<AggregateKey, AggregateCall>> fusedGroups = new LinkedHashMap<>();
+        aggregateCalls.forEach((key, aggregateCall) -> {
+            if (isFusible(key)) {
+                fusedGroups.computeIfAbsent(
+                        List.of(key.getFieldName(), key.getValue(), groupingFields(key)),
+                        groupKey -> new LinkedHashMap<>()
+                ).put(key, aggregateCall);
+            } else {
+                prefetchCall(key, aggregateCall, paymentModel);
+            }
+        });
+        for (Map<AggregateKey, AggregateCall> group : fusedGroups.values()) {
+            if (group.size() < MIN_PREFETCH_CALLS) {
+                group.forEach((key, aggregateCall) -> prefetchCall(key, aggregateCall, paymentModel));
+            } else {
+                prefetchFused(group, paymentModel);
+            }
+        }
+    }
+
+    private void prefetchCall(AggregateKey key, AggregateCall aggregateCall, PaymentModel paymentModel) {
+        aggregationContext.put(
+                key,
+                CompletableFuture.supplyAsync(
+                        () -> aggregate(key, aggregateCall, paymentModel),
+                        aggregatePrefetchExecutor
+                )
+        );
+    }
+
+    private void prefetchFused(Map<AggregateKey, AggregateCall> group, PaymentModel paymentModel) {
+        Map<AggregateKey, CompletableFuture<Object>> results = new LinkedHashMap<>();
+        group.keySet().forEach(key -> {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            results.put(key, result);
+            aggregationContext.put(key, result);
+        });
+        try {
+            aggregatePrefetchExecutor.execute(() -> aggregateFused(group, results, paymentModel));
+        } catch (Exception e) {
+            results.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private void aggregateFused(
+            Map<AggregateKey, AggregateCall> group,
+            Map<AggregateKey, CompletableFuture<Object>> results,
+            PaymentModel paymentModel) {
+        if (results.values().stream().allMatch(CompletableFuture::isDone)) {
+            return;
+        }
+        List<AggregateKey> keys = new ArrayList<>(group.keySet());
+        AggregateKey first = keys.get(0);
+        try {
+            List<Long> windowResults = windowRepository.aggregateWindows(
+                    first.getFieldName(),
+                    first.getValue(),
+                    first.getGroupingFields(),
+                    keys.stream().map(this::toWindow).toList()
+            );
+            aggregationContext.runInScope(() -> {
+                for (int i = 0; i < keys.size(); i++) {
+                    aggregationContext.putQueryResult(toQueryKey(keys.get(i)), windowResults.get(i));
+                }
+                group.forEach((key, aggregateCall) ->
+                        results.get(key).complete(aggregate(key, aggregateCall, paymentModel)));
+            });
+        } catch (Exception e) {
+            log.warn("AggregatePrefetcher fused query failed, keys: {} e: ", keys, e);
+            results.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private boolean isFusible(AggregateKey key) {
+        return FUSIBLE_TYPES.contains(key.getType()) && key.getValue() != null;
+    }
+
+    private List<FieldModel> groupingFields(AggregateKey key) {
+        return key.getGroupingFields() != null ? key.getGroupingFields() : List.of();
+    }
+
+    private AggregateWindow toWindow(AggregateKey key) {
+        return AggregateWindow.builder()
+                .type(key.getType())
+                .onField(key.getOnField())
+                .errorCode(key.getErrorCode())
+                .from(key.getTimeBound().getLeft().toEpochMilli())
+                .to(key.getTimeBound().getRight().toEpochMilli())
+                .exact(key.isExact())
+                .build();
+    }
+
+    private AggregateKey toQueryKey(AggregateKey key) {
+        return key.toBuilder()
+                .timeBound(TimeBound.builder()
+                        .left(Instant.ofEpochMilli(key.getTimeBound().getLeft().toEpochMilli()))
+                        .right(Instant.ofEpochMilli(key.getTimeBound().getRight().toEpochMilli()))
+                        .build())
+                .build();
+    }
+
+    private Object aggregate(AggregateKey key, AggregateCall call, PaymentModel model) {
+        PaymentCheckedField field = call.getCheckedField();
+        List<PaymentCheckedField> list = call.getGroupingFields();
+        return switch (call.getType()) {
+            case COUNT -> countAggregatorImpl.count(field, model, call.getTimeWindow(), list);
+            case COUNT_SUCCESS -> countAggregatorImpl.countSuccess(field, model, call.getTimeWindow(), list);
+            case COUNT_ERROR -> call.getErrorCode() != null
+                    ? countAggregatorImpl.countError(field, model, call.getTimeWindow(), call.getErrorCode(), list)
+                    : countAggregatorImpl.countError(field, model, call.getTimeWindow(), list);
+            case COUNT_PENDING -> countAggregatorImpl.countPending(field, model, call.getTimeWindow(), list);
+            case COUNT_CHARGEBACK -> countAggregatorImpl.countChargeback(field, model, call.getTimeWindow(), list);
+            case COUNT_REFUND -> countAggregatorImpl.countRefund(field, model, call.getTimeWindow(), list);
+            case SUM -> sumAggregatorImpl.sum(field, model, call.getTimeWindow(), list);
+            case SUM_SUCCESS -> sumAggregatorImpl.sumSuccess(field, model, call.getTimeWindow(), list);
+            case SUM_ERROR -> call.getErrorCode() != null
+                    ? sumAggregatorImpl.sumError(field, model, call.getTimeWindow(), call.getErrorCode(), list)
+                    : sumAggregatorImpl.sumError(field, model, call.getTimeWindow(), list);
+            case SUM_CHARGEBACK -> sumAggregatorImpl.sumChargeback(field, model, call.getTimeWindow(), list);
+            case SUM_REFUND -> sumAggregatorImpl.sumRefund(field, model, call.getTimeWindow(), list);
+            case UNIQUE -> (key.isExact() ? exactUniqueValueAggregatorImpl : uniqueValueAggregatorImpl)
+                    .countUniqueValue(field, model, call.getOnField(), call.getTimeWindow(), list);
+        };
+    }
+
+}
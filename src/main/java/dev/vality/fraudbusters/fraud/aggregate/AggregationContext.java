@@ -0,0 +1,318 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Request-scoped storage of aggregate results, bound to the thread that evaluates the rules.
+ * Within a scope every aggregate is computed at most once per key, either by the prefetch or on first use.
+ * Raw repository results of fused queries are kept apart, because aggregators adjust them for the current payment.
+ * Outside of an initialized scope every lookup goes straight to the aggregator.
+ * A scope may carry a deadline: calls that miss it resolve to the configured degraded values
+ * and the scope is marked as degraded. The degraded values default to the largest count and sum,
+ * so a velocity rule fires on a missed aggregate instead of letting the payment through. Calls made within the deadline run on their own executor
+ * that rejects instead of running on the caller, a rejected or late call is cancelled and its thread interrupted.
+ * The scope also tracks whether the template being evaluated requires exact unique counts
+ * and caches the results of external lookups, such as list checks, for the rest of the inspection.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AggregationContext {
+
+    private static final long NO_DEADLINE = 0L;
+
+    private final ThreadLocal<Scope> localScope = new ThreadLocal<>();
+    private final ExecutorService aggregateDeadlineExecutor;
+
+    @Value("${fraud.inspection.degraded.count:2147483647}")
+    private int degradedCount = Integer.MAX_VALUE;
+    @Value("${fraud.inspection.degraded.sum:9223372036854775807}")
+    private double degradedSum = Long.MAX_VALUE;
+    @Value("${fraud.velocity.unique.exact-templates:}")
+    private String[] exactUniqueTemplates = new String[0];
+
+    public void init() {
+        localScope.set(new Scope(NO_DEADLINE));
+    }
+
+    public void init(long deadlineMs) {
+        localScope.set(new Scope(deadlineMs > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs)
+                : NO_DEADLINE));
+    }
+
+    public boolean isActive() {
+        return localScope.get() != null;
+    }
+
+    public void put(AggregateKey key, CompletableFuture<?> result) {
+        Scope scope = localScope.get();
+        if (scope != null && key != null) {
+            scope.results.putIfAbsent(key, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getOrCompute(Supplier<AggregateKey> keySupplier, Supplier<T> aggregate) {
+        Scope scope = localScope.get();
+        if (scope == null) {
+            return aggregate.get();
+        }
+        AggregateKey key = keySupplier.get();
+        if (key == null) {
+            return aggregate.get();
+        }
+        CompletableFuture<?> result = scope.results.get(key);
+        if (result == null && scope.hasDeadline()) {
+            result = submit(aggregate);
+            scope.results.put(key, result);
+        }
+        if (result != null) {
+            try {
+                return (T) await(scope, result);
+            } catch (TimeoutException e) {
+                log.warn("AggregationContext aggregate missed the deadline, key: {}", key);
+                Object degradedValue = degradedValue(key.getType());
+                scope.results.put(key, timedOut(scope, result, degradedValue));
+                return (T) degradedValue;
+            } catch (ExecutionException e) {
+                if (scope.hasDeadline()) {
+                    throw unwrap(e);
+                }
+                log.warn("AggregationContext prefetched aggregate failed, key: {} e: ", key, e.getCause());
+            }
+        }
+        T value = aggregate.get();
+        scope.results.put(key, CompletableFuture.completedFuture(value));
+        return value;
+    }
+
+    /**
+     * Runs a call to an external service within the deadline of the current scope.
+     * Without a deadline the call is made on the current thread.
+     */
+    public <T> T callWithinDeadline(Supplier<T> call, T degradedValue) {
+        Scope scope = localScope.get();
+        if (scope == null || !scope.hasDeadline()) {
+            return call.get();
+        }
+        CompletableFuture<T> result = submit(call);
+        try {
+            return await(scope, result);
+        } catch (TimeoutException e) {
+            log.warn("AggregationContext call missed the deadline, degradedValue: {}", degradedValue);
+            timedOut(scope, result, degradedValue);
+            return degradedValue;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    public void putLookup(Object key, CompletableFuture<?> result) {
+        Scope scope = localScope.get();
+        if (scope != null && key != null) {
+            scope.lookups.putIfAbsent(key, result);
+        }
+    }
+
+    /**
+     * Returns the cached or prefetched result of an external lookup, otherwise makes the call within the deadline
+     * and caches its result for the rest of the scope.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrCall(Object key, Supplier<T> call, T degradedValue) {
+        Scope scope = localScope.get();
+        if (scope == null || key == null) {
+            return call.get();
+        }
+        CompletableFuture<?> result = scope.lookups.get(key);
+        if (result != null) {
+            try {
+                return (T) await(scope, result);
+            } catch (TimeoutException e) {
+                log.warn("AggregationContext lookup missed the deadline, key: {}", key);
+                scope.lookups.put(key, timedOut(scope, result, degradedValue));
+                return degradedValue;
+            } catch (ExecutionException e) {
+                if (scope.hasDeadline()) {
+                    throw unwrap(e);
+                }
+                log.warn("AggregationContext prefetched lookup failed, key: {} e: ", key, e.getCause());
+            }
+        }
+        T value = callWithinDeadline(call, degradedValue);
+        scope.lookups.put(key, CompletableFuture.completedFuture(value));
+        return value;
+    }
+
+    public boolean isExactUniqueTemplate(String templateKey) {
+        for (String exactUniqueTemplate : exactUniqueTemplates) {
+            if (exactUniqueTemplate.equals(templateKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void enterTemplate(String templateKey) {
+        Scope scope = localScope.get();
+        if (scope != null) {
+            scope.exactUnique = isExactUniqueTemplate(templateKey);
+        }
+    }
+
+    public boolean isExactUnique() {
+        Scope scope = localScope.get();
+        return scope != null && scope.exactUnique;
+    }
+
+    public boolean isDegraded() {
+        Scope scope = localScope.get();
+        return scope != null && scope.degraded;
+    }
+
+    public void putQueryResult(AggregateKey key, Long value) {
+        Scope scope = localScope.get();
+        if (scope != null && key != null) {
+            scope.queryResults.put(key, value);
+        }
+    }
+
+    public Long getQueryResult(AggregateKey key) {
+        Scope scope = localScope.get();
+        return scope != null ? scope.queryResults.get(key) : null;
+    }
+
+    /**
+     * Closes the scope and cancels the prefetched calls that are still pending,
+     * the ones that have not started yet are never run.
+     */
+    public void clear() {
+        Scope scope = localScope.get();
+        localScope.remove();
+        if (scope != null) {
+            scope.results.values().forEach(AggregationContext::cancel);
+            scope.lookups.values().forEach(AggregationContext::cancel);
+        }
+    }
+
+    private static void cancel(CompletableFuture<?> result) {
+        if (!result.isDone()) {
+            result.cancel(true);
+        }
+    }
+
+    /**
+     * Runs the task in a fresh scope and restores the scope of the current thread afterwards,
+     * so it is safe to call on the evaluating thread itself (e.g. when the executor runs tasks in the caller).
+     */
+    public void runInScope(Runnable task) {
+        Scope previous = localScope.get();
+        localScope.set(new Scope(NO_DEADLINE));
+        try {
+            task.run();
+        } finally {
+            if (previous != null) {
+                localScope.set(previous);
+            } else {
+                localScope.remove();
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            Future<?> task = aggregateDeadlineExecutor.submit(() -> {
+                try {
+                    result.complete(call.get());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            result.whenComplete((value, e) -> {
+                if (result.isCancelled()) {
+                    task.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("AggregationContext deadline executor is saturated, the call is degraded");
+            result.cancel(false);
+        }
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> timedOut(Scope scope, CompletableFuture<?> result, T degradedValue) {
+        scope.degraded = true;
+        cancel(result);
+        return CompletableFuture.completedFuture(degradedValue);
+    }
+
+    private <T> T await(Scope scope, CompletableFuture<T> result) throws TimeoutException, ExecutionException {
+        try {
+            if (!scope.hasDeadline()) {
+                return result.get();
+            }
+            long remaining = scope.deadline - System.nanoTime();
+            if (remaining <= 0 && !result.isDone()) {
+                throw new TimeoutException();
+            }
+            return result.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException();
+        } catch (CancellationException e) {
+            throw new TimeoutException();
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new CompletionException(e.getCause());
+    }
+
+    private Object degradedValue(AggregateType type) {
+        return switch (type) {
+            case SUM, SUM_SUCCESS, SUM_ERROR, SUM_CHARGEBACK, SUM_REFUND -> degradedSum;
+            default -> degradedCount;
+        };
+    }
+
+    private static class Scope {
+
+        private final Map<AggregateKey, CompletableFuture<?>> results = new HashMap<>();
+        private final Map<AggregateKey, Long> queryResults = new HashMap<>();
+        private final Map<Object, CompletableFuture<?>> lookups = new HashMap<>();
+        private final long deadline;
+        private boolean degraded;
+        private boolean exactUnique;
+
+        private Scope(long deadline) {
+            this.deadline = deadline;
+        }
+
+        private boolean hasDeadline() {
+            return deadline != NO_DEADLINE;
+        }
+
+    }
+
+}
@@ -0,0 +1,155 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.TemplateCallExtractor;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.pool.HistoricalPool;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Resolves the payment aggregates of the templates reachable for every payment of a batch
+ * and runs them as a few queries grouped by the aggregated field, one column per window of a payment.
+ * The raw results are returned per payment, so the rules of each payment are evaluated against them
+ * in its own {@link AggregationContext} scope. Failed queries leave their aggregates to the evaluation.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BatchAggregatePrefetcher {
+
+    private static final Set<AggregateType> BATCH_TYPES = EnumSet.of(
+            AggregateType.COUNT,
+            AggregateType.COUNT_SUCCESS,
+            AggregateType.COUNT_ERROR,
+            AggregateType.COUNT_PENDING,
+            AggregateType.SUM,
+            AggregateType.SUM_SUCCESS,
+            AggregateType.SUM_ERROR
+    );
+
+    private final HistoricalPool<ParserRuleContext> timeTemplatePoolImpl;
+    private final TemplateCallExtractor paymentTemplateCallExtractorImpl;
+    private final AggregateKeyResolver aggregateKeyResolver;
+    private final PaymentRepository paymentRepository;
+
+    @Value("${fraud.aggregate.batch.max-windows:256}")
+    private int maxWindows;
+
+    public List<Map<AggregateKey, Long>> prefetch(
+            List<PaymentModel> paymentModels,
+            Function<PaymentModel, List<String>> templateKeysResolver) {
+        Map<ParserRuleContext, List<AggregateCall>> extractedCalls = new IdentityHashMap<>();
+        Map<String, List<Request>> fieldRequests = new LinkedHashMap<>();
+        List<Map<AggregateKey, Long>> results = new ArrayList<>(paymentModels.size());
+        for (int i = 0; i < paymentModels.size(); i++) {
+            PaymentModel paymentModel = paymentModels.get(i);
+            results.add(new HashMap<>());
+            List<String> templateKeys = templateKeysResolver.apply(paymentModel);
+            for (AggregateKey key : resolveKeys(paymentModel, templateKeys, extractedCalls)) {
+                fieldRequests.computeIfAbsent(key.getFieldName(), fieldName -> new ArrayList<>())
+                        .add(new Request(i, key));
+            }
+        }
+        fieldRequests.forEach((fieldName, requests) -> {
+            for (int from = 0; from < requests.size(); from += maxWindows) {
+                query(fieldName, requests.subList(from, Math.min(from + maxWindows, requests.size())), results);
+            }
+        });
+        log.debug("BatchAggregatePrefetcher prefetch payments: {} fields: {} templates: {}",
+                paymentModels.size(), fieldRequests.keySet(), extractedCalls.size());
+        return results;
+    }
+
+    private Set<AggregateKey> resolveKeys(
+            PaymentModel paymentModel,
+            List<String> templateKeys,
+            Map<ParserRuleContext, List<AggregateCall>> extractedCalls) {
+        Set<AggregateKey> keys = new LinkedHashSet<>();
+        for (String templateKey : templateKeys) {
+            ParserRuleContext context = timeTemplatePoolImpl.get(templateKey, paymentModel.getTimestamp());
+            if (context == null) {
+                continue;
+            }
+            List<AggregateCall> aggregateCalls = extractedCalls.computeIfAbsent(
+                    context,
+                    key -> paymentTemplateCallExtractorImpl.extract(key).getAggregateCalls()
+            );
+            for (AggregateCall aggregateCall : aggregateCalls) {
+                AggregateKey key = aggregateKeyResolver.resolve(aggregateCall, paymentModel);
+                if (key != null && BATCH_TYPES.contains(key.getType()) && key.getValue() != null) {
+                    keys.add(toQueryKey(key));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private void query(String fieldName, List<Request> requests, List<Map<AggregateKey, Long>> results) {
+        try {
+            List<Long> windowResults = paymentRepository.aggregateValueWindows(
+                    fieldName,
+                    requests.stream().map(request -> request.key.getValue()).toList(),
+                    requests.stream().map(request -> toWindow(request.key)).toList()
+            );
+            for (int i = 0; i < requests.size(); i++) {
+                Request request = requests.get(i);
+                results.get(request.index).put(request.key, windowResults.get(i));
+            }
+        } catch (Exception e) {
+            log.warn("BatchAggregatePrefetcher query failed, fieldName: {} windows: {} e: ",
+                    fieldName, requests.size(), e);
+        }
+    }
+
+    private AggregateWindow toWindow(AggregateKey key) {
+        return AggregateWindow.builder()
+                .type(key.getType())
+                .errorCode(key.getErrorCode())
+                .from(key.getTimeBound().getLeft().toEpochMilli())
+                .to(key.getTimeBound().getRight().toEpochMilli())
+                .groupingFields(key.getGroupingFields())
+                .build();
+    }
+
+    private AggregateKey toQueryKey(AggregateKey key) {
+        return key.toBuilder()
+                .timeBound(TimeBound.builder()
+                        .left(Instant.ofEpochMilli(key.getTimeBound().getLeft().toEpochMilli()))
+                        .right(Instant.ofEpochMilli(key.getTimeBound().getRight().toEpochMilli()))
+                        .build())
+                .build();
+    }
+
+    private static final class Request {
+
+        private final int index;
+        private final AggregateKey key;
+
+        private Request(int index, AggregateKey key) {
+            this.index = index;
+            this.key = key;
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudo.model.TimeWindow;
+import dev.vality.fraudo.payment.aggregator.CountPaymentAggregator;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ContextCountAggregatorDecorator implements CountPaymentAggregator<PaymentModel, PaymentCheckedField> {
+
+    private final CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregator;
+    private final AggregationContext aggregationContext;
+    private final AggregateKeyResolver aggregateKeyResolver;
+
+    @Override
+    public Integer count(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT, checkedField, paymentModel, timeWindow, list, null),
+                () -> countAggregator.count(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Integer countSuccess(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT_SUCCESS, checkedField, paymentModel, timeWindow, list, null),
+                () -> countAggregator.countSuccess(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Integer countError(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            String errorCode,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT_ERROR, checkedField, paymentModel, timeWindow, list, errorCode),
+                () -> countAggregator.countError(checkedField, paymentModel, timeWindow, errorCode, list)
+        );
+    }
+
+    @Override
+    public Integer countError(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT_ERROR, checkedField, paymentModel, timeWindow, list, null),
+                () -> countAggregator.countError(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Integer countPending(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT_PENDING, checkedField, paymentModel, timeWindow, list, null),
+                () -> countAggregator.countPending(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Integer countChargeback(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT_CHARGEBACK, checkedField, paymentModel, timeWindow, list, null),
+                () -> countAggregator.countChargeback(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Integer countRefund(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.COUNT_REFUND, checkedField, paymentModel, timeWindow, list, null),
+                () -> countAggregator.countRefund(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    private AggregateKey resolveKey(
+            AggregateType type,
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list,
+            String errorCode) {
+        return aggregateKeyResolver.resolve(
+                AggregateCall.builder()
+                        .type(type)
+                        .checkedField(checkedField)
+                        .timeWindow(timeWindow)
+                        .groupingFields(list)
+                        .errorCode(errorCode)
+                        .build(),
+                paymentModel
+        );
+    }
+
+}
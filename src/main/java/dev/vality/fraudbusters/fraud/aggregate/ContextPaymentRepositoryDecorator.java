@@ -0,0 +1,208 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Answers single-window payment aggregations from the results of a fused query stored in
+ * {@link AggregationContext}, so the aggregators split them out with their usual logic.
+ * A decorator of the exact unique aggregator looks up the exact results of unique counts.
+ */
+@RequiredArgsConstructor
+public class ContextPaymentRepositoryDecorator implements PaymentRepository {
+
+    private final PaymentRepository paymentRepository;
+    private final AggregationContext aggregationContext;
+    private final boolean exactUnique;
+
+    @Override
+    public Integer countOperationByField(String fieldName, Object value, Long from, Long to) {
+        return paymentRepository.countOperationByField(fieldName, value, from, to);
+    }
+
+    @Override
+    public Integer countOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.COUNT, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? Integer.valueOf(result.intValue())
+                : paymentRepository.countOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.SUM, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? result
+                : paymentRepository.sumOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer uniqCountOperation(String fieldNameBy, Object value, String fieldNameCount, Long from, Long to) {
+        return paymentRepository.uniqCountOperation(fieldNameBy, value, fieldNameCount, from, to);
+    }
+
+    @Override
+    public Integer uniqCountOperationWithGroupBy(
+            String fieldNameBy,
+            Object value,
+            String fieldNameCount,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.UNIQUE, fieldNameBy, value, from, to, fieldModels,
+                fieldNameCount, null);
+        return result != null
+                ? Integer.valueOf(result.intValue())
+                : paymentRepository.uniqCountOperationWithGroupBy(
+                        fieldNameBy, value, fieldNameCount, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationSuccessWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.COUNT_SUCCESS, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? Integer.valueOf(result.intValue())
+                : paymentRepository.countOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationPendingWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.COUNT_PENDING, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? Integer.valueOf(result.intValue())
+                : paymentRepository.countOperationPendingWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        Long result = getQueryResult(AggregateType.COUNT_ERROR, fieldName, value, from, to, fieldModels, null,
+                errorCode);
+        return result != null
+                ? Integer.valueOf(result.intValue())
+                : paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, errorCode);
+    }
+
+    @Override
+    public Integer countOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.COUNT_ERROR, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? Integer.valueOf(result.intValue())
+                : paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationSuccessWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.SUM_SUCCESS, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? result
+                : paymentRepository.sumOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        Long result = getQueryResult(AggregateType.SUM_ERROR, fieldName, value, from, to, fieldModels, null,
+                errorCode);
+        return result != null
+                ? result
+                : paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, errorCode);
+    }
+
+    @Override
+    public Long sumOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        Long result = getQueryResult(AggregateType.SUM_ERROR, fieldName, value, from, to, fieldModels, null, null);
+        return result != null
+                ? result
+                : paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public List<Long> aggregateWindows(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        return paymentRepository.aggregateWindows(fieldName, value, fieldModels, windows);
+    }
+
+    private Long getQueryResult(
+            AggregateType type,
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String onField,
+            String errorCode) {
+        if (!aggregationContext.isActive()) {
+            return null;
+        }
+        return aggregationContext.getQueryResult(AggregateKey.builder()
+                .type(type)
+                .fieldName(fieldName)
+                .value(value)
+                .timeBound(TimeBound.builder()
+                        .left(Instant.ofEpochMilli(from))
+                        .right(Instant.ofEpochMilli(to))
+                        .build())
+                .groupingFields(fieldModels)
+                .onField(onField)
+                .errorCode(errorCode)
+                .exact(exactUnique && type == AggregateType.UNIQUE)
+                .build());
+    }
+
+}
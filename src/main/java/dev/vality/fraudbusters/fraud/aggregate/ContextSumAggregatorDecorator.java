@@ -0,0 +1,112 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudo.model.TimeWindow;
+import dev.vality.fraudo.payment.aggregator.SumPaymentAggregator;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ContextSumAggregatorDecorator implements SumPaymentAggregator<PaymentModel, PaymentCheckedField> {
+
+    private final SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregator;
+    private final AggregationContext aggregationContext;
+    private final AggregateKeyResolver aggregateKeyResolver;
+
+    @Override
+    public Double sum(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.SUM, checkedField, paymentModel, timeWindow, list, null),
+                () -> sumAggregator.sum(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Double sumSuccess(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.SUM_SUCCESS, checkedField, paymentModel, timeWindow, list, null),
+                () -> sumAggregator.sumSuccess(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Double sumError(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            String errorCode,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.SUM_ERROR, checkedField, paymentModel, timeWindow, list, errorCode),
+                () -> sumAggregator.sumError(checkedField, paymentModel, timeWindow, errorCode, list)
+        );
+    }
+
+    @Override
+    public Double sumError(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.SUM_ERROR, checkedField, paymentModel, timeWindow, list, null),
+                () -> sumAggregator.sumError(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Double sumChargeback(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.SUM_CHARGEBACK, checkedField, paymentModel, timeWindow, list, null),
+                () -> sumAggregator.sumChargeback(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    @Override
+    public Double sumRefund(
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(AggregateType.SUM_REFUND, checkedField, paymentModel, timeWindow, list, null),
+                () -> sumAggregator.sumRefund(checkedField, paymentModel, timeWindow, list)
+        );
+    }
+
+    private AggregateKey resolveKey(
+            AggregateType type,
+            PaymentCheckedField checkedField,
+            PaymentModel paymentModel,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list,
+            String errorCode) {
+        return aggregateKeyResolver.resolve(
+                AggregateCall.builder()
+                        .type(type)
+                        .checkedField(checkedField)
+                        .timeWindow(timeWindow)
+                        .groupingFields(list)
+                        .errorCode(errorCode)
+                        .build(),
+                paymentModel
+        );
+    }
+
+}
@@ -0,0 +1,64 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudo.aggregator.UniqueValueAggregator;
+import dev.vality.fraudo.model.TimeWindow;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Memoizes unique counts within {@link AggregationContext}. Templates that require exact counts
+ * go to the exact aggregator and get their own keys, so approximate results are never shared with them.
+ */
+@RequiredArgsConstructor
+public class ContextUniqueValueAggregatorDecorator implements UniqueValueAggregator<PaymentModel, PaymentCheckedField> {
+
+    private final UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregator;
+    private final UniqueValueAggregator<PaymentModel, PaymentCheckedField> exactUniqueValueAggregator;
+    private final AggregationContext aggregationContext;
+    private final AggregateKeyResolver aggregateKeyResolver;
+
+    @Override
+    public Integer countUniqueValue(
+            PaymentCheckedField countField,
+            PaymentModel paymentModel,
+            PaymentCheckedField onField,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list) {
+        boolean exact = aggregationContext.isExactUnique();
+        UniqueValueAggregator<PaymentModel, PaymentCheckedField> aggregator = exact
+                ? exactUniqueValueAggregator
+                : uniqueValueAggregator;
+        return aggregationContext.getOrCompute(
+                () -> resolveKey(countField, paymentModel, onField, timeWindow, list, exact),
+                () -> aggregator.countUniqueValue(countField, paymentModel, onField, timeWindow, list)
+        );
+    }
+
+    private AggregateKey resolveKey(
+            PaymentCheckedField countField,
+            PaymentModel paymentModel,
+            PaymentCheckedField onField,
+            TimeWindow timeWindow,
+            List<PaymentCheckedField> list,
+            boolean exact) {
+        AggregateKey key = aggregateKeyResolver.resolve(
+                AggregateCall.builder()
+                        .type(AggregateType.UNIQUE)
+                        .checkedField(countField)
+                        .onField(onField)
+                        .timeWindow(timeWindow)
+                        .groupingFields(list)
+                        .build(),
+                paymentModel
+        );
+        return key != null && exact
+                ? key.toBuilder().exact(true).build()
+                : key;
+    }
+
+}
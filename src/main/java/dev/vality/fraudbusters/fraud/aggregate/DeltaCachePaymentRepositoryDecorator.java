@@ -0,0 +1,331 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Answers payment counts and sums over long windows through {@link WindowDeltaCache},
+ * which reads only the edges of the window from the wrapped repository. Unique counts and short windows
+ * go to the wrapped repository. Fused windows read their edges with fused queries as well,
+ * edges close in time share one query, so a query never spans the whole window.
+ */
+@RequiredArgsConstructor
+public class DeltaCachePaymentRepositoryDecorator implements PaymentRepository {
+
+    private static final long CLUSTER_SPAN_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final PaymentRepository paymentRepository;
+    private final WindowDeltaCache windowDeltaCache;
+
+    @Override
+    public Integer countOperationByField(String fieldName, Object value, Long from, Long to) {
+        return windowDeltaCache.isCacheable(AggregateType.COUNT, from, to)
+                ? count(AggregateType.COUNT, null, fieldName, value, List.of(), from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.countOperationByField(
+                                fieldName, value, rangeFrom, rangeTo))
+                : paymentRepository.countOperationByField(fieldName, value, from, to);
+    }
+
+    @Override
+    public Integer countOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.COUNT, from, to)
+                ? count(AggregateType.COUNT, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.countOperationByFieldWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.countOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.SUM, from, to)
+                ? sum(AggregateType.SUM, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.sumOperationByFieldWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.sumOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer uniqCountOperation(String fieldNameBy, Object value, String fieldNameCount, Long from, Long to) {
+        return paymentRepository.uniqCountOperation(fieldNameBy, value, fieldNameCount, from, to);
+    }
+
+    @Override
+    public Integer uniqCountOperationWithGroupBy(
+            String fieldNameBy,
+            Object value,
+            String fieldNameCount,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return paymentRepository.uniqCountOperationWithGroupBy(
+                fieldNameBy, value, fieldNameCount, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationSuccessWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.COUNT_SUCCESS, from, to)
+                ? count(AggregateType.COUNT_SUCCESS, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.countOperationSuccessWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.countOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationPendingWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.COUNT_PENDING, from, to)
+                ? count(AggregateType.COUNT_PENDING, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.countOperationPendingWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.countOperationPendingWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        return windowDeltaCache.isCacheable(AggregateType.COUNT_ERROR, from, to)
+                ? count(AggregateType.COUNT_ERROR, errorCode, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.countOperationErrorWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels, errorCode))
+                : paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, errorCode);
+    }
+
+    @Override
+    public Integer countOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.COUNT_ERROR, from, to)
+                ? count(AggregateType.COUNT_ERROR, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.countOperationErrorWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationSuccessWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.SUM_SUCCESS, from, to)
+                ? sum(AggregateType.SUM_SUCCESS, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.sumOperationSuccessWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.sumOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        return windowDeltaCache.isCacheable(AggregateType.SUM_ERROR, from, to)
+                ? sum(AggregateType.SUM_ERROR, errorCode, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.sumOperationErrorWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels, errorCode))
+                : paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, errorCode);
+    }
+
+    @Override
+    public Long sumOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return windowDeltaCache.isCacheable(AggregateType.SUM_ERROR, from, to)
+                ? sum(AggregateType.SUM_ERROR, null, fieldName, value, fieldModels, from, to,
+                        (rangeFrom, rangeTo) -> paymentRepository.sumOperationErrorWithGroupBy(
+                                fieldName, value, rangeFrom, rangeTo, fieldModels))
+                : paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public List<Long> aggregateWindows(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        List<WindowDeltaCache.Lookup> lookups = new ArrayList<>(windows.size());
+        List<AggregateWindow> remaining = new ArrayList<>();
+        List<AggregateWindow> ranges = new ArrayList<>();
+        for (AggregateWindow window : windows) {
+            if (windowDeltaCache.isCacheable(window.getType(), window.getFrom(), window.getTo())) {
+                WindowDeltaCache.Lookup lookup = windowDeltaCache.lookup(
+                        key(window.getType(), window.getErrorCode(), fieldName, value, fieldModels,
+                                window.getFrom(), window.getTo()),
+                        window.getFrom(),
+                        window.getTo()
+                );
+                lookup.getRanges().forEach(range -> ranges.add(toRangeWindow(window, range)));
+                lookups.add(lookup);
+            } else {
+                remaining.add(window);
+                lookups.add(null);
+            }
+        }
+        if (remaining.size() == windows.size()) {
+            return paymentRepository.aggregateWindows(fieldName, value, fieldModels, windows);
+        }
+        Iterator<Long> remainingResults = remaining.isEmpty()
+                ? Collections.emptyIterator()
+                : paymentRepository.aggregateWindows(fieldName, value, fieldModels, remaining).iterator();
+        Iterator<Long> rangeResults = aggregateRanges(fieldName, value, fieldModels, ranges).iterator();
+        List<Long> results = new ArrayList<>(windows.size());
+        for (WindowDeltaCache.Lookup lookup : lookups) {
+            if (lookup == null) {
+                results.add(remainingResults.next());
+                continue;
+            }
+            List<Long> lookupResults = new ArrayList<>(lookup.getRanges().size());
+            lookup.getRanges().forEach(range -> lookupResults.add(rangeResults.next()));
+            results.add(windowDeltaCache.complete(lookup, lookupResults));
+        }
+        return results;
+    }
+
+    /**
+     * Reads the ranges by fused queries over groups of ranges that fit into one cluster span.
+     */
+    private List<Long> aggregateRanges(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> ranges) {
+        List<Long> results = new ArrayList<>(Collections.nCopies(ranges.size(), null));
+        List<Integer> order = IntStream.range(0, ranges.size()).boxed()
+                .sorted(Comparator.comparing(index -> ranges.get(index).getFrom()))
+                .toList();
+        List<Integer> cluster = new ArrayList<>();
+        long clusterFrom = 0L;
+        long clusterTo = 0L;
+        for (Integer index : order) {
+            AggregateWindow range = ranges.get(index);
+            if (!cluster.isEmpty() && Math.max(clusterTo, range.getTo()) - clusterFrom > CLUSTER_SPAN_MS) {
+                aggregateCluster(fieldName, value, fieldModels, ranges, cluster, results);
+                cluster.clear();
+            }
+            if (cluster.isEmpty()) {
+                clusterFrom = range.getFrom();
+                clusterTo = range.getTo();
+            } else {
+                clusterTo = Math.max(clusterTo, range.getTo());
+            }
+            cluster.add(index);
+        }
+        aggregateCluster(fieldName, value, fieldModels, ranges, cluster, results);
+        return results;
+    }
+
+    private void aggregateCluster(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> ranges,
+            List<Integer> cluster,
+            List<Long> results) {
+        if (cluster.isEmpty()) {
+            return;
+        }
+        List<Long> clusterResults = paymentRepository.aggregateWindows(
+                fieldName,
+                value,
+                fieldModels,
+                cluster.stream().map(ranges::get).toList()
+        );
+        for (int i = 0; i < cluster.size(); i++) {
+            results.set(cluster.get(i), clusterResults.get(i));
+        }
+    }
+
+    private Integer count(
+            AggregateType type,
+            String errorCode,
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            Long from,
+            Long to,
+            WindowDeltaCache.RangeQuery query) {
+        return (int) windowDeltaCache.aggregate(key(type, errorCode, fieldName, value, fieldModels, from, to),
+                from, to, query);
+    }
+
+    private Long sum(
+            AggregateType type,
+            String errorCode,
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            Long from,
+            Long to,
+            WindowDeltaCache.RangeQuery query) {
+        return windowDeltaCache.aggregate(key(type, errorCode, fieldName, value, fieldModels, from, to),
+                from, to, query);
+    }
+
+    private static WindowDeltaCache.Key key(
+            AggregateType type,
+            String errorCode,
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            Long from,
+            Long to) {
+        return new WindowDeltaCache.Key(type, errorCode, fieldName, value, fieldModels, from, to);
+    }
+
+    private static AggregateWindow toRangeWindow(AggregateWindow window, WindowDeltaCache.Range range) {
+        return AggregateWindow.builder()
+                .type(window.getType())
+                .onField(window.getOnField())
+                .errorCode(window.getErrorCode())
+                .from(range.getFrom())
+                .to(range.getTo())
+                .exact(window.isExact())
+                .build();
+    }
+
+}
@@ -0,0 +1,267 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the count or sum of the frozen part of long windows, the part older than the freeze lag,
+ * where no rows are written any more. When the window slides, the cached value is moved by the rows
+ * that left it at the start and the rows that got frozen at the end, and the rows after the freeze point
+ * are added, so only the edges of the window are read from the database.
+ * Rows written late into the frozen part are only seen by a full scan, so an entry is scanned again
+ * once its last full scan is older than the ttl, however often it is slid in between.
+ * Windows are handled with a second precision, as the aggregate queries compare eventTime in seconds.
+ */
+@Slf4j
+public class WindowDeltaCache {
+
+    public static final String REQUESTS_METRIC = "aggregate.delta-cache.requests";
+    public static final String SIZE_METRIC = "aggregate.delta-cache.size";
+    public static final String BYTES_METRIC = "aggregate.delta-cache.bytes";
+
+    private static final long SECOND_MS = 1000L;
+    private static final int ENTRY_BYTES = 160;
+
+    private final boolean enabled;
+    private final long minWindowMs;
+    private final long freezeLagMs;
+    private final long ttlMs;
+    private final Clock clock;
+    private final Cache<Key, Entry> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public WindowDeltaCache(
+            boolean enabled,
+            long minWindowMs,
+            long freezeLagMs,
+            long maximumBytes,
+            long ttlMs,
+            Clock clock,
+            MeterRegistry registry) {
+        this.enabled = enabled;
+        this.minWindowMs = minWindowMs;
+        this.freezeLagMs = freezeLagMs;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((Key key, Entry entry) -> key.weight())
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build();
+        this.hits = Counter.builder(REQUESTS_METRIC).tag("result", "hit").register(registry);
+        this.misses = Counter.builder(REQUESTS_METRIC).tag("result", "miss").register(registry);
+        Gauge.builder(SIZE_METRIC, cache, Cache::estimatedSize).register(registry);
+        Gauge.builder(BYTES_METRIC, cache, this::weightedSize).register(registry);
+    }
+
+    /**
+     * Checks that the window is long enough to be cached and has a frozen part.
+     */
+    public boolean isCacheable(AggregateType type, Long from, Long to) {
+        return enabled
+                && type != AggregateType.UNIQUE
+                && from != null
+                && to != null
+                && to - from >= minWindowMs
+                && from / SECOND_MS <= frozenSecond();
+    }
+
+    /**
+     * Returns the ranges to read for the window, their results are passed to {@link #complete}.
+     */
+    public Lookup lookup(Key key, long from, long to) {
+        long fromSecond = from / SECOND_MS;
+        long toSecond = to / SECOND_MS;
+        long frozenSecond = Math.min(toSecond, frozenSecond());
+        long now = clock.millis();
+        Entry entry = cache.getIfPresent(key);
+        Lookup lookup;
+        if (entry != null && now - entry.scannedAt < ttlMs
+                && entry.from <= fromSecond && fromSecond <= entry.to + 1 && entry.to <= frozenSecond) {
+            hits.increment();
+            lookup = new Lookup(key, fromSecond, frozenSecond, entry.value, entry.scannedAt);
+            lookup.addFrozen(entry.from, fromSecond - 1, -1);
+            lookup.addFrozen(entry.to + 1, frozenSecond, 1);
+        } else {
+            misses.increment();
+            lookup = new Lookup(key, fromSecond, frozenSecond, 0L, now);
+            lookup.addFrozen(fromSecond, frozenSecond, 1);
+        }
+        lookup.addTail(frozenSecond + 1, toSecond);
+        return lookup;
+    }
+
+    public long complete(Lookup lookup, List<Long> results) {
+        long frozenValue = lookup.base;
+        long tailValue = 0L;
+        for (int i = 0; i < lookup.ranges.size(); i++) {
+            Range range = lookup.ranges.get(i);
+            long result = results.get(i) != null ? results.get(i) : 0L;
+            if (range.sign == 0) {
+                tailValue += result;
+            } else {
+                frozenValue += range.sign * result;
+            }
+        }
+        cache.put(lookup.key, new Entry(lookup.from, lookup.frozen, frozenValue, lookup.scannedAt));
+        log.debug("WindowDeltaCache complete key: {} ranges: {} frozenValue: {} tailValue: {}",
+                lookup.key, lookup.ranges.size(), frozenValue, tailValue);
+        return frozenValue + tailValue;
+    }
+
+    public long aggregate(Key key, long from, long to, RangeQuery query) {
+        Lookup lookup = lookup(key, from, to);
+        List<Long> results = new ArrayList<>(lookup.ranges.size());
+        for (Range range : lookup.ranges) {
+            Number result = query.query(range.getFrom(), range.getTo());
+            results.add(result != null ? result.longValue() : 0L);
+        }
+        return complete(lookup, results);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private long frozenSecond() {
+        return (clock.millis() - freezeLagMs) / SECOND_MS;
+    }
+
+    private double weightedSize(Cache<Key, Entry> cache) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    @FunctionalInterface
+    public interface RangeQuery {
+
+        Number query(Long from, Long to);
+
+    }
+
+    /**
+     * Query shape of a cached window, the window length is a part of it,
+     * so the 30 and 90 day windows of one key are cached apart.
+     */
+    @ToString
+    @EqualsAndHashCode
+    public static final class Key {
+
+        private final AggregateType type;
+        private final String errorCode;
+        private final String fieldName;
+        private final Object value;
+        private final List<FieldModel> fieldModels;
+        private final long windowSeconds;
+
+        public Key(
+                AggregateType type,
+                String errorCode,
+                String fieldName,
+                Object value,
+                List<FieldModel> fieldModels,
+                long from,
+                long to) {
+            this.type = type;
+            this.errorCode = errorCode;
+            this.fieldName = fieldName;
+            this.value = value;
+            this.fieldModels = fieldModels != null ? List.copyOf(fieldModels) : List.of();
+            this.windowSeconds = to / SECOND_MS - from / SECOND_MS;
+        }
+
+        int weight() {
+            int chars = fieldName.length() + String.valueOf(value).length()
+                    + (errorCode != null ? errorCode.length() : 0);
+            for (FieldModel fieldModel : fieldModels) {
+                chars += fieldModel.getName().length() + String.valueOf(fieldModel.getValue()).length();
+            }
+            return ENTRY_BYTES + fieldModels.size() * 64 + chars * 2;
+        }
+
+    }
+
+    /**
+     * Range of a lookup in milliseconds, bounds are inclusive as in the aggregate queries.
+     */
+    @Getter
+    @ToString
+    public static final class Range {
+
+        private final Long from;
+        private final Long to;
+        private final int sign;
+
+        private Range(long fromSecond, long toSecond, int sign) {
+            this.from = fromSecond * SECOND_MS;
+            this.to = toSecond * SECOND_MS + SECOND_MS - 1;
+            this.sign = sign;
+        }
+
+    }
+
+    public static final class Lookup {
+
+        private final Key key;
+        private final long from;
+        private final long frozen;
+        private final long base;
+        private final long scannedAt;
+        @Getter
+        private final List<Range> ranges = new ArrayList<>(3);
+
+        private Lookup(Key key, long from, long frozen, long base, long scannedAt) {
+            this.key = key;
+            this.from = from;
+            this.frozen = frozen;
+            this.base = base;
+            this.scannedAt = scannedAt;
+        }
+
+        private void addFrozen(long fromSecond, long toSecond, int sign) {
+            if (fromSecond <= toSecond) {
+                ranges.add(new Range(fromSecond, toSecond, sign));
+            }
+        }
+
+        private void addTail(long fromSecond, long toSecond) {
+            if (fromSecond <= toSecond) {
+                ranges.add(new Range(fromSecond, toSecond, 0));
+            }
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final long from;
+        private final long to;
+        private final long value;
+        private final long scannedAt;
+
+        private Entry(long from, long to, long value, long scannedAt) {
+            this.from = from;
+            this.to = to;
+            this.value = value;
+            this.scannedAt = scannedAt;
+        }
+
+    }
+
+}
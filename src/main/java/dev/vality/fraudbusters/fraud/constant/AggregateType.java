@@ -0,0 +1,43 @@
+package dev.vality.fraudbusters.fraud.constant;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum AggregateType {
+
+    COUNT("count"),
+    COUNT_SUCCESS("countSuccess"),
+    COUNT_ERROR("countError"),
+    COUNT_PENDING("countPending"),
+    COUNT_CHARGEBACK("countChargeback"),
+    COUNT_REFUND("countRefund"),
+    SUM("sum"),
+    SUM_SUCCESS("sumSuccess"),
+    SUM_ERROR("sumError"),
+    SUM_CHARGEBACK("sumChargeback"),
+    SUM_REFUND("sumRefund"),
+    UNIQUE("unique");
+
+    private static final Map<String, AggregateType> VALUE_MAP = new HashMap<>();
+
+    static {
+        for (AggregateType value : AggregateType.values()) {
+            VALUE_MAP.put(value.value, value);
+        }
+    }
+
+    private final String value;
+
+    AggregateType(String value) {
+        this.value = value;
+    }
+
+    public static AggregateType getByValue(String value) {
+        return VALUE_MAP.get(value);
+    }
+
+    public boolean isError() {
+        return this == COUNT_ERROR || this == SUM_ERROR;
+    }
+
+}
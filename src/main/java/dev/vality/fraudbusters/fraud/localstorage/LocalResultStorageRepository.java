@@ -1,5 +1,7 @@
 package dev.vality.fraudbusters.fraud.localstorage;
 
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import dev.vality.damsel.fraudbusters.PaymentStatus;
 import dev.vality.fraudbusters.domain.CheckedPayment;
 import dev.vality.fraudbusters.fraud.filter.PaymentFieldValueFilter;
@@ -10,6 +12,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 @Slf4j
@@ -17,6 +21,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class LocalResultStorageRepository implements PaymentRepository {
 
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
     private final LocalResultStorage localStorage;
     private final PaymentFieldValueFilter paymentFieldValueFilter;
     private final PaymentFieldValueResolver paymentFieldValueResolver;
@@ -67,15 +73,18 @@ public class LocalResultStorageRepository implements PaymentRepository {
     @Override
     public Integer uniqCountOperation(String fieldNameBy, Object value, String fieldNameCount, Long from, Long to) {
         List<CheckedPayment> checkedPayments = localStorage.get();
-        long count = checkedPayments.stream()
-                .filter(checkedPayment -> checkedPayment.getEventTime() >= from
-                        && checkedPayment.getEventTime() <= to
-                        && paymentFieldValueFilter.filter(fieldNameBy, value, checkedPayment))
-                .map(checkedPayment -> paymentFieldValueResolver.resolve(fieldNameCount, checkedPayment))
-                .distinct()
-                .count();
+        long[] hashes = new long[checkedPayments.size()];
+        int size = 0;
+        for (CheckedPayment checkedPayment : checkedPayments) {
+            if (checkedPayment.getEventTime() >= from
+                    && checkedPayment.getEventTime() <= to
+                    && paymentFieldValueFilter.filter(fieldNameBy, value, checkedPayment)) {
+                hashes[size++] = hashValue(fieldNameCount, checkedPayment);
+            }
+        }
+        int count = countDistinct(hashes, size);
         log.debug("LocalResultStorageRepository uniqCountOperation: {}", count);
-        return (int) count;
+        return count;
     }
 
     @Override
@@ -87,13 +96,33 @@ public class LocalResultStorageRepository implements PaymentRepository {
             Long to,
             List<FieldModel> fieldModels) {
         List<CheckedPayment> checkedPayments = localStorage.get();
-        long count = checkedPayments.stream()
-                .filter(checkedPayment -> filterPaymentByValue(from, to, fieldModels, checkedPayment))
-                .map(checkedPayment -> paymentFieldValueResolver.resolve(fieldNameCount, checkedPayment))
-                .distinct()
-                .count();
+        long[] hashes = new long[checkedPayments.size()];
+        int size = 0;
+        for (CheckedPayment checkedPayment : checkedPayments) {
+            if (filterPaymentByValue(from, to, fieldModels, checkedPayment)) {
+                hashes[size++] = hashValue(fieldNameCount, checkedPayment);
+            }
+        }
+        int count = countDistinct(hashes, size);
         log.debug("LocalResultStorageRepository uniqCountOperation: {}", count);
-        return (int) count;
+        return count;
+    }
+
+    private long hashValue(String fieldNameCount, CheckedPayment checkedPayment) {
+        return paymentFieldValueResolver.resolve(fieldNameCount, checkedPayment)
+                .map(resolved -> HASH_FUNCTION.hashString(resolved, StandardCharsets.UTF_8).asLong())
+                .orElse(0L);
+    }
+
+    private int countDistinct(long[] hashes, int size) {
+        Arrays.sort(hashes, 0, size);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                count++;
+            }
+        }
+        return count;
     }
 
     private boolean filterPaymentByValue(
@@ -0,0 +1,22 @@
+package dev.vality.fraudbusters.fraud.model;
+
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudo.model.TimeWindow;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AggregateCall {
+
+    private AggregateType type;
+    private PaymentCheckedField checkedField;
+    private PaymentCheckedField onField;
+    private TimeWindow timeWindow;
+    private List<PaymentCheckedField> groupingFields;
+    private String errorCode;
+
+}
@@ -0,0 +1,26 @@
+package dev.vality.fraudbusters.fraud.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import java.util.List;
+
+/**
+ * Templates reachable for one party and shop in the order they are applied:
+ * global, party groups, shop groups, party and shop templates.
+ */
+@Getter
+@Builder
+@ToString(onlyExplicitlyIncluded = true)
+public class EvaluationPlan {
+
+    @Singular
+    @ToString.Include
+    private final List<String> templateKeys;
+    @Singular
+    private final List<ParserRuleContext> contexts;
+
+}
@@ -0,0 +1,16 @@
+package dev.vality.fraudbusters.fraud.model;
+
+import dev.vality.damsel.wb_list.ListType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ListCall {
+
+    private ListType listType;
+    private List<String> fieldNames;
+
+}
@@ -0,0 +1,28 @@
+package dev.vality.fraudbusters.fraud.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import java.util.List;
+
+/**
+ * Parse tree of a template with the aggregate and list calls extracted from it for the prefetch.
+ * The rules are evaluated by the fraudo visitor over the parse tree.
+ */
+@Getter
+@Builder
+@ToString(onlyExplicitlyIncluded = true)
+public class ParsedTemplate {
+
+    private final ParserRuleContext context;
+
+    @ToString.Include
+    private final List<AggregateCall> aggregateCalls;
+
+    @ToString.Include
+    @Builder.Default
+    private final List<ListCall> listCalls = List.of();
+
+}
@@ -2,6 +2,7 @@ package dev.vality.fraudbusters.fraud.payment;
 
 import dev.vality.columbus.ColumbusServiceSrv;
 import dev.vality.fraudbusters.aspect.BasicMetric;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.thrift.TException;
@@ -14,10 +15,15 @@ import org.springframework.stereotype.Service;
 public class CountryByIpResolver {
 
     private final ColumbusServiceSrv.Iface geoIpServiceSrv;
+    private final AggregationContext aggregationContext;
 
-    @Cacheable(value = "resolveCountry", key = "#ip")
+    @Cacheable(value = "resolveCountry", key = "#ip", unless = "#result == null")
     @BasicMetric("resolveCountry")
     public String resolveCountry(String ip) {
+        return aggregationContext.callWithinDeadline(() -> getLocationIsoCode(ip), null);
+    }
+
+    private String getLocationIsoCode(String ip) {
         try {
             return geoIpServiceSrv.getLocationIsoCode(ip);
         } catch (TException e) {
@@ -0,0 +1,205 @@
+package dev.vality.fraudbusters.fraud.payment;
+
+import dev.vality.damsel.wb_list.ListType;
+import dev.vality.fraudbusters.fraud.TemplateCallExtractor;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.ListCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudo.FraudoPaymentParser;
+import dev.vality.fraudo.model.TimeWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dev.vality.fraudo.constant.TimeUnit.*;
+
+/**
+ * Walks the parse tree once when a template is stored and extracts the descriptors of its aggregate calls
+ * (fields, time window, grouping, error code) and list checks, so they can be prefetched before the rules
+ * are evaluated. The rules themselves are still evaluated by the fraudo visitor over the parse tree.
+ * Arguments are classified by the grammar rule they belong to: the strings of a group_by rule are
+ * grouping fields, a time_window rule holds the window, the rest are positional arguments of the call.
+ */
+@Slf4j
+@Component
+public class PaymentTemplateCallExtractorImpl implements TemplateCallExtractor {
+
+    private static final String DEFAULT_TIME_UNIT = "hours";
+    private static final Set<String> TIME_UNITS = Set.of(MINUTES, DAYS, CALENDAR_MONTHS, CALENDAR_DAYS);
+    private static final char QUOTE = '"';
+    private static final Map<String, ListType> LIST_FUNCTIONS = Map.of(
+            "inWhiteList", ListType.white,
+            "inBlackList", ListType.black,
+            "inGreyList", ListType.grey,
+            "inList", ListType.naming
+    );
+
+    @Override
+    public ParsedTemplate extract(ParserRuleContext context) {
+        List<AggregateCall> aggregateCalls = new ArrayList<>();
+        List<ListCall> listCalls = new ArrayList<>();
+        Deque<ParseTree> nodes = new ArrayDeque<>();
+        nodes.push(context);
+        while (!nodes.isEmpty()) {
+            ParseTree node = nodes.pop();
+            ListType listType = resolveListType(node);
+            if (listType != null) {
+                ListCall listCall = extractListCall(listType, node);
+                if (listCall != null) {
+                    listCalls.add(listCall);
+                }
+                continue;
+            }
+            AggregateType aggregateType = resolveAggregateType(node);
+            if (aggregateType != null) {
+                AggregateCall aggregateCall = extractAggregateCall(aggregateType, node);
+                if (aggregateCall != null) {
+                    aggregateCalls.add(aggregateCall);
+                }
+                continue;
+            }
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                nodes.push(node.getChild(i));
+            }
+        }
+        log.debug("PaymentTemplateCallExtractorImpl extracted aggregateCalls: {} listCalls: {}",
+                aggregateCalls, listCalls);
+        return ParsedTemplate.builder()
+                .context(context)
+                .aggregateCalls(List.copyOf(aggregateCalls))
+                .listCalls(List.copyOf(listCalls))
+                .build();
+    }
+
+    private ListType resolveListType(ParseTree node) {
+        if (node instanceof ParserRuleContext && node.getChildCount() > 0
+                && node.getChild(0) instanceof TerminalNode) {
+            return LIST_FUNCTIONS.get(node.getChild(0).getText());
+        }
+        return null;
+    }
+
+    private ListCall extractListCall(ListType listType, ParseTree node) {
+        List<String> strings = new ArrayList<>();
+        collectArguments(node, strings, new ArrayList<>());
+        // the first argument of inList is the list name, the finder looks the naming list up by field
+        List<String> fieldNames = listType == ListType.naming && !strings.isEmpty()
+                ? strings.subList(1, strings.size())
+                : strings;
+        if (fieldNames.isEmpty()) {
+            return null;
+        }
+        return ListCall.builder()
+                .listType(listType)
+                .fieldNames(List.copyOf(fieldNames))
+                .build();
+    }
+
+    private AggregateType resolveAggregateType(ParseTree node) {
+        if (node instanceof ParserRuleContext && node.getChildCount() > 0
+                && node.getChild(0) instanceof TerminalNode) {
+            return AggregateType.getByValue(node.getChild(0).getText());
+        }
+        return null;
+    }
+
+    private AggregateCall extractAggregateCall(AggregateType aggregateType, ParseTree node) {
+        Arguments arguments = new Arguments();
+        for (int i = 1; i < node.getChildCount(); i++) {
+            ParseTree child = node.getChild(i);
+            if (child instanceof FraudoPaymentParser.Group_byContext) {
+                collectTerminals(child, arguments.groupingFields, new ArrayList<>());
+            } else if (child instanceof FraudoPaymentParser.Time_windowContext) {
+                collectTerminals(child, arguments.timeUnits, arguments.numbers, true);
+            } else {
+                collectTerminals(child, arguments.positional, arguments.numbers);
+            }
+        }
+        List<String> positional = arguments.positional;
+        int positionalCount = aggregateType == AggregateType.UNIQUE ? 2 : 1;
+        int maxPositionalCount = aggregateType.isError() ? positionalCount + 1 : positionalCount;
+        if (positional.size() < positionalCount || positional.size() > maxPositionalCount
+                || arguments.numbers.isEmpty()) {
+            return null;
+        }
+        PaymentCheckedField checkedField = PaymentCheckedField.getByValue(positional.get(0));
+        PaymentCheckedField onField = aggregateType == AggregateType.UNIQUE
+                ? PaymentCheckedField.getByValue(positional.get(1))
+                : null;
+        if (checkedField == null || aggregateType == AggregateType.UNIQUE && onField == null) {
+            return null;
+        }
+        List<PaymentCheckedField> groupingFields = new ArrayList<>();
+        for (String value : arguments.groupingFields) {
+            PaymentCheckedField field = PaymentCheckedField.getByValue(value);
+            if (field == null) {
+                return null;
+            }
+            groupingFields.add(field);
+        }
+        String timeUnit = arguments.timeUnits.stream()
+                .filter(TIME_UNITS::contains)
+                .findFirst()
+                .orElse(DEFAULT_TIME_UNIT);
+        return AggregateCall.builder()
+                .type(aggregateType)
+                .checkedField(checkedField)
+                .onField(onField)
+                .timeWindow(TimeWindow.builder()
+                        .start(arguments.numbers.get(0))
+                        .end(arguments.numbers.size() > 1 ? arguments.numbers.get(1) : 0)
+                        .timeUnit(timeUnit)
+                        .build())
+                .groupingFields(groupingFields)
+                .errorCode(positional.size() > positionalCount ? positional.get(positionalCount) : null)
+                .build();
+    }
+
+    private void collectArguments(ParseTree node, List<String> strings, List<Integer> numbers) {
+        for (int i = 1; i < node.getChildCount(); i++) {
+            collectTerminals(node.getChild(i), strings, numbers);
+        }
+    }
+
+    private void collectTerminals(ParseTree node, List<String> strings, List<Integer> numbers) {
+        collectTerminals(node, strings, numbers, false);
+    }
+
+    private void collectTerminals(ParseTree node, List<String> strings, List<Integer> numbers, boolean words) {
+        if (node instanceof TerminalNode) {
+            String text = node.getText();
+            if (text.length() > 1 && text.charAt(0) == QUOTE) {
+                strings.add(text.substring(1, text.length() - 1));
+            } else if (!text.isEmpty() && text.chars().allMatch(Character::isDigit)) {
+                numbers.add(Integer.parseInt(text));
+            } else if (words) {
+                strings.add(text);
+            }
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectTerminals(node.getChild(i), strings, numbers, words);
+        }
+    }
+
+    private static final class Arguments {
+
+        private final List<String> positional = new ArrayList<>();
+        private final List<String> groupingFields = new ArrayList<>();
+        private final List<String> timeUnits = new ArrayList<>();
+        private final List<Integer> numbers = new ArrayList<>();
+
+    }
+
+}
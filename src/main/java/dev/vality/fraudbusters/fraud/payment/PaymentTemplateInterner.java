@@ -0,0 +1,88 @@
+package dev.vality.fraudbusters.fraud.payment;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import dev.vality.fraudo.FraudoPaymentParser;
+import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Shares one parse tree between all pools that hold the same template text, keyed by the hash of the text.
+ * Every pool slot holding a tree counts as a reference, the pools release their trees when they drop them
+ * and the tree is forgotten with its last reference.
+ */
+@Slf4j
+@Component
+public class PaymentTemplateInterner {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+    private final Map<HashCode, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<ParserRuleContext, HashCode> keys = new ConcurrentHashMap<>();
+
+    public FraudoPaymentParser.ParseContext acquire(
+            String templateString,
+            Function<String, FraudoPaymentParser.ParseContext> parser) {
+        HashCode key = hash(templateString);
+        Entry entry = entries.compute(key, (ignored, existing) -> {
+            if (existing != null) {
+                existing.references++;
+                return existing;
+            }
+            FraudoPaymentParser.ParseContext context = parser.apply(templateString);
+            keys.put(context, key);
+            return new Entry(context);
+        });
+        return entry.context;
+    }
+
+    /**
+     * Returns the tree of the template if some pool holds it, without taking a reference.
+     */
+    public FraudoPaymentParser.ParseContext find(String templateString) {
+        Entry entry = entries.get(hash(templateString));
+        return entry != null ? entry.context : null;
+    }
+
+    public void release(ParserRuleContext context) {
+        HashCode key = context != null ? keys.get(context) : null;
+        if (key == null) {
+            return;
+        }
+        entries.computeIfPresent(key, (ignored, entry) -> {
+            if (entry.context != context || --entry.references > 0) {
+                return entry;
+            }
+            keys.remove(context);
+            log.debug("PaymentTemplateInterner released template key: {}", key);
+            return null;
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static HashCode hash(String templateString) {
+        return HASH_FUNCTION.hashString(templateString, StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry {
+
+        private final FraudoPaymentParser.ParseContext context;
+        private int references = 1;
+
+        private Entry(FraudoPaymentParser.ParseContext context) {
+            this.context = context;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package dev.vality.fraudbusters.fraud.payment;
+
+import dev.vality.fraudbusters.fraud.FraudContextParser;
+import dev.vality.fraudbusters.fraud.TemplateCallExtractor;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
+import dev.vality.fraudbusters.fraud.payment.validator.PaymentTemplateValidator;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.service.RuleSetMetricsService;
+import dev.vality.fraudo.FraudoPaymentParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.List;
+
+/**
+ * Validates and parses the source of a payment template and extracts its aggregate and list calls.
+ * The parse tree is returned only inside the parsed template, the caller decides where it is stored.
+ * The field pairs of its unique calls are registered
+ * with the unique velocity counter when it is enabled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentTemplateLoader {
+
+    private final FraudContextParser<FraudoPaymentParser.ParseContext> paymentContextParser;
+    private final PaymentTemplateInterner paymentTemplateInterner;
+    private final PaymentTemplateValidator paymentTemplateValidator;
+    private final TemplateCallExtractor paymentTemplateCallExtractorImpl;
+    private final RuleSetMetricsService ruleSetMetricsService;
+    private final DatabasePaymentFieldResolver databasePaymentFieldResolver;
+    private final ObjectProvider<UniqueVelocityCounter> uniqueVelocityCounter;
+
+    public ParsedTemplate load(String id, String templateString) {
+        List<String> validate = paymentTemplateValidator.validate(templateString);
+        if (!CollectionUtils.isEmpty(validate)) {
+            log.warn("PaymentTemplateLoader templateId: {} validateError: {}", id, validate);
+        }
+        ParserRuleContext context = paymentTemplateInterner.acquire(
+                templateString,
+                source -> ruleSetMetricsService.timeParse(id, () -> paymentContextParser.parse(source))
+        );
+        ParsedTemplate parsedTemplate = paymentTemplateCallExtractorImpl.extract(context);
+        uniqueVelocityCounter.ifAvailable(counter -> registerUniqueFields(counter, parsedTemplate));
+        return parsedTemplate;
+    }
+
+    private void registerUniqueFields(UniqueVelocityCounter counter, ParsedTemplate parsedTemplate) {
+        for (AggregateCall aggregateCall : parsedTemplate.getAggregateCalls()) {
+            if (aggregateCall.getType() == AggregateType.UNIQUE && aggregateCall.getOnField() != null) {
+                counter.register(
+                        databasePaymentFieldResolver.resolve(aggregateCall.getCheckedField()),
+                        databasePaymentFieldResolver.resolve(aggregateCall.getOnField())
+                );
+            }
+        }
+    }
+
+}
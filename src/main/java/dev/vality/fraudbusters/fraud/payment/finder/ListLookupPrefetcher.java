@@ -0,0 +1,147 @@
+package dev.vality.fraudbusters.fraud.payment.finder;
+
+import dev.vality.damsel.wb_list.ListType;
+import dev.vality.damsel.wb_list.Result;
+import dev.vality.damsel.wb_list.Row;
+import dev.vality.damsel.wb_list.WbListServiceSrv;
+import dev.vality.fraudbusters.exception.RuleFunctionException;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.ListCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
+import dev.vality.fraudbusters.pool.Pool;
+import dev.vality.fraudo.model.Pair;
+import dev.vality.fraudo.resolver.FieldResolver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.thrift.TException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Looks up every list check of the templates that can be reached for a payment before the rules are evaluated
+ * and publishes the pending results to {@link AggregationContext}, where {@link PaymentInListFinderImpl} finds them.
+ * Black, white and naming checks are resolved by one bulk call over all of their rows, most of them are negative,
+ * only when it finds a row every check is resolved on its own. Grey-list rows are fetched concurrently.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ListLookupPrefetcher {
+
+    private final Pool<ParsedTemplate> parsedTemplatePoolImpl;
+    private final AggregationContext aggregationContext;
+    private final FieldResolver<PaymentModel, PaymentCheckedField> paymentModelFieldResolver;
+    private final WbListServiceSrv.Iface wbListServiceSrv;
+    private final WbListReplica wbListReplica;
+    private final ExecutorService aggregatePrefetchExecutor;
+
+    @Value("${fraud.wb-list.prefetch.enabled:true}")
+    private boolean prefetchEnabled;
+
+    public void prefetch(PaymentModel paymentModel, List<String> templateKeys) {
+        if (!prefetchEnabled || !aggregationContext.isActive()) {
+            return;
+        }
+        Set<List<Row>> checks = new LinkedHashSet<>();
+        Set<Row> greyRows = new LinkedHashSet<>();
+        for (String templateKey : templateKeys) {
+            ParsedTemplate parsedTemplate = parsedTemplatePoolImpl.get(templateKey);
+            if (parsedTemplate == null) {
+                continue;
+            }
+            for (ListCall listCall : parsedTemplate.getListCalls()) {
+                List<Pair<PaymentCheckedField, String>> fields = resolveFields(listCall, paymentModel);
+                if (fields == null) {
+                    continue;
+                }
+                List<Row> rows = PaymentInListFinderImpl.createRows(
+                        listCall.getListType(),
+                        paymentModel.getPartyId(),
+                        paymentModel.getShopId(),
+                        fields
+                );
+                if (listCall.getListType() == ListType.grey) {
+                    greyRows.addAll(rows);
+                } else if (!rows.isEmpty()) {
+                    checks.add(rows);
+                }
+            }
+        }
+        if (wbListReplica.isReady()) {
+            checks.clear();
+            greyRows.removeIf(row -> !wbListReplica.isExist(row));
+        }
+        log.debug("ListLookupPrefetcher prefetch checks: {} greyRows: {}", checks.size(), greyRows.size());
+        prefetchChecks(checks);
+        greyRows.forEach(row -> aggregationContext.putLookup(
+                row,
+                CompletableFuture.supplyAsync(() -> getRowInfo(row), aggregatePrefetchExecutor)
+        ));
+    }
+
+    private void prefetchChecks(Set<List<Row>> checks) {
+        if (checks.isEmpty()) {
+            return;
+        }
+        List<Row> allRows = checks.stream()
+                .flatMap(List::stream)
+                .distinct()
+                .toList();
+        CompletableFuture<Boolean> anyExist =
+                CompletableFuture.supplyAsync(() -> isAnyExist(allRows), aggregatePrefetchExecutor);
+        if (checks.size() == 1) {
+            aggregationContext.putLookup(checks.iterator().next(), anyExist);
+            return;
+        }
+        // registered on its own, so clearing the scope cancels the bulk call and not only the checks derived from it
+        aggregationContext.putLookup(allRows, anyExist);
+        for (List<Row> rows : checks) {
+            aggregationContext.putLookup(rows, anyExist.thenCompose(found -> found
+                    ? CompletableFuture.supplyAsync(() -> isAnyExist(rows), aggregatePrefetchExecutor)
+                    : CompletableFuture.completedFuture(false)));
+        }
+    }
+
+    private List<Pair<PaymentCheckedField, String>> resolveFields(ListCall listCall, PaymentModel paymentModel) {
+        try {
+            List<Pair<PaymentCheckedField, String>> fields = new ArrayList<>(listCall.getFieldNames().size());
+            for (String fieldName : listCall.getFieldNames()) {
+                fields.add(new Pair<>(
+                        paymentModelFieldResolver.resolveName(fieldName),
+                        paymentModelFieldResolver.resolveValue(fieldName, paymentModel)
+                ));
+            }
+            return fields;
+        } catch (Exception e) {
+            log.debug("ListLookupPrefetcher skip listCall: {} e: ", listCall, e);
+            return null;
+        }
+    }
+
+    private Boolean isAnyExist(List<Row> rows) {
+        try {
+            return wbListServiceSrv.isAnyExist(rows);
+        } catch (TException e) {
+            throw new RuleFunctionException(e);
+        }
+    }
+
+    private Result getRowInfo(Row row) {
+        try {
+            return wbListServiceSrv.getRowInfo(row);
+        } catch (TException e) {
+            throw new RuleFunctionException(e);
+        }
+    }
+
+}
@@ -4,10 +4,12 @@ import dev.vality.damsel.wb_list.*;
 import dev.vality.fraudbusters.aspect.BasicMetric;
 import dev.vality.fraudbusters.constant.EventField;
 import dev.vality.fraudbusters.exception.RuleFunctionException;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
 import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
 import dev.vality.fraudbusters.repository.PaymentRepository;
 import dev.vality.fraudbusters.util.TimestampUtil;
 import dev.vality.fraudo.finder.InListFinder;
@@ -15,11 +17,11 @@ import dev.vality.fraudo.model.Pair;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -30,8 +32,11 @@ public class PaymentInListFinderImpl implements InListFinder<PaymentModel, Payme
     private static final String LIST_ERROR_LOG = "InListFinderImpl error when findInList e: ";
 
     private final WbListServiceSrv.Iface wbListServiceSrv;
+    private final WbListReplica wbListReplica;
     private final DatabasePaymentFieldResolver databasePaymentFieldResolver;
     private final PaymentRepository paymentRepository;
+    private final AggregationContext aggregationContext;
+    private final Map<ListType, Boolean> degradedInList;
 
     @Override
     @BasicMetric("findInBlackList")
@@ -52,28 +57,31 @@ public class PaymentInListFinderImpl implements InListFinder<PaymentModel, Payme
             return fields.stream()
                     .anyMatch(entry ->
                             StringUtils.hasLength(entry.getSecond())
-                            && findInList(model.getPartyId(), model.getShopId(), entry.getFirst(), entry.getSecond()));
+                            && findInGreyList(model.getPartyId(), model.getShopId(), entry.getFirst(),
+                                    entry.getSecond()));
         } catch (Exception e) {
             log.warn(LIST_ERROR_LOG, e);
             throw new RuleFunctionException(e);
         }
     }
 
-    private Boolean findInList(String partyId, String shopId, PaymentCheckedField field, String value) {
-        try {
-            if (StringUtils.hasLength(value)) {
-                Row row = createRow(ListType.grey, partyId, shopId, field, value);
-                Result result = wbListServiceSrv.getRowInfo(row);
-                if (result.getRowInfo() != null && result.getRowInfo().isSetCountInfo()) {
-                    String resolveField = databasePaymentFieldResolver.resolve(field);
-                    return countLessThanWbList(partyId, shopId, value, result, resolveField);
-                }
-            }
+    private Boolean findInGreyList(String partyId, String shopId, PaymentCheckedField field, String value) {
+        Row row = createRow(ListType.grey, partyId, shopId, field, value);
+        if (wbListReplica.isReady() && !wbListReplica.isExist(row)) {
             return false;
-        } catch (Exception e) {
-            log.warn(LIST_ERROR_LOG, e);
-            throw new RuleFunctionException(e);
         }
+        Result result = aggregationContext.getOrCall(row, () -> getRowInfo(row), null);
+        if (result == null) {
+            return degradedValue(ListType.grey);
+        }
+        if (result.getRowInfo() != null && result.getRowInfo().isSetCountInfo()) {
+            String resolveField = databasePaymentFieldResolver.resolve(field);
+            return aggregationContext.callWithinDeadline(
+                    () -> countLessThanWbList(partyId, shopId, value, result, resolveField),
+                    degradedValue(ListType.grey)
+            );
+        }
+        return false;
     }
 
     @Override
@@ -115,26 +123,61 @@ public class PaymentInListFinderImpl implements InListFinder<PaymentModel, Payme
         );
     }
 
-    @NotNull
-    private Boolean checkInList(List<Pair<PaymentCheckedField, String>> fields, PaymentModel model, ListType white) {
-        try {
-            String partyId = model.getPartyId();
-            String shopId = model.getShopId();
-            List<Row> rows = fields.stream()
-                    .filter(entry -> entry.getFirst() != null && StringUtils.hasLength(entry.getSecond()))
-                    .map(entry -> createRow(white, partyId, shopId, entry.getFirst(), entry.getSecond()))
-                    .collect(Collectors.toList());
-            if (!CollectionUtils.isEmpty(rows)) {
-                return wbListServiceSrv.isAnyExist(rows);
-            }
+    private Boolean checkInList(
+            List<Pair<PaymentCheckedField, String>> fields,
+            PaymentModel model,
+            ListType listType) {
+        List<Row> rows = createRows(listType, model.getPartyId(), model.getShopId(), fields);
+        if (rows.isEmpty()) {
             return false;
+        }
+        if (wbListReplica.isReady()) {
+            return wbListReplica.isAnyExist(rows);
+        }
+        return aggregationContext.getOrCall(rows, () -> isAnyExist(rows), degradedValue(listType));
+    }
+
+    /**
+     * Value of a list check that missed the inspection deadline, e.g. a black list check fails closed
+     * while a white list check fails open.
+     */
+    private Boolean degradedValue(ListType listType) {
+        return degradedInList.getOrDefault(listType, false);
+    }
+
+    private Boolean isAnyExist(List<Row> rows) {
+        try {
+            return wbListServiceSrv.isAnyExist(rows);
         } catch (Exception e) {
             log.warn(LIST_ERROR_LOG, e);
             throw new RuleFunctionException(e);
         }
     }
 
-    private Row createRow(ListType listType, String partyId, String shopId, PaymentCheckedField field, String value) {
+    private Result getRowInfo(Row row) {
+        try {
+            return wbListServiceSrv.getRowInfo(row);
+        } catch (Exception e) {
+            log.warn(LIST_ERROR_LOG, e);
+            throw new RuleFunctionException(e);
+        }
+    }
+
+    /**
+     * Creates the rows of a list check, the same rows are used as the lookup key when the check is prefetched.
+     */
+    static List<Row> createRows(
+            ListType listType,
+            String partyId,
+            String shopId,
+            List<Pair<PaymentCheckedField, String>> fields) {
+        return fields.stream()
+                .filter(entry -> entry.getFirst() != null && StringUtils.hasLength(entry.getSecond()))
+                .map(entry -> createRow(listType, partyId, shopId, entry.getFirst(), entry.getSecond()))
+                .collect(Collectors.toList());
+    }
+
+    static Row createRow(ListType listType, String partyId, String shopId, PaymentCheckedField field, String value) {
         return new Row()
                 .setId(IdInfo.payment_id(new PaymentId()
                         .setPartyId(partyId)
@@ -1,43 +1,53 @@
 package dev.vality.fraudbusters.fraud.pool;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.List;
-import java.util.TreeSet;
 
+/**
+ * Keeps the trusted card tokens in an immutable {@link CardTokenSet}, a reload builds a new set
+ * and swaps it in one write, readers always see either the old or the new set.
+ */
 @Slf4j
 @ThreadSafe
 @Component
 public class CardTokenPoolImpl implements CardTokenPool {
 
-    private TreeSet<String> cardTokens;
+    public static final String SIZE_METRIC = "card-token-pool.size";
+    public static final String BYTES_METRIC = "card-token-pool.bytes";
+
+    private volatile CardTokenSet cardTokens = CardTokenSet.EMPTY;
+
+    public CardTokenPoolImpl(MeterRegistry registry) {
+        Gauge.builder(SIZE_METRIC, this, pool -> pool.cardTokens.size()).register(registry);
+        Gauge.builder(BYTES_METRIC, this, pool -> pool.cardTokens.retainedBytes()).register(registry);
+    }
 
     @Override
     public void reinit(List<String> cardTokens) {
         log.info("Reinit cardTokens pool: {}", cardTokens.size());
-        this.cardTokens = new TreeSet<>(cardTokens);
-        log.info("Reinit cardTokens success");
+        CardTokenSet reloaded = CardTokenSet.of(cardTokens);
+        this.cardTokens = reloaded;
+        log.info("Reinit cardTokens success, size: {} bytes: {}", reloaded.size(), reloaded.retainedBytes());
     }
 
     @Override
     public void clear() {
-        this.cardTokens.clear();
+        this.cardTokens = CardTokenSet.EMPTY;
     }
 
     @Override
     public boolean isExist(String cardToken) {
-        if (CollectionUtils.isEmpty(this.cardTokens)) {
-            return false;
-        }
         return this.cardTokens.contains(cardToken);
     }
 
     @Override
     public boolean isEmpty() {
-        return CollectionUtils.isEmpty(this.cardTokens);
+        return this.cardTokens.isEmpty();
     }
 
 }
@@ -0,0 +1,58 @@
+package dev.vality.fraudbusters.fraud.pool;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable set of card tokens stored as a sorted array of their 64-bit hashes, 8 bytes per token.
+ * A lookup is a binary search over the array. Two tokens sharing a hash are possible but with a few million
+ * tokens the chance of a false positive lookup stays around 1e-13.
+ */
+public final class CardTokenSet {
+
+    public static final CardTokenSet EMPTY = new CardTokenSet(new long[0]);
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final long[] hashes;
+
+    private CardTokenSet(long[] hashes) {
+        this.hashes = hashes;
+    }
+
+    public static CardTokenSet of(List<String> cardTokens) {
+        long[] hashes = cardTokens.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(CardTokenSet::hash)
+                .sorted()
+                .distinct()
+                .toArray();
+        return hashes.length > 0 ? new CardTokenSet(hashes) : EMPTY;
+    }
+
+    public boolean contains(String cardToken) {
+        return cardToken != null && hashes.length > 0 && Arrays.binarySearch(hashes, hash(cardToken)) >= 0;
+    }
+
+    public int size() {
+        return hashes.length;
+    }
+
+    public boolean isEmpty() {
+        return hashes.length == 0;
+    }
+
+    public long retainedBytes() {
+        return (long) hashes.length * Long.BYTES;
+    }
+
+    private static long hash(String cardToken) {
+        return HASH_FUNCTION.hashString(cardToken, StandardCharsets.UTF_8).asLong();
+    }
+
+}
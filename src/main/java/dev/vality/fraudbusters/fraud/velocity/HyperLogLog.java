@@ -0,0 +1,115 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch over 64-bit hashes. Small sets are kept as sorted hashes and counted exactly,
+ * registers are allocated only once the set takes as much memory as they would.
+ * Sketches merge losslessly, so a window is estimated by merging the sketches of its buckets.
+ */
+class HyperLogLog {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int precision;
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private int size;
+    private byte[] registers;
+
+    HyperLogLog(int precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Returns the smallest precision whose standard error 1.04 / sqrt(2^p) stays within the given bound.
+     */
+    static int precisionFor(double maxError) {
+        int precision = (int) Math.ceil(Math.log(Math.pow(1.04 / maxError, 2)) / Math.log(2));
+        return Math.max(4, Math.min(16, precision));
+    }
+
+    synchronized void add(long hash) {
+        if (registers != null) {
+            addToRegisters(hash);
+            return;
+        }
+        int position = Arrays.binarySearch(hashes, 0, size, hash);
+        if (position >= 0) {
+            return;
+        }
+        if (size == hashes.length) {
+            if ((long) size * Long.BYTES >= 1 << precision) {
+                toRegisters();
+                addToRegisters(hash);
+                return;
+            }
+            hashes = Arrays.copyOf(hashes, size << 1);
+        }
+        position = -position - 1;
+        System.arraycopy(hashes, position, hashes, position + 1, size - position);
+        hashes[position] = hash;
+        size++;
+    }
+
+    /**
+     * Adds the content of this sketch to the target, which must not be shared with other threads.
+     */
+    synchronized void mergeInto(HyperLogLog target) {
+        if (registers == null) {
+            for (int i = 0; i < size; i++) {
+                target.add(hashes[i]);
+            }
+            return;
+        }
+        target.mergeRegisters(registers);
+    }
+
+    synchronized long estimate() {
+        if (registers == null) {
+            return size;
+        }
+        double m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log(m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private synchronized void mergeRegisters(byte[] other) {
+        if (registers == null) {
+            toRegisters();
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other[i] > registers[i]) {
+                registers[i] = other[i];
+            }
+        }
+    }
+
+    private void toRegisters() {
+        registers = new byte[1 << precision];
+        for (int i = 0; i < size; i++) {
+            addToRegisters(hashes[i]);
+        }
+        hashes = null;
+        size = 0;
+    }
+
+    private void addToRegisters(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Approximate distinct counts of (fieldBy, value, fieldCount) keys, kept as one {@link HyperLogLog} per time bucket.
+ * A window is answered by merging the buckets it covers in full, the values added by each edge bucket
+ * are scaled by the share of the bucket that falls into the window, so it is only covered when one bucket
+ * is small against the window length, within the configured error bound.
+ * Only the field pairs registered by the loaded rules are counted, a pair covers the windows
+ * that start after it was registered.
+ * The stream position and retention are shared with the payment {@link VelocityCounter}.
+ */
+@Slf4j
+public class UniqueVelocityCounter {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final char DELIMITER = '\u0000';
+
+    private final VelocityCounter paymentVelocityCounter;
+    private final List<String> fields;
+    private final long bucketMs;
+    private final double maxError;
+    private final int precision;
+    private final Clock clock;
+
+    private final Map<Long, NavigableMap<Long, HyperLogLog>> sketches = new ConcurrentHashMap<>();
+    private final Map<String, FieldPair> pairs = new ConcurrentHashMap<>();
+
+    public UniqueVelocityCounter(
+            VelocityCounter paymentVelocityCounter,
+            List<String> fields,
+            long bucketMs,
+            double maxError,
+            Clock clock) {
+        this.paymentVelocityCounter = paymentVelocityCounter;
+        this.fields = fields;
+        this.bucketMs = bucketMs;
+        this.maxError = maxError;
+        this.precision = HyperLogLog.precisionFor(maxError);
+        this.clock = clock;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Starts counting the distinct values of fieldNameCount per value of fieldNameBy.
+     */
+    public void register(String fieldNameBy, String fieldNameCount) {
+        if (fields.contains(fieldNameBy) && fields.contains(fieldNameCount) && !fieldNameBy.equals(fieldNameCount)) {
+            FieldPair pair = new FieldPair(fieldNameBy, fieldNameCount, clock.millis());
+            if (pairs.putIfAbsent(pairKey(fieldNameBy, fieldNameCount), pair) == null) {
+                log.info("UniqueVelocityCounter registered fieldNameBy: {} fieldNameCount: {}",
+                        fieldNameBy, fieldNameCount);
+            }
+        }
+    }
+
+    public boolean covers(String fieldNameBy, String fieldNameCount, Long from, Long to) {
+        FieldPair pair = fieldNameBy != null && fieldNameCount != null
+                ? pairs.get(pairKey(fieldNameBy, fieldNameCount))
+                : null;
+        return from != null && to != null
+                && pair != null
+                && from >= pair.registeredAt
+                && (to - from) * maxError >= bucketMs
+                && paymentVelocityCounter.isLoaded(from);
+    }
+
+    /**
+     * Adds the values of an event to every registered field pair, the event time is in epoch seconds.
+     */
+    public void add(Map<String, Object> values, long eventTime) {
+        for (FieldPair pair : pairs.values()) {
+            add(pair.fieldNameBy, values.get(pair.fieldNameBy), pair.fieldNameCount,
+                    values.get(pair.fieldNameCount), eventTime);
+        }
+    }
+
+    /**
+     * Adds a value of the counted field with the event time in epoch seconds.
+     */
+    public void add(String fieldNameBy, Object value, String fieldNameCount, Object countValue, long eventTime) {
+        long eventTimeMs = TimeUnit.SECONDS.toMillis(eventTime);
+        if (value == null || countValue == null
+                || eventTimeMs < clock.millis() - paymentVelocityCounter.getRetentionMs()) {
+            return;
+        }
+        long countHash = hash(fieldNameCount, countValue);
+        sketches.compute(hash(fieldNameBy, value, fieldNameCount), (key, buckets) -> {
+            NavigableMap<Long, HyperLogLog> target = buckets != null ? buckets : new ConcurrentSkipListMap<>();
+            target.computeIfAbsent(eventTimeMs / bucketMs, bucket -> new HyperLogLog(precision)).add(countHash);
+            return target;
+        });
+    }
+
+    public long estimate(String fieldNameBy, Object value, String fieldNameCount, long from, long to) {
+        NavigableMap<Long, HyperLogLog> buckets = sketches.get(hash(fieldNameBy, value, fieldNameCount));
+        if (buckets == null) {
+            return 0L;
+        }
+        long first = from / bucketMs;
+        long last = to / bucketMs;
+        if (first == last) {
+            HyperLogLog sketch = buckets.get(first);
+            return sketch != null ? Math.round(sketch.estimate() * share(first, from, to)) : 0L;
+        }
+        HyperLogLog inner = new HyperLogLog(precision);
+        buckets.subMap(first, false, last, false).values()
+                .forEach(sketch -> sketch.mergeInto(inner));
+        long innerEstimate = inner.estimate();
+        return Math.round(innerEstimate
+                + edgeEstimate(inner, innerEstimate, buckets.get(first), share(first, from, to))
+                + edgeEstimate(inner, innerEstimate, buckets.get(last), share(last, from, to)));
+    }
+
+    private double edgeEstimate(HyperLogLog inner, long innerEstimate, HyperLogLog edge, double share) {
+        if (edge == null || share <= 0) {
+            return 0;
+        }
+        HyperLogLog merged = new HyperLogLog(precision);
+        inner.mergeInto(merged);
+        edge.mergeInto(merged);
+        return Math.max(0L, merged.estimate() - innerEstimate) * share;
+    }
+
+    /**
+     * Returns the share of the bucket that falls into the window, the bucket of the current time
+     * ends now, since it holds no later events.
+     */
+    private double share(long bucket, long from, long to) {
+        long start = bucket * bucketMs;
+        long end = Math.min(start + bucketMs, clock.millis());
+        if (end <= start) {
+            return 1.0;
+        }
+        long overlap = Math.min(end, to) - Math.max(start, from);
+        return Math.max(0.0, Math.min(1.0, (double) overlap / (end - start)));
+    }
+
+    public void evictExpired() {
+        long horizon = (clock.millis() - paymentVelocityCounter.getRetentionMs()) / bucketMs;
+        sketches.keySet().forEach(key -> sketches.computeIfPresent(key, (ignored, buckets) -> {
+            buckets.headMap(horizon).clear();
+            return buckets.isEmpty() ? null : buckets;
+        }));
+        log.debug("UniqueVelocityCounter keys after eviction: {}", sketches.size());
+    }
+
+    public int size() {
+        return sketches.size();
+    }
+
+    private static String pairKey(String fieldNameBy, String fieldNameCount) {
+        return fieldNameBy + DELIMITER + fieldNameCount;
+    }
+
+    private static long hash(String fieldName, Object value) {
+        return HASH_FUNCTION.newHasher()
+                .putString(fieldName, StandardCharsets.UTF_8)
+                .putChar(DELIMITER)
+                .putString(String.valueOf(value), StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+    }
+
+    private static long hash(String fieldNameBy, Object value, String fieldNameCount) {
+        return HASH_FUNCTION.newHasher()
+                .putString(fieldNameBy, StandardCharsets.UTF_8)
+                .putChar(DELIMITER)
+                .putString(String.valueOf(value), StandardCharsets.UTF_8)
+                .putChar(DELIMITER)
+                .putString(fieldNameCount, StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+    }
+
+    private static final class FieldPair {
+
+        private final String fieldNameBy;
+        private final String fieldNameCount;
+        private final long registeredAt;
+
+        private FieldPair(String fieldNameBy, String fieldNameCount, long registeredAt) {
+            this.fieldNameBy = fieldNameBy;
+            this.fieldNameCount = fieldNameCount;
+            this.registeredAt = registeredAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.repository.AggregationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * Answers ungrouped refund and chargeback counts and sums from {@link VelocityCounter} when it covers the window.
+ */
+@RequiredArgsConstructor
+public class VelocityAggregationRepositoryDecorator implements AggregationRepository {
+
+    private final AggregationRepository aggregationRepository;
+    private final VelocityCounter velocityCounter;
+    private final String status;
+
+    /**
+     * Wraps the repository when the velocity counter is enabled, otherwise returns it as is.
+     */
+    public static AggregationRepository decorate(
+            AggregationRepository aggregationRepository,
+            @Nullable VelocityCounter velocityCounter,
+            String status) {
+        return velocityCounter != null
+                ? new VelocityAggregationRepositoryDecorator(aggregationRepository, velocityCounter, status)
+                : aggregationRepository;
+    }
+
+    @Override
+    public Integer countOperationByField(String fieldName, Object value, Long from, Long to) {
+        return isCovered(fieldName, from, to, List.of())
+                ? (int) velocityCounter.count(fieldName, value, from, to, velocityCounter.statusMask(status))
+                : aggregationRepository.countOperationByField(fieldName, value, from, to);
+    }
+
+    @Override
+    public Integer countOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? (int) velocityCounter.count(fieldName, value, from, to, velocityCounter.statusMask(status))
+                : aggregationRepository.countOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? velocityCounter.sum(fieldName, value, from, to, velocityCounter.statusMask(status))
+                : aggregationRepository.sumOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer uniqCountOperation(String fieldNameBy, Object value, String fieldNameCount, Long from, Long to) {
+        return aggregationRepository.uniqCountOperation(fieldNameBy, value, fieldNameCount, from, to);
+    }
+
+    @Override
+    public Integer uniqCountOperationWithGroupBy(
+            String fieldNameBy,
+            Object value,
+            String fieldNameCount,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return aggregationRepository.uniqCountOperationWithGroupBy(
+                fieldNameBy, value, fieldNameCount, from, to, fieldModels);
+    }
+
+    private boolean isCovered(String fieldName, Long from, Long to, List<FieldModel> fieldModels) {
+        return (fieldModels == null || fieldModels.isEmpty()) && velocityCounter.covers(fieldName, from, to);
+    }
+
+}
@@ -0,0 +1,174 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window counters of one event stream keyed by (field, value), kept for the retention period.
+ * Windows are answered only when the whole window lies inside the loaded part of the stream.
+ */
+@Slf4j
+public class VelocityCounter {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final char DELIMITER = '\u0000';
+
+    private final String name;
+    private final List<String> statuses;
+    private final List<String> fields;
+    private final long retentionMs;
+    private final Clock clock;
+
+    private final Map<Long, VelocityEventLog> logs = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> pendingEndOffsets = new ConcurrentHashMap<>();
+
+    private volatile boolean assigned;
+    private volatile long loadedFromMs = Long.MAX_VALUE;
+
+    public VelocityCounter(String name, List<String> statuses, List<String> fields, long retentionMs, Clock clock) {
+        this.name = name;
+        this.statuses = statuses;
+        this.fields = fields;
+        this.retentionMs = retentionMs;
+        this.clock = clock;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public long getRetentionMs() {
+        return retentionMs;
+    }
+
+    public boolean isTracked(String fieldName) {
+        return fields.contains(fieldName);
+    }
+
+    /**
+     * Returns the bit mask of the given statuses or 0 when one of them is not tracked.
+     */
+    public int statusMask(String... statusNames) {
+        int mask = 0;
+        for (String statusName : statusNames) {
+            int index = statuses.indexOf(statusName);
+            if (index < 0) {
+                return 0;
+            }
+            mask |= 1 << index;
+        }
+        return mask;
+    }
+
+    /**
+     * Called on partition assignment with the offsets the consumer starts from and the end offsets to catch up to.
+     */
+    public void onAssigned(Map<Integer, Long> positions, Map<Integer, Long> endOffsets, long loadedFromMs) {
+        pendingEndOffsets.clear();
+        endOffsets.forEach((partition, endOffset) -> {
+            if (positions.getOrDefault(partition, 0L) < endOffset) {
+                pendingEndOffsets.put(partition, endOffset);
+            }
+        });
+        this.loadedFromMs = loadedFromMs;
+        this.assigned = true;
+        log.info("VelocityCounter {} assigned, partitions to catch up: {}", name, pendingEndOffsets);
+    }
+
+    public void onRevoked() {
+        assigned = false;
+    }
+
+    public void onConsumed(int partition, long offset) {
+        Long endOffset = pendingEndOffsets.get(partition);
+        if (endOffset != null && offset + 1 >= endOffset) {
+            pendingEndOffsets.remove(partition);
+            if (pendingEndOffsets.isEmpty()) {
+                log.info("VelocityCounter {} caught up with the stream", name);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return assigned && pendingEndOffsets.isEmpty();
+    }
+
+    /**
+     * Checks that events of the whole window [from, to] are held in memory.
+     */
+    public boolean covers(String fieldName, Long from, Long to) {
+        return from != null && to != null && isTracked(fieldName) && isLoaded(from);
+    }
+
+    /**
+     * Checks that the stream is consumed from the given time on and the events are still retained.
+     */
+    public boolean isLoaded(long from) {
+        return isReady() && from >= Math.max(loadedFromMs, clock.millis() - retentionMs);
+    }
+
+    /**
+     * Adds an event with the event time in epoch seconds, as it is stored in ClickHouse.
+     */
+    public void add(String fieldName, Object value, String eventId, String status, long eventTime, long amount) {
+        int index = statuses.indexOf(status);
+        if (index < 0 || value == null || eventTime < toSeconds(clock.millis() - retentionMs)) {
+            return;
+        }
+        long id = hash(eventId, status);
+        logs.compute(hash(fieldName, value), (key, eventLog) -> {
+            VelocityEventLog target = eventLog != null ? eventLog : new VelocityEventLog();
+            target.add(eventTime, id, index, amount);
+            return target;
+        });
+    }
+
+    public long count(String fieldName, Object value, long from, long to, int statusMask) {
+        VelocityEventLog eventLog = logs.get(hash(fieldName, value));
+        return eventLog != null
+                ? eventLog.count(toSeconds(from), toSeconds(to), statusMask)
+                : 0L;
+    }
+
+    public long sum(String fieldName, Object value, long from, long to, int statusMask) {
+        VelocityEventLog eventLog = logs.get(hash(fieldName, value));
+        return eventLog != null
+                ? eventLog.sum(toSeconds(from), toSeconds(to), statusMask)
+                : 0L;
+    }
+
+    public void evictExpired() {
+        long horizon = toSeconds(clock.millis() - retentionMs);
+        logs.keySet().forEach(key -> logs.computeIfPresent(
+                key,
+                (ignored, eventLog) -> eventLog.evictBefore(horizon) == 0 ? null : eventLog
+        ));
+        log.debug("VelocityCounter {} keys after eviction: {}", name, logs.size());
+    }
+
+    public int size() {
+        return logs.size();
+    }
+
+    private static long toSeconds(long millis) {
+        return TimeUnit.MILLISECONDS.toSeconds(millis);
+    }
+
+    private static long hash(String first, Object second) {
+        return HASH_FUNCTION.newHasher()
+                .putString(first, StandardCharsets.UTF_8)
+                .putChar(DELIMITER)
+                .putString(String.valueOf(second), StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+    }
+
+}
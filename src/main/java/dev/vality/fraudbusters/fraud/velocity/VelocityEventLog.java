@@ -0,0 +1,118 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import java.util.Arrays;
+
+/**
+ * Events of one (field, value) key ordered by event time, kept in primitive arrays.
+ * Velocity keys (card tokens, fingerprints, emails) carry few events, so exact windows are cheap to scan.
+ */
+class VelocityEventLog {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Stores the event unless an event with the same id and time is already present, redelivered records
+     * replace each other like rows of the ReplacingMergeTree tables do.
+     */
+    synchronized boolean add(long eventTime, long id, int status, long amount) {
+        int position = upperBound(eventTime);
+        for (int i = position - 1; i >= 0 && times[i] == eventTime; i--) {
+            if (ids[i] == id) {
+                return false;
+            }
+        }
+        if (size == times.length) {
+            int capacity = size << 1;
+            times = Arrays.copyOf(times, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+        if (position < size) {
+            System.arraycopy(times, position, times, position + 1, size - position);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(amounts, position, amounts, position + 1, size - position);
+            System.arraycopy(statuses, position, statuses, position + 1, size - position);
+        }
+        times[position] = eventTime;
+        ids[position] = id;
+        amounts[position] = amount;
+        statuses[position] = (byte) status;
+        size++;
+        return true;
+    }
+
+    synchronized long count(long from, long to, int statusMask) {
+        long count = 0;
+        for (int i = lowerBound(from); i < size && times[i] <= to; i++) {
+            if ((statusMask & (1 << statuses[i])) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized long sum(long from, long to, int statusMask) {
+        long sum = 0;
+        for (int i = lowerBound(from); i < size && times[i] <= to; i++) {
+            if ((statusMask & (1 << statuses[i])) != 0) {
+                sum += amounts[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Drops events older than the given time, returns the number of events left.
+     */
+    synchronized int evictBefore(long time) {
+        int expired = lowerBound(time);
+        if (expired > 0) {
+            System.arraycopy(times, expired, times, 0, size - expired);
+            System.arraycopy(ids, expired, ids, 0, size - expired);
+            System.arraycopy(amounts, expired, amounts, 0, size - expired);
+            System.arraycopy(statuses, expired, statuses, 0, size - expired);
+            size -= expired;
+        }
+        return size;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int upperBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,264 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import dev.vality.fraudbusters.constant.PaymentStatus;
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers ungrouped payment counts and sums from {@link VelocityCounter} and unique counts
+ * from {@link UniqueVelocityCounter} when they cover the window, the other calls go to the wrapped repository.
+ */
+@RequiredArgsConstructor
+public class VelocityPaymentRepositoryDecorator implements PaymentRepository {
+
+    private final PaymentRepository paymentRepository;
+    private final VelocityCounter paymentVelocityCounter;
+    private final UniqueVelocityCounter uniqueVelocityCounter;
+
+    /**
+     * Wraps the repository when the velocity counters are enabled, otherwise returns it as is.
+     */
+    public static PaymentRepository decorate(
+            PaymentRepository paymentRepository,
+            @Nullable VelocityCounter paymentVelocityCounter,
+            @Nullable UniqueVelocityCounter uniqueVelocityCounter) {
+        return paymentVelocityCounter != null && uniqueVelocityCounter != null
+                ? new VelocityPaymentRepositoryDecorator(
+                        paymentRepository,
+                        paymentVelocityCounter,
+                        uniqueVelocityCounter
+                )
+                : paymentRepository;
+    }
+
+    @Override
+    public Integer countOperationByField(String fieldName, Object value, Long from, Long to) {
+        return isCovered(fieldName, from, to, List.of())
+                ? count(fieldName, value, from, to, finalStatusMask())
+                : paymentRepository.countOperationByField(fieldName, value, from, to);
+    }
+
+    @Override
+    public Integer countOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? count(fieldName, value, from, to, finalStatusMask())
+                : paymentRepository.countOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationByFieldWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? paymentVelocityCounter.sum(fieldName, value, from, to, finalStatusMask())
+                : paymentRepository.sumOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer uniqCountOperation(String fieldNameBy, Object value, String fieldNameCount, Long from, Long to) {
+        return uniqueVelocityCounter.covers(fieldNameBy, fieldNameCount, from, to)
+                ? (int) uniqueVelocityCounter.estimate(fieldNameBy, value, fieldNameCount, from, to)
+                : paymentRepository.uniqCountOperation(fieldNameBy, value, fieldNameCount, from, to);
+    }
+
+    @Override
+    public Integer uniqCountOperationWithGroupBy(
+            String fieldNameBy,
+            Object value,
+            String fieldNameCount,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isUniqueCovered(fieldNameBy, fieldNameCount, from, to, fieldModels)
+                ? (int) uniqueVelocityCounter.estimate(fieldNameBy, value, fieldNameCount, from, to)
+                : paymentRepository.uniqCountOperationWithGroupBy(
+                        fieldNameBy, value, fieldNameCount, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationSuccessWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? count(fieldName, value, from, to, statusMask(PaymentStatus.captured))
+                : paymentRepository.countOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationPendingWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? count(fieldName, value, from, to, statusMask(PaymentStatus.pending))
+                : paymentRepository.countOperationPendingWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Integer countOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        return paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, errorCode);
+    }
+
+    @Override
+    public Integer countOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? count(fieldName, value, from, to, statusMask(PaymentStatus.failed))
+                : paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationSuccessWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? paymentVelocityCounter.sum(fieldName, value, from, to, statusMask(PaymentStatus.captured))
+                : paymentRepository.sumOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public Long sumOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        return paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, errorCode);
+    }
+
+    @Override
+    public Long sumOperationErrorWithGroupBy(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return isCovered(fieldName, from, to, fieldModels)
+                ? paymentVelocityCounter.sum(fieldName, value, from, to, statusMask(PaymentStatus.failed))
+                : paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+    }
+
+    @Override
+    public List<Long> aggregateWindows(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        List<Long> results = new ArrayList<>(windows.size());
+        List<AggregateWindow> remaining = new ArrayList<>();
+        for (AggregateWindow window : windows) {
+            Long result = aggregateWindow(fieldName, value, fieldModels, window);
+            results.add(result);
+            if (result == null) {
+                remaining.add(window);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return results;
+        }
+        List<Long> remainingResults = paymentRepository.aggregateWindows(fieldName, value, fieldModels, remaining);
+        for (int i = 0, j = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, remainingResults.get(j++));
+            }
+        }
+        return results;
+    }
+
+    private Long aggregateWindow(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            AggregateWindow window) {
+        long from = window.getFrom();
+        long to = window.getTo();
+        if (window.getType() == AggregateType.UNIQUE) {
+            return !window.isExact() && isUniqueCovered(fieldName, window.getOnField(), from, to, fieldModels)
+                    ? uniqueVelocityCounter.estimate(fieldName, value, window.getOnField(), from, to)
+                    : null;
+        }
+        if (window.getErrorCode() != null || !isCovered(fieldName, from, to, fieldModels)) {
+            return null;
+        }
+        return switch (window.getType()) {
+            case COUNT -> paymentVelocityCounter.count(fieldName, value, from, to, finalStatusMask());
+            case COUNT_SUCCESS -> paymentVelocityCounter.count(fieldName, value, from, to,
+                    statusMask(PaymentStatus.captured));
+            case COUNT_PENDING -> paymentVelocityCounter.count(fieldName, value, from, to,
+                    statusMask(PaymentStatus.pending));
+            case COUNT_ERROR -> paymentVelocityCounter.count(fieldName, value, from, to,
+                    statusMask(PaymentStatus.failed));
+            case SUM -> paymentVelocityCounter.sum(fieldName, value, from, to, finalStatusMask());
+            case SUM_SUCCESS -> paymentVelocityCounter.sum(fieldName, value, from, to,
+                    statusMask(PaymentStatus.captured));
+            case SUM_ERROR -> paymentVelocityCounter.sum(fieldName, value, from, to,
+                    statusMask(PaymentStatus.failed));
+            default -> null;
+        };
+    }
+
+    private boolean isCovered(String fieldName, Long from, Long to, List<FieldModel> fieldModels) {
+        return (fieldModels == null || fieldModels.isEmpty()) && paymentVelocityCounter.covers(fieldName, from, to);
+    }
+
+    private boolean isUniqueCovered(
+            String fieldNameBy,
+            String fieldNameCount,
+            Long from,
+            Long to,
+            List<FieldModel> fieldModels) {
+        return (fieldModels == null || fieldModels.isEmpty())
+                && uniqueVelocityCounter.covers(fieldNameBy, fieldNameCount, from, to);
+    }
+
+    private Integer count(String fieldName, Object value, Long from, Long to, int statusMask) {
+        return (int) paymentVelocityCounter.count(fieldName, value, from, to, statusMask);
+    }
+
+    private int finalStatusMask() {
+        return paymentVelocityCounter.statusMask(
+                PaymentStatus.captured.name(),
+                PaymentStatus.cancelled.name(),
+                PaymentStatus.failed.name()
+        );
+    }
+
+    private int statusMask(PaymentStatus status) {
+        return paymentVelocityCounter.statusMask(status.name());
+    }
+
+}
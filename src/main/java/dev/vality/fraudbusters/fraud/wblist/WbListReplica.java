@@ -0,0 +1,243 @@
+package dev.vality.fraudbusters.fraud.wblist;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import dev.vality.damsel.wb_list.Event;
+import dev.vality.damsel.wb_list.EventType;
+import dev.vality.damsel.wb_list.ListType;
+import dev.vality.damsel.wb_list.PaymentId;
+import dev.vality.damsel.wb_list.Row;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process copy of the wb-list rows, loaded from the list event stream.
+ * Rows are grouped by (list type, list name, party, shop), every group keeps a Bloom filter in front of
+ * a set of value hashes, so most negative lookups never reach the set.
+ * Lookups cascade from the shop rows to the party and the global rows, as the list service does.
+ * On assignment the rows are loaded into a new index, which replaces the served one once the stream is caught up.
+ * The replica is ready only while its consumer keeps reporting progress: every consumed record and every idle
+ * poll of the container is a heartbeat, without one for longer than the staleness limit the lookups go
+ * to the list service.
+ */
+@Slf4j
+public class WbListReplica {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final char DELIMITER = '\u0000';
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final double falsePositiveRate;
+    private final long maxStalenessMs;
+    private final Clock clock;
+
+    private final Map<Integer, Long> pendingEndOffsets = new ConcurrentHashMap<>();
+
+    private volatile Map<Long, ListIndex> indexes = new ConcurrentHashMap<>();
+    private volatile Map<Long, ListIndex> loading;
+    private volatile boolean assigned;
+    private volatile long lastHeartbeat;
+
+    public WbListReplica(double falsePositiveRate) {
+        this(falsePositiveRate, 0L, Clock.systemUTC());
+    }
+
+    /**
+     * A non-positive staleness limit disables the heartbeat check.
+     */
+    public WbListReplica(double falsePositiveRate, long maxStalenessMs, Clock clock) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxStalenessMs = maxStalenessMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Called on partition assignment, the stream is replayed from the given positions up to the end offsets.
+     */
+    public void onAssigned(Map<Integer, Long> positions, Map<Integer, Long> endOffsets) {
+        pendingEndOffsets.clear();
+        endOffsets.forEach((partition, endOffset) -> {
+            if (positions.getOrDefault(partition, 0L) < endOffset) {
+                pendingEndOffsets.put(partition, endOffset);
+            }
+        });
+        loading = new ConcurrentHashMap<>();
+        lastHeartbeat = clock.millis();
+        assigned = true;
+        log.info("WbListReplica assigned, partitions to catch up: {}", pendingEndOffsets);
+        if (pendingEndOffsets.isEmpty()) {
+            swapLoaded();
+        }
+    }
+
+    public void onRevoked() {
+        assigned = false;
+    }
+
+    public void onConsumed(int partition, long offset) {
+        lastHeartbeat = clock.millis();
+        Long endOffset = pendingEndOffsets.get(partition);
+        if (endOffset != null && offset + 1 >= endOffset) {
+            pendingEndOffsets.remove(partition);
+            if (pendingEndOffsets.isEmpty()) {
+                swapLoaded();
+            }
+        }
+    }
+
+    /**
+     * Called when the consumer polled without new records, so the replica is still up to date.
+     */
+    public void onIdle() {
+        lastHeartbeat = clock.millis();
+    }
+
+    /**
+     * Checks that the whole stream is loaded, the consumer is alive and lookups can be answered locally.
+     */
+    public boolean isReady() {
+        return assigned
+                && loading == null
+                && (maxStalenessMs <= 0 || clock.millis() - lastHeartbeat <= maxStalenessMs);
+    }
+
+    public void apply(Event event) {
+        Row row = event.getRow();
+        if (row == null || row.getListType() == null || row.getValue() == null) {
+            return;
+        }
+        long indexKey = indexKey(row.getListType(), row.getListName(), partyId(row), shopId(row));
+        long valueHash = hash(row.getValue());
+        Map<Long, ListIndex> target = loading != null ? loading : indexes;
+        if (event.getEventType() == EventType.DELETED) {
+            target.computeIfPresent(indexKey, (key, index) -> index.remove(valueHash) ? null : index);
+        } else {
+            target.compute(indexKey, (key, index) -> {
+                ListIndex listIndex = index != null ? index : new ListIndex();
+                listIndex.add(valueHash);
+                return listIndex;
+            });
+        }
+    }
+
+    public boolean isAnyExist(List<Row> rows) {
+        return rows.stream().anyMatch(this::isExist);
+    }
+
+    public boolean isExist(Row row) {
+        if (row.getValue() == null) {
+            return false;
+        }
+        ListType listType = row.getListType();
+        String listName = row.getListName();
+        String partyId = partyId(row);
+        long valueHash = hash(row.getValue());
+        return contains(indexKey(listType, listName, partyId, shopId(row)), valueHash)
+                || contains(indexKey(listType, listName, partyId, null), valueHash)
+                || contains(indexKey(listType, listName, null, null), valueHash);
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+
+    private void swapLoaded() {
+        Map<Long, ListIndex> loaded = loading;
+        if (loaded != null) {
+            indexes = loaded;
+            loading = null;
+            log.info("WbListReplica caught up with the stream, lists: {}", loaded.size());
+        }
+    }
+
+    private boolean contains(long indexKey, long valueHash) {
+        ListIndex index = indexes.get(indexKey);
+        return index != null && index.contains(valueHash);
+    }
+
+    private BloomFilter<Long> createBloomFilter(int capacity) {
+        return BloomFilter.create(Funnels.longFunnel(), capacity, falsePositiveRate);
+    }
+
+    private static String partyId(Row row) {
+        PaymentId paymentId = row.isSetId() && row.getId().isSetPaymentId() ? row.getId().getPaymentId() : null;
+        return paymentId != null ? paymentId.getPartyId() : null;
+    }
+
+    private static String shopId(Row row) {
+        PaymentId paymentId = row.isSetId() && row.getId().isSetPaymentId() ? row.getId().getPaymentId() : null;
+        return paymentId != null ? paymentId.getShopId() : null;
+    }
+
+    private static long indexKey(ListType listType, String listName, String partyId, String shopId) {
+        Hasher hasher = HASH_FUNCTION.newHasher()
+                .putInt(listType.getValue())
+                .putString(String.valueOf(listName), StandardCharsets.UTF_8);
+        putNullable(hasher, partyId);
+        putNullable(hasher, shopId);
+        return hasher.hash().asLong();
+    }
+
+    private static void putNullable(Hasher hasher, String value) {
+        hasher.putChar(DELIMITER);
+        if (value != null) {
+            hasher.putBoolean(true).putString(value, StandardCharsets.UTF_8);
+        } else {
+            hasher.putBoolean(false);
+        }
+    }
+
+    private static long hash(String value) {
+        return HASH_FUNCTION.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Values of one list, changed only inside the map compute of its key.
+     * Deleted values stay in the Bloom filter until it is rebuilt on growth, the set keeps lookups exact.
+     */
+    private final class ListIndex {
+
+        private final Set<Long> values = ConcurrentHashMap.newKeySet();
+        private volatile BloomFilter<Long> bloomFilter = createBloomFilter(INITIAL_CAPACITY);
+        private int capacity = INITIAL_CAPACITY;
+
+        boolean contains(long valueHash) {
+            return bloomFilter.mightContain(valueHash) && values.contains(valueHash);
+        }
+
+        void add(long valueHash) {
+            if (values.contains(valueHash)) {
+                return;
+            }
+            if (values.size() >= capacity) {
+                capacity <<= 1;
+                BloomFilter<Long> rebuilt = createBloomFilter(capacity);
+                values.forEach(rebuilt::put);
+                rebuilt.put(valueHash);
+                bloomFilter = rebuilt;
+            } else {
+                bloomFilter.put(valueHash);
+            }
+            values.add(valueHash);
+        }
+
+        /**
+         * Returns true when the list became empty.
+         */
+        boolean remove(long valueHash) {
+            values.remove(valueHash);
+            return values.isEmpty();
+        }
+
+    }
+
+}
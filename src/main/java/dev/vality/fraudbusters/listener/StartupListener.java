@@ -7,27 +7,28 @@ import dev.vality.fraudbusters.listener.payment.GroupListener;
 import dev.vality.fraudbusters.listener.payment.GroupReferenceListener;
 import dev.vality.fraudbusters.listener.payment.TemplateListener;
 import dev.vality.fraudbusters.listener.payment.TemplateReferenceListener;
+import dev.vality.fraudbusters.listener.preload.PreloadCoordinator;
+import dev.vality.fraudbusters.listener.preload.PreloadTask;
+import dev.vality.fraudbusters.listener.snapshot.PoolSnapshotService;
+import dev.vality.fraudbusters.pool.EvaluationPlanPool;
 import dev.vality.fraudbusters.pool.Pool;
 import dev.vality.fraudbusters.service.PoolMonitoringService;
+import dev.vality.fraudbusters.service.TemplateWarmUpService;
 import dev.vality.fraudbusters.stream.StreamManager;
-import dev.vality.kafka.common.loader.PreloadListener;
-import dev.vality.kafka.common.loader.PreloadListenerImpl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.antlr.v4.runtime.ParserRuleContext;
-import org.apache.kafka.clients.consumer.Consumer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -60,14 +61,20 @@ public class StartupListener implements ApplicationListener<ContextRefreshedEven
 
     private final Pool<ParserRuleContext> templatePoolImpl;
 
-    private final PreloadListener<String, Command> preloadListener = new PreloadListenerImpl<>();
     private final KafkaTopics kafkaTopics;
 
     private final PoolMonitoringService poolMonitoringService;
+    private final PoolSnapshotService poolSnapshotService;
+    private final PreloadCoordinator preloadCoordinator;
+    private final TemplateWarmUpService templateWarmUpService;
+    private final EvaluationPlanPool evaluationPlanPool;
 
     @Value("${preload.timeout:20}")
     private long preloadTimeout;
 
+    @Value("${preload.stream-store.enabled:true}")
+    private boolean streamStoreEnabled;
+
     @Value("${kafka.historical.listener.enable}")
     private boolean historicalListenerEnabled;
 
@@ -77,71 +84,55 @@ public class StartupListener implements ApplicationListener<ContextRefreshedEven
             final long startPreloadTime = System.currentTimeMillis();
 
             poolMonitoringService.addPoolsToMonitoring();
+            if (poolSnapshotService.isEnabled()) {
+                poolSnapshotService.load();
+            }
 
-            List<Runnable> tasks = new ArrayList<>();
-            CountDownLatch latch;
+            List<PreloadTask> tasks = new ArrayList<>();
             if (historicalListenerEnabled) {
-                latch = new CountDownLatch(COUNT_PRELOAD_TASKS + 4);
                 initRewriteStream();
                 tasks.addAll(List.of(
-                        () -> waitPreLoad(
-                                latch,
+                        new PreloadTask(
                                 timeTemplateListenerFactory,
                                 kafkaTopics.getFullTemplate(),
-                                timeTemplateListener
+                                timeTemplateListener,
+                                false
                         ),
-                        () -> waitPreLoad(
-                                latch,
+                        new PreloadTask(
                                 timeReferenceListenerFactory,
                                 kafkaTopics.getFullReference(),
-                                timeTemplateReferenceListener
+                                timeTemplateReferenceListener,
+                                false
                         ),
-                        () -> waitPreLoad(
-                                latch,
+                        new PreloadTask(
                                 timeGroupListenerFactory,
                                 kafkaTopics.getFullGroupList(),
-                                timeGroupListener
+                                timeGroupListener,
+                                false
                         ),
-                        () -> waitPreLoad(
-                                latch,
+                        new PreloadTask(
                                 timeGroupReferenceListenerFactory,
                                 kafkaTopics.getFullGroupReference(),
-                                timeGroupReferenceListener
+                                timeGroupReferenceListener,
+                                false
                         )
                 ));
-            } else {
-                latch = new CountDownLatch(COUNT_PRELOAD_TASKS);
             }
-
-            ExecutorService executorService = Executors.newFixedThreadPool(COUNT_PRELOAD_TASKS);
-
-            tasks.addAll(List.of(
-                            () -> waitPreLoad(latch,
-                                    templateListenerFactory,
-                                    kafkaTopics.getTemplate(),
-                                    templateListener),
-                            () -> waitPreLoad(
-                                    latch,
-                                    referenceListenerFactory,
-                                    kafkaTopics.getReference(),
-                                    templateReferenceListener
-                            ),
-                            () -> waitPreLoad(latch, groupListenerFactory, kafkaTopics.getGroupList(), groupListener),
-                            () -> waitPreLoad(
-                                    latch,
-                                    groupReferenceListenerFactory,
-                                    kafkaTopics.getGroupReference(),
-                                    groupReferenceListener
-                            )
-                    )
+            addCompactedTask(tasks, templateListenerFactory, kafkaTopics.getTemplate(), templateListener::preload);
+            addCompactedTask(tasks, referenceListenerFactory, kafkaTopics.getReference(), templateReferenceListener);
+            addCompactedTask(tasks, groupListenerFactory, kafkaTopics.getGroupList(), groupListener);
+            addCompactedTask(
+                    tasks,
+                    groupReferenceListenerFactory,
+                    kafkaTopics.getGroupReference(),
+                    groupReferenceListener
             );
+            preloadCoordinator.preload(tasks, preloadTimeout * COUNT_PRELOAD_TASKS);
+            evaluationPlanPool.publish();
+            templateWarmUpService.warmUp();
 
-            tasks.forEach(executorService::submit);
-            long timeout = preloadTimeout * COUNT_PRELOAD_TASKS;
-            boolean await = latch.await(timeout, TimeUnit.SECONDS);
-
-            if (!await) {
-                throw new StartException("Cant load all rules by timeout: " + timeout);
+            if (poolSnapshotService.isEnabled()) {
+                poolSnapshotService.save();
             }
 
             log.info("StartupListener start stream preloadTime: {} ms", System.currentTimeMillis() - startPreloadTime);
@@ -157,25 +148,35 @@ public class StartupListener implements ApplicationListener<ContextRefreshedEven
     }
 
     private void initRewriteStream() {
-        streamManager.createStream(kafkaTopics.getFullTemplate(), kafkaTopics.getTemplate(), "template-stream");
-        streamManager.createStream(kafkaTopics.getFullReference(), kafkaTopics.getReference(), "reference-stream");
-        streamManager.createStream(kafkaTopics.getFullGroupList(), kafkaTopics.getGroupList(), "group-stream");
-        streamManager.createStream(
-                kafkaTopics.getFullGroupReference(),
-                kafkaTopics.getGroupReference(),
-                "group-ref-stream"
+        Map<String, String> fullToCompactTopics = new LinkedHashMap<>();
+        fullToCompactTopics.put(kafkaTopics.getFullTemplate(), kafkaTopics.getTemplate());
+        fullToCompactTopics.put(kafkaTopics.getFullReference(), kafkaTopics.getReference());
+        fullToCompactTopics.put(kafkaTopics.getFullGroupList(), kafkaTopics.getGroupList());
+        fullToCompactTopics.put(kafkaTopics.getFullGroupReference(), kafkaTopics.getGroupReference());
+        Map<String, String> legacyApplicationIds = Map.of(
+                kafkaTopics.getFullTemplate(), "template-stream",
+                kafkaTopics.getFullReference(), "reference-stream",
+                kafkaTopics.getFullGroupList(), "group-stream",
+                kafkaTopics.getFullGroupReference(), "group-ref-stream"
         );
+        streamManager.start(fullToCompactTopics, legacyApplicationIds);
     }
 
-    private void waitPreLoad(
-            CountDownLatch latch,
-            ConsumerFactory<String, Command> groupListenerFactory,
+    /**
+     * With the rewrite stream running the compacted topic is loaded from its state store,
+     * it falls back to reading the topic when the store is not ready in time.
+     */
+    private void addCompactedTask(
+            List<PreloadTask> tasks,
+            ConsumerFactory<String, Command> consumerFactory,
             String topic,
-            CommandListener listener) {
-        try (Consumer<String, Command> consumer = groupListenerFactory.createConsumer()) {
-            preloadListener.preloadToLastOffsetInPartition(consumer, topic, 0, listener::listen);
+            CommandListener listener) throws InterruptedException {
+        if (historicalListenerEnabled
+                && streamStoreEnabled
+                && streamManager.bootstrap(topic, listener, Duration.ofSeconds(preloadTimeout))) {
+            return;
         }
-        latch.countDown();
+        tasks.add(new PreloadTask(consumerFactory, topic, listener, true));
     }
 
 }
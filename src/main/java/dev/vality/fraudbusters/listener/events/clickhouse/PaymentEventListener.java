@@ -9,7 +9,10 @@ import dev.vality.fraudbusters.converter.PaymentToCheckedPaymentConverter;
 import dev.vality.fraudbusters.converter.PaymentToPaymentModelConverter;
 import dev.vality.fraudbusters.domain.CheckedPayment;
 import dev.vality.fraudbusters.domain.CheckedResultModel;
+import dev.vality.fraudbusters.fraud.aggregate.AggregateKey;
+import dev.vality.fraudbusters.fraud.aggregate.BatchAggregatePrefetcher;
 import dev.vality.fraudbusters.fraud.localstorage.LocalResultStorage;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
 import dev.vality.fraudbusters.repository.Repository;
 import dev.vality.fraudbusters.stream.impl.FullTemplateVisitorImpl;
 import lombok.RequiredArgsConstructor;
@@ -20,7 +23,11 @@ import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -33,12 +40,15 @@ public class PaymentEventListener {
     private final FullTemplateVisitorImpl fullTemplateVisitor;
     private final PaymentToPaymentModelConverter paymentToPaymentModelConverter;
     private final PaymentToCheckedPaymentConverter paymentToCheckedPaymentConverter;
+    private final BatchAggregatePrefetcher batchAggregatePrefetcher;
 
     private final LocalResultStorage localResultStorage;
     private final ObjectMapper objectMapper;
 
     @Value("${result.full.check.enabled:true}")
     private boolean isEnabledFullCheck;
+    @Value("${result.full.check.batch.enabled:false}")
+    private boolean isEnabledBatchCheck;
 
     @KafkaListener(topics = "${kafka.topic.event.sink.payment}",
             containerFactory = "kafkaPaymentResultListenerContainerFactory")
@@ -55,9 +65,9 @@ public class PaymentEventListener {
             );
             log.debug("PaymentEventListener listen result payments: {}", payments);
             repository.insertBatch(
-                    payments.stream()
-                            .map(this::mapAndCheckResults)
-                            .collect(Collectors.toList())
+                    isEnabledBatchCheck
+                            ? mapAndCheckBatch(payments)
+                            : payments.stream().map(this::mapAndCheckResults).collect(Collectors.toList())
             );
             localResultStorage.clear();
         } catch (Exception e) {
@@ -67,11 +77,42 @@ public class PaymentEventListener {
         }
     }
 
+    private List<CheckedPayment> mapAndCheckBatch(List<Payment> payments) {
+        List<PaymentModel> paymentModels = payments.stream()
+                .map(payment -> isFullCheck(payment) ? paymentToPaymentModelConverter.convert(payment) : null)
+                .collect(Collectors.toList());
+        Iterator<Map<AggregateKey, Long>> queryResults = batchAggregatePrefetcher.prefetch(
+                paymentModels.stream().filter(Objects::nonNull).collect(Collectors.toList()),
+                fullTemplateVisitor::getTemplateKeys
+        ).iterator();
+        List<CheckedPayment> checkedPayments = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentModel paymentModel = paymentModels.get(i);
+            checkedPayments.add(mapAndCheckResults(
+                    payments.get(i),
+                    paymentModel,
+                    paymentModel != null ? queryResults.next() : Map.of()
+            ));
+        }
+        return checkedPayments;
+    }
+
+    private boolean isFullCheck(Payment payment) {
+        return isEnabledFullCheck && payment.getStatus() == PaymentStatus.processed;
+    }
+
     private CheckedPayment mapAndCheckResults(Payment payment) {
+        PaymentModel paymentModel = isFullCheck(payment) ? paymentToPaymentModelConverter.convert(payment) : null;
+        return mapAndCheckResults(payment, paymentModel, Map.of());
+    }
+
+    private CheckedPayment mapAndCheckResults(
+            Payment payment,
+            PaymentModel paymentModel,
+            Map<AggregateKey, Long> queryResults) {
         CheckedPayment checkedPayment = paymentToCheckedPaymentConverter.convert(payment);
-        if (isEnabledFullCheck && PaymentStatus.processed.name().equals(checkedPayment.getPaymentStatus())) {
-            List<CheckedResultModel> listResults =
-                    fullTemplateVisitor.visit(paymentToPaymentModelConverter.convert(payment));
+        if (paymentModel != null) {
+            List<CheckedResultModel> listResults = fullTemplateVisitor.visit(paymentModel, queryResults);
             Optional<CheckedResultModel> first = listResults.stream()
                     .filter(checkedResultModel -> checkedResultModel.getCheckedTemplate() != null)
                     .findFirst();
@@ -0,0 +1,148 @@
+package dev.vality.fraudbusters.listener.events.velocity;
+
+import dev.vality.damsel.domain.BankCard;
+import dev.vality.damsel.domain.PaymentTool;
+import dev.vality.damsel.fraudbusters.Chargeback;
+import dev.vality.damsel.fraudbusters.ClientInfo;
+import dev.vality.damsel.fraudbusters.MerchantInfo;
+import dev.vality.damsel.fraudbusters.Payment;
+import dev.vality.damsel.fraudbusters.ReferenceInfo;
+import dev.vality.damsel.fraudbusters.Refund;
+import dev.vality.fraudbusters.constant.EventField;
+import dev.vality.fraudbusters.constant.PaymentStatus;
+import dev.vality.fraudbusters.converter.PaymentToCheckedPaymentConverter;
+import dev.vality.fraudbusters.domain.CheckedPayment;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import dev.vality.fraudbusters.util.TimestampUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Feeds the in-memory velocity counters from the payment, refund and chargeback streams.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class VelocityEventListener {
+
+    private static final String EVENT_ID_SEPARATOR = ".";
+    private static final Set<String> FINAL_STATUSES = Set.of(
+            PaymentStatus.captured.name(),
+            PaymentStatus.cancelled.name(),
+            PaymentStatus.failed.name()
+    );
+
+    private final VelocityCounter paymentVelocityCounter;
+    private final VelocityCounter refundVelocityCounter;
+    private final VelocityCounter chargebackVelocityCounter;
+    private final UniqueVelocityCounter uniqueVelocityCounter;
+    private final PaymentToCheckedPaymentConverter paymentToCheckedPaymentConverter;
+
+    @KafkaListener(topics = "${kafka.topic.event.sink.payment}",
+            containerFactory = "kafkaVelocityPaymentListenerContainerFactory")
+    public void listenPayments(List<ConsumerRecord<String, Payment>> records) {
+        log.debug("VelocityEventListener listenPayments size: {}", records.size());
+        for (ConsumerRecord<String, Payment> record : records) {
+            CheckedPayment payment = paymentToCheckedPaymentConverter.convert(record.value());
+            Map<String, Object> fields = new HashMap<>();
+            fields.put(EventField.email.name(), payment.getEmail());
+            fields.put(EventField.phone.name(), payment.getPhone());
+            fields.put(EventField.ip.name(), payment.getIp());
+            fields.put(EventField.fingerprint.name(), payment.getFingerprint());
+            fields.put(EventField.bin.name(), payment.getBin());
+            fields.put(EventField.lastDigits.name(), payment.getLastDigits());
+            fields.put(EventField.cardToken.name(), payment.getCardToken());
+            fields.put(EventField.partyId.name(), payment.getPartyId());
+            fields.put(EventField.shopId.name(), payment.getShopId());
+            add(paymentVelocityCounter, fields, payment.getId(), payment.getPaymentStatus(),
+                    payment.getEventTime(), payment.getAmount());
+            if (FINAL_STATUSES.contains(payment.getPaymentStatus())) {
+                uniqueVelocityCounter.add(fields, payment.getEventTime());
+            }
+            paymentVelocityCounter.onConsumed(record.partition(), record.offset());
+        }
+    }
+
+    @KafkaListener(topics = "${kafka.topic.event.sink.refund}",
+            containerFactory = "kafkaVelocityRefundListenerContainerFactory")
+    public void listenRefunds(List<ConsumerRecord<String, Refund>> records) {
+        log.debug("VelocityEventListener listenRefunds size: {}", records.size());
+        for (ConsumerRecord<String, Refund> record : records) {
+            Refund refund = record.value();
+            add(refundVelocityCounter,
+                    resolveFields(refund.getClientInfo(), refund.getPaymentTool(), refund.getReferenceInfo()),
+                    refund.getPaymentId() + EVENT_ID_SEPARATOR + refund.getId(),
+                    refund.getStatus().name(),
+                    TimestampUtil.generateTimePropertiesByString(refund.getEventTime()).getEventTime(),
+                    refund.getCost().getAmount());
+            refundVelocityCounter.onConsumed(record.partition(), record.offset());
+        }
+    }
+
+    @KafkaListener(topics = "${kafka.topic.event.sink.chargeback}",
+            containerFactory = "kafkaVelocityChargebackListenerContainerFactory")
+    public void listenChargebacks(List<ConsumerRecord<String, Chargeback>> records) {
+        log.debug("VelocityEventListener listenChargebacks size: {}", records.size());
+        for (ConsumerRecord<String, Chargeback> record : records) {
+            Chargeback chargeback = record.value();
+            add(chargebackVelocityCounter,
+                    resolveFields(chargeback.getClientInfo(), chargeback.getPaymentTool(),
+                            chargeback.getReferenceInfo()),
+                    chargeback.getPaymentId() + EVENT_ID_SEPARATOR + chargeback.getId(),
+                    chargeback.getStatus().name(),
+                    TimestampUtil.generateTimePropertiesByString(chargeback.getEventTime()).getEventTime(),
+                    chargeback.getCost().getAmount());
+            chargebackVelocityCounter.onConsumed(record.partition(), record.offset());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.velocity.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        paymentVelocityCounter.evictExpired();
+        refundVelocityCounter.evictExpired();
+        chargebackVelocityCounter.evictExpired();
+        uniqueVelocityCounter.evictExpired();
+    }
+
+    private void add(
+            VelocityCounter velocityCounter,
+            Map<String, Object> fields,
+            String eventId,
+            String status,
+            long eventTime,
+            long amount) {
+        for (String field : velocityCounter.getFields()) {
+            velocityCounter.add(field, fields.get(field), eventId, status, eventTime, amount);
+        }
+    }
+
+    private Map<String, Object> resolveFields(ClientInfo clientInfo, PaymentTool paymentTool, ReferenceInfo info) {
+        Map<String, Object> fields = new HashMap<>();
+        if (clientInfo != null) {
+            fields.put(EventField.email.name(), clientInfo.getEmail());
+            fields.put(EventField.ip.name(), clientInfo.getIp());
+            fields.put(EventField.fingerprint.name(), clientInfo.getFingerprint());
+        }
+        if (paymentTool != null && paymentTool.isSetBankCard()) {
+            BankCard bankCard = paymentTool.getBankCard();
+            fields.put(EventField.bin.name(), bankCard.getBin());
+            fields.put(EventField.lastDigits.name(), bankCard.getLastDigits());
+            fields.put(EventField.cardToken.name(), bankCard.getToken());
+        }
+        if (info != null && info.isSetMerchantInfo()) {
+            MerchantInfo merchantInfo = info.getMerchantInfo();
+            fields.put(EventField.partyId.name(), merchantInfo.getPartyId());
+            fields.put(EventField.shopId.name(), merchantInfo.getShopId());
+        }
+        return fields;
+    }
+
+}
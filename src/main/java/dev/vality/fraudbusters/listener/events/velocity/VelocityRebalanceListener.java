@@ -0,0 +1,54 @@
+package dev.vality.fraudbusters.listener.events.velocity;
+
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rewinds assigned partitions to the start of the retention period and tells the counter
+ * which offsets it has to reach before its windows can be trusted.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class VelocityRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final VelocityCounter velocityCounter;
+    private final Clock clock;
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        long loadedFrom = clock.millis() - velocityCounter.getRetentionMs();
+        Map<TopicPartition, OffsetAndTimestamp> startOffsets = consumer.offsetsForTimes(partitions.stream()
+                .collect(Collectors.toMap(Function.identity(), partition -> loadedFrom)));
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        Map<Integer, Long> positions = new HashMap<>();
+        Map<Integer, Long> ends = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            OffsetAndTimestamp startOffset = startOffsets.get(partition);
+            long endOffset = endOffsets.getOrDefault(partition, 0L);
+            long position = startOffset != null ? startOffset.offset() : endOffset;
+            consumer.seek(partition, position);
+            positions.put(partition.partition(), position);
+            ends.put(partition.partition(), endOffset);
+        }
+        log.info("VelocityRebalanceListener seek partitions: {} to: {}", partitions, positions);
+        velocityCounter.onAssigned(positions, ends, loadedFrom);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        velocityCounter.onRevoked();
+    }
+
+}
@@ -0,0 +1,43 @@
+package dev.vality.fraudbusters.listener.events.wblist;
+
+import dev.vality.damsel.wb_list.Event;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+
+import java.util.List;
+
+/**
+ * Applies the list change events to the local {@link WbListReplica} and reports the idle polls
+ * of its container as heartbeats.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class WbListEventListener {
+
+    private static final String LISTENER_ID = "wbListEventListener";
+
+    private final WbListReplica wbListReplica;
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "${kafka.topic.wb-list-event}",
+            containerFactory = "kafkaWbListEventListenerContainerFactory")
+    public void listen(List<ConsumerRecord<String, Event>> records) {
+        log.debug("WbListEventListener listen size: {}", records.size());
+        for (ConsumerRecord<String, Event> record : records) {
+            if (record.value() != null) {
+                wbListReplica.apply(record.value());
+            }
+            wbListReplica.onConsumed(record.partition(), record.offset());
+        }
+    }
+
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        wbListReplica.onIdle();
+    }
+
+}
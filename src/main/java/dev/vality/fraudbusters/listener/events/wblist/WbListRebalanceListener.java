@@ -0,0 +1,45 @@
+package dev.vality.fraudbusters.listener.events.wblist;
+
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replays the list event stream from the beginning on every assignment, so the replica is rebuilt
+ * from the full history before it answers lookups.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class WbListRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final WbListReplica wbListReplica;
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        Map<Integer, Long> positions = new HashMap<>();
+        Map<Integer, Long> ends = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            long position = beginningOffsets.getOrDefault(partition, 0L);
+            consumer.seek(partition, position);
+            positions.put(partition.partition(), position);
+            ends.put(partition.partition(), endOffsets.getOrDefault(partition, 0L));
+        }
+        log.info("WbListRebalanceListener seek partitions: {} to: {}", partitions, positions);
+        wbListReplica.onAssigned(positions, ends);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        wbListReplica.onRevoked();
+    }
+
+}
@@ -1,24 +1,20 @@
 package dev.vality.fraudbusters.listener.payment;
 
 import dev.vality.damsel.fraudbusters.Command;
-import dev.vality.damsel.fraudbusters.CommandType;
 import dev.vality.damsel.fraudbusters.Template;
-import dev.vality.fraudbusters.fraud.FraudContextParser;
-import dev.vality.fraudbusters.fraud.payment.validator.PaymentTemplateValidator;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateLoader;
 import dev.vality.fraudbusters.listener.AbstractPoolCommandListenerExecutor;
 import dev.vality.fraudbusters.listener.CommandListener;
+import dev.vality.fraudbusters.pool.LazyTemplatePool;
 import dev.vality.fraudbusters.pool.Pool;
-import dev.vality.fraudo.FraudoPaymentParser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
 
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 
 @Slf4j
@@ -26,9 +22,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TemplateListener extends AbstractPoolCommandListenerExecutor implements CommandListener {
 
-    private final FraudContextParser<FraudoPaymentParser.ParseContext> paymentContextParser;
-    private final PaymentTemplateValidator paymentTemplateValidator;
+    private final PaymentTemplateLoader paymentTemplateLoader;
     private final Pool<ParserRuleContext> templatePoolImpl;
+    private final LazyTemplatePool parsedTemplatePoolImpl;
 
     @Override
     @KafkaListener(topics = "${kafka.topic.template}", containerFactory = "templateListenerContainerFactory")
@@ -38,17 +34,38 @@ public class TemplateListener extends AbstractPoolCommandListenerExecutor implem
             Template template = command.getCommandBody().getTemplate();
             String templateString = new String(template.getTemplate(), StandardCharsets.UTF_8);
             log.info("TemplateListener templateString: {}", templateString);
-            if (CommandType.CREATE.equals(command.command_type)) {
-                validateTemplate(template.getId(), templateString);
-            }
-            execCommand(command, template.getId(), templatePoolImpl, paymentContextParser::parse, templateString);
+            execCommand(
+                    command,
+                    template.getId(),
+                    parsedTemplatePoolImpl,
+                    () -> paymentTemplateLoader.load(template.getId(), templateString)
+            );
+            // the tree is shared on the listener thread only, a lazy parse never writes it back
+            execCommand(
+                    command,
+                    template.getId(),
+                    templatePoolImpl,
+                    () -> parsedTemplatePoolImpl.get(template.getId()).getContext()
+            );
         }
     }
 
-    private void validateTemplate(String id, String templateString) {
-        List<String> validate = paymentTemplateValidator.validate(templateString);
-        if (!CollectionUtils.isEmpty(validate)) {
-            log.warn("TemplateListener templateId: {} validateError: {}", id, validate);
+    /**
+     * Stores the template source on startup, it is parsed on first use or by the warm-up.
+     */
+    public void preload(Command command) {
+        if (command != null && command.isSetCommandBody() && command.getCommandBody().isSetTemplate()) {
+            Template template = command.getCommandBody().getTemplate();
+            log.debug("TemplateListener preload templateId: {}", template.getId());
+            templatePoolImpl.remove(template.getId());
+            switch (command.command_type) {
+                case CREATE -> parsedTemplatePoolImpl.addSource(
+                        template.getId(),
+                        new String(template.getTemplate(), StandardCharsets.UTF_8)
+                );
+                case DELETE -> parsedTemplatePoolImpl.remove(template.getId());
+                default -> log.error("Unknown command: {}", command);
+            }
         }
     }
 
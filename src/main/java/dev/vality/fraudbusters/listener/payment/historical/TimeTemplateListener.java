@@ -4,6 +4,7 @@ import dev.vality.damsel.fraudbusters.Command;
 import dev.vality.damsel.fraudbusters.CommandType;
 import dev.vality.damsel.fraudbusters.Template;
 import dev.vality.fraudbusters.fraud.FraudContextParser;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
 import dev.vality.fraudbusters.fraud.payment.validator.PaymentTemplateValidator;
 import dev.vality.fraudbusters.listener.CommandListener;
 import dev.vality.fraudbusters.pool.HistoricalPool;
@@ -26,6 +27,7 @@ import java.util.List;
 public class TimeTemplateListener extends AbstractTimePoolCommandListenerExecutor implements CommandListener {
 
     private final FraudContextParser<FraudoPaymentParser.ParseContext> paymentContextParser;
+    private final PaymentTemplateInterner paymentTemplateInterner;
     private final PaymentTemplateValidator paymentTemplateValidator;
     private final HistoricalPool<ParserRuleContext> timeTemplateTimePoolImpl;
 
@@ -47,7 +49,7 @@ public class TimeTemplateListener extends AbstractTimePoolCommandListenerExecuto
                     template.getId(),
                     timestamp,
                     timeTemplateTimePoolImpl,
-                    paymentContextParser::parse,
+                    source -> paymentTemplateInterner.acquire(source, paymentContextParser::parse),
                     templateString
             );
         }
@@ -0,0 +1,160 @@
+package dev.vality.fraudbusters.listener.preload;
+
+import dev.vality.damsel.fraudbusters.Command;
+import dev.vality.fraudbusters.exception.StartException;
+import dev.vality.fraudbusters.listener.CommandListener;
+import dev.vality.fraudbusters.listener.snapshot.PoolSnapshotService;
+import dev.vality.kafka.common.loader.PreloadListener;
+import dev.vality.kafka.common.loader.PreloadListenerImpl;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the pool topics on startup, every partition of every topic is read by its own consumer
+ * with at most {@code preload.parallelism} partitions at once. Commands of one key always land in one partition
+ * and are applied there in offset order, so reading partitions concurrently keeps the order per key.
+ */
+@Slf4j
+@Component
+public class PreloadCoordinator {
+
+    public static final String RECORDS_RATE_METRIC = "preload.records.rate";
+    public static final String LAG_METRIC = "preload.lag";
+    public static final String ETA_METRIC = "preload.eta.seconds";
+
+    private final PoolSnapshotService poolSnapshotService;
+    private final PreloadListener<String, Command> preloadListener = new PreloadListenerImpl<>();
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong lag = new AtomicLong();
+    private volatile long startTime;
+    private volatile long finishTime;
+
+    @Value("${preload.parallelism:8}")
+    private int parallelism;
+
+    public PreloadCoordinator(PoolSnapshotService poolSnapshotService, MeterRegistry registry) {
+        this.poolSnapshotService = poolSnapshotService;
+        Gauge.builder(RECORDS_RATE_METRIC, this, PreloadCoordinator::recordsRate).register(registry);
+        Gauge.builder(LAG_METRIC, lag, AtomicLong::get).register(registry);
+        Gauge.builder(ETA_METRIC, this, PreloadCoordinator::etaSeconds).register(registry);
+    }
+
+    public void preload(List<PreloadTask> tasks, long timeoutSeconds) throws InterruptedException {
+        startTime = System.nanoTime();
+        finishTime = 0;
+        records.set(0);
+        lag.set(0);
+        List<PartitionTask> partitionTasks = discover(tasks);
+        log.info("PreloadCoordinator preload partitions: {} lag: {} parallelism: {}",
+                partitionTasks.size(), lag.get(), parallelism);
+        int threads = Math.max(1, Math.min(parallelism, partitionTasks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(partitionTasks.size());
+            for (PartitionTask partitionTask : partitionTasks) {
+                futures.add(executor.submit(() -> preloadPartition(partitionTask)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            for (Future<?> future : futures) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw new StartException("Cant load all rules by timeout: " + timeoutSeconds);
+        } catch (ExecutionException e) {
+            throw new StartException("Cant load all rules", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            finishTime = System.nanoTime();
+        }
+        log.info("PreloadCoordinator preloaded records: {} rate: {}/s", records.get(), Math.round(recordsRate()));
+    }
+
+    private List<PartitionTask> discover(List<PreloadTask> tasks) {
+        List<PartitionTask> partitionTasks = new ArrayList<>();
+        for (PreloadTask task : tasks) {
+            try (Consumer<String, Command> consumer = task.getConsumerFactory().createConsumer()) {
+                List<TopicPartition> partitions = consumer.partitionsFor(task.getTopic()).stream()
+                        .map(info -> new TopicPartition(info.topic(), info.partition()))
+                        .toList();
+                Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+                Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+                for (TopicPartition partition : partitions) {
+                    long remaining = Math.max(0, endOffsets.getOrDefault(partition, 0L)
+                            - beginningOffsets.getOrDefault(partition, 0L));
+                    lag.addAndGet(remaining);
+                    partitionTasks.add(new PartitionTask(task, partition, new AtomicLong(remaining)));
+                }
+            }
+        }
+        return partitionTasks;
+    }
+
+    private void preloadPartition(PartitionTask partitionTask) {
+        PreloadTask task = partitionTask.task;
+        CommandListener listener = command -> {
+            task.getListener().listen(command);
+            records.incrementAndGet();
+            if (partitionTask.remaining.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                lag.decrementAndGet();
+            }
+        };
+        try (Consumer<String, Command> consumer = task.getConsumerFactory().createConsumer()) {
+            if (poolSnapshotService.isEnabled()) {
+                poolSnapshotService.preload(consumer, partitionTask.partition, listener, task.isCompacted());
+            } else {
+                preloadListener.preloadToLastOffsetInPartition(
+                        consumer,
+                        partitionTask.partition.topic(),
+                        partitionTask.partition.partition(),
+                        listener::listen
+                );
+            }
+        } finally {
+            lag.addAndGet(-partitionTask.remaining.getAndSet(0));
+        }
+        log.debug("PreloadCoordinator preloaded partition: {}", partitionTask.partition);
+    }
+
+    private double recordsRate() {
+        long start = startTime;
+        if (start == 0) {
+            return 0;
+        }
+        long end = finishTime != 0 ? finishTime : System.nanoTime();
+        double seconds = (end - start) / 1e9;
+        return seconds > 0 ? records.get() / seconds : 0;
+    }
+
+    private double etaSeconds() {
+        double rate = recordsRate();
+        return rate > 0 ? lag.get() / rate : 0;
+    }
+
+    @RequiredArgsConstructor
+    private static final class PartitionTask {
+
+        private final PreloadTask task;
+        private final TopicPartition partition;
+        private final AtomicLong remaining;
+
+    }
+
+}
@@ -0,0 +1,18 @@
+package dev.vality.fraudbusters.listener.preload;
+
+import dev.vality.damsel.fraudbusters.Command;
+import dev.vality.fraudbusters.listener.CommandListener;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.kafka.core.ConsumerFactory;
+
+@Getter
+@RequiredArgsConstructor
+public class PreloadTask {
+
+    private final ConsumerFactory<String, Command> consumerFactory;
+    private final String topic;
+    private final CommandListener listener;
+    private final boolean compacted;
+
+}
@@ -0,0 +1,339 @@
+package dev.vality.fraudbusters.listener.snapshot;
+
+import dev.vality.damsel.fraudbusters.Command;
+import dev.vality.damsel.fraudbusters.CommandType;
+import dev.vality.fraudbusters.listener.CommandListener;
+import dev.vality.fraudbusters.serde.CommandDeserializer;
+import dev.vality.kafka.common.serialization.ThriftSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local snapshot of the pool topics, stamped with the offset of every partition and read through a memory map.
+ * On startup the pools are rebuilt from the snapshot and only the records after its offsets are read from Kafka.
+ * A partition whose offset does not fit its range any more, or whose last snapshot record differs from the one
+ * in Kafka, is replayed from the beginning. The records applied by the pool listeners are appended to the snapshot,
+ * which is rewritten periodically.
+ */
+@Slf4j
+@Component
+public class PoolSnapshotService {
+
+    private static final int MAGIC = 0x46425053;
+    private static final int VERSION = 3;
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+    private final Map<TopicPartition, TopicSnapshot> loadedSnapshots = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, PartitionLog> partitionLogs = new ConcurrentHashMap<>();
+    private final ThriftSerializer<Command> serializer = new ThriftSerializer<>();
+    private final CommandDeserializer deserializer = new CommandDeserializer();
+
+    private volatile boolean dirty;
+
+    @Value("${preload.snapshot.enabled:false}")
+    private boolean enabled;
+    @Value("${preload.snapshot.path:fraudbusters-pools.snapshot}")
+    private String path;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void load() {
+        Path file = Path.of(path);
+        if (!Files.exists(file)) {
+            log.info("PoolSnapshotService snapshot not found, path: {}", file);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.warn("PoolSnapshotService snapshot is too large to map, path: {} size: {}", file, channel.size());
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("PoolSnapshotService unknown snapshot format, path: {}", file);
+                return;
+            }
+            int topicCount = buffer.getInt();
+            for (int i = 0; i < topicCount; i++) {
+                TopicSnapshot snapshot = readTopic(buffer);
+                loadedSnapshots.put(new TopicPartition(snapshot.getTopic(), snapshot.getPartition()), snapshot);
+            }
+            log.info("PoolSnapshotService loaded snapshot topics: {}", loadedSnapshots.keySet());
+        } catch (IOException | RuntimeException e) {
+            log.warn("PoolSnapshotService failed to load snapshot, path: {} e: ", file, e);
+            loadedSnapshots.clear();
+        }
+    }
+
+    /**
+     * Rebuilds the pool from the snapshot of the partition and the records after it.
+     * Compacted topics keep only the last command of every record key in the next snapshot.
+     */
+    public void preload(
+            Consumer<String, Command> consumer,
+            TopicPartition partition,
+            CommandListener listener,
+            boolean compacted) {
+        consumer.assign(List.of(partition));
+        long beginning = consumer.beginningOffsets(List.of(partition)).getOrDefault(partition, 0L);
+        long end = consumer.endOffsets(List.of(partition)).getOrDefault(partition, 0L);
+        TopicSnapshot snapshot = loadedSnapshots.remove(partition);
+        PartitionLog partitionLog = new PartitionLog(partition, compacted);
+        List<ConsumerRecord<String, Command>> pending = null;
+        if (snapshot != null && snapshot.getOffset() >= beginning && snapshot.getOffset() <= end) {
+            pending = verify(consumer, partition, snapshot, beginning, end);
+            if (pending == null) {
+                log.warn("PoolSnapshotService snapshot does not match partition: {}, last offset: {} timestamp: {}",
+                        partition, snapshot.getLastOffset(), snapshot.getLastTimestamp());
+            }
+        } else if (snapshot != null) {
+            log.warn("PoolSnapshotService snapshot of partition: {} is out of range, offset: {} beginning: {} end: {}",
+                    partition, snapshot.getOffset(), beginning, end);
+        }
+        int restored = 0;
+        if (pending != null) {
+            snapshot.getCommands().values().forEach(listener::listen);
+            partitionLog.restore(snapshot);
+            restored = snapshot.getCommands().size();
+        } else {
+            consumer.seek(partition, beginning);
+            pending = List.of();
+        }
+        int replayed = replay(pending, listener, partitionLog);
+        while (consumer.position(partition) < end) {
+            replayed += replay(consumer.poll(POLL_TIMEOUT).records(partition), listener, partitionLog);
+        }
+        partitionLog.advance(end);
+        log.info("PoolSnapshotService preloaded partition: {} from snapshot: {} replayed: {}",
+                partition, restored, replayed);
+        partitionLogs.put(partition, partitionLog);
+        dirty = true;
+    }
+
+    /**
+     * Appends a record applied by a pool listener to the snapshot of its partition.
+     * Records of partitions that were not preloaded and records already in the snapshot are skipped.
+     */
+    public void append(ConsumerRecord<String, Command> record) {
+        PartitionLog partitionLog = partitionLogs.get(new TopicPartition(record.topic(), record.partition()));
+        if (partitionLog != null && partitionLog.append(record)) {
+            dirty = true;
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${preload.snapshot.refresh-interval-ms:300000}",
+            initialDelayString = "${preload.snapshot.refresh-interval-ms:300000}")
+    public void refresh() {
+        if (enabled && dirty) {
+            save();
+        }
+    }
+
+    public void save() {
+        Path file = Path.of(path);
+        dirty = false;
+        try {
+            List<TopicSnapshot> snapshots = partitionLogs.values().stream().map(PartitionLog::snapshot).toList();
+            List<ByteBuffer> topics = new ArrayList<>(snapshots.size());
+            long size = Integer.BYTES * 3L;
+            for (TopicSnapshot snapshot : snapshots) {
+                ByteBuffer topic = writeTopic(snapshot);
+                topics.add(topic);
+                size += topic.remaining();
+            }
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                write(channel, ByteBuffer.allocate(Integer.BYTES * 3)
+                        .putInt(MAGIC).putInt(VERSION).putInt(topics.size())
+                        .flip());
+                for (ByteBuffer topic : topics) {
+                    write(channel, topic);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("PoolSnapshotService saved snapshot topics: {} size: {} path: {}",
+                    partitionLogs.keySet(), size, file);
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            log.warn("PoolSnapshotService failed to save snapshot, path: {} e: ", file, e);
+        }
+    }
+
+    /**
+     * Seeks to the last record of the snapshot and checks it is still the same record.
+     *
+     * @return the records after the snapshot read on the way, or null if the snapshot does not match the partition
+     */
+    private List<ConsumerRecord<String, Command>> verify(
+            Consumer<String, Command> consumer,
+            TopicPartition partition,
+            TopicSnapshot snapshot,
+            long beginning,
+            long end) {
+        if (snapshot.getLastOffset() < 0) {
+            consumer.seek(partition, snapshot.getOffset());
+            return snapshot.getOffset() == beginning ? List.of() : null;
+        }
+        consumer.seek(partition, snapshot.getLastOffset());
+        while (consumer.position(partition) < end) {
+            List<ConsumerRecord<String, Command>> records = consumer.poll(POLL_TIMEOUT).records(partition);
+            if (!records.isEmpty()) {
+                ConsumerRecord<String, Command> last = records.get(0);
+                if (last.offset() != snapshot.getLastOffset() || last.timestamp() != snapshot.getLastTimestamp()) {
+                    return null;
+                }
+                return records.subList(1, records.size());
+            }
+        }
+        return null;
+    }
+
+    private int replay(
+            List<ConsumerRecord<String, Command>> records,
+            CommandListener listener,
+            PartitionLog partitionLog) {
+        int replayed = 0;
+        for (ConsumerRecord<String, Command> record : records) {
+            if (partitionLog.append(record) && record.value() != null) {
+                listener.listen(record.value());
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private ByteBuffer writeTopic(TopicSnapshot snapshot) {
+        List<byte[]> fields = new ArrayList<>();
+        fields.add(snapshot.getTopic().getBytes(StandardCharsets.UTF_8));
+        snapshot.getCommands().forEach((key, command) -> {
+            fields.add(key.getBytes(StandardCharsets.UTF_8));
+            fields.add(serializer.serialize(snapshot.getTopic(), command));
+        });
+        long size = Long.BYTES * 3 + Integer.BYTES * 2
+                + fields.stream().mapToLong(field -> Integer.BYTES + field.length).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        putBytes(buffer, fields.get(0));
+        buffer.putInt(snapshot.getPartition())
+                .putLong(snapshot.getOffset())
+                .putLong(snapshot.getLastOffset())
+                .putLong(snapshot.getLastTimestamp())
+                .putInt(snapshot.getCommands().size());
+        fields.subList(1, fields.size()).forEach(field -> putBytes(buffer, field));
+        return buffer.flip();
+    }
+
+    private TopicSnapshot readTopic(ByteBuffer buffer) {
+        String topic = new String(getBytes(buffer), StandardCharsets.UTF_8);
+        int partition = buffer.getInt();
+        long offset = buffer.getLong();
+        long lastOffset = buffer.getLong();
+        long lastTimestamp = buffer.getLong();
+        int count = buffer.getInt();
+        LinkedHashMap<String, Command> commands = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String key = new String(getBytes(buffer), StandardCharsets.UTF_8);
+            commands.put(key, deserializer.deserialize(topic, getBytes(buffer)));
+        }
+        return new TopicSnapshot(topic, partition, offset, lastOffset, lastTimestamp, commands);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Commands of a partition kept up to date by the preload and the pool listeners.
+     */
+    private static final class PartitionLog {
+
+        private final TopicPartition partition;
+        private final boolean compacted;
+        private final LinkedHashMap<String, Command> commands = new LinkedHashMap<>();
+        private long offset;
+        private long lastOffset = -1L;
+        private long lastTimestamp = -1L;
+
+        private PartitionLog(TopicPartition partition, boolean compacted) {
+            this.partition = partition;
+            this.compacted = compacted;
+        }
+
+        private synchronized void restore(TopicSnapshot snapshot) {
+            commands.putAll(snapshot.getCommands());
+            offset = snapshot.getOffset();
+            lastOffset = snapshot.getLastOffset();
+            lastTimestamp = snapshot.getLastTimestamp();
+        }
+
+        private synchronized boolean append(ConsumerRecord<String, Command> record) {
+            if (record.offset() < offset) {
+                return false;
+            }
+            offset = record.offset() + 1;
+            lastOffset = record.offset();
+            lastTimestamp = record.timestamp();
+            if (record.value() == null) {
+                return true;
+            }
+            if (!compacted || record.key() == null) {
+                commands.put(String.valueOf(record.offset()), record.value());
+                return true;
+            }
+            commands.remove(record.key());
+            if (record.value().getCommandType() != CommandType.DELETE) {
+                commands.put(record.key(), record.value());
+            }
+            return true;
+        }
+
+        private synchronized void advance(long end) {
+            offset = Math.max(offset, end);
+        }
+
+        private synchronized TopicSnapshot snapshot() {
+            return new TopicSnapshot(partition.topic(), partition.partition(), offset, lastOffset, lastTimestamp,
+                    new LinkedHashMap<>(commands));
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package dev.vality.fraudbusters.listener.snapshot;
+
+import dev.vality.damsel.fraudbusters.Command;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Commands of one pool topic partition read up to the offset, at most one per record key for compacted topics.
+ * The offset and timestamp of the last record read identify the partition the snapshot was taken from.
+ */
+@Getter
+@RequiredArgsConstructor
+public class TopicSnapshot {
+
+    private final String topic;
+    private final int partition;
+    private final long offset;
+    private final long lastOffset;
+    private final long lastTimestamp;
+    private final LinkedHashMap<String, Command> commands;
+
+}
@@ -6,4 +6,6 @@ public interface CheckedMetricPool {
 
     String getName();
 
+    PoolChangeFeed getChangeFeed();
+
 }
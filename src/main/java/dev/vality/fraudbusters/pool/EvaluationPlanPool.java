@@ -0,0 +1,327 @@
+package dev.vality.fraudbusters.pool;
+
+import dev.vality.fraudbusters.constant.TemplateLevel;
+import dev.vality.fraudbusters.fraud.model.EvaluationPlan;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.service.RuleSetMetricsService;
+import dev.vality.fraudbusters.util.ReferenceKeyGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Serves evaluation plans by party and shop from immutable generations of the rule set.
+ * A generation is a copy of the reference, group and group reference pools and of the template pools
+ * taken at one moment, every inspection reads one generation, so it never mixes the state of the pools
+ * before and after an update. The listeners request a new generation on every update and publish it
+ * after each poll, the inspections only read the current generation. A reference to a template or group
+ * that has not arrived yet keeps its previous target until it arrives. Plans are built on first use
+ * and kept with their generation. A plan is carried over to the next generation unless one of
+ * its references, groups or templates changed.
+ * Plans are kept only for the parties and shops that have a reference or a group reference,
+ * every other party and shop shares the plan of its party or the global plan, so the number of plans
+ * is bounded by the size of the reference pools.
+ */
+@Slf4j
+@Component
+public class EvaluationPlanPool implements PoolChangeListener {
+
+    private static final String EMPTY_ID = "";
+
+    private final Pool<List<String>> groupPoolImpl;
+    private final Pool<String> referencePoolImpl;
+    private final Pool<String> groupReferencePoolImpl;
+    private final Pool<ParserRuleContext> templatePoolImpl;
+    private final Pool<ParsedTemplate> parsedTemplatePoolImpl;
+    private final RuleSetMetricsService ruleSetMetricsService;
+
+    private final AtomicLong requestedGeneration = new AtomicLong(1);
+    private final Set<String> invalidatedTemplates = ConcurrentHashMap.newKeySet();
+    private volatile Generation generation = new Generation(
+            0,
+            Collections.emptyMap(),
+            Collections.emptyMap(),
+            Collections.emptyMap(),
+            Collections.emptyMap()
+    );
+
+    public EvaluationPlanPool(
+            Pool<List<String>> groupPoolImpl,
+            Pool<String> referencePoolImpl,
+            Pool<String> groupReferencePoolImpl,
+            Pool<ParserRuleContext> templatePoolImpl,
+            Pool<ParsedTemplate> parsedTemplatePoolImpl,
+            RuleSetMetricsService ruleSetMetricsService) {
+        this.groupPoolImpl = groupPoolImpl;
+        this.referencePoolImpl = referencePoolImpl;
+        this.groupReferencePoolImpl = groupReferencePoolImpl;
+        this.templatePoolImpl = templatePoolImpl;
+        this.parsedTemplatePoolImpl = parsedTemplatePoolImpl;
+        this.ruleSetMetricsService = ruleSetMetricsService;
+        Stream.of(groupPoolImpl, referencePoolImpl, groupReferencePoolImpl, templatePoolImpl, parsedTemplatePoolImpl)
+                .forEach(pool -> pool.getChangeFeed().subscribe(this));
+    }
+
+    public EvaluationPlan get(String partyId, String shopId) {
+        return generation.plan(this, partyId, shopId);
+    }
+
+    /**
+     * Requests a new generation after a change of the reference, group or group reference pools,
+     * only the plans that read a changed key are rebuilt.
+     */
+    public void invalidate() {
+        log.debug("EvaluationPlanPool invalidate references");
+        requestedGeneration.incrementAndGet();
+    }
+
+    /**
+     * Requests a new generation after a change of a template, the plans that contain it are rebuilt.
+     */
+    public void invalidateTemplate(String templateId) {
+        log.debug("EvaluationPlanPool invalidate templateId: {}", templateId);
+        invalidatedTemplates.add(templateId);
+        requestedGeneration.incrementAndGet();
+    }
+
+    /**
+     * A change of a template pool invalidates the plans of the template, any other change the changed keys.
+     */
+    @Override
+    public void onChange(PoolChange change) {
+        if (change.getPoolName().equals(templatePoolImpl.getName())
+                || change.getPoolName().equals(parsedTemplatePoolImpl.getName())) {
+            invalidateTemplate(change.getKey());
+        } else {
+            invalidate();
+        }
+    }
+
+    public long getGeneration() {
+        return generation.number;
+    }
+
+    public int size() {
+        Generation current = generation;
+        return (current.globalPlan != null ? 1 : 0) + current.plans.values().stream()
+                .mapToInt(Map::size)
+                .sum();
+    }
+
+    /**
+     * Publishes a generation covering all updates requested so far, does nothing if there are none.
+     */
+    public void publish() {
+        if (generation.number < requestedGeneration.get()) {
+            publishNext();
+        }
+    }
+
+    private synchronized void publishNext() {
+        Generation previous = generation;
+        long number = requestedGeneration.get();
+        if (previous.number >= number) {
+            return;
+        }
+        Set<String> invalidated = new HashSet<>(invalidatedTemplates);
+        invalidatedTemplates.removeAll(invalidated);
+
+        Map<String, Supplier<ParserRuleContext>> templates = snapshotTemplates();
+        Map<String, List<String>> groups = copy(groupPoolImpl);
+        Map<String, String> references = resolve(referencePoolImpl, previous.references, templates::containsKey);
+        Map<String, String> groupReferences =
+                resolve(groupReferencePoolImpl, previous.groupReferences, groups::containsKey);
+        Generation next = new Generation(number, references, groups, groupReferences, templates);
+        int carried = carryOver(previous, next, invalidated);
+        generation = next;
+        ruleSetMetricsService.generationPublished(number);
+        log.debug("EvaluationPlanPool published generation: {} templates: {} carried plans: {}",
+                number, invalidated, carried);
+    }
+
+    /**
+     * Templates with extracted calls are preferred, a template that failed to load falls back to its parse tree.
+     */
+    private Map<String, Supplier<ParserRuleContext>> snapshotTemplates() {
+        Map<String, Supplier<ParserRuleContext>> templates = new HashMap<>(templatePoolImpl.snapshot());
+        parsedTemplatePoolImpl.snapshot().forEach((key, extracted) -> {
+            Supplier<ParserRuleContext> parsed = templates.get(key);
+            templates.put(key, () -> {
+                ParsedTemplate parsedTemplate = extracted.get();
+                if (parsedTemplate != null) {
+                    return parsedTemplate.getContext();
+                }
+                return parsed != null ? parsed.get() : null;
+            });
+        });
+        return templates;
+    }
+
+    private static int carryOver(Generation previous, Generation next, Set<String> templates) {
+        String global = TemplateLevel.GLOBAL.name();
+        if (!Objects.equals(previous.references.get(global), next.references.get(global))) {
+            return 0;
+        }
+        int carried = 0;
+        for (Map.Entry<String, Map<String, EvaluationPlan>> partyPlans : previous.plans.entrySet()) {
+            String partyId = partyPlans.getKey();
+            for (Map.Entry<String, EvaluationPlan> shopPlan : partyPlans.getValue().entrySet()) {
+                String shopId = EMPTY_ID.equals(shopPlan.getKey()) ? null : shopPlan.getKey();
+                EvaluationPlan plan = shopPlan.getValue();
+                if (isUnchanged(previous, next, partyId)
+                        && (shopId == null || isUnchanged(previous, next, partyShopKey(partyId, shopId)))
+                        && plan.getTemplateKeys().stream().noneMatch(templates::contains)) {
+                    next.plans.computeIfAbsent(partyId, key -> new ConcurrentHashMap<>())
+                            .put(shopPlan.getKey(), plan);
+                    carried++;
+                }
+            }
+        }
+        if (previous.globalPlan != null && previous.globalPlan.getTemplateKeys().stream()
+                .noneMatch(templates::contains)) {
+            next.globalPlan = previous.globalPlan;
+        }
+        return carried;
+    }
+
+    private static boolean isUnchanged(Generation previous, Generation next, String referenceKey) {
+        return Objects.equals(previous.references.get(referenceKey), next.references.get(referenceKey))
+                && Objects.equals(previous.groupsOf(referenceKey), next.groupsOf(referenceKey));
+    }
+
+    private static String partyShopKey(String partyId, String shopId) {
+        return ReferenceKeyGenerator.generateTemplateKey(partyId, shopId);
+    }
+
+    private static <T> Map<String, T> copy(Pool<T> pool) {
+        Map<String, T> copy = new HashMap<>();
+        for (String key : pool.keySet()) {
+            T value = pool.get(key);
+            if (value != null) {
+                copy.put(key, value);
+            }
+        }
+        return copy;
+    }
+
+    private static Map<String, String> resolve(
+            Pool<String> pool,
+            Map<String, String> previous,
+            Predicate<String> arrived) {
+        Map<String, String> resolved = copy(pool);
+        resolved.replaceAll((key, target) -> {
+            String previousTarget = previous.get(key);
+            return arrived.test(target) || previousTarget == null || !arrived.test(previousTarget)
+                    ? target
+                    : previousTarget;
+        });
+        return resolved;
+    }
+
+    private EvaluationPlan build(Generation generation, String partyId, String shopId) {
+        EvaluationPlan.EvaluationPlanBuilder builder = EvaluationPlan.builder();
+        addTemplate(generation, builder, generation.references.get(TemplateLevel.GLOBAL.name()));
+        if (partyId != null) {
+            String partyShopKey = shopId != null ? partyShopKey(partyId, shopId) : null;
+            addTemplates(generation, builder, generation.groupsOf(partyId));
+            addTemplates(generation, builder, generation.groupsOf(partyShopKey));
+            addTemplate(generation, builder, generation.references.get(partyId));
+            addTemplate(generation, builder, partyShopKey != null ? generation.references.get(partyShopKey) : null);
+        }
+        EvaluationPlan plan = builder.build();
+        log.debug("EvaluationPlanPool build generation: {} partyId: {} shopId: {} plan: {}",
+                generation.number, partyId, shopId, plan);
+        return plan;
+    }
+
+    private static void addTemplates(
+            Generation generation,
+            EvaluationPlan.EvaluationPlanBuilder builder,
+            List<String> templateKeys) {
+        if (templateKeys != null) {
+            templateKeys.forEach(templateKey -> addTemplate(generation, builder, templateKey));
+        }
+    }
+
+    private static void addTemplate(
+            Generation generation,
+            EvaluationPlan.EvaluationPlanBuilder builder,
+            String templateKey) {
+        Supplier<ParserRuleContext> template = templateKey != null ? generation.templates.get(templateKey) : null;
+        ParserRuleContext context = template != null ? template.get() : null;
+        if (context != null) {
+            builder.templateKey(templateKey).context(context);
+        }
+    }
+
+    private static final class Generation {
+
+        private final long number;
+        private final Map<String, String> references;
+        private final Map<String, List<String>> groups;
+        private final Map<String, String> groupReferences;
+        private final Map<String, Supplier<ParserRuleContext>> templates;
+        private final Map<String, Map<String, EvaluationPlan>> plans = new ConcurrentHashMap<>();
+        private volatile EvaluationPlan globalPlan;
+
+        private Generation(
+                long number,
+                Map<String, String> references,
+                Map<String, List<String>> groups,
+                Map<String, String> groupReferences,
+                Map<String, Supplier<ParserRuleContext>> templates) {
+            this.number = number;
+            this.references = references;
+            this.groups = groups;
+            this.groupReferences = groupReferences;
+            this.templates = templates;
+        }
+
+        List<String> groupsOf(String referenceKey) {
+            String groupId = referenceKey != null ? groupReferences.get(referenceKey) : null;
+            return groupId != null ? groups.get(groupId) : null;
+        }
+
+        boolean isReferenced(String referenceKey) {
+            return referenceKey != null
+                    && (references.containsKey(referenceKey) || groupReferences.containsKey(referenceKey));
+        }
+
+        EvaluationPlan plan(EvaluationPlanPool pool, String partyId, String shopId) {
+            boolean partyReferenced = isReferenced(partyId);
+            boolean shopReferenced = partyId != null && shopId != null && isReferenced(partyShopKey(partyId, shopId));
+            if (!partyReferenced && !shopReferenced) {
+                EvaluationPlan plan = globalPlan;
+                if (plan == null) {
+                    plan = pool.build(this, null, null);
+                    globalPlan = plan;
+                }
+                return plan;
+            }
+            String shopKey = shopReferenced ? shopId : EMPTY_ID;
+            Map<String, EvaluationPlan> partyPlans = plans.computeIfAbsent(partyId, key -> new ConcurrentHashMap<>());
+            EvaluationPlan plan = partyPlans.get(shopKey);
+            if (plan == null) {
+                plan = pool.build(this, partyId, shopReferenced ? shopId : null);
+                EvaluationPlan existing = partyPlans.putIfAbsent(shopKey, plan);
+                return existing != null ? existing : plan;
+            }
+            return plan;
+        }
+
+    }
+
+}
@@ -12,12 +12,20 @@ public interface HistoricalPool<T> extends CheckedMetricPool {
 
     void cleanUntil(String key, Long timestamp);
 
+    /**
+     * Drops the versions older than the timestamp that no lookup at or after it can reach,
+     * looking at no more than limit expired versions. Returns the number of versions looked at.
+     */
+    int expire(long timestamp, int limit);
+
     boolean contains(String key, Long timestamp);
 
     int size();
 
     int deepSize();
 
+    long retainedBytes();
+
     Set<String> keySet();
 
 }
@@ -1,43 +1,91 @@
 package dev.vality.fraudbusters.pool;
 
-import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
+/**
+ * Keeps the versions of every key as an immutable array sorted by timestamp.
+ * Writers build a new array and swap it atomically per key, readers search the array they got without locking.
+ * Every version is also put into an expiry index ordered by timestamp, so retention only visits expired versions.
+ * The number of versions and their estimated size are kept as running totals.
+ */
 @Slf4j
 @ToString
-@RequiredArgsConstructor
 public class HistoricalPoolImpl<T> implements HistoricalPool<T> {
 
-    private final Map<String, TreeMap<Long, T>> references = new ConcurrentHashMap<>();
+    private static final long VERSION_BYTES = 48L;
+
+    private final Map<String, Versions<T>> references = new ConcurrentHashMap<>();
+    @ToString.Exclude
+    private final PriorityBlockingQueue<Expiry> expiryIndex = new PriorityBlockingQueue<>();
+    private final AtomicLong versionCount = new AtomicLong();
+    private final AtomicLong retainedBytes = new AtomicLong();
     private final String poolName;
+    @ToString.Exclude
+    private final Consumer<T> evictionListener;
+    @ToString.Exclude
+    private final ToLongFunction<T> sizeEstimator;
+    @ToString.Exclude
+    private final PoolChangeFeed changeFeed;
+
+    public HistoricalPoolImpl(String poolName) {
+        this(poolName, value -> {
+        });
+    }
+
+    /**
+     * The eviction listener gets every version replaced, removed or cleaned from the pool.
+     */
+    public HistoricalPoolImpl(String poolName, Consumer<T> evictionListener) {
+        this(poolName, evictionListener, value -> 0L);
+    }
+
+    public HistoricalPoolImpl(String poolName, Consumer<T> evictionListener, ToLongFunction<T> sizeEstimator) {
+        this.poolName = poolName;
+        this.evictionListener = evictionListener;
+        this.sizeEstimator = sizeEstimator;
+        this.changeFeed = new PoolChangeFeed(poolName);
+    }
 
     @Override
     public void add(String key, Long timestamp, T value) {
         log.debug("HistoricalPoolImpl add key: {} timestamp: {} value: {}", key, timestamp, value);
-        TreeMap<Long, T> list = references.get(key);
-        if (list == null) {
-            list = new TreeMap<>();
+        List<T> replaced = new ArrayList<>(1);
+        references.compute(key, (ignored, versions) -> {
+            Versions<T> current = versions != null ? versions : Versions.empty();
+            if (current.contains(timestamp)) {
+                replaced.add(current.at(timestamp));
+            }
+            return current.with(timestamp, value);
+        });
+        if (replaced.isEmpty()) {
+            versionCount.incrementAndGet();
+            retainedBytes.addAndGet(VERSION_BYTES);
+            expiryIndex.add(new Expiry(timestamp, key));
         }
-        list.put(timestamp, value);
-        references.put(key, list);
+        retainedBytes.addAndGet(estimate(value));
+        changeFeed.publish(replaced.isEmpty() ? PoolChange.Type.ADD : PoolChange.Type.REPLACE, key, timestamp);
+        evict(replaced, 0);
     }
 
     @Override
     public T get(String key, Long timestamp) {
         T value = null;
         if (key != null && timestamp != null) {
-            TreeMap<Long, T> treeMap = references.get(key);
-            if (treeMap != null && !treeMap.isEmpty()) {
-                Map.Entry<Long, T> greatestLeaf = treeMap.lowerEntry(timestamp);
-                if (greatestLeaf != null) {
-                    value = greatestLeaf.getValue();
-                }
+            Versions<T> versions = references.get(key);
+            if (versions != null) {
+                value = versions.lower(timestamp);
             }
         }
         log.debug("HistoricalPoolImpl get key: {} timestamp: {} value: {}", key, timestamp, value);
@@ -47,28 +95,83 @@ public class HistoricalPoolImpl<T> implements HistoricalPool<T> {
     @Override
     public void remove(String key, Long timestamp) {
         log.debug("HistoricalPoolImpl remove key: {} timestamp: {}", key, timestamp);
+        List<T> removed = new ArrayList<>();
         if (timestamp != null) {
-            references.get(key).remove(timestamp);
+            references.computeIfPresent(key, (ignored, versions) -> {
+                if (!versions.contains(timestamp)) {
+                    return versions;
+                }
+                removed.add(versions.at(timestamp));
+                return versions.without(timestamp).orNull();
+            });
         } else {
-            references.remove(key);
+            Versions<T> versions = references.remove(key);
+            if (versions != null) {
+                versions.collectBefore(versions.size(), removed);
+            }
+        }
+        if (!removed.isEmpty()) {
+            changeFeed.publish(PoolChange.Type.REMOVE, key, timestamp);
         }
+        evict(removed, removed.size());
     }
 
     @Override
     public void cleanUntil(String key, Long timestamp) {
-        boolean until = references.get(key) != null
-                    && references.get(key).lowerEntry(timestamp) != null
-                    && references.get(key).lowerEntry(timestamp).getKey() < timestamp;
-        if (until) {
-            Long nearTimestamp = references.get(key).lowerEntry(timestamp).getKey();
-            references.get(key).remove(nearTimestamp);
-            cleanUntil(key, nearTimestamp);
+        List<T> removed = new ArrayList<>();
+        references.computeIfPresent(key, (ignored, versions) -> {
+            int index = versions.indexOf(timestamp);
+            versions.collectBefore(index, removed);
+            return versions.from(index).orNull();
+        });
+        if (!removed.isEmpty()) {
+            changeFeed.publish(PoolChange.Type.REMOVE, key, timestamp);
+        }
+        evict(removed, removed.size());
+    }
+
+    /**
+     * Takes the expired versions from the index and cleans their keys when the version in effect
+     * at the timestamp is a deleted one, which is what the hourly full scan used to do.
+     * A key whose oldest versions are still in effect is looked at again when a newer version expires.
+     */
+    @Override
+    public int expire(long timestamp, int limit) {
+        int expired = 0;
+        List<T> removed = new ArrayList<>();
+        List<String> cleanedKeys = new ArrayList<>();
+        while (expired < limit) {
+            Expiry expiry = expiryIndex.poll();
+            if (expiry == null) {
+                break;
+            }
+            if (expiry.timestamp >= timestamp) {
+                expiryIndex.add(expiry);
+                break;
+            }
+            expired++;
+            references.computeIfPresent(expiry.key, (ignored, versions) -> {
+                int index = versions.indexOf(timestamp);
+                if (index == 0 || versions.valueAt(index - 1) != null) {
+                    return versions;
+                }
+                versions.collectBefore(index, removed);
+                cleanedKeys.add(expiry.key);
+                return versions.from(index).orNull();
+            });
+        }
+        cleanedKeys.forEach(key -> changeFeed.publish(PoolChange.Type.REMOVE, key, timestamp));
+        evict(removed, removed.size());
+        if (!removed.isEmpty()) {
+            log.debug("HistoricalPoolImpl pool: {} expired versions: {}", poolName, removed.size());
         }
+        return expired;
     }
 
     @Override
     public boolean contains(String key, Long timestamp) {
-        return references.containsKey(key) && references.get(key) != null && references.get(key).containsKey(timestamp);
+        Versions<T> versions = references.get(key);
+        return versions != null && versions.contains(timestamp);
     }
 
     @Override
@@ -78,10 +181,12 @@ public class HistoricalPoolImpl<T> implements HistoricalPool<T> {
 
     @Override
     public int deepSize() {
-        return references.values().stream()
-                .map(TreeMap::size)
-                .mapToInt(Integer::intValue)
-                .sum();
+        return (int) versionCount.get();
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes.get();
     }
 
     @Override
@@ -94,4 +199,159 @@ public class HistoricalPoolImpl<T> implements HistoricalPool<T> {
         return poolName;
     }
 
+    @Override
+    public PoolChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    private long estimate(T value) {
+        return value != null ? sizeEstimator.applyAsLong(value) : 0L;
+    }
+
+    private void evict(List<T> values, int droppedVersions) {
+        versionCount.addAndGet(-droppedVersions);
+        long bytes = droppedVersions * VERSION_BYTES;
+        for (T value : values) {
+            if (value != null) {
+                bytes += estimate(value);
+                evictionListener.accept(value);
+            }
+        }
+        retainedBytes.addAndGet(-bytes);
+    }
+
+    private static final class Expiry implements Comparable<Expiry> {
+
+        private final long timestamp;
+        private final String key;
+
+        private Expiry(long timestamp, String key) {
+            this.timestamp = timestamp;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return Long.compare(timestamp, other.timestamp);
+        }
+
+    }
+
+    private static final class Versions<T> {
+
+        private static final Versions<?> EMPTY = new Versions<>(new long[0], new Object[0]);
+
+        private final long[] timestamps;
+        private final Object[] values;
+
+        private Versions(long[] timestamps, Object[] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Versions<T> empty() {
+            return (Versions<T>) EMPTY;
+        }
+
+        int size() {
+            return timestamps.length;
+        }
+
+        Versions<T> orNull() {
+            return timestamps.length > 0 ? this : null;
+        }
+
+        boolean contains(long timestamp) {
+            return Arrays.binarySearch(timestamps, timestamp) >= 0;
+        }
+
+        /**
+         * Returns the number of versions with a timestamp lower than the given one.
+         */
+        int indexOf(long timestamp) {
+            int position = Arrays.binarySearch(timestamps, timestamp);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T valueAt(int index) {
+            return (T) values[index];
+        }
+
+        T at(long timestamp) {
+            int index = Arrays.binarySearch(timestamps, timestamp);
+            return index >= 0 ? valueAt(index) : null;
+        }
+
+        /**
+         * Adds the values of the first count versions.
+         */
+        void collectBefore(int count, List<T> target) {
+            for (int i = 0; i < count; i++) {
+                target.add(valueAt(i));
+            }
+        }
+
+        /**
+         * Returns the value of the greatest timestamp strictly lower than the given one.
+         */
+        T lower(long timestamp) {
+            int index = indexOf(timestamp) - 1;
+            return index >= 0 ? valueAt(index) : null;
+        }
+
+        Versions<T> with(long timestamp, T value) {
+            int position = Arrays.binarySearch(timestamps, timestamp);
+            if (position >= 0) {
+                Object[] newValues = values.clone();
+                newValues[position] = value;
+                return new Versions<>(timestamps, newValues);
+            }
+            int index = -position - 1;
+            long[] newTimestamps = new long[timestamps.length + 1];
+            Object[] newValues = new Object[values.length + 1];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            newTimestamps[index] = timestamp;
+            newValues[index] = value;
+            System.arraycopy(timestamps, index, newTimestamps, index + 1, timestamps.length - index);
+            System.arraycopy(values, index, newValues, index + 1, values.length - index);
+            return new Versions<>(newTimestamps, newValues);
+        }
+
+        Versions<T> without(long timestamp) {
+            int index = Arrays.binarySearch(timestamps, timestamp);
+            if (index < 0) {
+                return this;
+            }
+            long[] newTimestamps = new long[timestamps.length - 1];
+            Object[] newValues = new Object[values.length - 1];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(timestamps, index + 1, newTimestamps, index, timestamps.length - index - 1);
+            System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+            return new Versions<>(newTimestamps, newValues);
+        }
+
+        /**
+         * Drops the first index versions.
+         */
+        Versions<T> from(int index) {
+            if (index == 0) {
+                return this;
+            }
+            return new Versions<>(
+                    Arrays.copyOfRange(timestamps, index, timestamps.length),
+                    Arrays.copyOfRange(values, index, values.length)
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "Versions(size=" + timestamps.length + ")";
+        }
+
+    }
+
 }
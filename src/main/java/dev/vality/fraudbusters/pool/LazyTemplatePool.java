@@ -0,0 +1,190 @@
+package dev.vality.fraudbusters.pool;
+
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Pool of parsed templates that can keep the raw source of a template and parse it on first use.
+ * A source replaced by a newer version before anyone asked for it is never parsed.
+ * A source that fails to load is retried on later requests with an exponential backoff.
+ * The eviction listener gets every parsed template dropped from the pool, including one parsed
+ * for a source that was replaced while it was loading.
+ */
+@Slf4j
+public class LazyTemplatePool implements Pool<ParsedTemplate> {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final String poolName;
+    private final BiFunction<String, String, ParsedTemplate> loader;
+    private final Consumer<ParsedTemplate> evictionListener;
+    private final Consumer<String> failureListener;
+    private final Duration retryInterval;
+    private final Duration maxRetryInterval;
+    private final Clock clock;
+    private final PoolChangeFeed changeFeed;
+
+    public LazyTemplatePool(String poolName, BiFunction<String, String, ParsedTemplate> loader) {
+        this(poolName, loader, parsedTemplate -> {
+        }, key -> {
+        }, Duration.ofSeconds(1), Duration.ofMinutes(5), Clock.systemUTC());
+    }
+
+    public LazyTemplatePool(
+            String poolName,
+            BiFunction<String, String, ParsedTemplate> loader,
+            Consumer<ParsedTemplate> evictionListener,
+            Consumer<String> failureListener,
+            Duration retryInterval,
+            Duration maxRetryInterval,
+            Clock clock) {
+        this.poolName = poolName;
+        this.loader = loader;
+        this.evictionListener = evictionListener;
+        this.failureListener = failureListener;
+        this.retryInterval = retryInterval;
+        this.maxRetryInterval = maxRetryInterval;
+        this.clock = clock;
+        this.changeFeed = new PoolChangeFeed(poolName);
+    }
+
+    public void addSource(String key, String source) {
+        put(key, new Entry(source, null));
+    }
+
+    @Override
+    public void add(String key, ParsedTemplate parsedTemplate) {
+        put(key, new Entry(null, parsedTemplate));
+    }
+
+    @Override
+    public ParsedTemplate get(String key) {
+        Entry entry = key != null ? entries.get(key) : null;
+        return entry != null ? entry.get(key) : null;
+    }
+
+    @Override
+    public void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            changeFeed.publish(PoolChange.Type.REMOVE, key, null);
+            removed.evict();
+        }
+    }
+
+    /**
+     * The suppliers parse the source they were taken with on first use, even if it has been replaced since.
+     */
+    @Override
+    public Map<String, Supplier<ParsedTemplate>> snapshot() {
+        Map<String, Supplier<ParsedTemplate>> snapshot = new HashMap<>();
+        entries.forEach((key, entry) -> snapshot.put(key, () -> entry.get(key)));
+        return snapshot;
+    }
+
+    /**
+     * Returns the keys of the templates that are stored as source and have not been parsed yet.
+     */
+    public Set<String> pendingKeys() {
+        return entries.entrySet().stream()
+                .filter(entry -> entry.getValue().isPending())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return entries.keySet();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String getName() {
+        return poolName;
+    }
+
+    @Override
+    public PoolChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    private void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        changeFeed.publish(previous != null ? PoolChange.Type.REPLACE : PoolChange.Type.ADD, key, null);
+        if (previous != null) {
+            previous.evict();
+        }
+    }
+
+    private long backoff(int failures) {
+        long interval = retryInterval.toMillis() << Math.min(failures - 1, 30);
+        return Math.min(interval, maxRetryInterval.toMillis());
+    }
+
+    private final class Entry {
+
+        private final String source;
+        private volatile ParsedTemplate value;
+        private volatile int failures;
+        private volatile long retryAt;
+        private boolean evicted;
+
+        private Entry(String source, ParsedTemplate value) {
+            this.source = source;
+            this.value = value;
+        }
+
+        boolean isPending() {
+            return value == null && failures == 0;
+        }
+
+        ParsedTemplate get(String key) {
+            ParsedTemplate result = value;
+            if (result != null || clock.millis() < retryAt) {
+                return result;
+            }
+            synchronized (this) {
+                if (value == null && clock.millis() >= retryAt) {
+                    try {
+                        ParsedTemplate loaded = loader.apply(key, source);
+                        if (evicted) {
+                            evictionListener.accept(loaded);
+                            return loaded;
+                        }
+                        value = loaded;
+                    } catch (RuntimeException e) {
+                        failures++;
+                        retryAt = clock.millis() + backoff(failures);
+                        log.error("LazyTemplatePool failed to load template key: {} failures: {} e: ",
+                                key, failures, e);
+                        failureListener.accept(key);
+                    }
+                }
+                return value;
+            }
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            if (value != null) {
+                evictionListener.accept(value);
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,10 @@
 package dev.vality.fraudbusters.pool;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
 public interface Pool<T> extends CheckedMetricPool {
 
     void add(String key, T parseContext);
@@ -8,4 +13,20 @@ public interface Pool<T> extends CheckedMetricPool {
 
     void remove(String key);
 
+    Set<String> keySet();
+
+    /**
+     * Returns every key of the pool with a supplier of the value stored under it at the time of the call.
+     */
+    default Map<String, Supplier<T>> snapshot() {
+        Map<String, Supplier<T>> snapshot = new HashMap<>();
+        for (String key : keySet()) {
+            T value = get(key);
+            if (value != null) {
+                snapshot.put(key, () -> value);
+            }
+        }
+        return snapshot;
+    }
+
 }
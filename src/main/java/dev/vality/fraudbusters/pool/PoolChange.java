@@ -0,0 +1,29 @@
+package dev.vality.fraudbusters.pool;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A change of one key of a pool. The timestamp is the version of the key for the historical pools,
+ * the generation numbers the changes of the pool in the order they were made.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class PoolChange {
+
+    public enum Type {
+        ADD,
+        REPLACE,
+        REMOVE
+    }
+
+    private final String poolName;
+    private final Type type;
+    private final String key;
+    private final Long timestamp;
+    private final long generation;
+    private final long createdAt;
+
+}
@@ -0,0 +1,47 @@
+package dev.vality.fraudbusters.pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passes the changes of a pool to its subscribers on the thread that made the change.
+ * A failing subscriber is logged and does not affect the pool or the other subscribers.
+ */
+@Slf4j
+public class PoolChangeFeed {
+
+    private final String poolName;
+    private final List<PoolChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public PoolChangeFeed(String poolName) {
+        this.poolName = poolName;
+    }
+
+    public void subscribe(PoolChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void publish(PoolChange.Type type, String key, Long timestamp) {
+        long number = generation.incrementAndGet();
+        if (listeners.isEmpty()) {
+            return;
+        }
+        PoolChange change = new PoolChange(poolName, type, key, timestamp, number, System.currentTimeMillis());
+        for (PoolChangeListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                log.warn("PoolChangeFeed pool: {} listener failed on change: {} e: ", poolName, change, e);
+            }
+        }
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+}
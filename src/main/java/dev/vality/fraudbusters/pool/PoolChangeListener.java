@@ -0,0 +1,7 @@
+package dev.vality.fraudbusters.pool;
+
+public interface PoolChangeListener {
+
+    void onChange(PoolChange change);
+
+}
@@ -1,22 +1,42 @@
 package dev.vality.fraudbusters.pool;
 
-import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @ToString
-@RequiredArgsConstructor
 public class PoolImpl<T> implements Pool<T> {
 
     private final Map<String, T> map = new ConcurrentHashMap<>();
 
     private final String poolName;
+    @ToString.Exclude
+    private final Consumer<T> evictionListener;
+    @ToString.Exclude
+    private final PoolChangeFeed changeFeed;
+
+    public PoolImpl(String poolName) {
+        this(poolName, value -> {
+        });
+    }
+
+    /**
+     * The eviction listener gets every value replaced or removed from the pool.
+     */
+    public PoolImpl(String poolName, Consumer<T> evictionListener) {
+        this.poolName = poolName;
+        this.evictionListener = evictionListener;
+        this.changeFeed = new PoolChangeFeed(poolName);
+    }
 
     @Override
     public void add(String key, T reference) {
-        map.put(key, reference);
+        T previous = map.put(key, reference);
+        changeFeed.publish(previous != null ? PoolChange.Type.REPLACE : PoolChange.Type.ADD, key, null);
+        evict(previous);
     }
 
     @Override
@@ -26,7 +46,16 @@ public class PoolImpl<T> implements Pool<T> {
 
     @Override
     public void remove(String key) {
-        map.remove(key);
+        T removed = map.remove(key);
+        if (removed != null) {
+            changeFeed.publish(PoolChange.Type.REMOVE, key, null);
+        }
+        evict(removed);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return map.keySet();
     }
 
     @Override
@@ -38,4 +67,15 @@ public class PoolImpl<T> implements Pool<T> {
     public String getName() {
         return poolName;
     }
+
+    @Override
+    public PoolChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    private void evict(T value) {
+        if (value != null) {
+            evictionListener.accept(value);
+        }
+    }
 }
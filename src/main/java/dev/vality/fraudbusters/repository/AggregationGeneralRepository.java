@@ -1,5 +1,6 @@
 package dev.vality.fraudbusters.repository;
 
+import dev.vality.fraudbusters.domain.AggregateWindow;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
 
 import java.util.List;
@@ -28,4 +29,8 @@ public interface AggregationGeneralRepository {
             String table, String fieldNameBy, Object value, String fieldNameCount,
             Long from, Long to, List<FieldModel> fieldModels);
 
+    List<Long> aggregateWindows(
+            String table, String fieldName, Object value, List<FieldModel> fieldModels,
+            List<AggregateWindow> windows);
+
 }
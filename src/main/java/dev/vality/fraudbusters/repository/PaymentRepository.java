@@ -1,7 +1,9 @@
 package dev.vality.fraudbusters.repository;
 
+import dev.vality.fraudbusters.domain.AggregateWindow;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface PaymentRepository extends AggregationRepository {
@@ -57,4 +59,53 @@ public interface PaymentRepository extends AggregationRepository {
             Long to,
             List<FieldModel> fieldModels);
 
+    /**
+     * Computes several windows and status variants of one key, results are returned in the order of windows.
+     * Implementations backed by ClickHouse answer it with a single scan.
+     */
+    default List<Long> aggregateWindows(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        return windows.stream()
+                .map(window -> aggregateWindow(fieldName, value, fieldModels, window))
+                .toList();
+    }
+
+    /**
+     * Computes windows of several values of one field, the window at every index is computed for the value
+     * at the same index and filtered by its own grouping fields. Results are returned in the order of windows.
+     * Implementations backed by ClickHouse answer it with a single scan grouped by the field.
+     */
+    default List<Long> aggregateValueWindows(String fieldName, List<Object> values, List<AggregateWindow> windows) {
+        List<Long> results = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            AggregateWindow window = windows.get(i);
+            results.add(aggregateWindow(fieldName, values.get(i), window.getGroupingFields(), window));
+        }
+        return results;
+    }
+
+    private Long aggregateWindow(String fieldName, Object value, List<FieldModel> fieldModels, AggregateWindow window) {
+        Long from = window.getFrom();
+        Long to = window.getTo();
+        return switch (window.getType()) {
+            case COUNT -> countOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels).longValue();
+            case COUNT_SUCCESS -> countOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels).longValue();
+            case COUNT_PENDING -> countOperationPendingWithGroupBy(fieldName, value, from, to, fieldModels).longValue();
+            case COUNT_ERROR -> (window.getErrorCode() != null
+                    ? countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, window.getErrorCode())
+                    : countOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels)).longValue();
+            case SUM -> sumOperationByFieldWithGroupBy(fieldName, value, from, to, fieldModels);
+            case SUM_SUCCESS -> sumOperationSuccessWithGroupBy(fieldName, value, from, to, fieldModels);
+            case SUM_ERROR -> window.getErrorCode() != null
+                    ? sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels, window.getErrorCode())
+                    : sumOperationErrorWithGroupBy(fieldName, value, from, to, fieldModels);
+            case UNIQUE -> uniqCountOperationWithGroupBy(fieldName, value, window.getOnField(), from, to, fieldModels)
+                    .longValue();
+            default -> throw new IllegalArgumentException("Unsupported window type: " + window.getType());
+        };
+    }
+
 }
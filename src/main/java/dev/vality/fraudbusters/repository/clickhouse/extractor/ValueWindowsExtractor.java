@@ -0,0 +1,31 @@
+package dev.vality.fraudbusters.repository.clickhouse.extractor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ValueWindowsExtractor implements ResultSetExtractor<Map<String, List<Long>>> {
+
+    private final int windowsCount;
+
+    @Override
+    public Map<String, List<Long>> extractData(ResultSet rs) throws SQLException, DataAccessException {
+        Map<String, List<Long>> results = new HashMap<>();
+        while (rs.next()) {
+            List<Long> windows = new ArrayList<>(windowsCount);
+            for (int i = 0; i < windowsCount; i++) {
+                windows.add(rs.getLong(WindowsExtractor.WINDOW_COLUMN + i));
+            }
+            results.put(rs.getString(1), windows);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,28 @@
+package dev.vality.fraudbusters.repository.clickhouse.extractor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class WindowsExtractor implements ResultSetExtractor<List<Long>> {
+
+    public static final String WINDOW_COLUMN = "w";
+
+    private final int windowsCount;
+
+    @Override
+    public List<Long> extractData(ResultSet rs) throws SQLException, DataAccessException {
+        boolean hasRow = rs.next();
+        List<Long> results = new ArrayList<>(windowsCount);
+        for (int i = 0; i < windowsCount; i++) {
+            results.add(hasRow ? rs.getLong(WINDOW_COLUMN + i) : 0L);
+        }
+        return results;
+    }
+}
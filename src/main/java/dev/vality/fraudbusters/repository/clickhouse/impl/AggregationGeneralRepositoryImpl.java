@@ -1,12 +1,16 @@
 package dev.vality.fraudbusters.repository.clickhouse.impl;
 
+import dev.vality.fraudbusters.domain.AggregateWindow;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
 import dev.vality.fraudbusters.repository.AggregationGeneralRepository;
 import dev.vality.fraudbusters.repository.clickhouse.extractor.CountExtractor;
 import dev.vality.fraudbusters.repository.clickhouse.extractor.SumExtractor;
+import dev.vality.fraudbusters.repository.clickhouse.extractor.WindowsExtractor;
 import dev.vality.fraudbusters.repository.clickhouse.util.AggregationUtil;
+import dev.vality.fraudbusters.repository.clickhouse.util.EntityTableUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
@@ -19,6 +23,12 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
 
     private final JdbcTemplate jdbcTemplate;
 
+    /**
+     * Switched on only after the entity tables have been created and backfilled.
+     */
+    @Value("${clickhouse.entity-tables.enabled:false}")
+    private boolean entityTablesEnabled;
+
     @Override
     public Integer countOperationByField(String table, String fieldName, Object value, Long from, Long to) {
         String sql = String.format("""
@@ -29,7 +39,7 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
                 and eventTime >= ?
                 and eventTime <= ?
                 and %1$s = ?
-                group by %1$s""", fieldName, table);
+                group by %1$s""", fieldName, entityTable(table, fieldName, null));
         List<Object> params = AggregationUtil.generateParams(from, to, value);
         log.debug("AggregationGeneralRepositoryImpl countOperationByField sql: {} params: {}", sql, params);
         return jdbcTemplate.query(sql, params.toArray(), new CountExtractor());
@@ -48,7 +58,7 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ?""", fieldName, table));
+                and %1$s = ?""", fieldName, entityTable(table, fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format(" group by %1$s ", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         String sqlResult = resultSql.toString();
@@ -73,7 +83,7 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ?""", fieldName, table));
+                and %1$s = ?""", fieldName, entityTable(table, fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
 
@@ -102,7 +112,7 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
                 and eventTime >= ?
                 and eventTime <= ?
                 and %1$s = ?
-                group by %1$s""", fieldNameBy, fieldNameCount, table);
+                group by %1$s""", fieldNameBy, fieldNameCount, entityTable(table, fieldNameBy, null, fieldNameCount));
         List<Object> params = AggregationUtil.generateParams(from, to, value);
         log.debug("AggregationGeneralRepositoryImpl uniqCountOperation sql: {} params: {}", sql, params);
         return jdbcTemplate.query(sql, params.toArray(), new CountExtractor());
@@ -119,7 +129,11 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ?""", fieldNameBy, fieldNameCount, table));
+                and %1$s = ?""",
+                fieldNameBy,
+                fieldNameCount,
+                entityTable(table, fieldNameBy, fieldModels, fieldNameCount)
+        ));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldNameBy));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         List<Object> params = AggregationUtil.generateParams(from, to, fieldModels, value);
@@ -132,4 +146,31 @@ public class AggregationGeneralRepositoryImpl implements AggregationGeneralRepos
         return jdbcTemplate.query(sqlResult, params.toArray(), new CountExtractor());
     }
 
+    @Override
+    public List<Long> aggregateWindows(
+            String table, String fieldName, Object value, List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        String sql = AggregationUtil.buildWindowsQuery(
+                entityTable(table, fieldName, fieldModels, windows),
+                fieldName,
+                fieldModels,
+                windows
+        );
+        List<Object> params = AggregationUtil.generateWindowsParams(value, fieldModels, windows);
+        log.debug("AggregationGeneralRepositoryImpl aggregateWindows sql: {} params: {}", sql, params);
+        return jdbcTemplate.query(sql, params.toArray(), new WindowsExtractor(windows.size()));
+    }
+
+    private String entityTable(String table, String fieldName, List<FieldModel> fieldModels, String... columns) {
+        return entityTablesEnabled ? EntityTableUtil.resolveTable(table, fieldName, fieldModels, columns) : table;
+    }
+
+    private String entityTable(
+            String table,
+            String fieldName,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        return entityTablesEnabled ? EntityTableUtil.resolveTable(table, fieldName, fieldModels, windows) : table;
+    }
+
 }
@@ -34,7 +34,7 @@ public class ChargebackRepository implements Repository<Chargeback>, Aggregation
     );
 
     private final AggregationStatusGeneralRepositoryImpl aggregationStatusGeneralRepository;
-    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate ingestionJdbcTemplate;
     private final PaymentTypeByContextResolver paymentTypeByContextResolver;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final ChargebackMapper chargebackMapper;
@@ -49,7 +49,7 @@ public class ChargebackRepository implements Repository<Chargeback>, Aggregation
     public void insertBatch(List<Chargeback> batch) {
         if (batch != null && !batch.isEmpty()) {
             log.debug("ChargebackRepository insertBatch batch: {}", batch);
-            jdbcTemplate.batchUpdate(
+            ingestionJdbcTemplate.batchUpdate(
                     INSERT,
                     new ChargebackBatchPreparedStatementSetter(batch, paymentTypeByContextResolver));
         }
@@ -59,7 +59,7 @@ public class FraudPaymentRepository implements Repository<FraudPaymentRow>, Aggr
                     VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""",
             EventSource.FRAUD_EVENTS_FRAUD_PAYMENT.getTable());
     private final AggregationStatusGeneralRepositoryImpl aggregationStatusGeneralRepository;
-    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate ingestionJdbcTemplate;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final FraudPaymentRowMapper fraudPaymentRowMapper;
 
@@ -72,7 +72,7 @@ public class FraudPaymentRepository implements Repository<FraudPaymentRow>, Aggr
     public void insertBatch(List<FraudPaymentRow> payments) {
         log.debug("FraudPaymentRepository insertBatch payments: {}", payments);
         if (!CollectionUtils.isEmpty(payments)) {
-            jdbcTemplate.batchUpdate(INSERT, new FraudPaymentBatchPreparedStatementSetter(payments));
+            ingestionJdbcTemplate.batchUpdate(INSERT, new FraudPaymentBatchPreparedStatementSetter(payments));
         }
     }
 
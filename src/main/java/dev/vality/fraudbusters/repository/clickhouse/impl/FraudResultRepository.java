@@ -36,6 +36,7 @@ public class FraudResultRepository implements Repository<Event>, PaymentReposito
 
     private final AggregationGeneralRepository aggregationGeneralRepository;
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate ingestionJdbcTemplate;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final EventMapper eventMapper;
 
@@ -56,7 +57,7 @@ public class FraudResultRepository implements Repository<Event>, PaymentReposito
     public void insertBatch(List<Event> events) {
         log.debug("EventRepository insertBatch events: {}", events);
         if (events != null && !events.isEmpty()) {
-            jdbcTemplate.batchUpdate(
+            ingestionJdbcTemplate.batchUpdate(
                     EventBatchPreparedStatementSetter.INSERT,
                     new EventBatchPreparedStatementSetter(events)
             );
@@ -2,28 +2,39 @@ package dev.vality.fraudbusters.repository.clickhouse.impl;
 
 import dev.vality.fraudbusters.constant.EventSource;
 import dev.vality.fraudbusters.constant.PaymentStatus;
+import dev.vality.fraudbusters.domain.AggregateWindow;
 import dev.vality.fraudbusters.domain.CheckedPayment;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
 import dev.vality.fraudbusters.repository.PaymentRepository;
 import dev.vality.fraudbusters.repository.Repository;
 import dev.vality.fraudbusters.repository.clickhouse.extractor.CountExtractor;
 import dev.vality.fraudbusters.repository.clickhouse.extractor.SumExtractor;
+import dev.vality.fraudbusters.repository.clickhouse.extractor.ValueWindowsExtractor;
+import dev.vality.fraudbusters.repository.clickhouse.extractor.WindowsExtractor;
 import dev.vality.fraudbusters.repository.clickhouse.mapper.CheckedPaymentMapper;
 import dev.vality.fraudbusters.repository.clickhouse.query.PaymentQuery;
 import dev.vality.fraudbusters.repository.clickhouse.setter.PaymentBatchPreparedStatementSetter;
 import dev.vality.fraudbusters.repository.clickhouse.util.AggregationUtil;
+import dev.vality.fraudbusters.repository.clickhouse.util.EntityTableUtil;
 import dev.vality.fraudbusters.repository.clickhouse.util.FilterUtil;
+import dev.vality.fraudbusters.repository.clickhouse.util.RollupUtil;
 import dev.vality.fraudbusters.service.dto.FilterDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Primary
@@ -40,9 +51,21 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
             PaymentBatchPreparedStatementSetter.FIELDS_MARK
     );
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate ingestionJdbcTemplate;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final CheckedPaymentMapper checkedPaymentMapper;
 
+    /**
+     * Switched on only after the hourly rollup has been created and backfilled.
+     */
+    @Value("${clickhouse.rollup.enabled:false}")
+    private boolean rollupEnabled;
+    /**
+     * Switched on only after the entity tables have been created and backfilled.
+     */
+    @Value("${clickhouse.entity-tables.enabled:false}")
+    private boolean entityTablesEnabled;
+
     @Override
     public void insert(CheckedPayment payment) {
         throw new UnsupportedOperationException("Method insert is not support!");
@@ -52,7 +75,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
     public void insertBatch(List<CheckedPayment> batch) {
         if (batch != null && !batch.isEmpty()) {
             log.debug("PaymentRepository insertBatch batch: {}", batch);
-            jdbcTemplate.batchUpdate(INSERT, new PaymentBatchPreparedStatementSetter(batch));
+            ingestionJdbcTemplate.batchUpdate(INSERT, new PaymentBatchPreparedStatementSetter(batch));
         }
     }
 
@@ -66,6 +89,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
 
     @Override
     public Integer countOperationByField(String fieldName, Object value, Long from, Long to) {
+        if (isRollupCovered(fieldName, from, to, null)) {
+            return queryRollup(
+                    RollupUtil.COUNT, fieldName, value, from, to,
+                    AggregationUtil.getFinalStatuses(), new CountExtractor()
+            );
+        }
         String sql = String.format("""
                 select %1$s, count() as cnt
                 from %2$s
@@ -74,7 +103,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and eventTime >= ?
                 and eventTime <= ?
                 and %1$s = ?  and status in (?, ?, ?)
-                group by %1$s""", fieldName, TABLE);
+                group by %1$s""", fieldName, entityTable(fieldName, null));
         List<Object> params =
                 AggregationUtil.generateStatusesParams(from, to, value, AggregationUtil.getFinalStatuses());
         log.debug("AggregationGeneralRepositoryImpl countOperationByField sql: {} params: {}", sql, params);
@@ -88,6 +117,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
             Long from,
             Long to,
             List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.COUNT, fieldName, value, from, to,
+                    AggregationUtil.getFinalStatuses(), new CountExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                 select %1$s, count() as cnt
                 from %2$s
@@ -95,7 +130,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ? and status in (?, ?, ?)""", fieldName, EventSource.FRAUD_EVENTS_PAYMENT.getTable()));
+                and %1$s = ? and status in (?, ?, ?)""", fieldName, entityTable(fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         List<Object> params = AggregationUtil.generateStatusesParams(from, to, fieldModels, value,
@@ -111,6 +146,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
             Long from,
             Long to,
             List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.SUM, fieldName, value, from, to,
+                    AggregationUtil.getFinalStatuses(), new SumExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                 select %1$s, sum(amount) as sum
                 from %2$s
@@ -118,7 +159,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ? and status in (?, ?, ?) """, fieldName, EventSource.FRAUD_EVENTS_PAYMENT.getTable()));
+                and %1$s = ? and status in (?, ?, ?) """, fieldName, entityTable(fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         List<Object> params =
@@ -138,7 +179,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and eventTime >= ?
                 and eventTime <= ?
                 and %1$s = ? and status in (?,?,?)
-                group by %1$s""", fieldNameBy, fieldNameCount, TABLE);
+                group by %1$s""", fieldNameBy, fieldNameCount, entityTable(fieldNameBy, null, fieldNameCount));
         List<Object> params =
                 AggregationUtil.generateStatusesParams(from, to, value, AggregationUtil.getFinalStatuses());
         log.debug("AggregationGeneralRepositoryImpl uniqCountOperation sql: {} params: {}", sql, params);
@@ -159,7 +200,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                         and %1$s = ?  and status in (?,?,?)""",
                 fieldNameBy,
                 fieldNameCount,
-                EventSource.FRAUD_EVENTS_PAYMENT.getTable()
+                entityTable(fieldNameBy, fieldModels, fieldNameCount)
         ));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldNameBy));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
@@ -175,6 +216,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
     public Integer countOperationSuccessWithGroupBy(
             String fieldName, Object value, Long from, Long to,
             List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.COUNT, fieldName, value, from, to,
+                    List.of(PaymentStatus.captured.name()), new CountExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                 select %1$s, count() as cnt
                 from %2$s
@@ -182,7 +229,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ? and status = ?""", fieldName, EventSource.FRAUD_EVENTS_PAYMENT.getTable()));
+                and %1$s = ? and status = ?""", fieldName, entityTable(fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         List<Object> params =
@@ -194,6 +241,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
     @Override
     public Integer countOperationPendingWithGroupBy(String fieldName, Object value, Long from, Long to,
                                                     List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.COUNT, fieldName, value, from, to,
+                    List.of(PaymentStatus.pending.name()), new CountExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                 select %1$s, count() as cnt
                 from %2$s
@@ -201,7 +254,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ? and status = ?""", fieldName, EventSource.FRAUD_EVENTS_PAYMENT.getTable()));
+                and %1$s = ? and status = ?""", fieldName, entityTable(fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         List<Object> params =
@@ -226,7 +279,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                         and eventTime <= ?
                         and %1$s = ? and status = ? and errorCode = ?""",
                 fieldName,
-                EventSource.FRAUD_EVENTS_PAYMENT.getTable()
+                entityTable(fieldName, fieldModels)
         ));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
@@ -242,6 +295,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                                                   Long from,
                                                   Long to,
                                                   List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.COUNT, fieldName, value, from, to,
+                    List.of(PaymentStatus.failed.name()), new CountExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                         select %1$s, count() as cnt
                         from %2$s
@@ -251,7 +310,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                         and eventTime <= ?
                         and %1$s = ? and status = ?""",
                 fieldName,
-                EventSource.FRAUD_EVENTS_PAYMENT.getTable()
+                entityTable(fieldName, fieldModels)
         ));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
@@ -265,6 +324,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
     public Long sumOperationSuccessWithGroupBy(
             String fieldName, Object value, Long from, Long to,
             List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.SUM, fieldName, value, from, to,
+                    List.of(PaymentStatus.captured.name()), new SumExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                 select %1$s, sum(amount) as sum
                 from %2$s
@@ -272,7 +337,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                 and timestamp <= ?
                 and eventTime >= ?
                 and eventTime <= ?
-                and %1$s = ? and status = ?""", fieldName, EventSource.FRAUD_EVENTS_PAYMENT.getTable()));
+                and %1$s = ? and status = ?""", fieldName, entityTable(fieldName, fieldModels)));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
         List<Object> params =
@@ -297,7 +362,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                         and eventTime <= ?
                         and %1$s = ? and status = ? and errorCode = ?""",
                 fieldName,
-                EventSource.FRAUD_EVENTS_PAYMENT.getTable()
+                entityTable(fieldName, fieldModels)
         ));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
@@ -313,6 +378,12 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                                              Long from,
                                              Long to,
                                              List<FieldModel> fieldModels) {
+        if (isRollupCovered(fieldName, from, to, fieldModels)) {
+            return queryRollup(
+                    RollupUtil.SUM, fieldName, value, from, to,
+                    List.of(PaymentStatus.failed.name()), new SumExtractor()
+            );
+        }
         StringBuilder sql = new StringBuilder(String.format("""
                         select %1$s, sum(amount) as sum
                         from %2$s
@@ -322,7 +393,7 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
                         and eventTime <= ?
                         and %1$s = ? and status = ?""",
                 fieldName,
-                EventSource.FRAUD_EVENTS_PAYMENT.getTable()
+                entityTable(fieldName, fieldModels)
         ));
         StringBuilder sqlGroupBy = new StringBuilder(String.format("group by %1$s", fieldName));
         StringBuilder resultSql = AggregationUtil.appendGroupingFields(fieldModels, sql, sqlGroupBy);
@@ -332,4 +403,71 @@ public class PaymentRepositoryImpl implements Repository<CheckedPayment>, Paymen
         return jdbcTemplate.query(resultSql.toString(), params.toArray(), new SumExtractor());
     }
 
+    @Override
+    public List<Long> aggregateWindows(
+            String fieldName,
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        String sql = AggregationUtil.buildWindowsQuery(
+                entityTable(fieldName, fieldModels, windows),
+                fieldName,
+                fieldModels,
+                windows
+        );
+        List<Object> params = AggregationUtil.generateWindowsParams(value, fieldModels, windows);
+        log.debug("PaymentRepositoryImpl aggregateWindows sql: {} params: {}", sql, params);
+        return jdbcTemplate.query(sql, params.toArray(), new WindowsExtractor(windows.size()));
+    }
+
+    @Override
+    public List<Long> aggregateValueWindows(String fieldName, List<Object> values, List<AggregateWindow> windows) {
+        List<Object> distinctValues = values.stream().distinct().toList();
+        Map<AggregateWindow, Integer> columns = new LinkedHashMap<>();
+        windows.forEach(window -> columns.putIfAbsent(window, columns.size()));
+        List<AggregateWindow> distinctWindows = new ArrayList<>(columns.keySet());
+        String sql = AggregationUtil.buildValueWindowsQuery(
+                entityTable(fieldName, null, distinctWindows),
+                fieldName,
+                distinctValues.size(),
+                distinctWindows
+        );
+        List<Object> params = AggregationUtil.generateValueWindowsParams(distinctValues, distinctWindows);
+        log.debug("PaymentRepositoryImpl aggregateValueWindows sql: {} params: {}", sql, params);
+        Map<String, List<Long>> rows =
+                jdbcTemplate.query(sql, params.toArray(), new ValueWindowsExtractor(distinctWindows.size()));
+        List<Long> results = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            List<Long> row = rows != null ? rows.get(String.valueOf(values.get(i))) : null;
+            results.add(row != null ? row.get(columns.get(windows.get(i))) : 0L);
+        }
+        return results;
+    }
+
+    private boolean isRollupCovered(String fieldName, Long from, Long to, List<FieldModel> fieldModels) {
+        return rollupEnabled && CollectionUtils.isEmpty(fieldModels) && RollupUtil.isCovered(fieldName, from, to);
+    }
+
+    private String entityTable(String fieldName, List<FieldModel> fieldModels, String... columns) {
+        return entityTablesEnabled ? EntityTableUtil.resolveTable(TABLE, fieldName, fieldModels, columns) : TABLE;
+    }
+
+    private String entityTable(String fieldName, List<FieldModel> fieldModels, List<AggregateWindow> windows) {
+        return entityTablesEnabled ? EntityTableUtil.resolveTable(TABLE, fieldName, fieldModels, windows) : TABLE;
+    }
+
+    private <T> T queryRollup(
+            String aggregate,
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<String> statuses,
+            ResultSetExtractor<T> extractor) {
+        String sql = RollupUtil.buildQuery(entityTable(fieldName, null), aggregate, fieldName, statuses.size());
+        List<Object> params = RollupUtil.generateParams(fieldName, value, from, to, statuses);
+        log.debug("PaymentRepositoryImpl queryRollup sql: {} params: {}", sql, params);
+        return jdbcTemplate.query(sql, params.toArray(), extractor);
+    }
+
 }
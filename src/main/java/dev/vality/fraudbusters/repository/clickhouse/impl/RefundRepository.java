@@ -34,7 +34,7 @@ public class RefundRepository implements Repository<Refund>, AggregationReposito
             RefundBatchPreparedStatementSetter.FIELDS_MARK
     );
     private final AggregationStatusGeneralRepositoryImpl aggregationStatusGeneralRepository;
-    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate ingestionJdbcTemplate;
     private final PaymentTypeByContextResolver paymentTypeByContextResolver;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final RefundMapper refundMapper;
@@ -48,7 +48,7 @@ public class RefundRepository implements Repository<Refund>, AggregationReposito
     public void insertBatch(List<Refund> batch) {
         if (!CollectionUtils.isEmpty(batch)) {
             log.debug("RefundRepository insertBatch batch size: {}", batch.size());
-            jdbcTemplate.batchUpdate(
+            ingestionJdbcTemplate.batchUpdate(
                     INSERT,
                     new RefundBatchPreparedStatementSetter(batch, paymentTypeByContextResolver));
         }
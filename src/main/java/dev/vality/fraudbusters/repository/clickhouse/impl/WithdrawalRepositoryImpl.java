@@ -27,7 +27,7 @@ public class WithdrawalRepositoryImpl implements Repository<Withdrawal> {
             WithdrawalBatchPreparedStatementSetter.FIELDS,
             WithdrawalBatchPreparedStatementSetter.FIELDS_MARK
     );
-    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate ingestionJdbcTemplate;
 
     @Override
     public void insert(Withdrawal payment) {
@@ -38,7 +38,7 @@ public class WithdrawalRepositoryImpl implements Repository<Withdrawal> {
     public void insertBatch(List<Withdrawal> batch) {
         if (batch != null && !batch.isEmpty()) {
             log.debug("insertBatch batch withdrawals: {}", batch);
-            jdbcTemplate.batchUpdate(INSERT, new WithdrawalBatchPreparedStatementSetter(batch));
+            ingestionJdbcTemplate.batchUpdate(INSERT, new WithdrawalBatchPreparedStatementSetter(batch));
         }
     }
 
@@ -1,7 +1,9 @@
 package dev.vality.fraudbusters.repository.clickhouse.util;
 
 import dev.vality.fraudbusters.constant.PaymentStatus;
+import dev.vality.fraudbusters.domain.AggregateWindow;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
+import dev.vality.fraudbusters.repository.clickhouse.extractor.WindowsExtractor;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.util.StringUtils;
 
@@ -9,6 +11,7 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -18,6 +21,9 @@ import static java.time.ZoneOffset.UTC;
 
 public class AggregationUtil {
 
+    private static final String BOUND_CONDITION =
+            "timestamp >= ? and timestamp <= ? and eventTime >= ? and eventTime <= ?";
+
     public static StringBuilder appendGroupingFields(
             List<FieldModel> fieldModels,
             StringBuilder sql,
@@ -134,6 +140,135 @@ public class AggregationUtil {
         return objects;
     }
 
+    public static String buildWindowsQuery(
+            String table,
+            String fieldName,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        StringBuilder sql = new StringBuilder("select ");
+        for (int i = 0; i < windows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(windowAggregate(windows.get(i))).append(" as ").append(WindowsExtractor.WINDOW_COLUMN).append(i);
+        }
+        sql.append(" from ").append(table)
+                .append(" where ").append(BOUND_CONDITION)
+                .append(" and ").append(fieldName).append(" = ?");
+        if (fieldModels != null) {
+            for (FieldModel fieldModel : fieldModels) {
+                sql.append(" and ").append(fieldModel.getName()).append(" = ?");
+            }
+        }
+        return sql.toString();
+    }
+
+    public static List<Object> generateWindowsParams(
+            Object value,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        List<Object> params = new ArrayList<>();
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (AggregateWindow window : windows) {
+            addWindowParams(params, window);
+            from = Math.min(from, window.getFrom());
+            to = Math.max(to, window.getTo());
+        }
+        addBoundParams(params, from, to);
+        params.add(value);
+        if (fieldModels != null) {
+            fieldModels.stream()
+                    .map(FieldModel::getValue)
+                    .collect(Collectors.toCollection(() -> params));
+        }
+        return params;
+    }
+
+    public static String buildValueWindowsQuery(
+            String table,
+            String fieldName,
+            int valuesCount,
+            List<AggregateWindow> windows) {
+        StringBuilder sql = new StringBuilder("select ").append(fieldName);
+        for (int i = 0; i < windows.size(); i++) {
+            sql.append(", ").append(windowAggregate(windows.get(i)))
+                    .append(" as ").append(WindowsExtractor.WINDOW_COLUMN).append(i);
+        }
+        return sql.append(" from ").append(table)
+                .append(" where ").append(BOUND_CONDITION)
+                .append(" and ").append(fieldName).append(" in (")
+                .append(String.join(", ", Collections.nCopies(valuesCount, "?")))
+                .append(") group by ").append(fieldName)
+                .toString();
+    }
+
+    public static List<Object> generateValueWindowsParams(List<Object> values, List<AggregateWindow> windows) {
+        List<Object> params = new ArrayList<>();
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (AggregateWindow window : windows) {
+            addWindowParams(params, window);
+            from = Math.min(from, window.getFrom());
+            to = Math.max(to, window.getTo());
+        }
+        addBoundParams(params, from, to);
+        params.addAll(values);
+        return params;
+    }
+
+    private static String windowAggregate(AggregateWindow window) {
+        StringBuilder condition = new StringBuilder(BOUND_CONDITION)
+                .append(" and status in (")
+                .append(String.join(", ", Collections.nCopies(getWindowStatuses(window).size(), "?")))
+                .append(")");
+        if (window.getErrorCode() != null) {
+            condition.append(" and errorCode = ?");
+        }
+        if (window.getGroupingFields() != null) {
+            for (FieldModel fieldModel : window.getGroupingFields()) {
+                condition.append(" and ").append(fieldModel.getName()).append(" = ?");
+            }
+        }
+        return switch (window.getType()) {
+            case COUNT, COUNT_SUCCESS, COUNT_PENDING, COUNT_ERROR -> "countIf(" + condition + ")";
+            case SUM, SUM_SUCCESS, SUM_ERROR -> "sumIf(amount, " + condition + ")";
+            case UNIQUE -> "uniqIf(" + window.getOnField() + ", " + condition + ")";
+            default -> throw new IllegalArgumentException("Unsupported window type: " + window.getType());
+        };
+    }
+
+    private static List<String> getWindowStatuses(AggregateWindow window) {
+        return switch (window.getType()) {
+            case COUNT_SUCCESS, SUM_SUCCESS -> List.of(PaymentStatus.captured.name());
+            case COUNT_PENDING -> List.of(PaymentStatus.pending.name());
+            case COUNT_ERROR, SUM_ERROR -> List.of(PaymentStatus.failed.name());
+            default -> getFinalStatuses();
+        };
+    }
+
+    private static void addWindowParams(List<Object> params, AggregateWindow window) {
+        addBoundParams(params, window.getFrom(), window.getTo());
+        params.addAll(getWindowStatuses(window));
+        if (window.getErrorCode() != null) {
+            params.add(window.getErrorCode());
+        }
+        if (window.getGroupingFields() != null) {
+            window.getGroupingFields().stream()
+                    .map(FieldModel::getValue)
+                    .collect(Collectors.toCollection(() -> params));
+        }
+    }
+
+    private static void addBoundParams(List<Object> params, Long from, Long to) {
+        Instant instantFrom = Instant.ofEpochMilli(from);
+        Instant instantTo = Instant.ofEpochMilli(to);
+        params.add(instantFrom.atZone(UTC).toLocalDate());
+        params.add(instantTo.atZone(UTC).toLocalDate());
+        params.add(instantFrom.getEpochSecond());
+        params.add(instantTo.getEpochSecond());
+    }
+
     public static List<String> getFinalStatuses() {
         return List.of(PaymentStatus.failed.name(), PaymentStatus.cancelled.name(), PaymentStatus.captured.name());
     }
@@ -0,0 +1,89 @@
+package dev.vality.fraudbusters.repository.clickhouse.util;
+
+import dev.vality.fraudbusters.constant.EventSource;
+import dev.vality.fraudbusters.constant.PaymentField;
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.fraud.model.FieldModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the table of the aggregate queries filtered by an entity field. The companion tables of a source are
+ * sorted by the field first, so the lookup reads the granules of one entity instead of every granule
+ * of the time range. The payment ones keep the sorting key of the source after the field, so merges replace
+ * the same payments as in the source, except a payment whose entity field changed between its versions.
+ * They keep only the columns read by the aggregates, a query touching any other column stays on the source table.
+ * The tables are created and backfilled by the V12__create_entity_tables migration, the repositories read them
+ * only once clickhouse.entity-tables.enabled is switched on after it has run.
+ */
+public class EntityTableUtil {
+
+    private static final Map<String, String> ENTITY_SUFFIXES = Map.of(
+            PaymentField.CARD_TOKEN.getValue(), "_by_card_token",
+            PaymentField.EMAIL.getValue(), "_by_email",
+            PaymentField.FINGERPRINT.getValue(), "_by_fingerprint",
+            PaymentField.IP.getValue(), "_by_ip",
+            PaymentField.BIN.getValue(), "_by_bin"
+    );
+
+    private static final Map<String, Set<String>> ENTITY_COLUMNS = Map.of(
+            EventSource.FRAUD_EVENTS_PAYMENT.getTable(), Set.of(
+                    "timestamp", "eventTime", "eventTimeHour", "id", "email", "ip", "fingerprint", "bin",
+                    "cardToken", "paymentTool", "providerId", "partyId", "shopId", "amount", "currency", "status",
+                    "errorCode"
+            ),
+            EventSource.FRAUD_EVENTS_UNIQUE.getTable(), Set.of(
+                    "timestamp", "eventTimeHour", "eventTime", "partyId", "shopId", "ip", "email", "bin",
+                    "fingerprint", "resultStatus", "amount", "currency", "cardToken"
+            )
+    );
+
+    /**
+     * Returns the companion table of the source when it holds the field, the grouping fields and the columns
+     * of the query, otherwise the source table itself.
+     */
+    public static String resolveTable(
+            String table,
+            String fieldName,
+            List<FieldModel> fieldModels,
+            String... columns) {
+        Set<String> entityColumns = ENTITY_COLUMNS.get(table);
+        String suffix = ENTITY_SUFFIXES.get(fieldName);
+        if (entityColumns == null || suffix == null) {
+            return table;
+        }
+        if (fieldModels != null && fieldModels.stream().map(FieldModel::getName).anyMatch(
+                name -> !entityColumns.contains(name))) {
+            return table;
+        }
+        for (String column : columns) {
+            if (column != null && !entityColumns.contains(column)) {
+                return table;
+            }
+        }
+        return table + suffix;
+    }
+
+    public static String resolveTable(
+            String table,
+            String fieldName,
+            List<FieldModel> fieldModels,
+            List<AggregateWindow> windows) {
+        List<FieldModel> windowFields = new ArrayList<>();
+        if (fieldModels != null) {
+            windowFields.addAll(fieldModels);
+        }
+        for (AggregateWindow window : windows) {
+            if (window.getGroupingFields() != null) {
+                windowFields.addAll(window.getGroupingFields());
+            }
+        }
+        return resolveTable(table, fieldName, windowFields, windows.stream()
+                .map(AggregateWindow::getOnField)
+                .toArray(String[]::new));
+    }
+
+}
@@ -0,0 +1,126 @@
+package dev.vality.fraudbusters.repository.clickhouse.util;
+
+import dev.vality.fraudbusters.constant.PaymentField;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Builds the count and sum queries over the hourly payment rollup, created by the
+ * V13__create_payment_hourly_rollup migration. A window is answered by the rollup buckets of the hours
+ * it fully covers and by the raw rows of the partial hours at both of its ends. The rollup keeps the count
+ * and the amounts as states keyed by the sorting key of the payment table and the raw rows are aggregated
+ * by the same key, so both parts count a redelivered duplicate once. The result equals the query over the raw rows
+ * once their duplicates are merged, before that the raw query may count a duplicate twice.
+ * The rollup is read only once clickhouse.rollup.enabled is switched on after the migration and its backfill.
+ */
+public class RollupUtil {
+
+    public static final String COUNT = "count()";
+    public static final String SUM = "sum(amount)";
+
+    private static final String ROLLUP_TABLE = "fraud.payment_hourly_rollup";
+    private static final String PAYMENT_KEY = "cityHash64(eventTimeHour, partyId, shopId, paymentTool, status, "
+            + "currency, providerId, fingerprint, cardToken, id)";
+    private static final long HOUR_SECONDS = 3600L;
+
+    private static final Set<String> ROLLUP_FIELDS = Set.of(
+            PaymentField.CARD_TOKEN.getValue(),
+            PaymentField.EMAIL.getValue(),
+            PaymentField.FINGERPRINT.getValue(),
+            PaymentField.IP.getValue(),
+            PaymentField.BIN.getValue()
+    );
+
+    /**
+     * Checks that the field is rolled up and the window covers at least one full hour.
+     */
+    public static boolean isCovered(String fieldName, Long from, Long to) {
+        if (!ROLLUP_FIELDS.contains(fieldName)) {
+            return false;
+        }
+        long fromSecond = Instant.ofEpochMilli(from).getEpochSecond();
+        long toSecond = Instant.ofEpochMilli(to).getEpochSecond();
+        return firstFullHour(fromSecond) < fullHoursEnd(toSecond);
+    }
+
+    public static String buildQuery(String table, String aggregate, String fieldName, int statusCount) {
+        String statuses = String.join(", ", Collections.nCopies(statusCount, "?"));
+        boolean count = COUNT.equals(aggregate);
+        String resultAlias = count ? "cnt" : "sum";
+        String rollupAggregate = count ? "uniqExactMerge(cnt)" : "arraySum((maxMapMerge(amounts)).2)";
+        String rawAggregate = count
+                ? "uniqExact(" + PAYMENT_KEY + ")"
+                : "arraySum((maxMap([" + PAYMENT_KEY + "], [amount])).2)";
+        return String.format("""
+                select sum(part) as %1$s
+                from (
+                    select %2$s as part
+                    from %3$s
+                    where field = ?
+                    and value = ?
+                    and timestamp >= ?
+                    and timestamp <= ?
+                    and hour >= ?
+                    and hour < ?
+                    and status in (%4$s)
+                    union all
+                    select %5$s as part
+                    from %6$s
+                    where timestamp >= ?
+                    and timestamp <= ?
+                    and (eventTime >= ? and eventTime < ? or eventTime >= ? and eventTime <= ?)
+                    and %7$s = ?
+                    and status in (%4$s)
+                )""", resultAlias, rollupAggregate, ROLLUP_TABLE, statuses, rawAggregate, table, fieldName);
+    }
+
+    public static List<Object> generateParams(
+            String fieldName,
+            Object value,
+            Long from,
+            Long to,
+            List<String> statuses) {
+        long fromSecond = Instant.ofEpochMilli(from).getEpochSecond();
+        long toSecond = Instant.ofEpochMilli(to).getEpochSecond();
+        LocalDate dateFrom = Instant.ofEpochMilli(from).atZone(UTC).toLocalDate();
+        LocalDate dateTo = Instant.ofEpochMilli(to).atZone(UTC).toLocalDate();
+        long firstFullHour = firstFullHour(fromSecond);
+        long fullHoursEnd = fullHoursEnd(toSecond);
+        List<Object> params = new ArrayList<>();
+        params.add(fieldName);
+        params.add(value);
+        params.add(dateFrom);
+        params.add(dateTo);
+        params.add(firstFullHour);
+        params.add(fullHoursEnd);
+        params.addAll(statuses);
+        params.add(dateFrom);
+        params.add(dateTo);
+        params.add(fromSecond);
+        params.add(firstFullHour);
+        params.add(fullHoursEnd);
+        params.add(toSecond);
+        params.add(value);
+        params.addAll(statuses);
+        return params;
+    }
+
+    private static long firstFullHour(long fromSecond) {
+        return Math.floorDiv(fromSecond + HOUR_SECONDS - 1, HOUR_SECONDS) * HOUR_SECONDS;
+    }
+
+    /**
+     * Returns the end of the last hour that ends within the window, the window bounds are inclusive.
+     */
+    private static long fullHoursEnd(long toSecond) {
+        return Math.floorDiv(toSecond + 1, HOUR_SECONDS) * HOUR_SECONDS;
+    }
+
+}
@@ -12,7 +12,9 @@ import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.domain.FraudRequest;
 import dev.vality.fraudbusters.domain.FraudResult;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
 import dev.vality.fraudbusters.stream.TemplateVisitor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.thrift.TException;
@@ -22,12 +24,18 @@ import org.springframework.kafka.core.KafkaTemplate;
 @RequiredArgsConstructor
 public class FraudInspectorHandler implements InspectorProxySrv.Iface {
 
+    private static final String DEGRADED_METRIC = "inspection.degraded.count";
+    private static final String FALLBACK_METRIC = "inspection.fallback.count";
+
     private final String resultTopic;
     private final CheckedResultToRiskScoreConverter checkedResultToRiskScoreConverter;
     private final ContextToFraudRequestConverter requestConverter;
     private final TemplateVisitor<PaymentModel, CheckedResultModel> templateVisitor;
     private final KafkaTemplate<String, FraudResult> kafkaFraudResultTemplate;
     private final WbListServiceSrv.Iface wbListServiceSrv;
+    private final WbListReplica wbListReplica;
+    private final RiskScore fallbackRiskScore;
+    private final MeterRegistry meterRegistry;
 
     @Override
     public RiskScore inspectPayment(Context context) throws TException {
@@ -38,12 +46,16 @@ public class FraudInspectorHandler implements InspectorProxySrv.Iface {
                 FraudResult fraudResult = new FraudResult(model, templateVisitor.visit(model.getFraudModel()));
                 kafkaFraudResultTemplate.send(resultTopic, fraudResult);
                 log.info("Checked fraudResult: {}", fraudResult);
+                if (Boolean.TRUE.equals(fraudResult.getResultModel().getDegraded())) {
+                    meterRegistry.counter(DEGRADED_METRIC).increment();
+                }
                 return checkedResultToRiskScoreConverter.convert(fraudResult.getResultModel());
             }
             return RiskScore.high;
         } catch (Exception e) {
-            log.error("Error when inspectPayment() e: ", e);
-            throw new TException("Error when inspectPayment() e: ", e);
+            log.error("Error when inspectPayment() return fallbackRiskScore: {} e: ", fallbackRiskScore, e);
+            meterRegistry.counter(FALLBACK_METRIC).increment();
+            return fallbackRiskScore;
         }
     }
 
@@ -57,7 +69,7 @@ public class FraudInspectorHandler implements InspectorProxySrv.Iface {
                     .setListName(blackListContext.field_name)
                     .setListType(ListType.black)
                     .setValue(blackListContext.getValue());
-            return wbListServiceSrv.isExist(row);
+            return wbListReplica.isReady() ? wbListReplica.isExist(row) : wbListServiceSrv.isExist(row);
         } catch (Exception e) {
             log.warn("FraudInspectorHandler error when isExistInBlackList e: ", e);
             return false;
@@ -0,0 +1,24 @@
+package dev.vality.fraudbusters.serde;
+
+import dev.vality.damsel.wb_list.Event;
+import dev.vality.fraudbusters.config.service.ListenersConfigurationService;
+import dev.vality.kafka.common.serialization.AbstractThriftDeserializer;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class WbListEventDeserializer extends AbstractThriftDeserializer<Event> {
+
+    @SneakyThrows
+    @Override
+    public Event deserialize(String topic, byte[] data) {
+        try {
+            return deserialize(data, new Event());
+        } catch (Exception e) {
+            log.warn("Error when WbListEventDeserializer deserialize e: ", e);
+            Thread.sleep(ListenersConfigurationService.THROTTLING_TIMEOUT);
+            throw e;
+        }
+    }
+
+}
@@ -3,6 +3,8 @@ package dev.vality.fraudbusters.service;
 import dev.vality.fraudbusters.pool.CheckedMetricPool;
 import dev.vality.fraudbusters.pool.HistoricalPool;
 import dev.vality.fraudbusters.pool.Pool;
+import dev.vality.fraudbusters.pool.PoolChange;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
@@ -14,8 +16,9 @@ import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -23,26 +26,26 @@ import java.util.Set;
 public class PoolMonitoringService {
 
     public static final String POOL_METRIC = "pool-metric-";
+    public static final String RETAINED_BYTES_SUFFIX = "-bytes";
+    public static final String CHANGES_SUFFIX = "-changes";
+    public static final String GENERATION_SUFFIX = "-generation";
+    public static final String CHANGE_TYPE_TAG = "type";
     private final List<HistoricalPool> timePools;
     private final List<Pool> pools;
     private final MeterRegistry registry;
 
     @Value("${time.pool.cleanup.gap}")
     private Long timeGap;
+    @Value("${time.pool.cleanup.slice:10000}")
+    private int cleanupSlice;
 
-    @Scheduled(fixedDelay = 3600000)
+    @Scheduled(fixedDelayString = "${time.pool.cleanup.interval:1000}")
     public void cleanOldValues() {
-        long now = Instant.now().toEpochMilli();
+        long stampOfOldestData = Instant.now().toEpochMilli() - Duration.ofDays(timeGap).toMillis();
         if (!CollectionUtils.isEmpty(timePools)) {
             for (HistoricalPool timePool : timePools) {
-                Set<String> set = timePool.keySet();
-                for (String key : set) {
-                    long stampOfOldestData = now - Duration.ofDays(timeGap).toMillis();
-                    Object o = timePool.get(key, stampOfOldestData);
-                    if (o == null) {
-                        timePool.cleanUntil(key, stampOfOldestData);
-                    }
-                }
+                int expired = timePool.expire(stampOfOldestData, cleanupSlice);
+                log.trace("PoolMonitoringService cleanOldValues pool: {} expired: {}", timePool.getName(), expired);
             }
         }
     }
@@ -50,6 +53,27 @@ public class PoolMonitoringService {
     public void addPoolsToMonitoring() {
         checkTimePool(timePools);
         checkPool(pools);
+        if (!CollectionUtils.isEmpty(timePools)) {
+            timePools.forEach(this::monitorChanges);
+        }
+        if (!CollectionUtils.isEmpty(pools)) {
+            pools.forEach(this::monitorChanges);
+        }
+    }
+
+    /**
+     * Counts the changes of the pool by type, the rate of the counters is the churn of the rule set.
+     */
+    private void monitorChanges(CheckedMetricPool pool) {
+        Map<PoolChange.Type, Counter> counters = new EnumMap<>(PoolChange.Type.class);
+        for (PoolChange.Type type : PoolChange.Type.values()) {
+            counters.put(type, Counter.builder(POOL_METRIC + pool.getName() + CHANGES_SUFFIX)
+                    .tag(CHANGE_TYPE_TAG, type.name())
+                    .register(registry));
+        }
+        pool.getChangeFeed().subscribe(change -> counters.get(change.getType()).increment());
+        Gauge.builder(POOL_METRIC + pool.getName() + GENERATION_SUFFIX, pool, p -> p.getChangeFeed().getGeneration())
+                .register(registry);
     }
 
     private void checkPool(List<? extends CheckedMetricPool> pools) {
@@ -72,6 +96,11 @@ public class PoolMonitoringService {
                         .builder(POOL_METRIC + timePool.getName(), timePool, HistoricalPool::deepSize)
                         .register(registry);
                 log.trace("PoolMonitoringService checkTimePool gauge: {}", gauge.value());
+                Gauge.builder(
+                        POOL_METRIC + timePool.getName() + RETAINED_BYTES_SUFFIX,
+                        timePool,
+                        HistoricalPool::retainedBytes
+                ).register(registry);
             }
         }
     }
@@ -4,6 +4,7 @@ import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.exception.InvalidTemplateException;
 import dev.vality.fraudbusters.fraud.FraudContextParser;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
 import dev.vality.fraudbusters.fraud.payment.validator.PaymentTemplateValidator;
 import dev.vality.fraudbusters.pool.HistoricalPool;
 import dev.vality.fraudbusters.service.dto.CascadingTemplateDto;
@@ -31,6 +32,7 @@ public class RuleCheckingServiceImpl implements RuleCheckingService {
 
     private final PaymentTemplateValidator paymentTemplateValidator;
     private final FraudContextParser<FraudoPaymentParser.ParseContext> paymentContextParser;
+    private final PaymentTemplateInterner paymentTemplateInterner;
     private final RuleCheckingApplierImpl<PaymentModel> ruleCheckingApplier;
     private final HistoricalPool<List<String>> timeGroupPoolImpl;
     private final HistoricalPool<String> timeReferencePoolImpl;
@@ -41,7 +43,7 @@ public class RuleCheckingServiceImpl implements RuleCheckingService {
     public Map<String, CheckedResultModel> checkSingleRule(Map<String, PaymentModel> paymentModelMap,
                                                            String templateString) {
         validateTemplate(templateString);
-        final FraudoPaymentParser.ParseContext parseContext = paymentContextParser.parse(templateString);
+        final FraudoPaymentParser.ParseContext parseContext = parse(templateString);
         return paymentModelMap.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
@@ -56,17 +58,19 @@ public class RuleCheckingServiceImpl implements RuleCheckingService {
     public Map<String, CheckedResultModel> checkRuleWithinRuleset(Map<String, PaymentModel> paymentModelMap,
                                                                   CascadingTemplateDto cascadingTemplateDto) {
         validateTemplate(cascadingTemplateDto.getTemplate());
+        final FraudoPaymentParser.ParseContext parseContext = parse(cascadingTemplateDto.getTemplate());
         return paymentModelMap.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        entry -> checkWithinRuleset(entry.getValue(), cascadingTemplateDto)
+                        entry -> checkWithinRuleset(entry.getValue(), cascadingTemplateDto, parseContext)
                 ));
     }
 
 
-    private CheckedResultModel checkWithinRuleset(PaymentModel paymentModel, CascadingTemplateDto dto) {
+    private CheckedResultModel checkWithinRuleset(PaymentModel paymentModel,
+                                                  CascadingTemplateDto dto,
+                                                  FraudoPaymentParser.ParseContext parseContext) {
         log.debug("HistoricalTemplateVisitorImpl visit paymentModel: {}", paymentModel);
-        final FraudoPaymentParser.ParseContext parseContext = paymentContextParser.parse(dto.getTemplate());
         Long timestamp = dto.getTimestamp() == null ? paymentModel.getTimestamp() : dto.getTimestamp();
         String partyId = paymentModel.getPartyId();
         String partyShopKey = generateTemplateKey(partyId, paymentModel.getShopId());
@@ -164,6 +168,11 @@ public class RuleCheckingServiceImpl implements RuleCheckingService {
         return Optional.empty();
     }
 
+    private FraudoPaymentParser.ParseContext parse(String templateString) {
+        FraudoPaymentParser.ParseContext parseContext = paymentTemplateInterner.find(templateString);
+        return parseContext != null ? parseContext : paymentContextParser.parse(templateString);
+    }
+
     private void validateTemplate(String templateString) {
         List<String> validationErrors = paymentTemplateValidator.validate(templateString);
         if (!CollectionUtils.isEmpty(validationErrors)) {
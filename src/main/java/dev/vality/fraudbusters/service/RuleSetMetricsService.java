@@ -0,0 +1,78 @@
+package dev.vality.fraudbusters.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the rule set served to the inspection.
+ * The visibility is the time from the Kafka timestamp of the oldest applied command
+ * to the publication of the rule-set generation that includes it. Commands written before the start
+ * of the service are replays of the history and are not measured.
+ */
+@Slf4j
+@Service
+public class RuleSetMetricsService {
+
+    public static final String VISIBILITY_METRIC = "rule-set.visibility";
+    public static final String PARSE_METRIC = "rule-set.template.parse";
+    public static final String GENERATION_METRIC = "rule-set.generation";
+    public static final String LOAD_FAILURE_METRIC = "rule-set.template.load-failure";
+
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong pendingSince = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+    private final Timer visibilityTimer;
+    private final Timer parseTimer;
+    private final Counter loadFailureCounter;
+
+    public RuleSetMetricsService(MeterRegistry registry) {
+        this.visibilityTimer = Timer.builder(VISIBILITY_METRIC).register(registry);
+        this.parseTimer = Timer.builder(PARSE_METRIC).register(registry);
+        this.loadFailureCounter = Counter.builder(LOAD_FAILURE_METRIC).register(registry);
+        Gauge.builder(GENERATION_METRIC, generation, AtomicLong::get).register(registry);
+    }
+
+    public void commandApplied(long commandTimestamp) {
+        if (commandTimestamp < startedAt) {
+            return;
+        }
+        pendingSince.accumulateAndGet(
+                commandTimestamp,
+                (current, timestamp) -> current == 0 ? timestamp : Math.min(current, timestamp)
+        );
+    }
+
+    public void generationPublished(long number) {
+        generation.set(number);
+        long since = pendingSince.getAndSet(0);
+        if (since > 0) {
+            visibilityTimer.record(Math.max(0L, System.currentTimeMillis() - since), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void templateLoadFailed(String templateId) {
+        loadFailureCounter.increment();
+        log.debug("RuleSetMetricsService templateId: {} failed to load", templateId);
+    }
+
+    public <T> T timeParse(String templateId, Supplier<T> parser) {
+        long start = System.nanoTime();
+        try {
+            return parser.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            parseTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.debug("RuleSetMetricsService templateId: {} parsed in: {} ms",
+                    templateId, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package dev.vality.fraudbusters.service;
+
+import dev.vality.fraudbusters.pool.LazyTemplatePool;
+import dev.vality.fraudbusters.pool.Pool;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Parses the templates left as source by the preload in the background.
+ * Templates referenced directly or through a referenced group go first, orphans last.
+ * Requests that need a template before its turn parse it on the spot.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TemplateWarmUpService {
+
+    private final LazyTemplatePool parsedTemplatePoolImpl;
+    private final Pool<String> referencePoolImpl;
+    private final Pool<List<String>> groupPoolImpl;
+    private final Pool<String> groupReferencePoolImpl;
+
+    @Value("${preload.warm-up.threads:2}")
+    private int threads;
+
+    public void warmUp() {
+        Set<String> pendingKeys = parsedTemplatePoolImpl.pendingKeys();
+        if (pendingKeys.isEmpty()) {
+            return;
+        }
+        List<String> ordered = new ArrayList<>(pendingKeys.size());
+        for (String templateKey : referencedKeys()) {
+            if (pendingKeys.remove(templateKey)) {
+                ordered.add(templateKey);
+            }
+        }
+        int referenced = ordered.size();
+        ordered.addAll(pendingKeys);
+        log.info("TemplateWarmUpService warm up referenced: {} orphans: {}", referenced, pendingKeys.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ordered.forEach(templateKey -> executor.execute(() -> parsedTemplatePoolImpl.get(templateKey)));
+        executor.shutdown();
+    }
+
+    private Set<String> referencedKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        referencePoolImpl.keySet().forEach(key -> addKey(keys, referencePoolImpl.get(key)));
+        groupReferencePoolImpl.keySet().forEach(key -> {
+            List<String> templateKeys = groupPoolImpl.get(groupReferencePoolImpl.get(key));
+            if (templateKeys != null) {
+                templateKeys.forEach(templateKey -> addKey(keys, templateKey));
+            }
+        });
+        return keys;
+    }
+
+    private static void addKey(Set<String> keys, String key) {
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
+}
@@ -1,42 +1,127 @@
 package dev.vality.fraudbusters.stream;
 
+import dev.vality.damsel.fraudbusters.Command;
 import dev.vality.fraudbusters.serde.CommandSerde;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.state.KeyValueStore;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Builds one topology for all full to compact topic pairs.
+ * Every full topic is forwarded to its compacted topic, every compacted topic is materialized
+ * into a global RocksDB store with the last command of every key, see {@link #storeName(String)}.
+ * The application replaced one application per topic, their committed offsets seed its first start.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class FullToCompactStreamFactory {
 
+    public static final String STREAM_ID = "full-to-compact-stream";
+    private static final String STORE_SUFFIX = "-store";
+    private static final long ADMIN_TIMEOUT_SECONDS = 30L;
+
     private final CommandSerde commandSerde = new CommandSerde();
 
-    public KafkaStreams create(
-            String fromTopic,
-            String toTopic,
-            String clientId,
-            final Properties streamsConfiguration) {
+    public static String storeName(String compactTopic) {
+        return compactTopic + STORE_SUFFIX;
+    }
+
+    public KafkaStreams create(Map<String, String> fullToCompactTopics, final Properties streamsConfiguration) {
         try {
-            streamsConfiguration.setProperty(StreamsConfig.APPLICATION_ID_CONFIG, clientId);
-            streamsConfiguration.setProperty(StreamsConfig.CLIENT_ID_CONFIG, clientId);
-            StreamsBuilder builder = new StreamsBuilder();
-            builder.stream(fromTopic, Consumed.with(Serdes.String(), commandSerde))
-                    .peek((key, value) -> log.debug("FullToCompactStreamFactory key: {}", key))
-                    .to(toTopic, Produced.with(Serdes.String(), commandSerde));
-            return new KafkaStreams(builder.build(), streamsConfiguration);
+            streamsConfiguration.setProperty(StreamsConfig.APPLICATION_ID_CONFIG, STREAM_ID);
+            streamsConfiguration.setProperty(StreamsConfig.CLIENT_ID_CONFIG, STREAM_ID);
+            return new KafkaStreams(topology(fullToCompactTopics), streamsConfiguration);
         } catch (Exception e) {
             log.error("Error when create stream e: ", e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Copies the offsets committed by the previous applications, keyed by the full topic they read,
+     * to {@link #STREAM_ID} when it has no offsets yet, so its first start does not forward the whole history again.
+     */
+    public void seedOffsets(Map<String, String> legacyApplicationIds, Properties streamsConfiguration) {
+        Properties adminConfiguration = new Properties();
+        streamsConfiguration.forEach((key, value) -> {
+            if (AdminClientConfig.configNames().contains(key)) {
+                adminConfiguration.put(key, value);
+            }
+        });
+        try (Admin admin = Admin.create(adminConfiguration)) {
+            seedOffsets(admin, legacyApplicationIds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | KafkaException e) {
+            log.warn("FullToCompactStreamFactory failed to seed offsets of: {} e: ", STREAM_ID, e);
+        }
+    }
+
+    void seedOffsets(Admin admin, Map<String, String> legacyApplicationIds)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        if (!committedOffsets(admin, STREAM_ID).isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (Map.Entry<String, String> legacyApplicationId : legacyApplicationIds.entrySet()) {
+            committedOffsets(admin, legacyApplicationId.getValue()).forEach((partition, offset) -> {
+                if (offset != null && partition.topic().equals(legacyApplicationId.getKey())) {
+                    offsets.put(partition, offset);
+                }
+            });
+        }
+        if (!offsets.isEmpty()) {
+            admin.alterConsumerGroupOffsets(STREAM_ID, offsets).all().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            log.info("FullToCompactStreamFactory seeded offsets of: {} from: {} offsets: {}",
+                    STREAM_ID, legacyApplicationIds.values(), offsets);
+        }
+    }
+
+    Topology topology(Map<String, String> fullToCompactTopics) {
+        StreamsBuilder builder = new StreamsBuilder();
+        fullToCompactTopics.forEach((fromTopic, toTopic) -> {
+            builder.stream(fromTopic, Consumed.with(Serdes.String(), commandSerde))
+                    .peek((key, value) -> log.debug("FullToCompactStreamFactory topic: {} key: {}", toTopic, key))
+                    .to(toTopic, Produced.with(Serdes.String(), commandSerde));
+            builder.globalTable(
+                    toTopic,
+                    Consumed.with(Serdes.String(), commandSerde),
+                    Materialized.<String, Command, KeyValueStore<Bytes, byte[]>>as(storeName(toTopic))
+                            .withKeySerde(Serdes.String())
+                            .withValueSerde(commandSerde)
+            );
+        });
+        return builder.build();
+    }
+
+    private static Map<TopicPartition, OffsetAndMetadata> committedOffsets(Admin admin, String groupId)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
 }
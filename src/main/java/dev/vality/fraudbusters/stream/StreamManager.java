@@ -1,12 +1,20 @@
 package dev.vality.fraudbusters.stream;
 
+import dev.vality.damsel.fraudbusters.Command;
+import dev.vality.fraudbusters.listener.CommandListener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Properties;
 
 @Slf4j
@@ -14,22 +22,96 @@ import java.util.Properties;
 @RequiredArgsConstructor
 public class StreamManager {
 
-    private final List<KafkaStreams> kafkaStreamsStorage = new ArrayList<>();
+    private static final long STATE_POLL_MILLIS = 100L;
 
     private final FullToCompactStreamFactory fullToCompactStreamFactory;
     private final Properties rewriteStreamProperties;
 
-    public void createStream(String fromTopic, String toTopic, String clientId) {
-        KafkaStreams kafkaStreams =
-                fullToCompactStreamFactory.create(fromTopic, toTopic, clientId, rewriteStreamProperties);
+    private volatile KafkaStreams kafkaStreams;
+
+    /**
+     * Starts the rewrite of the full topics, the legacy application ids are keyed by the full topic they read.
+     */
+    public synchronized void start(Map<String, String> fullToCompactTopics, Map<String, String> legacyApplicationIds) {
+        if (kafkaStreams != null) {
+            return;
+        }
+        fullToCompactStreamFactory.seedOffsets(legacyApplicationIds, rewriteStreamProperties);
+        kafkaStreams = fullToCompactStreamFactory.create(fullToCompactTopics, rewriteStreamProperties);
         kafkaStreams.start();
-        log.info("Start stream kafkaStreams: {}", kafkaStreams.allMetadata());
-        kafkaStreamsStorage.add(kafkaStreams);
+        log.info("Start stream topics: {}", fullToCompactTopics);
+    }
+
+    /**
+     * Returns the store with the last command of every key of the compacted topic,
+     * or null when the stream is not running.
+     */
+    public ReadOnlyKeyValueStore<String, Command> findStore(String compactTopic) {
+        KafkaStreams streams = kafkaStreams;
+        if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+            return null;
+        }
+        try {
+            return streams.store(StoreQueryParameters.fromNameAndType(
+                    FullToCompactStreamFactory.storeName(compactTopic),
+                    QueryableStoreTypes.keyValueStore()
+            ));
+        } catch (InvalidStateStoreException e) {
+            log.warn("StreamManager store of topic: {} is not available e: ", compactTopic, e);
+            return null;
+        }
+    }
+
+    /**
+     * Passes the last command of every key of the compacted topic to the listener.
+     * Returns false when the store is not ready in time, then the topic has to be read by a consumer.
+     */
+    public boolean bootstrap(String compactTopic, CommandListener listener, Duration timeout)
+            throws InterruptedException {
+        if (!awaitRunning(timeout)) {
+            log.warn("StreamManager stream is not running, state: {}",
+                    kafkaStreams != null ? kafkaStreams.state() : null);
+            return false;
+        }
+        ReadOnlyKeyValueStore<String, Command> store = findStore(compactTopic);
+        if (store == null) {
+            return false;
+        }
+        long count = 0;
+        try (KeyValueIterator<String, Command> iterator = store.all()) {
+            while (iterator.hasNext()) {
+                KeyValue<String, Command> next = iterator.next();
+                if (next.value != null) {
+                    listener.listen(next.value);
+                    count++;
+                }
+            }
+        }
+        log.info("StreamManager bootstrap topic: {} from store, commands: {}", compactTopic, count);
+        return true;
     }
 
     public void stop() {
-        kafkaStreamsStorage.forEach(KafkaStreams::close);
+        if (kafkaStreams != null) {
+            kafkaStreams.close();
+        }
         log.info("StreamManager cleaned!");
     }
 
+    private boolean awaitRunning(Duration timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        while (kafkaStreams != null) {
+            KafkaStreams.State state = kafkaStreams.state();
+            if (state == KafkaStreams.State.RUNNING) {
+                return true;
+            }
+            if ((!state.isRunningOrRebalancing() && state != KafkaStreams.State.CREATED)
+                    || System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(STATE_POLL_MILLIS);
+        }
+        return false;
+    }
+
 }
@@ -3,6 +3,8 @@ package dev.vality.fraudbusters.stream.impl;
 import dev.vality.fraudbusters.constant.TemplateLevel;
 import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.domain.ConcreteResultModel;
+import dev.vality.fraudbusters.fraud.aggregate.AggregateKey;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
 import dev.vality.fraudbusters.pool.HistoricalPool;
 import dev.vality.fraudbusters.stream.TemplateVisitor;
@@ -16,6 +18,7 @@ import org.springframework.stereotype.Component;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -28,20 +31,29 @@ public class FullTemplateVisitorImpl implements TemplateVisitor<PaymentModel, Li
     private final HistoricalPool<List<String>> timeGroupPoolImpl;
     private final HistoricalPool<String> timeReferencePoolImpl;
     private final HistoricalPool<String> timeGroupReferencePoolImpl;
+    private final AggregationContext aggregationContext;
 
     @Override
     public List<CheckedResultModel> visit(PaymentModel paymentModel) {
+        return visit(paymentModel, Map.of());
+    }
+
+    /**
+     * Evaluates the templates against the payment, the aggregates found in queryResults are not queried again.
+     */
+    public List<CheckedResultModel> visit(PaymentModel paymentModel, Map<AggregateKey, Long> queryResults) {
         log.debug("FullTemplateVisitorImpl visit paymentModel: {}", paymentModel);
-        String partyId = paymentModel.getPartyId();
-        Long timestamp = initTimestamp(paymentModel);
         List<CheckedResultModel> checkedResultModels = new ArrayList<>();
-        String partyShopKey = ReferenceKeyGenerator.generateTemplateKeyByList(partyId, paymentModel.getShopId());
-        fullRuleApplier.apply(paymentModel, timeReferencePoolImpl.get(TemplateLevel.GLOBAL.name(), timestamp))
-                .ifPresent(checkedResultModels::add);
-        applyGroupIfContain(paymentModel, timestamp, checkedResultModels, partyId);
-        applyGroupIfContain(paymentModel, timestamp, checkedResultModels, partyShopKey);
-        applyReferenceIfContain(paymentModel, partyId, timestamp, checkedResultModels);
-        applyReferenceIfContain(paymentModel, partyShopKey, timestamp, checkedResultModels);
+        aggregationContext.init();
+        try {
+            queryResults.forEach(aggregationContext::putQueryResult);
+            for (List<String> templateKeys : resolveTemplates(paymentModel)) {
+                fullRuleApplier.applyForAny(paymentModel, templateKeys)
+                        .ifPresent(checkedResultModels::add);
+            }
+        } finally {
+            aggregationContext.clear();
+        }
         if (checkedResultModels.isEmpty()) {
             checkedResultModels.add(createDefaultResult());
         }
@@ -49,30 +61,56 @@ public class FullTemplateVisitorImpl implements TemplateVisitor<PaymentModel, Li
         return checkedResultModels;
     }
 
-    private void applyReferenceIfContain(
-            PaymentModel paymentModel,
-            String partyId,
-            Long timestamp,
-            List<CheckedResultModel> checkedResultModels) {
-        if (timeReferencePoolImpl.contains(partyId, timestamp)) {
-            fullRuleApplier.apply(paymentModel, timeReferencePoolImpl.get(partyId, timestamp))
-                    .ifPresent(checkedResultModels::add);
+    /**
+     * Returns the keys of all templates the payment can be checked by, the templates of its groups included.
+     */
+    public List<String> getTemplateKeys(PaymentModel paymentModel) {
+        return resolveTemplates(paymentModel).stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    /**
+     * Resolves the templates of the payment in the order they are applied: the global reference, the groups
+     * of the party and of the shop, then the references of the party and of the shop.
+     * A reference gives one template, a group gives the templates of which the first matching one is applied.
+     * The global reference is always taken, the other references and groups only when the pools contain them
+     * at the timestamp of the payment.
+     */
+    private List<List<String>> resolveTemplates(PaymentModel paymentModel) {
+        String partyId = paymentModel.getPartyId();
+        Long timestamp = initTimestamp(paymentModel);
+        String partyShopKey = ReferenceKeyGenerator.generateTemplateKeyByList(partyId, paymentModel.getShopId());
+        List<List<String>> templates = new ArrayList<>();
+        addTemplate(templates, timeReferencePoolImpl.get(TemplateLevel.GLOBAL.name(), timestamp));
+        addGroup(templates, partyId, timestamp);
+        addGroup(templates, partyShopKey, timestamp);
+        addReference(templates, partyId, timestamp);
+        addReference(templates, partyShopKey, timestamp);
+        return templates;
+    }
+
+    private void addTemplate(List<List<String>> templates, String templateKey) {
+        if (templateKey != null) {
+            templates.add(List.of(templateKey));
+        }
+    }
+
+    private void addReference(List<List<String>> templates, String referenceKey, Long timestamp) {
+        if (timeReferencePoolImpl.contains(referenceKey, timestamp)) {
+            addTemplate(templates, timeReferencePoolImpl.get(referenceKey, timestamp));
         }
     }
 
-    private void applyGroupIfContain(
-            PaymentModel paymentModel,
-            Long timestamp,
-            List<CheckedResultModel> checkedResultModels,
-            String partyShopKey) {
-        if (timeGroupReferencePoolImpl.contains(partyShopKey, timestamp)
-                && timeGroupPoolImpl.contains(timeGroupReferencePoolImpl.get(partyShopKey, timestamp), timestamp)) {
-            fullRuleApplier
-                    .applyForAny(
-                            paymentModel,
-                            timeGroupPoolImpl.get(timeGroupReferencePoolImpl.get(partyShopKey, timestamp), timestamp)
-                    )
-                    .ifPresent(checkedResultModels::add);
+    private void addGroup(List<List<String>> templates, String referenceKey, Long timestamp) {
+        if (timeGroupReferencePoolImpl.contains(referenceKey, timestamp)) {
+            String groupId = timeGroupReferencePoolImpl.get(referenceKey, timestamp);
+            if (groupId != null && timeGroupPoolImpl.contains(groupId, timestamp)) {
+                List<String> groupTemplateKeys = timeGroupPoolImpl.get(groupId, timestamp);
+                if (groupTemplateKeys != null) {
+                    templates.add(groupTemplateKeys);
+                }
+            }
         }
     }
 
@@ -1,6 +1,9 @@
 package dev.vality.fraudbusters.stream.impl;
 
 import dev.vality.fraudbusters.domain.CheckedResultModel;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
+import dev.vality.fraudbusters.fraud.model.EvaluationPlan;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
 import dev.vality.fraudbusters.pool.Pool;
 import dev.vality.fraudbusters.stream.RuleApplier;
 import dev.vality.fraudbusters.util.CheckedResultFactory;
@@ -21,14 +24,19 @@ public class RuleApplierImpl<T extends BaseModel> implements RuleApplier<T> {
     private final TemplateVisitor<T, ResultModel> templateVisitor;
 
     private final Pool<ParserRuleContext> templatePool;
+    private final Pool<ParsedTemplate> parsedTemplatePool;
     private final CheckedResultFactory checkedResultFactory;
+    private final AggregationContext aggregationContext;
 
     @Override
     public Optional<CheckedResultModel> apply(T model, String templateKey) {
+        ParsedTemplate parsedTemplate = parsedTemplatePool.get(templateKey);
+        if (parsedTemplate != null) {
+            return apply(model, templateKey, parsedTemplate.getContext());
+        }
         ParserRuleContext parseContext = templatePool.get(templateKey);
         if (parseContext != null) {
-            ResultModel resultModel = templateVisitor.visit(parseContext, model);
-            return checkedResultFactory.createCheckedResult(templateKey, resultModel);
+            return apply(model, templateKey, parseContext);
         }
         return Optional.empty();
     }
@@ -46,4 +54,22 @@ public class RuleApplierImpl<T extends BaseModel> implements RuleApplier<T> {
         return Optional.empty();
     }
 
+    public Optional<CheckedResultModel> applyForAny(T model, EvaluationPlan plan) {
+        List<String> templateKeys = plan.getTemplateKeys();
+        List<ParserRuleContext> contexts = plan.getContexts();
+        for (int i = 0; i < templateKeys.size(); i++) {
+            Optional<CheckedResultModel> result = apply(model, templateKeys.get(i), contexts.get(i));
+            if (result.isPresent()) {
+                return result;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<CheckedResultModel> apply(T model, String templateKey, ParserRuleContext parseContext) {
+        aggregationContext.enterTemplate(templateKey);
+        ResultModel resultModel = templateVisitor.visit(parseContext, model);
+        return checkedResultFactory.createCheckedResult(templateKey, resultModel);
+    }
+
 }
@@ -1,16 +1,19 @@
 package dev.vality.fraudbusters.stream.impl;
 
-import dev.vality.fraudbusters.constant.TemplateLevel;
 import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.domain.ConcreteResultModel;
+import dev.vality.fraudbusters.fraud.aggregate.AggregatePrefetcher;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
+import dev.vality.fraudbusters.fraud.model.EvaluationPlan;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
-import dev.vality.fraudbusters.pool.Pool;
+import dev.vality.fraudbusters.fraud.payment.finder.ListLookupPrefetcher;
+import dev.vality.fraudbusters.pool.EvaluationPlanPool;
 import dev.vality.fraudbusters.stream.TemplateVisitor;
-import dev.vality.fraudbusters.util.ReferenceKeyGenerator;
 import dev.vality.fraudo.constant.ResultStatus;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -23,25 +26,40 @@ public class TemplateVisitorImpl implements TemplateVisitor<PaymentModel, Checke
     private static final String RULE_NOT_CHECKED = "RULE_NOT_CHECKED";
 
     private final RuleApplierImpl<PaymentModel> ruleApplier;
-    private final Pool<List<String>> groupPoolImpl;
-    private final Pool<String> referencePoolImpl;
-    private final Pool<String> groupReferencePoolImpl;
+    private final EvaluationPlanPool evaluationPlanPool;
+    private final AggregationContext aggregationContext;
+    private final AggregatePrefetcher aggregatePrefetcher;
+    private final ListLookupPrefetcher listLookupPrefetcher;
+
+    @Value("${fraud.inspection.deadline-ms:0}")
+    private long deadlineMs;
+    /**
+     * Limits the prefetch to the first templates of the plan, zero prefetches the whole plan.
+     */
+    @Value("${fraud.inspection.prefetch-templates:0}")
+    private int prefetchTemplates;
 
     @Override
     public CheckedResultModel visit(PaymentModel paymentModel) {
         log.debug("TemplateVisitorImpl visit paymentModel: {}", paymentModel);
-        String partyId = paymentModel.getPartyId();
-        String partyShopKey = ReferenceKeyGenerator.generateTemplateKey(partyId, paymentModel.getShopId());
-        return ruleApplier.apply(paymentModel, referencePoolImpl.get(TemplateLevel.GLOBAL.name()))
-                .orElseGet(() -> ruleApplier
-                        .applyForAny(paymentModel, groupPoolImpl.get(groupReferencePoolImpl.get(partyId)))
-                        .orElseGet(() -> ruleApplier
-                                .applyForAny(paymentModel, groupPoolImpl.get(groupReferencePoolImpl.get(partyShopKey)))
-                                .orElseGet(() -> ruleApplier
-                                        .apply(paymentModel, referencePoolImpl.get(partyId))
-                                        .orElseGet(() -> ruleApplier
-                                                .apply(paymentModel, referencePoolImpl.get(partyShopKey))
-                                                .orElseGet(this::createDefaultResult)))));
+        EvaluationPlan plan = evaluationPlanPool.get(paymentModel.getPartyId(), paymentModel.getShopId());
+        aggregationContext.init(deadlineMs);
+        try {
+            List<String> prefetchKeys = prefetchTemplates > 0
+                    ? plan.getTemplateKeys().subList(0, Math.min(prefetchTemplates, plan.getTemplateKeys().size()))
+                    : plan.getTemplateKeys();
+            aggregatePrefetcher.prefetch(paymentModel, prefetchKeys);
+            listLookupPrefetcher.prefetch(paymentModel, prefetchKeys);
+            CheckedResultModel checkedResultModel = ruleApplier.applyForAny(paymentModel, plan)
+                    .orElseGet(this::createDefaultResult);
+            if (aggregationContext.isDegraded()) {
+                log.warn("TemplateVisitorImpl result is degraded for paymentModel: {}", paymentModel);
+                checkedResultModel.setDegraded(true);
+            }
+            return checkedResultModel;
+        } finally {
+            aggregationContext.clear();
+        }
     }
 
     @NotNull
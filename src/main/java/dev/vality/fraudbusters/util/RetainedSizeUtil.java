@@ -0,0 +1,29 @@
+package dev.vality.fraudbusters.util;
+
+import java.util.List;
+
+/**
+ * Rough heap size of pool values, used for the retained bytes gauges of the pools.
+ */
+public class RetainedSizeUtil {
+
+    private static final long STRING_OVERHEAD = 40L;
+    private static final long LIST_OVERHEAD = 24L;
+    private static final long REFERENCE = 8L;
+
+    public static long sizeOf(String value) {
+        return value != null ? STRING_OVERHEAD + value.length() : 0L;
+    }
+
+    public static long sizeOf(List<String> values) {
+        if (values == null) {
+            return 0L;
+        }
+        long size = LIST_OVERHEAD + REFERENCE * values.size();
+        for (String value : values) {
+            size += sizeOf(value);
+        }
+        return size;
+    }
+
+}
@@ -3,13 +3,18 @@ package dev.vality.fraudbusters;
 import dev.vality.fraudbusters.config.MockExternalServiceConfig;
 import dev.vality.fraudbusters.config.payment.HistoricalPaymentPoolConfig;
 import dev.vality.fraudbusters.config.payment.PaymentFraudoConfig;
+import dev.vality.fraudbusters.config.payment.VelocityConfig;
+import dev.vality.fraudbusters.config.payment.WbListReplicaConfig;
 import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.factory.TestObjectsFactory;
 import dev.vality.fraudbusters.fraud.FraudContextParser;
+import dev.vality.fraudbusters.fraud.aggregate.AggregateKeyResolver;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.localstorage.LocalResultStorageRepository;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
 import dev.vality.fraudbusters.fraud.payment.CountryByIpResolver;
 import dev.vality.fraudbusters.fraud.payment.PaymentContextParserImpl;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
 import dev.vality.fraudbusters.fraud.payment.resolver.CustomerTypeResolverImpl;
 import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
 import dev.vality.fraudbusters.fraud.payment.resolver.PaymentTypeResolverImpl;
@@ -24,6 +29,7 @@ import dev.vality.fraudbusters.util.BeanUtil;
 import dev.vality.fraudbusters.util.CheckedResultFactory;
 import dev.vality.fraudo.FraudoPaymentParser;
 import dev.vality.fraudo.constant.ResultStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.junit.jupiter.api.BeforeEach;
@@ -55,12 +61,18 @@ import static org.junit.jupiter.api.Assertions.*;
         PaymentTemplateValidator.class,
         RuleCheckingServiceImpl.class,
         PaymentContextParserImpl.class,
+        PaymentTemplateInterner.class,
         CheckedResultFactory.class,
         PaymentFraudoConfig.class,
+        VelocityConfig.class,
+        WbListReplicaConfig.class,
+        AggregationContext.class,
+        AggregateKeyResolver.class,
         TimeBoundaryServiceImpl.class,
         PaymentTypeResolverImpl.class,
         DatabasePaymentFieldResolver.class,
-        HistoricalPaymentPoolConfig.class})
+        HistoricalPaymentPoolConfig.class,
+        SimpleMeterRegistry.class})
 @Import({MockExternalServiceConfig.class})
 class RuleCheckingServiceIntegrationTest {
 
@@ -0,0 +1,102 @@
+package dev.vality.fraudbusters.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.vality.fraudbusters.config.properties.ClickhouseProperties;
+import dev.vality.fraudbusters.extension.ClickHouseContainerExtension;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static dev.vality.fraudbusters.extension.ClickHouseContainerExtension.CLICKHOUSE_CONTAINER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith({SpringExtension.class, ClickHouseContainerExtension.class})
+@ContextConfiguration(classes = {ClickhouseConfig.class, ClickhouseConfigTest.MetricsConfig.class})
+@TestPropertySource(properties = {
+        "clickhouse.db.user=default",
+        "clickhouse.db.password=",
+        "clickhouse.db.compress=false",
+        "clickhouse.db.connection-timeout=10000",
+        "clickhouse.db.socket-timeout=10000",
+        "clickhouse.db.inspection-pool.max-size=3",
+        "clickhouse.db.inspection-pool.min-idle=1",
+        "clickhouse.db.ingestion-pool.max-size=2",
+        "clickhouse.db.ingestion-pool.min-idle=1",
+        "clickhouse.db.historical-pool.max-size=1",
+        "clickhouse.db.historical-pool.min-idle=1",
+        "clickhouse.db.historical-pool.acquire-timeout=60000"
+})
+class ClickhouseConfigTest {
+
+    @Autowired
+    private HikariDataSource inspectionDataSource;
+    @Autowired
+    private HikariDataSource ingestionDataSource;
+    @Autowired
+    private HikariDataSource historicalDataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JdbcTemplate ingestionJdbcTemplate;
+    @Autowired
+    private JdbcTemplate longQueryJdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void clickhouseUrl(DynamicPropertyRegistry registry) {
+        registry.add("clickhouse.db.url",
+                () -> "jdbc:clickhouse://localhost:" + CLICKHOUSE_CONTAINER.getFirstMappedPort() + "/default");
+    }
+
+    @Test
+    void trafficKindsUseSeparatePools() {
+        assertPool(inspectionDataSource, jdbcTemplate, "clickhouse-inspection", 3);
+        assertPool(ingestionDataSource, ingestionJdbcTemplate, "clickhouse-ingestion", 2);
+        assertPool(historicalDataSource, longQueryJdbcTemplate, "clickhouse-historical", 1);
+        assertEquals(60000L, historicalDataSource.getConnectionTimeout());
+    }
+
+    private void assertPool(HikariDataSource pool, JdbcTemplate template, String poolName, int maxSize) {
+        assertEquals(poolName, pool.getPoolName());
+        assertEquals(maxSize, pool.getMaximumPoolSize());
+        assertEquals(pool, template.getDataSource());
+
+        assertEquals(1, template.queryForObject("select 1", Integer.class));
+
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", poolName).timer();
+        assertNotNull(acquire, poolName);
+        assertTrue(acquire.count() > 0, poolName);
+        assertNotNull(meterRegistry.find("hikaricp.connections.usage").tag("pool", poolName).timer(), poolName);
+        assertNotNull(meterRegistry.find("hikaricp.connections.active").tag("pool", poolName).gauge(), poolName);
+        assertNotNull(meterRegistry.find("hikaricp.connections.pending").tag("pool", poolName).gauge(), poolName);
+        assertEquals(maxSize,
+                meterRegistry.find("hikaricp.connections.max").tag("pool", poolName).gauge().value(), poolName);
+    }
+
+    @TestConfiguration
+    @EnableConfigurationProperties(ClickhouseProperties.class)
+    static class MetricsConfig {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+    }
+
+}
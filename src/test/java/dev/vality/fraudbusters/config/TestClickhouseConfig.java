@@ -37,6 +37,11 @@ public class TestClickhouseConfig {
         return new JdbcTemplate(clickHouseDataSource);
     }
 
+    @Bean
+    public JdbcTemplate ingestionJdbcTemplate(DataSource clickHouseDataSource) {
+        return new JdbcTemplate(clickHouseDataSource);
+    }
+
     @Bean
     public JdbcTemplate longQueryJdbcTemplate() {
         Properties info = new Properties();
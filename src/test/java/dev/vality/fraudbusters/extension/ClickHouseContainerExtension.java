@@ -31,7 +31,9 @@ public class ClickHouseContainerExtension implements BeforeAllCallback, AfterAll
                 "sql/V8__create_withdrawal.sql",
                 "sql/V9__add_phone_category_card.sql",
                 "sql/V10__add_id_inspect_result.sql",
-                "sql/V11__rename_masked_pan.sql"
+                "sql/V11__rename_masked_pan.sql",
+                "sql/V12__create_entity_tables.sql",
+                "sql/V13__create_payment_hourly_rollup.sql"
         ));
     }
 
@@ -0,0 +1,102 @@
+package dev.vality.fraudbusters.fraud;
+
+import dev.vality.damsel.wb_list.ListType;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.ListCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.fraud.payment.PaymentContextParserImpl;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateCallExtractorImpl;
+import dev.vality.fraudo.FraudoPaymentParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PaymentTemplateCallExtractorImplTest {
+
+    private final FraudContextParser<FraudoPaymentParser.ParseContext> fraudContextParser =
+            new PaymentContextParserImpl();
+    private final TemplateCallExtractor templateCallExtractor = new PaymentTemplateCallExtractorImpl();
+
+    @Test
+    public void extract() {
+        FraudoPaymentParser.ParseContext parseContext = fraudContextParser.parse("""
+                rule:count_rule: count("card_token", 1000, "party_id", "shop_id") > 2 -> decline;
+                rule:unique_rule: unique("fingerprint", "card_token", 1440) > 3 -> decline;
+                rule:sum_rule: sumSuccess("email", 10) > 100 -> notify;
+                """);
+
+        ParsedTemplate parsedTemplate = templateCallExtractor.extract(parseContext);
+
+        assertSame(parseContext, parsedTemplate.getContext());
+        List<AggregateCall> aggregateCalls = parsedTemplate.getAggregateCalls();
+        assertEquals(3, aggregateCalls.size());
+
+        AggregateCall count = aggregateCalls.get(0);
+        assertEquals(AggregateType.COUNT, count.getType());
+        assertEquals(PaymentCheckedField.CARD_TOKEN, count.getCheckedField());
+        assertEquals(1000, count.getTimeWindow().getStart());
+        assertEquals(List.of(PaymentCheckedField.PARTY_ID, PaymentCheckedField.SHOP_ID), count.getGroupingFields());
+
+        AggregateCall unique = aggregateCalls.get(1);
+        assertEquals(AggregateType.UNIQUE, unique.getType());
+        assertEquals(PaymentCheckedField.FINGERPRINT, unique.getCheckedField());
+        assertEquals(PaymentCheckedField.CARD_TOKEN, unique.getOnField());
+        assertTrue(unique.getGroupingFields().isEmpty());
+
+        AggregateCall sum = aggregateCalls.get(2);
+        assertEquals(AggregateType.SUM_SUCCESS, sum.getType());
+        assertEquals(PaymentCheckedField.EMAIL, sum.getCheckedField());
+        assertNull(sum.getErrorCode());
+    }
+
+    @Test
+    public void extractErrorCodeNamedAsField() {
+        ParsedTemplate parsedTemplate = templateCallExtractor.extract(fraudContextParser.parse("""
+                rule:error_rule: countError("card_token", 1440, "email") > 2 -> decline;
+                rule:error_group_rule: sumError("card_token", 1440, "insufficient_funds", "party_id") > 2 -> decline;
+                """));
+
+        List<AggregateCall> aggregateCalls = parsedTemplate.getAggregateCalls();
+        assertEquals(2, aggregateCalls.size());
+        assertEquals(AggregateType.COUNT_ERROR, aggregateCalls.get(0).getType());
+        assertEquals("email", aggregateCalls.get(0).getErrorCode());
+        assertTrue(aggregateCalls.get(0).getGroupingFields().isEmpty());
+        assertEquals(AggregateType.SUM_ERROR, aggregateCalls.get(1).getType());
+        assertEquals("insufficient_funds", aggregateCalls.get(1).getErrorCode());
+        assertEquals(List.of(PaymentCheckedField.PARTY_ID), aggregateCalls.get(1).getGroupingFields());
+    }
+
+    @Test
+    public void extractListCalls() {
+        ParsedTemplate parsedTemplate = templateCallExtractor.extract(fraudContextParser.parse("""
+                rule:black_rule: inBlackList("email", "ip") -> decline;
+                rule:white_rule: inWhiteList("card_token") -> accept;
+                rule:grey_rule: inGreyList("fingerprint") -> notify;
+                """));
+
+        List<ListCall> listCalls = parsedTemplate.getListCalls();
+        assertEquals(3, listCalls.size());
+        assertEquals(ListType.black, listCalls.get(0).getListType());
+        assertEquals(List.of("email", "ip"), listCalls.get(0).getFieldNames());
+        assertEquals(ListType.white, listCalls.get(1).getListType());
+        assertEquals(List.of("card_token"), listCalls.get(1).getFieldNames());
+        assertEquals(ListType.grey, listCalls.get(2).getListType());
+        assertTrue(parsedTemplate.getAggregateCalls().isEmpty());
+    }
+
+    @Test
+    public void extractWithoutAggregates() {
+        ParsedTemplate parsedTemplate = templateCallExtractor.extract(
+                fraudContextParser.parse("rule: 3 > 2 AND 1 = 1 -> accept;"));
+
+        assertTrue(parsedTemplate.getAggregateCalls().isEmpty());
+    }
+
+}
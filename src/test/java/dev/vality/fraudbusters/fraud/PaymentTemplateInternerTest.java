@@ -0,0 +1,44 @@
+package dev.vality.fraudbusters.fraud;
+
+import dev.vality.fraudbusters.fraud.payment.PaymentContextParserImpl;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
+import dev.vality.fraudbusters.pool.HistoricalPoolImpl;
+import dev.vality.fraudbusters.pool.PoolImpl;
+import dev.vality.fraudo.FraudoPaymentParser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PaymentTemplateInternerTest {
+
+    private static final String TEMPLATE = "rule: 3 > 2 AND 1 = 1 -> accept;";
+
+    private final FraudContextParser<FraudoPaymentParser.ParseContext> parser = new PaymentContextParserImpl();
+
+    @Test
+    void shareTreeUntilLastPoolReleasesIt() {
+        PaymentTemplateInterner interner = new PaymentTemplateInterner();
+        PoolImpl<ParserRuleContext> pool = new PoolImpl<>("template", interner::release);
+        HistoricalPoolImpl<ParserRuleContext> timePool = new HistoricalPoolImpl<>("time-template", interner::release);
+
+        pool.add("id", interner.acquire(TEMPLATE, parser::parse));
+        timePool.add("id", 1L, interner.acquire(TEMPLATE, parser::parse));
+        timePool.add("id", 2L, interner.acquire(TEMPLATE, parser::parse));
+
+        assertEquals(1, interner.size());
+        assertSame(pool.get("id"), timePool.get("id", 2L));
+        assertSame(pool.get("id"), interner.find(TEMPLATE));
+
+        pool.remove("id");
+        timePool.cleanUntil("id", 2L);
+        assertSame(timePool.get("id", 3L), interner.find(TEMPLATE));
+
+        timePool.remove("id", 2L);
+        assertEquals(0, interner.size());
+        assertNull(interner.find(TEMPLATE));
+    }
+
+}
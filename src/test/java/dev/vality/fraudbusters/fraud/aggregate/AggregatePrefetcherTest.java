@@ -0,0 +1,188 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.velocity.UniqueVelocityCounter;
+import dev.vality.fraudbusters.fraud.velocity.VelocityCounter;
+import dev.vality.fraudbusters.pool.Pool;
+import dev.vality.fraudbusters.pool.PoolImpl;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import dev.vality.fraudo.aggregator.UniqueValueAggregator;
+import dev.vality.fraudo.model.TimeWindow;
+import dev.vality.fraudo.payment.aggregator.CountPaymentAggregator;
+import dev.vality.fraudo.payment.aggregator.SumPaymentAggregator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AggregatePrefetcherTest {
+
+    private static final String TEMPLATE_KEY = "template_key";
+
+    @Mock
+    private AggregateKeyResolver aggregateKeyResolver;
+    @Mock
+    private CountPaymentAggregator<PaymentModel, PaymentCheckedField> countAggregator;
+    @Mock
+    private SumPaymentAggregator<PaymentModel, PaymentCheckedField> sumAggregator;
+    @Mock
+    private UniqueValueAggregator<PaymentModel, PaymentCheckedField> uniqueValueAggregator;
+    @Mock
+    private PaymentRepository paymentRepository;
+    @Mock
+    private VelocityCounter paymentVelocityCounter;
+    @Mock
+    private UniqueVelocityCounter uniqueVelocityCounter;
+
+    private final AggregationContext aggregationContext =
+            new AggregationContext(MoreExecutors.newDirectExecutorService());
+    private final Pool<ParsedTemplate> parsedTemplatePool = new PoolImpl<>("parsed-template");
+    private AggregatePrefetcher aggregatePrefetcher;
+
+    @BeforeEach
+    void setUp() {
+        aggregatePrefetcher = new AggregatePrefetcher(
+                parsedTemplatePool,
+                aggregationContext,
+                aggregateKeyResolver,
+                countAggregator,
+                sumAggregator,
+                uniqueValueAggregator,
+                uniqueValueAggregator,
+                paymentRepository,
+                paymentVelocityCounter,
+                uniqueVelocityCounter,
+                new WindowDeltaCache(false, 0L, 0L, 0L, 0L, Clock.systemUTC(), new SimpleMeterRegistry()),
+                MoreExecutors.newDirectExecutorService()
+        );
+        ReflectionTestUtils.setField(aggregatePrefetcher, "prefetchEnabled", true);
+        aggregationContext.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregationContext.clear();
+    }
+
+    @Test
+    void prefetch() {
+        TimeWindow timeWindow = TimeWindow.builder().start(1440).timeUnit("minutes").build();
+        AggregateCall countCall = AggregateCall.builder()
+                .type(AggregateType.COUNT)
+                .checkedField(PaymentCheckedField.CARD_TOKEN)
+                .timeWindow(timeWindow)
+                .groupingFields(List.of())
+                .build();
+        AggregateCall sumCall = AggregateCall.builder()
+                .type(AggregateType.SUM)
+                .checkedField(PaymentCheckedField.EMAIL)
+                .timeWindow(timeWindow)
+                .groupingFields(List.of())
+                .build();
+        parsedTemplatePool.add(TEMPLATE_KEY, ParsedTemplate.builder()
+                .aggregateCalls(List.of(countCall, sumCall))
+                .build());
+        PaymentModel paymentModel = new PaymentModel();
+        AggregateKey countKey = AggregateKey.builder().type(AggregateType.COUNT).build();
+        AggregateKey sumKey = AggregateKey.builder().type(AggregateType.SUM).build();
+        when(aggregateKeyResolver.resolve(countCall, paymentModel)).thenReturn(countKey);
+        when(aggregateKeyResolver.resolve(sumCall, paymentModel)).thenReturn(sumKey);
+        when(countAggregator.count(eq(PaymentCheckedField.CARD_TOKEN), eq(paymentModel), eq(timeWindow), any()))
+                .thenReturn(3);
+        when(sumAggregator.sum(eq(PaymentCheckedField.EMAIL), eq(paymentModel), eq(timeWindow), any()))
+                .thenReturn(100.0);
+
+        aggregatePrefetcher.prefetch(paymentModel, List.of(TEMPLATE_KEY));
+
+        Integer count = aggregationContext.getOrCompute(() -> countKey, () -> fail("count is not prefetched"));
+        Double sum = aggregationContext.getOrCompute(() -> sumKey, () -> fail("sum is not prefetched"));
+        assertEquals(3, count);
+        assertEquals(100.0, sum);
+        verify(countAggregator).count(eq(PaymentCheckedField.CARD_TOKEN), eq(paymentModel), eq(timeWindow), any());
+        verifyNoInteractions(uniqueValueAggregator);
+    }
+
+    @Test
+    void prefetchFusesWindowsOfOneKey() {
+        TimeWindow dayWindow = TimeWindow.builder().start(1440).timeUnit("minutes").build();
+        TimeWindow hourWindow = TimeWindow.builder().start(60).timeUnit("minutes").build();
+        AggregateCall dayCall = AggregateCall.builder()
+                .type(AggregateType.COUNT)
+                .checkedField(PaymentCheckedField.CARD_TOKEN)
+                .timeWindow(dayWindow)
+                .groupingFields(List.of())
+                .build();
+        AggregateCall hourCall = AggregateCall.builder()
+                .type(AggregateType.COUNT_SUCCESS)
+                .checkedField(PaymentCheckedField.CARD_TOKEN)
+                .timeWindow(hourWindow)
+                .groupingFields(List.of())
+                .build();
+        parsedTemplatePool.add(TEMPLATE_KEY, ParsedTemplate.builder()
+                .aggregateCalls(List.of(dayCall, hourCall))
+                .build());
+        PaymentModel paymentModel = new PaymentModel();
+        Instant now = Instant.ofEpochMilli(1588761209000L);
+        AggregateKey dayKey = AggregateKey.builder()
+                .type(AggregateType.COUNT)
+                .fieldName("cardToken")
+                .value("token")
+                .timeBound(TimeBound.builder().left(now.minusSeconds(86400)).right(now).build())
+                .groupingFields(List.of())
+                .build();
+        AggregateKey hourKey = dayKey.toBuilder()
+                .type(AggregateType.COUNT_SUCCESS)
+                .timeBound(TimeBound.builder().left(now.minusSeconds(3600)).right(now).build())
+                .build();
+        when(aggregateKeyResolver.resolve(dayCall, paymentModel)).thenReturn(dayKey);
+        when(aggregateKeyResolver.resolve(hourCall, paymentModel)).thenReturn(hourKey);
+        when(paymentRepository.aggregateWindows(eq("cardToken"), eq("token"), eq(List.of()), anyList()))
+                .thenReturn(List.of(5L, 2L));
+        when(countAggregator.count(eq(PaymentCheckedField.CARD_TOKEN), eq(paymentModel), eq(dayWindow), any()))
+                .thenAnswer(invocation -> aggregationContext.getQueryResult(dayKey).intValue());
+        when(countAggregator.countSuccess(eq(PaymentCheckedField.CARD_TOKEN), eq(paymentModel), eq(hourWindow), any()))
+                .thenAnswer(invocation -> aggregationContext.getQueryResult(hourKey).intValue());
+
+        aggregatePrefetcher.prefetch(paymentModel, List.of(TEMPLATE_KEY));
+
+        Integer dayCount = aggregationContext.getOrCompute(() -> dayKey, () -> fail("count is not prefetched"));
+        Integer hourCount = aggregationContext.getOrCompute(() -> hourKey, () -> fail("count is not prefetched"));
+        assertEquals(5, dayCount);
+        assertEquals(2, hourCount);
+        verify(paymentRepository, times(1)).aggregateWindows(any(), any(), any(), anyList());
+    }
+
+    @Test
+    void prefetchSkippedForUnknownTemplates() {
+        aggregatePrefetcher.prefetch(new PaymentModel(), List.of(TEMPLATE_KEY));
+
+        verifyNoInteractions(aggregateKeyResolver, countAggregator, sumAggregator, uniqueValueAggregator,
+                paymentRepository);
+    }
+
+}
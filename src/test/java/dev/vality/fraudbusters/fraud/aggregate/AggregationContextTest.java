@@ -0,0 +1,129 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AggregationContextTest {
+
+    private final AggregationContext aggregationContext =
+            new AggregationContext(MoreExecutors.newDirectExecutorService());
+
+    @Test
+    void getOrComputeMemoizesWithinScope() {
+        AtomicInteger calls = new AtomicInteger();
+        AggregateKey key = AggregateKey.builder()
+                .type(AggregateType.COUNT)
+                .fieldName("cardToken")
+                .value("token")
+                .build();
+
+        aggregationContext.init();
+        Integer first = aggregationContext.getOrCompute(() -> key, calls::incrementAndGet);
+        Integer second = aggregationContext.getOrCompute(
+                () -> AggregateKey.builder().type(AggregateType.COUNT).fieldName("cardToken").value("token").build(),
+                calls::incrementAndGet
+        );
+        aggregationContext.clear();
+
+        assertEquals(1, first);
+        assertEquals(1, second);
+        assertEquals(1, calls.get());
+        assertFalse(aggregationContext.isActive());
+    }
+
+    @Test
+    void getOrComputeWithoutScope() {
+        AtomicInteger calls = new AtomicInteger();
+        AggregateKey key = AggregateKey.builder().type(AggregateType.SUM).build();
+
+        aggregationContext.getOrCompute(() -> key, calls::incrementAndGet);
+        aggregationContext.getOrCompute(() -> key, calls::incrementAndGet);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void getOrComputeMissesDeadline() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        AggregationContext deadlineContext = new AggregationContext(executor);
+        AggregateKey key = AggregateKey.builder().type(AggregateType.COUNT).build();
+        try {
+            deadlineContext.init(50L);
+            Integer count = deadlineContext.getOrCompute(() -> key, () -> await(latch));
+            Boolean inList = deadlineContext.callWithinDeadline(() -> await(latch) > 0, false);
+
+            assertEquals(Integer.MAX_VALUE, count);
+            assertFalse(inList);
+            assertTrue(deadlineContext.isDegraded());
+        } finally {
+            deadlineContext.clear();
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void missedDeadlineInterruptsCall() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AggregationContext deadlineContext = new AggregationContext(executor);
+        try {
+            deadlineContext.init(50L);
+            Boolean inList = deadlineContext.callWithinDeadline(() -> {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return false;
+            }, true);
+
+            assertTrue(inList);
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+            assertEquals(1, deadlineContext.callWithinDeadline(() -> 1, 0));
+        } finally {
+            deadlineContext.clear();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void clearCancelsPendingPrefetch() {
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> completed = CompletableFuture.completedFuture(1);
+        CompletableFuture<Boolean> pendingLookup = new CompletableFuture<>();
+
+        aggregationContext.init();
+        aggregationContext.put(AggregateKey.builder().type(AggregateType.COUNT).build(), pending);
+        aggregationContext.put(AggregateKey.builder().type(AggregateType.SUM).build(), completed);
+        aggregationContext.putLookup("row", pendingLookup);
+        aggregationContext.clear();
+
+        assertTrue(pending.isCancelled());
+        assertTrue(pendingLookup.isCancelled());
+        assertFalse(completed.isCancelled());
+    }
+
+    private Integer await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 1;
+    }
+
+}
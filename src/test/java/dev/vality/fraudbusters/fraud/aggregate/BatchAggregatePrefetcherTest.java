@@ -0,0 +1,117 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.domain.TimeBound;
+import dev.vality.fraudbusters.fraud.TemplateCallExtractor;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.fraud.model.AggregateCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.pool.HistoricalPool;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchAggregatePrefetcherTest {
+
+    private static final String TEMPLATE_KEY = "template_key";
+    private static final String CARD_TOKEN = "cardToken";
+
+    @Mock
+    private HistoricalPool<ParserRuleContext> timeTemplatePool;
+    @Mock
+    private TemplateCallExtractor templateCallExtractor;
+    @Mock
+    private AggregateKeyResolver aggregateKeyResolver;
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    private final ParserRuleContext context = new ParserRuleContext();
+    private final AggregateCall countCall = AggregateCall.builder().type(AggregateType.COUNT).build();
+    private final AggregateCall uniqueCall = AggregateCall.builder().type(AggregateType.UNIQUE).build();
+    private BatchAggregatePrefetcher batchAggregatePrefetcher;
+
+    @BeforeEach
+    void setUp() {
+        batchAggregatePrefetcher = new BatchAggregatePrefetcher(
+                timeTemplatePool,
+                templateCallExtractor,
+                aggregateKeyResolver,
+                paymentRepository
+        );
+        ReflectionTestUtils.setField(batchAggregatePrefetcher, "maxWindows", 256);
+        when(timeTemplatePool.get(eq(TEMPLATE_KEY), anyLong())).thenReturn(context);
+        when(templateCallExtractor.extract(context)).thenReturn(ParsedTemplate.builder()
+                .context(context)
+                .aggregateCalls(List.of(countCall, uniqueCall))
+                .build());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void paymentsOfBatchShareOneGroupedQuery() {
+        PaymentModel first = paymentModel(1_000L);
+        PaymentModel second = paymentModel(2_000L);
+        AggregateKey firstKey = key(AggregateType.COUNT, "token_1", 1_000L);
+        AggregateKey secondKey = key(AggregateType.COUNT, "token_2", 2_000L);
+        when(aggregateKeyResolver.resolve(countCall, first)).thenReturn(firstKey);
+        when(aggregateKeyResolver.resolve(countCall, second)).thenReturn(secondKey);
+        when(aggregateKeyResolver.resolve(eq(uniqueCall), any()))
+                .thenReturn(key(AggregateType.UNIQUE, "token_1", 1_000L));
+        when(paymentRepository.aggregateValueWindows(eq(CARD_TOKEN), anyList(), anyList()))
+                .thenReturn(List.of(3L, 5L));
+
+        List<Map<AggregateKey, Long>> results =
+                batchAggregatePrefetcher.prefetch(List.of(first, second), paymentModel -> List.of(TEMPLATE_KEY));
+
+        ArgumentCaptor<List<Object>> values = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<AggregateWindow>> windows = ArgumentCaptor.forClass(List.class);
+        verify(paymentRepository, times(1)).aggregateValueWindows(eq(CARD_TOKEN), values.capture(), windows.capture());
+        verify(templateCallExtractor, times(1)).extract(context);
+        assertEquals(List.of("token_1", "token_2"), values.getValue());
+        assertTrue(windows.getValue().stream().allMatch(window -> window.getType() == AggregateType.COUNT));
+        assertEquals(Map.of(firstKey, 3L), results.get(0));
+        assertEquals(Map.of(secondKey, 5L), results.get(1));
+    }
+
+    private PaymentModel paymentModel(long timestamp) {
+        PaymentModel paymentModel = new PaymentModel();
+        paymentModel.setTimestamp(timestamp);
+        return paymentModel;
+    }
+
+    private AggregateKey key(AggregateType type, String value, long to) {
+        return AggregateKey.builder()
+                .type(type)
+                .fieldName(CARD_TOKEN)
+                .value(value)
+                .timeBound(TimeBound.builder()
+                        .left(Instant.ofEpochMilli(0L))
+                        .right(Instant.ofEpochMilli(to))
+                        .build())
+                .groupingFields(List.of())
+                .build();
+    }
+
+}
@@ -0,0 +1,164 @@
+package dev.vality.fraudbusters.fraud.aggregate;
+
+import dev.vality.fraudbusters.domain.AggregateWindow;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
+import dev.vality.fraudbusters.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeltaCachePaymentRepositoryDecoratorTest {
+
+    private static final String CARD_TOKEN = "cardToken";
+    private static final String TOKEN = "token";
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    private final Clock clock = mock(Clock.class);
+    private final List<Long> eventSeconds = new ArrayList<>();
+    private final List<long[]> queriedRanges = new ArrayList<>();
+    private long now = Instant.parse("2026-03-01T12:00:00Z").toEpochMilli();
+    private WindowDeltaCache windowDeltaCache;
+    private DeltaCachePaymentRepositoryDecorator decorator;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(clock.millis()).thenAnswer(invocation -> now);
+        windowDeltaCache = new WindowDeltaCache(
+                true,
+                DAY_MS,
+                TimeUnit.MINUTES.toMillis(10),
+                1024 * 1024,
+                HOUR_MS * 6,
+                clock,
+                new SimpleMeterRegistry()
+        );
+        decorator = new DeltaCachePaymentRepositoryDecorator(paymentRepository, windowDeltaCache);
+        for (long second = (now - 40 * DAY_MS) / 1000; second < now / 1000; second += 1777) {
+            eventSeconds.add(second);
+        }
+        lenient().when(paymentRepository.countOperationSuccessWithGroupBy(
+                eq(CARD_TOKEN), eq(TOKEN), anyLong(), anyLong(), anyList())
+        ).thenAnswer(invocation -> {
+            long from = invocation.getArgument(2);
+            long to = invocation.getArgument(3);
+            queriedRanges.add(new long[]{from, to});
+            return (int) count(from, to);
+        });
+        lenient().when(paymentRepository.aggregateWindows(eq(CARD_TOKEN), eq(TOKEN), any(), anyList()))
+                .thenAnswer(invocation -> {
+                    List<AggregateWindow> windows = invocation.getArgument(3);
+                    long from = windows.stream().mapToLong(AggregateWindow::getFrom).min().orElseThrow();
+                    long to = windows.stream().mapToLong(AggregateWindow::getTo).max().orElseThrow();
+                    queriedRanges.add(new long[]{from, to});
+                    return windows.stream().map(window -> count(window.getFrom(), window.getTo())).toList();
+                });
+    }
+
+    @Test
+    void slidingWindowReadsOnlyEdges() {
+        assertEquals(count(now - 30 * DAY_MS, now), countSuccess(now - 30 * DAY_MS, now));
+
+        now += 2 * HOUR_MS;
+        eventSeconds.add(now / 1000 - 30);
+        eventSeconds.add(now / 1000 - 3600);
+        queriedRanges.clear();
+        assertEquals(count(now - 30 * DAY_MS, now), countSuccess(now - 30 * DAY_MS, now));
+        assertTrue(queriedRanges.stream().allMatch(range -> range[1] - range[0] <= 3 * HOUR_MS));
+        assertEquals(1L, windowDeltaCache.size());
+    }
+
+    @Test
+    void lateFrozenRowIsReadAfterTtl() {
+        assertEquals(count(now - 30 * DAY_MS, now), countSuccess(now - 30 * DAY_MS, now));
+        eventSeconds.add((now - 20 * DAY_MS) / 1000);
+
+        now += HOUR_MS;
+        assertEquals(count(now - 30 * DAY_MS, now) - 1, countSuccess(now - 30 * DAY_MS, now));
+
+        for (int hour = 2; hour < 6; hour++) {
+            now += HOUR_MS;
+            countSuccess(now - 30 * DAY_MS, now);
+        }
+        now += HOUR_MS;
+        queriedRanges.clear();
+        assertEquals(count(now - 30 * DAY_MS, now), countSuccess(now - 30 * DAY_MS, now));
+        assertTrue(queriedRanges.stream().anyMatch(range -> range[1] - range[0] >= 29 * DAY_MS));
+    }
+
+    @Test
+    void fusedWindowsMatchFullQueries() {
+        List<AggregateWindow> windows = List.of(
+                window(AggregateType.COUNT, now - 30 * DAY_MS),
+                window(AggregateType.COUNT, now - 10 * DAY_MS),
+                window(AggregateType.COUNT, now - HOUR_MS)
+        );
+        List<Long> expected = windows.stream().map(window -> count(window.getFrom(), window.getTo())).toList();
+        assertEquals(expected, decorator.aggregateWindows(CARD_TOKEN, TOKEN, List.of(), windows));
+
+        now += HOUR_MS;
+        eventSeconds.add(now / 1000 - 5);
+        queriedRanges.clear();
+        List<AggregateWindow> slided = List.of(
+                window(AggregateType.COUNT, now - 30 * DAY_MS),
+                window(AggregateType.COUNT, now - 10 * DAY_MS),
+                window(AggregateType.COUNT, now - HOUR_MS)
+        );
+        expected = slided.stream().map(window -> count(window.getFrom(), window.getTo())).toList();
+        assertEquals(expected, decorator.aggregateWindows(CARD_TOKEN, TOKEN, List.of(), slided));
+        assertTrue(queriedRanges.stream().allMatch(range -> range[1] - range[0] <= 2 * HOUR_MS));
+    }
+
+    @Test
+    void shortWindowGoesToRepository() {
+        decorator.countOperationSuccessWithGroupBy(CARD_TOKEN, TOKEN, now - HOUR_MS, now, List.of());
+
+        verify(paymentRepository).countOperationSuccessWithGroupBy(CARD_TOKEN, TOKEN, now - HOUR_MS, now, List.of());
+        assertEquals(0L, windowDeltaCache.size());
+    }
+
+    private long countSuccess(long from, long to) {
+        return decorator.countOperationSuccessWithGroupBy(CARD_TOKEN, TOKEN, from, to, List.of()).longValue();
+    }
+
+    private AggregateWindow window(AggregateType type, long from) {
+        return AggregateWindow.builder()
+                .type(type)
+                .from(from)
+                .to(now)
+                .build();
+    }
+
+    private long count(long from, long to) {
+        long fromSecond = from / 1000;
+        long toSecond = to / 1000;
+        return eventSeconds.stream()
+                .filter(second -> second >= fromSecond && second <= toSecond)
+                .count();
+    }
+
+}
@@ -1,13 +1,16 @@
 package dev.vality.fraudbusters.fraud.finder;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import dev.vality.damsel.wb_list.CountInfo;
 import dev.vality.damsel.wb_list.Result;
 import dev.vality.damsel.wb_list.RowInfo;
 import dev.vality.damsel.wb_list.WbListServiceSrv;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
 import dev.vality.fraudbusters.fraud.payment.finder.PaymentInListFinderImpl;
 import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
 import dev.vality.fraudbusters.repository.PaymentRepository;
 import dev.vality.fraudo.finder.InListFinder;
 import dev.vality.fraudo.model.Pair;
@@ -20,6 +23,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -43,7 +47,9 @@ public class InGreyListFinderImplTest {
     @BeforeEach
     public void init() {
         inGreyListFinder =
-                new PaymentInListFinderImpl(wbListServiceSrv, new DatabasePaymentFieldResolver(), analyticRepository);
+                new PaymentInListFinderImpl(wbListServiceSrv, new WbListReplica(0.01),
+                        new DatabasePaymentFieldResolver(), analyticRepository,
+                        new AggregationContext(MoreExecutors.newDirectExecutorService()), Map.of());
     }
 
     @Test
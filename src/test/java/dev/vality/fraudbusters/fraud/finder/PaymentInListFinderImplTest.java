@@ -1,12 +1,22 @@
 package dev.vality.fraudbusters.fraud.finder;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import dev.vality.damsel.wb_list.ListNotFound;
+import dev.vality.damsel.wb_list.ListType;
 import dev.vality.damsel.wb_list.WbListServiceSrv;
 import dev.vality.fraudbusters.exception.RuleFunctionException;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
+import dev.vality.fraudbusters.fraud.model.ListCall;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.finder.ListLookupPrefetcher;
 import dev.vality.fraudbusters.fraud.payment.finder.PaymentInListFinderImpl;
 import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolver;
+import dev.vality.fraudbusters.fraud.payment.resolver.PaymentModelFieldResolver;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
+import dev.vality.fraudbusters.pool.Pool;
+import dev.vality.fraudbusters.pool.PoolImpl;
 import dev.vality.fraudbusters.repository.PaymentRepository;
 import dev.vality.fraudo.finder.InListFinder;
 import dev.vality.fraudo.model.Pair;
@@ -17,8 +27,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,7 +44,9 @@ class PaymentInListFinderImplTest {
     public static final String PARTY_ID = "partyId";
     public static final String SHOP_ID = "shopId";
     public static final String VALUE = "value";
+    public static final String TEMPLATE_KEY = "template";
     private InListFinder<PaymentModel, PaymentCheckedField> listFinder;
+    private AggregationContext aggregationContext;
 
     @Mock
     private WbListServiceSrv.Iface wbListServiceSrv;
@@ -43,7 +57,9 @@ class PaymentInListFinderImplTest {
 
     @BeforeEach
     public void init() {
-        listFinder = new PaymentInListFinderImpl(wbListServiceSrv, dbPaymentFieldResolver, paymentRepository);
+        aggregationContext = new AggregationContext(MoreExecutors.newDirectExecutorService());
+        listFinder = new PaymentInListFinderImpl(wbListServiceSrv, new WbListReplica(0.01),
+                dbPaymentFieldResolver, paymentRepository, aggregationContext, Map.of());
     }
 
     @Test
@@ -94,4 +110,46 @@ class PaymentInListFinderImplTest {
         Boolean isInList = listFinder.findInBlackList(fields, paymentModel);
         assertTrue(isInList);
     }
+
+    @Test
+    void prefetchedListChecksShareOneCall() throws TException {
+        Mockito.when(wbListServiceSrv.isAnyExist(anyList())).thenReturn(false);
+        Pool<ParsedTemplate> parsedTemplatePool = new PoolImpl<>("parsed-template");
+        parsedTemplatePool.add(TEMPLATE_KEY, ParsedTemplate.builder()
+                .aggregateCalls(List.of())
+                .listCalls(List.of(
+                        ListCall.builder().listType(ListType.black).fieldNames(List.of("email", "ip")).build(),
+                        ListCall.builder().listType(ListType.white).fieldNames(List.of("card_token")).build()
+                ))
+                .build());
+        ListLookupPrefetcher listLookupPrefetcher = new ListLookupPrefetcher(
+                parsedTemplatePool,
+                aggregationContext,
+                new PaymentModelFieldResolver(),
+                wbListServiceSrv,
+                new WbListReplica(0.01),
+                MoreExecutors.newDirectExecutorService()
+        );
+        ReflectionTestUtils.setField(listLookupPrefetcher, "prefetchEnabled", true);
+        PaymentModel paymentModel = new PaymentModel();
+        paymentModel.setPartyId(PARTY_ID);
+        paymentModel.setShopId(SHOP_ID);
+        paymentModel.setEmail("test@test.ru");
+        paymentModel.setIp(VALUE);
+        paymentModel.setCardToken("token");
+
+        aggregationContext.init();
+        try {
+            listLookupPrefetcher.prefetch(paymentModel, List.of(TEMPLATE_KEY));
+            assertFalse(listFinder.findInBlackList(List.of(
+                    new Pair<>(PaymentCheckedField.EMAIL, "test@test.ru"),
+                    new Pair<>(PaymentCheckedField.IP, VALUE)
+            ), paymentModel));
+            assertFalse(listFinder.findInWhiteList(
+                    List.of(new Pair<>(PaymentCheckedField.CARD_TOKEN, "token")), paymentModel));
+        } finally {
+            aggregationContext.clear();
+        }
+        verify(wbListServiceSrv, times(1)).isAnyExist(anyList());
+    }
 }
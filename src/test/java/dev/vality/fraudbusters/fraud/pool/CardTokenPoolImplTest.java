@@ -0,0 +1,44 @@
+package dev.vality.fraudbusters.fraud.pool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardTokenPoolImplTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CardTokenPoolImpl cardTokenPool = new CardTokenPoolImpl(registry);
+
+    @Test
+    void reinit() {
+        assertTrue(cardTokenPool.isEmpty());
+        assertFalse(cardTokenPool.isExist("token_1"));
+
+        cardTokenPool.reinit(Arrays.asList("token_2", "token_1", "token_2", null));
+
+        assertFalse(cardTokenPool.isEmpty());
+        assertTrue(cardTokenPool.isExist("token_1"));
+        assertTrue(cardTokenPool.isExist("token_2"));
+        assertFalse(cardTokenPool.isExist("token_3"));
+        assertFalse(cardTokenPool.isExist(null));
+        assertEquals(2, registry.get(CardTokenPoolImpl.SIZE_METRIC).gauge().value());
+        assertEquals(16, registry.get(CardTokenPoolImpl.BYTES_METRIC).gauge().value());
+
+        cardTokenPool.reinit(List.of("token_3"));
+
+        assertFalse(cardTokenPool.isExist("token_1"));
+        assertTrue(cardTokenPool.isExist("token_3"));
+
+        cardTokenPool.clear();
+
+        assertTrue(cardTokenPool.isEmpty());
+        assertEquals(0, registry.get(CardTokenPoolImpl.SIZE_METRIC).gauge().value());
+    }
+
+}
@@ -3,6 +3,7 @@ package dev.vality.fraudbusters.fraud.resolver;
 import dev.vality.columbus.ColumbusServiceSrv;
 import dev.vality.fraudbusters.config.CachingConfig;
 import dev.vality.fraudbusters.constant.ClickhouseUtilsValue;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
 import dev.vality.fraudbusters.fraud.payment.CountryByIpResolver;
 import dev.vality.fraudbusters.fraud.payment.resolver.CountryResolverImpl;
@@ -18,12 +19,18 @@ import org.springframework.cache.CacheManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.concurrent.ExecutorService;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith({MockitoExtension.class, SpringExtension.class})
-@ContextConfiguration(classes = {CachingConfig.class, CountryByIpResolver.class, CountryResolverImpl.class})
+@ContextConfiguration(classes = {
+        CachingConfig.class,
+        AggregationContext.class,
+        CountryByIpResolver.class,
+        CountryResolverImpl.class})
 public class CountryResolverImplTest {
 
     public static final String IP = "123.123.123.123";
@@ -31,6 +38,8 @@ public class CountryResolverImplTest {
 
     @MockBean
     private ColumbusServiceSrv.Iface geoIpServiceSrv;
+    @MockBean
+    private ExecutorService aggregatePrefetchExecutor;
 
     @Autowired
     private CountryResolverImpl countryResolver;
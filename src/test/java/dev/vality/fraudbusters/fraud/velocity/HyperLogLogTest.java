@@ -0,0 +1,46 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final double MAX_ERROR = 0.02;
+
+    @Test
+    void smallSetsAreExact() {
+        HyperLogLog hyperLogLog = new HyperLogLog(HyperLogLog.precisionFor(MAX_ERROR));
+        for (int i = 0; i < 100; i++) {
+            hyperLogLog.add(hash(i % 40));
+        }
+        assertEquals(40L, hyperLogLog.estimate());
+    }
+
+    @Test
+    void mergedEstimateWithinErrorBound() {
+        int precision = HyperLogLog.precisionFor(MAX_ERROR);
+        assertEquals(12, precision);
+        HyperLogLog first = new HyperLogLog(precision);
+        HyperLogLog second = new HyperLogLog(precision);
+        for (int i = 0; i < 60_000; i++) {
+            first.add(hash(i));
+            second.add(hash(i + 40_000));
+        }
+        HyperLogLog window = new HyperLogLog(precision);
+        first.mergeInto(window);
+        second.mergeInto(window);
+
+        long estimate = window.estimate();
+        assertTrue(Math.abs(estimate - 100_000) <= 100_000 * MAX_ERROR * 3, "estimate: " + estimate);
+    }
+
+    private static long hash(int value) {
+        return HASH_FUNCTION.hashInt(value).asLong();
+    }
+
+}
@@ -0,0 +1,84 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UniqueVelocityCounterTest {
+
+    private static final String CARD_TOKEN = "cardToken";
+    private static final String EMAIL = "email";
+    private static final String IP = "ip";
+    private static final String TOKEN = "token";
+    private static final long RETENTION_MS = TimeUnit.HOURS.toMillis(1);
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    private final AtomicLong now = new AtomicLong(NOW.toEpochMilli());
+    private VelocityCounter paymentVelocityCounter;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenAnswer(invocation -> now.get());
+        paymentVelocityCounter = new VelocityCounter(
+                "payment",
+                List.of("captured"),
+                List.of(CARD_TOKEN, EMAIL, IP),
+                RETENTION_MS,
+                clock
+        );
+        paymentVelocityCounter.onAssigned(Map.of(), Map.of(), 0L);
+    }
+
+    @Test
+    void edgeBucketIsScaledByItsShareOfTheWindow() {
+        UniqueVelocityCounter counter = createCounter(TimeUnit.MINUTES.toMillis(1));
+        counter.register(CARD_TOKEN, EMAIL);
+        long edgeBucket = NOW.minusSeconds(600).getEpochSecond();
+        long innerBucket = NOW.minusSeconds(300).getEpochSecond();
+        for (int i = 0; i < 10; i++) {
+            counter.add(CARD_TOKEN, TOKEN, EMAIL, "edge_" + i, edgeBucket);
+            counter.add(CARD_TOKEN, TOKEN, EMAIL, "inner_" + i, innerBucket);
+        }
+
+        long from = NOW.minusSeconds(570).toEpochMilli();
+
+        assertEquals(15L, counter.estimate(CARD_TOKEN, TOKEN, EMAIL, from, NOW.toEpochMilli()));
+        assertEquals(20L, counter.estimate(CARD_TOKEN, TOKEN, EMAIL, from - 30_000L, NOW.toEpochMilli()));
+    }
+
+    @Test
+    void onlyRegisteredPairsAreCounted() {
+        UniqueVelocityCounter counter = createCounter(TimeUnit.SECONDS.toMillis(1));
+        counter.register(CARD_TOKEN, EMAIL);
+        now.addAndGet(TimeUnit.MINUTES.toMillis(30));
+
+        counter.add(Map.of(CARD_TOKEN, TOKEN, EMAIL, "email", IP, "ip"), TimeUnit.MILLISECONDS.toSeconds(now.get()));
+
+        long to = now.get();
+        assertEquals(1, counter.size());
+        assertTrue(counter.covers(CARD_TOKEN, EMAIL, NOW.toEpochMilli(), to));
+        assertFalse(counter.covers(CARD_TOKEN, EMAIL, NOW.minusSeconds(60).toEpochMilli(), to));
+        assertFalse(counter.covers(CARD_TOKEN, IP, NOW.toEpochMilli(), to));
+        assertEquals(1L, counter.estimate(CARD_TOKEN, TOKEN, EMAIL, NOW.toEpochMilli(), to));
+    }
+
+    private UniqueVelocityCounter createCounter(long bucketMs) {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenAnswer(invocation -> now.get());
+        return new UniqueVelocityCounter(paymentVelocityCounter, List.of(CARD_TOKEN, EMAIL, IP), bucketMs, 0.02, clock);
+    }
+
+}
@@ -0,0 +1,98 @@
+package dev.vality.fraudbusters.fraud.velocity;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VelocityCounterTest {
+
+    private static final String CARD_TOKEN = "cardToken";
+    private static final String TOKEN = "token";
+    private static final long RETENTION_MS = TimeUnit.HOURS.toMillis(1);
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    private VelocityCounter velocityCounter;
+
+    @BeforeEach
+    void setUp() {
+        velocityCounter = new VelocityCounter(
+                "payment",
+                List.of("pending", "captured", "failed"),
+                List.of(CARD_TOKEN),
+                RETENTION_MS,
+                Clock.fixed(NOW, ZoneOffset.UTC)
+        );
+    }
+
+    @Test
+    void countAndSumWithinWindow() {
+        long now = NOW.getEpochSecond();
+        velocityCounter.add(CARD_TOKEN, TOKEN, "1", "captured", now - 600, 100L);
+        velocityCounter.add(CARD_TOKEN, TOKEN, "2", "failed", now - 300, 200L);
+        velocityCounter.add(CARD_TOKEN, TOKEN, "3", "captured", now - 60, 300L);
+        velocityCounter.add(CARD_TOKEN, TOKEN, "3", "captured", now - 60, 300L);
+        velocityCounter.add(CARD_TOKEN, "other", "4", "captured", now - 60, 400L);
+
+        long from = NOW.minusSeconds(400).toEpochMilli();
+        long to = NOW.toEpochMilli();
+        int captured = velocityCounter.statusMask("captured");
+        int finalStatuses = velocityCounter.statusMask("captured", "failed");
+
+        assertEquals(1L, velocityCounter.count(CARD_TOKEN, TOKEN, from, to, captured));
+        assertEquals(2L, velocityCounter.count(CARD_TOKEN, TOKEN, from, to, finalStatuses));
+        assertEquals(500L, velocityCounter.sum(CARD_TOKEN, TOKEN, from, to, finalStatuses));
+        assertEquals(600L, velocityCounter.sum(CARD_TOKEN, TOKEN, 0L, to, finalStatuses));
+        assertEquals(0, velocityCounter.statusMask("cancelled"));
+    }
+
+    @Test
+    void coversOnlyLoadedWindowsAfterCatchUp() {
+        long loadedFrom = NOW.toEpochMilli() - RETENTION_MS;
+        long from = NOW.minusSeconds(600).toEpochMilli();
+        long to = NOW.toEpochMilli();
+        assertFalse(velocityCounter.covers(CARD_TOKEN, from, to));
+
+        velocityCounter.onAssigned(Map.of(0, 10L, 1, 5L), Map.of(0, 20L, 1, 5L), loadedFrom);
+        assertFalse(velocityCounter.covers(CARD_TOKEN, from, to));
+
+        velocityCounter.onConsumed(0, 19L);
+        assertTrue(velocityCounter.covers(CARD_TOKEN, from, to));
+        assertFalse(velocityCounter.covers(CARD_TOKEN, loadedFrom - 1, to));
+        assertFalse(velocityCounter.covers("email", from, to));
+
+        velocityCounter.onRevoked();
+        assertFalse(velocityCounter.covers(CARD_TOKEN, from, to));
+    }
+
+    @Test
+    void evictExpired() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli());
+        velocityCounter = new VelocityCounter("payment", List.of("captured"), List.of(CARD_TOKEN), RETENTION_MS, clock);
+        long now = NOW.getEpochSecond();
+        velocityCounter.add(CARD_TOKEN, TOKEN, "1", "captured", now - 7200, 100L);
+        velocityCounter.add(CARD_TOKEN, "expired", "2", "captured", now - 3000, 100L);
+        velocityCounter.add(CARD_TOKEN, TOKEN, "3", "captured", now - 60, 100L);
+        assertEquals(2, velocityCounter.size());
+
+        when(clock.millis()).thenReturn(NOW.plusSeconds(1200).toEpochMilli());
+        velocityCounter.evictExpired();
+
+        assertEquals(1, velocityCounter.size());
+        assertEquals(1L, velocityCounter.count(CARD_TOKEN, TOKEN, 0L, NOW.toEpochMilli(),
+                velocityCounter.statusMask("captured")));
+    }
+
+}
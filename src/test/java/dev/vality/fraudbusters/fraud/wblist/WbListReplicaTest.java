@@ -0,0 +1,124 @@
+package dev.vality.fraudbusters.fraud.wblist;
+
+import dev.vality.damsel.wb_list.Event;
+import dev.vality.damsel.wb_list.EventType;
+import dev.vality.damsel.wb_list.IdInfo;
+import dev.vality.damsel.wb_list.ListType;
+import dev.vality.damsel.wb_list.PaymentId;
+import dev.vality.damsel.wb_list.Row;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WbListReplicaTest {
+
+    private static final String PARTY_ID = "partyId";
+    private static final String SHOP_ID = "shopId";
+    private static final String CARD_TOKEN = "CARD_TOKEN";
+
+    private final WbListReplica wbListReplica = new WbListReplica(0.01);
+
+    @Test
+    void readyAfterCatchUp() {
+        assertFalse(wbListReplica.isReady());
+
+        wbListReplica.onAssigned(Map.of(0, 0L, 1, 3L), Map.of(0, 2L, 1, 3L));
+        assertFalse(wbListReplica.isReady());
+
+        wbListReplica.onConsumed(0, 1L);
+        assertTrue(wbListReplica.isReady());
+
+        wbListReplica.onRevoked();
+        assertFalse(wbListReplica.isReady());
+    }
+
+    @Test
+    void rebuiltIndexIsServedAfterCatchUp() {
+        wbListReplica.apply(event(EventType.CREATED, row(ListType.black, PARTY_ID, SHOP_ID, "oldValue")));
+
+        wbListReplica.onAssigned(Map.of(0, 0L), Map.of(0, 2L));
+        wbListReplica.apply(event(EventType.CREATED, row(ListType.black, PARTY_ID, SHOP_ID, "newValue")));
+        wbListReplica.onConsumed(0, 0L);
+        assertFalse(wbListReplica.isReady());
+        assertTrue(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "oldValue")));
+        assertFalse(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "newValue")));
+
+        wbListReplica.onConsumed(0, 1L);
+        assertTrue(wbListReplica.isReady());
+        assertFalse(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "oldValue")));
+        assertTrue(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "newValue")));
+    }
+
+    @Test
+    void notReadyWithoutHeartbeat() {
+        AtomicLong now = new AtomicLong(1_000_000L);
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenAnswer(invocation -> now.get());
+        WbListReplica replica = new WbListReplica(0.01, 60_000L, clock);
+        replica.onAssigned(Map.of(0, 0L), Map.of(0, 0L));
+        assertTrue(replica.isReady());
+
+        now.addAndGet(61_000L);
+        assertFalse(replica.isReady());
+
+        replica.onIdle();
+        assertTrue(replica.isReady());
+    }
+
+    @Test
+    void createAndDeleteRows() {
+        for (int i = 0; i < 1000; i++) {
+            wbListReplica.apply(event(EventType.CREATED, row(ListType.black, PARTY_ID, SHOP_ID, "token" + i)));
+        }
+        assertTrue(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "token500")));
+        assertFalse(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "token1000")));
+        assertFalse(wbListReplica.isExist(row(ListType.white, PARTY_ID, SHOP_ID, "token500")));
+        assertFalse(wbListReplica.isExist(row(ListType.black, PARTY_ID, "otherShop", "token500")));
+
+        wbListReplica.apply(event(EventType.DELETED, row(ListType.black, PARTY_ID, SHOP_ID, "token500")));
+        assertFalse(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "token500")));
+        assertTrue(wbListReplica.isAnyExist(List.of(
+                row(ListType.black, PARTY_ID, SHOP_ID, "token500"),
+                row(ListType.black, PARTY_ID, SHOP_ID, "token501")
+        )));
+    }
+
+    @Test
+    void cascadeToPartyAndGlobalRows() {
+        wbListReplica.apply(event(EventType.CREATED, row(ListType.black, PARTY_ID, null, "partyValue")));
+        wbListReplica.apply(event(EventType.CREATED, row(ListType.black, null, null, "globalValue")));
+
+        assertTrue(wbListReplica.isExist(row(ListType.black, PARTY_ID, SHOP_ID, "partyValue")));
+        assertTrue(wbListReplica.isExist(row(ListType.black, "otherParty", SHOP_ID, "globalValue")));
+        assertFalse(wbListReplica.isExist(row(ListType.black, "otherParty", SHOP_ID, "partyValue")));
+
+        wbListReplica.apply(event(EventType.DELETED, row(ListType.black, null, null, "globalValue")));
+        assertEquals(1, wbListReplica.size());
+    }
+
+    private static Event event(EventType eventType, Row row) {
+        return new Event()
+                .setEventType(eventType)
+                .setRow(row);
+    }
+
+    private static Row row(ListType listType, String partyId, String shopId, String value) {
+        return new Row()
+                .setId(IdInfo.payment_id(new PaymentId()
+                        .setPartyId(partyId)
+                        .setShopId(shopId)))
+                .setListType(listType)
+                .setListName(CARD_TOKEN)
+                .setValue(value);
+    }
+
+}
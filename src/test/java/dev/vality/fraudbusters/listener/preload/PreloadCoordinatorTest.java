@@ -0,0 +1,76 @@
+package dev.vality.fraudbusters.listener.preload;
+
+import dev.vality.damsel.fraudbusters.Command;
+import dev.vality.damsel.fraudbusters.CommandType;
+import dev.vality.fraudbusters.listener.CommandListener;
+import dev.vality.fraudbusters.listener.snapshot.PoolSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PreloadCoordinatorTest {
+
+    private static final String TOPIC = "template";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void preloadAllPartitions() throws InterruptedException {
+        PoolSnapshotService poolSnapshotService = mock(PoolSnapshotService.class);
+        when(poolSnapshotService.isEnabled()).thenReturn(true);
+        List<TopicPartition> preloaded = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            TopicPartition partition = invocation.getArgument(1);
+            CommandListener listener = invocation.getArgument(2);
+            for (int i = 0; i < 5; i++) {
+                listener.listen(new Command().setCommandType(CommandType.CREATE));
+            }
+            preloaded.add(partition);
+            return null;
+        }).when(poolSnapshotService).preload(any(), any(), any(), anyBoolean());
+        ConsumerFactory<String, Command> consumerFactory = mock(ConsumerFactory.class);
+        when(consumerFactory.createConsumer()).thenAnswer(invocation -> createConsumer(3));
+        List<Command> commands = Collections.synchronizedList(new ArrayList<>());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PreloadCoordinator preloadCoordinator = new PreloadCoordinator(poolSnapshotService, registry);
+        ReflectionTestUtils.setField(preloadCoordinator, "parallelism", 2);
+
+        preloadCoordinator.preload(List.of(new PreloadTask(consumerFactory, TOPIC, commands::add, true)), 10);
+
+        assertEquals(3, preloaded.size());
+        assertEquals(15, commands.size());
+        assertEquals(0, registry.get(PreloadCoordinator.LAG_METRIC).gauge().value());
+        assertTrue(registry.get(PreloadCoordinator.RECORDS_RATE_METRIC).gauge().value() > 0);
+    }
+
+    private MockConsumer<String, Command> createConsumer(int partitions) {
+        MockConsumer<String, Command> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        List<PartitionInfo> infos = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            infos.add(new PartitionInfo(TOPIC, i, Node.noNode(), new Node[0], new Node[0]));
+            consumer.updateBeginningOffsets(Map.of(new TopicPartition(TOPIC, i), 0L));
+            consumer.updateEndOffsets(Map.of(new TopicPartition(TOPIC, i), 5L));
+        }
+        consumer.updatePartitions(TOPIC, infos);
+        return consumer;
+    }
+
+}
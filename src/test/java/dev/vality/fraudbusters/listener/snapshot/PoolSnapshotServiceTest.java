@@ -0,0 +1,152 @@
+package dev.vality.fraudbusters.listener.snapshot;
+
+import dev.vality.damsel.fraudbusters.Command;
+import dev.vality.damsel.fraudbusters.CommandBody;
+import dev.vality.damsel.fraudbusters.CommandType;
+import dev.vality.damsel.fraudbusters.Template;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PoolSnapshotServiceTest {
+
+    private static final String TOPIC = "template";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void replayOnlyRecordsAfterSnapshot() {
+        Path path = tempDir.resolve("pools.snapshot");
+        List<Command> firstStart = new ArrayList<>();
+        PoolSnapshotService poolSnapshotService = createService(path);
+        poolSnapshotService.load();
+        poolSnapshotService.preload(createConsumer(0L, List.of(
+                command("a", CommandType.CREATE),
+                command("b", CommandType.CREATE),
+                command("a", CommandType.DELETE)
+        )), PARTITION, firstStart::add, true);
+        poolSnapshotService.save();
+        assertEquals(3, firstStart.size());
+
+        List<Command> secondStart = new ArrayList<>();
+        poolSnapshotService = createService(path);
+        poolSnapshotService.load();
+        poolSnapshotService.preload(createConsumer(0L, List.of(
+                command("a", CommandType.CREATE),
+                command("b", CommandType.CREATE),
+                command("a", CommandType.DELETE),
+                command("c", CommandType.CREATE)
+        )), PARTITION, secondStart::add, true);
+
+        assertEquals(2, secondStart.size());
+        assertEquals("b", secondStart.get(0).getCommandBody().getTemplate().getId());
+        assertEquals("c", secondStart.get(1).getCommandBody().getTemplate().getId());
+    }
+
+    @Test
+    void appendedRecordsAreSavedOnRefresh() {
+        Path path = tempDir.resolve("pools.snapshot");
+        PoolSnapshotService poolSnapshotService = createService(path);
+        poolSnapshotService.load();
+        poolSnapshotService.preload(createConsumer(0L, List.of(
+                command("a", CommandType.CREATE),
+                command("b", CommandType.CREATE)
+        )), PARTITION, command -> { }, true);
+        poolSnapshotService.append(record(2L, 2L, command("a", CommandType.DELETE)));
+        poolSnapshotService.refresh();
+
+        List<Command> secondStart = new ArrayList<>();
+        poolSnapshotService = createService(path);
+        poolSnapshotService.load();
+        poolSnapshotService.preload(createConsumer(0L, List.of(
+                command("a", CommandType.CREATE),
+                command("b", CommandType.CREATE),
+                command("a", CommandType.DELETE),
+                command("c", CommandType.CREATE)
+        )), PARTITION, secondStart::add, true);
+
+        assertEquals(2, secondStart.size());
+        assertEquals("b", secondStart.get(0).getCommandBody().getTemplate().getId());
+        assertEquals("c", secondStart.get(1).getCommandBody().getTemplate().getId());
+    }
+
+    @Test
+    void recreatedPartitionIsReplayedFromBeginning() {
+        Path path = tempDir.resolve("pools.snapshot");
+        PoolSnapshotService poolSnapshotService = createService(path);
+        poolSnapshotService.load();
+        poolSnapshotService.preload(createConsumer(0L, List.of(
+                command("a", CommandType.CREATE),
+                command("b", CommandType.CREATE)
+        )), PARTITION, command -> { }, true);
+        poolSnapshotService.save();
+
+        List<Command> secondStart = new ArrayList<>();
+        poolSnapshotService = createService(path);
+        poolSnapshotService.load();
+        poolSnapshotService.preload(createConsumer(1_000L, List.of(
+                command("x", CommandType.CREATE),
+                command("y", CommandType.CREATE),
+                command("z", CommandType.CREATE)
+        )), PARTITION, secondStart::add, true);
+
+        assertEquals(List.of("x", "y", "z"), secondStart.stream()
+                .map(command -> command.getCommandBody().getTemplate().getId())
+                .toList());
+    }
+
+    private PoolSnapshotService createService(Path path) {
+        PoolSnapshotService poolSnapshotService = new PoolSnapshotService();
+        ReflectionTestUtils.setField(poolSnapshotService, "enabled", true);
+        ReflectionTestUtils.setField(poolSnapshotService, "path", path.toString());
+        return poolSnapshotService;
+    }
+
+    /**
+     * Every poll returns the records of the partition from the consumer position, as a broker would after a seek.
+     */
+    private MockConsumer<String, Command> createConsumer(long timestamp, List<Command> commands) {
+        MockConsumer<String, Command> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        consumer.updateEndOffsets(Map.of(PARTITION, (long) commands.size()));
+        for (int poll = 0; poll < 2; poll++) {
+            consumer.schedulePollTask(() -> {
+                for (int i = 0; i < commands.size(); i++) {
+                    consumer.addRecord(record(i, timestamp + i, commands.get(i)));
+                }
+            });
+        }
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, Command> record(long offset, long timestamp, Command command) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, timestamp, TimestampType.CREATE_TIME, 0, 0,
+                command.getCommandBody().getTemplate().getId(), command, new RecordHeaders(), Optional.empty());
+    }
+
+    private static Command command(String id, CommandType commandType) {
+        return new Command()
+                .setCommandType(commandType)
+                .setCommandBody(CommandBody.template(new Template()
+                        .setId(id)
+                        .setTemplate("rule: 3 > 2 -> accept;".getBytes(StandardCharsets.UTF_8))));
+    }
+
+}
@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 class HistoricalPoolImplTest {
 
@@ -40,4 +43,63 @@ class HistoricalPoolImplTest {
         timePool.cleanUntil(TEST, Instant.now().toEpochMilli() - 1000L);
         Assertions.assertEquals(9, timePool.deepSize());
     }
+
+    @Test
+    void concurrentAddAndGet() {
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int writer = 0; writer < 4; writer++) {
+            long offset = writer * 1000L;
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (long timestamp = 1; timestamp <= 1000; timestamp++) {
+                    timePool.add(TEST, offset + timestamp, ID_REFERENCE + (offset + timestamp));
+                    timePool.get(TEST, offset + timestamp);
+                }
+            }));
+        }
+        writers.forEach(CompletableFuture::join);
+
+        Assertions.assertEquals(4000, timePool.deepSize());
+        Assertions.assertEquals(ID_REFERENCE + 2500, timePool.get(TEST, 2501L));
+
+        timePool.cleanUntil(TEST, 3001L);
+        Assertions.assertEquals(1000, timePool.deepSize());
+        Assertions.assertNull(timePool.get(TEST, 3001L));
+        Assertions.assertEquals(ID_REFERENCE + 3001, timePool.get(TEST, 3002L));
+    }
+
+    @Test
+    void expireDeletedVersions() {
+        timePool.add(TEST, 1L, ID_REFERENCE + 1);
+        timePool.add(TEST, 2L, null);
+        timePool.add(TEST, 5L, ID_REFERENCE + 5);
+        timePool.add(ID_REFERENCE, 1L, ID_REFERENCE + 1);
+
+        Assertions.assertEquals(3, timePool.expire(4L, 10));
+        Assertions.assertEquals(2, timePool.deepSize());
+        Assertions.assertEquals(ID_REFERENCE + 1, timePool.get(ID_REFERENCE, 4L));
+        Assertions.assertNull(timePool.get(TEST, 4L));
+
+        Assertions.assertEquals(0, timePool.expire(4L, 10));
+        Assertions.assertEquals(1, timePool.expire(6L, 10));
+        Assertions.assertEquals(ID_REFERENCE + 5, timePool.get(TEST, 6L));
+    }
+
+    @Test
+    void changeFeed() {
+        List<PoolChange> changes = new ArrayList<>();
+        timePool.getChangeFeed().subscribe(changes::add);
+
+        timePool.add(TEST, 10L, ID_REFERENCE + 1);
+        timePool.add(TEST, 10L, ID_REFERENCE + 2);
+        timePool.remove(TEST, 20L);
+        timePool.remove(TEST, 10L);
+
+        Assertions.assertEquals(3, changes.size());
+        Assertions.assertEquals(PoolChange.Type.ADD, changes.get(0).getType());
+        Assertions.assertEquals(PoolChange.Type.REPLACE, changes.get(1).getType());
+        Assertions.assertEquals(PoolChange.Type.REMOVE, changes.get(2).getType());
+        Assertions.assertEquals(10L, changes.get(2).getTimestamp());
+        Assertions.assertEquals(3L, changes.get(2).getGeneration());
+        Assertions.assertEquals(3L, timePool.getChangeFeed().getGeneration());
+    }
 }
@@ -0,0 +1,91 @@
+package dev.vality.fraudbusters.pool;
+
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LazyTemplatePoolTest {
+
+    @Test
+    void compileLatestSourceOnce() {
+        List<String> loaded = new ArrayList<>();
+        LazyTemplatePool pool = new LazyTemplatePool("parsed-template", (key, source) -> {
+            loaded.add(source);
+            return ParsedTemplate.builder().aggregateCalls(List.of()).build();
+        });
+        pool.addSource("first", "v1");
+        pool.addSource("first", "v2");
+        pool.addSource("second", "v1");
+        assertEquals(Set.of("first", "second"), pool.pendingKeys());
+
+        ParsedTemplate parsedTemplate = pool.get("first");
+
+        assertSame(parsedTemplate, pool.get("first"));
+        assertEquals(List.of("v2"), loaded);
+        assertEquals(Set.of("second"), pool.pendingKeys());
+        pool.remove("second");
+        assertNull(pool.get("second"));
+    }
+
+    @Test
+    void failedSourceIsRetriedAfterBackoff() {
+        List<String> loaded = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        AtomicLong now = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenAnswer(invocation -> now.get());
+        LazyTemplatePool pool = new LazyTemplatePool("parsed-template", (key, source) -> {
+            loaded.add(source);
+            if (loaded.size() < 3) {
+                throw new IllegalStateException("broken template");
+            }
+            return ParsedTemplate.builder().aggregateCalls(List.of()).build();
+        }, parsedTemplate -> {
+        }, failed::add, Duration.ofSeconds(1), Duration.ofMinutes(1), clock);
+        pool.addSource("broken", "rule");
+
+        assertNull(pool.get("broken"));
+        assertNull(pool.get("broken"));
+        assertEquals(Set.of(), pool.pendingKeys());
+        now.set(1_000L);
+        assertNull(pool.get("broken"));
+        now.set(2_999L);
+        assertNull(pool.get("broken"));
+        now.set(3_000L);
+
+        assertNotNull(pool.get("broken"));
+        assertEquals(3, loaded.size());
+        assertEquals(List.of("broken", "broken"), failed);
+    }
+
+    @Test
+    void replacedTemplatesAreEvicted() {
+        List<ParsedTemplate> evicted = new ArrayList<>();
+        LazyTemplatePool pool = new LazyTemplatePool("parsed-template",
+                (key, source) -> ParsedTemplate.builder().aggregateCalls(List.of()).build(),
+                evicted::add, key -> {
+                }, Duration.ofSeconds(1), Duration.ofMinutes(1), Clock.systemUTC());
+        pool.addSource("first", "v1");
+        ParsedTemplate first = pool.get("first");
+        pool.addSource("first", "v2");
+        pool.addSource("first", "v3");
+        ParsedTemplate third = pool.get("first");
+        pool.remove("first");
+
+        assertEquals(List.of(first, third), evicted);
+    }
+
+}
@@ -78,7 +78,8 @@ public class FraudResultRepositoryTest {
                 "sql/V7__add_fields.sql",
                 "sql/V8__create_withdrawal.sql",
                 "sql/V10__add_id_inspect_result.sql",
-                "sql/V11__rename_masked_pan.sql"
+                "sql/V11__rename_masked_pan.sql",
+                "sql/V12__create_entity_tables.sql"
         ));
     }
 
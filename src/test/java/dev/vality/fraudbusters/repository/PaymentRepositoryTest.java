@@ -6,7 +6,9 @@ import dev.vality.fraudbusters.config.TestClickhouseConfig;
 import dev.vality.fraudbusters.config.properties.ClickhouseProperties;
 import dev.vality.fraudbusters.constant.EventField;
 import dev.vality.fraudbusters.converter.FraudResultToEventConverter;
+import dev.vality.fraudbusters.domain.AggregateWindow;
 import dev.vality.fraudbusters.extension.ClickHouseContainerExtension;
+import dev.vality.fraudbusters.fraud.constant.AggregateType;
 import dev.vality.fraudbusters.fraud.constant.PaymentCheckedField;
 import dev.vality.fraudbusters.fraud.model.FieldModel;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
@@ -14,6 +16,8 @@ import dev.vality.fraudbusters.fraud.payment.resolver.DatabasePaymentFieldResolv
 import dev.vality.fraudbusters.repository.clickhouse.impl.AggregationGeneralRepositoryImpl;
 import dev.vality.fraudbusters.repository.clickhouse.impl.PaymentRepositoryImpl;
 import dev.vality.fraudbusters.repository.clickhouse.mapper.CheckedPaymentMapper;
+import dev.vality.fraudbusters.repository.clickhouse.util.AggregationUtil;
+import dev.vality.fraudbusters.repository.clickhouse.util.EntityTableUtil;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
@@ -26,15 +30,21 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static dev.vality.fraudbusters.extension.ClickHouseContainerExtension.CLICKHOUSE_CONTAINER;
 import static dev.vality.fraudbusters.util.BeanUtil.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 @ActiveProfiles("full-prod")
@@ -51,6 +61,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
         CheckedPaymentMapper.class
 },
         initializers = PaymentRepositoryTest.Initializer.class)
+@TestPropertySource(properties = {
+        "clickhouse.rollup.enabled=true",
+        "clickhouse.entity-tables.enabled=true"
+})
 public class PaymentRepositoryTest {
 
     public static final long FROM = 1588761200000L;
@@ -192,6 +206,251 @@ public class PaymentRepositoryTest {
         assertEquals(Integer.valueOf(1), sum);
     }
 
+    @Test
+    public void aggregateWindowsTest() {
+        PaymentModel paymentModel = createFraudModelSecond();
+        FieldModel email = databasePaymentFieldResolver.resolve(PaymentCheckedField.EMAIL, paymentModel);
+        FieldModel partyId = databasePaymentFieldResolver.resolve(PaymentCheckedField.PARTY_ID, paymentModel);
+        List<AggregateWindow> windows = List.of(
+                AggregateWindow.builder().type(AggregateType.COUNT).from(FROM).to(TO).build(),
+                AggregateWindow.builder().type(AggregateType.COUNT_SUCCESS).from(FROM).to(TO).build(),
+                AggregateWindow.builder().type(AggregateType.COUNT_ERROR).errorCode("").from(FROM).to(TO).build(),
+                AggregateWindow.builder().type(AggregateType.SUM).from(FROM).to(TO).build(),
+                AggregateWindow.builder().type(AggregateType.UNIQUE).onField(EventField.fingerprint.name())
+                        .from(FROM).to(TO).build(),
+                AggregateWindow.builder().type(AggregateType.COUNT).from(FROM).to(FROM).build()
+        );
+
+        List<Long> results = paymentRepository.aggregateWindows(EventField.email.name(), email.getValue(),
+                List.of(partyId), windows
+        );
+
+        assertEquals(List.of(
+                paymentRepository.countOperationByFieldWithGroupBy(EventField.email.name(), email.getValue(),
+                        FROM, TO, List.of(partyId)).longValue(),
+                paymentRepository.countOperationSuccessWithGroupBy(EventField.email.name(), email.getValue(),
+                        FROM, TO, List.of(partyId)).longValue(),
+                paymentRepository.countOperationErrorWithGroupBy(EventField.email.name(), email.getValue(),
+                        FROM, TO, List.of(partyId), "").longValue(),
+                paymentRepository.sumOperationByFieldWithGroupBy(EventField.email.name(), email.getValue(),
+                        FROM, TO, List.of(partyId)),
+                paymentRepository.uniqCountOperationWithGroupBy(EventField.email.name(), email.getValue(),
+                        EventField.fingerprint.name(), FROM, TO, List.of(partyId)).longValue(),
+                paymentRepository.countOperationByFieldWithGroupBy(EventField.email.name(), email.getValue(),
+                        FROM, FROM, List.of(partyId)).longValue()
+        ), results);
+    }
+
+    @Test
+    public void aggregateValueWindowsMatchesSingleQueriesTest() {
+        PaymentModel paymentModel = createFraudModelSecond();
+        FieldModel partyId = databasePaymentFieldResolver.resolve(PaymentCheckedField.PARTY_ID, paymentModel);
+        List<Object> values = new ArrayList<>();
+        List<AggregateWindow> windows = new ArrayList<>();
+        List<Number> expected = new ArrayList<>();
+        String fieldName = EventField.email.name();
+        for (String value : List.of(EMAIL, EMAIL + SUFIX, "unknown_email")) {
+            for (List<FieldModel> fieldModels : List.of(List.<FieldModel>of(), List.of(partyId))) {
+                for (AggregateType type : List.of(AggregateType.COUNT, AggregateType.COUNT_SUCCESS,
+                        AggregateType.COUNT_PENDING, AggregateType.COUNT_ERROR, AggregateType.SUM,
+                        AggregateType.SUM_SUCCESS, AggregateType.SUM_ERROR)) {
+                    for (String errorCode : errorCodes(type)) {
+                        values.add(value);
+                        windows.add(AggregateWindow.builder()
+                                .type(type)
+                                .errorCode(errorCode)
+                                .from(FROM)
+                                .to(TO)
+                                .groupingFields(fieldModels)
+                                .build());
+                        expected.add(singleQuery(type, fieldName, value, fieldModels, errorCode).longValue());
+                    }
+                }
+            }
+        }
+
+        assertEquals(expected, paymentRepository.aggregateValueWindows(fieldName, values, windows));
+    }
+
+    private List<String> errorCodes(AggregateType type) {
+        return type == AggregateType.COUNT_ERROR || type == AggregateType.SUM_ERROR
+                ? Arrays.asList(null, "", "unknown_error")
+                : Collections.singletonList(null);
+    }
+
+    private Number singleQuery(
+            AggregateType type,
+            String fieldName,
+            String value,
+            List<FieldModel> fieldModels,
+            String errorCode) {
+        return switch (type) {
+            case COUNT -> paymentRepository.countOperationByFieldWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            case COUNT_SUCCESS ->
+                    paymentRepository.countOperationSuccessWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            case COUNT_PENDING ->
+                    paymentRepository.countOperationPendingWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            case COUNT_ERROR -> errorCode != null
+                    ? paymentRepository.countOperationErrorWithGroupBy(fieldName, value, FROM, TO, fieldModels,
+                    errorCode)
+                    : paymentRepository.countOperationErrorWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            case SUM -> paymentRepository.sumOperationByFieldWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            case SUM_SUCCESS ->
+                    paymentRepository.sumOperationSuccessWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            case SUM_ERROR -> errorCode != null
+                    ? paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, FROM, TO, fieldModels,
+                    errorCode)
+                    : paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, FROM, TO, fieldModels);
+            default -> throw new IllegalArgumentException("Unsupported window type: " + type);
+        };
+    }
+
+    @Test
+    public void rollupMatchesRawQueryTest() {
+        Integer rollupRows =
+                jdbcTemplate.queryForObject("select count() from fraud.payment_hourly_rollup", Integer.class);
+        assertTrue(rollupRows > 0);
+        assertRollupMatchesRawQuery();
+
+        String countByEmail = "select count() from fraud.payment where email = ?";
+        Integer rows = jdbcTemplate.queryForObject(countByEmail, Integer.class, EMAIL);
+        List<Number> hybrid = aggregate(EventField.email.name(), EMAIL, 1588750000000L, 1588773600000L);
+        jdbcTemplate.update("insert into fraud.payment select * from fraud.payment where email = ?", EMAIL);
+        assertEquals(rows * 2, jdbcTemplate.queryForObject(countByEmail, Integer.class, EMAIL));
+        assertEquals(hybrid, aggregate(EventField.email.name(), EMAIL, 1588750000000L, 1588773600000L));
+
+        jdbcTemplate.execute("optimize table fraud.payment final");
+        List<String> entityTables = jdbcTemplate.queryForList(
+                "select name from system.tables where database = 'fraud' and name like 'payment\\_by\\_%'",
+                String.class
+        );
+        entityTables.forEach(table -> jdbcTemplate.execute("optimize table fraud." + table + " final"));
+
+        assertEquals(rows, jdbcTemplate.queryForObject(countByEmail, Integer.class, EMAIL));
+        Integer sourceRows = jdbcTemplate.queryForObject("select count() from fraud.payment", Integer.class);
+        for (String table : entityTables) {
+            assertEquals(sourceRows, jdbcTemplate.queryForObject("select count() from fraud." + table, Integer.class),
+                    table);
+        }
+        assertRollupMatchesRawQuery();
+    }
+
+    private void assertRollupMatchesRawQuery() {
+        List<long[]> windows = List.of(
+                new long[]{1546300800000L, 1609459199000L},
+                new long[]{1588757000000L, 1588764000000L},
+                new long[]{1588759200000L, 1588762799000L},
+                new long[]{1588750000000L, 1588761208000L},
+                new long[]{1588761208000L, 1588773600000L},
+                new long[]{FROM, TO}
+        );
+        for (String fieldName : List.of(EventField.email.name(), EventField.cardToken.name(),
+                EventField.fingerprint.name(), EventField.ip.name(), EventField.bin.name())) {
+            List<String> values = jdbcTemplate.queryForList(
+                    String.format("select distinct %s from fraud.payment", fieldName),
+                    String.class
+            );
+            for (String value : values) {
+                for (long[] window : windows) {
+                    List<Number> hybrid = aggregate(fieldName, value, window[0], window[1]);
+                    ReflectionTestUtils.setField(paymentRepository, "rollupEnabled", false);
+                    try {
+                        assertEquals(aggregate(fieldName, value, window[0], window[1]), hybrid,
+                                fieldName + "=" + value + " window: " + Arrays.toString(window));
+                    } finally {
+                        ReflectionTestUtils.setField(paymentRepository, "rollupEnabled", true);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void entityTablesMatchSourceTableTest() {
+        PaymentModel paymentModel = createFraudModelSecond();
+        FieldModel partyId = databasePaymentFieldResolver.resolve(PaymentCheckedField.PARTY_ID, paymentModel);
+        ReflectionTestUtils.setField(paymentRepository, "rollupEnabled", false);
+        try {
+            for (String fieldName : List.of(EventField.email.name(), EventField.cardToken.name(),
+                    EventField.fingerprint.name(), EventField.ip.name(), EventField.bin.name())) {
+                String entityTable = EntityTableUtil.resolveTable("fraud.payment", fieldName, List.of(partyId),
+                        EventField.fingerprint.name());
+                assertTrue(entityTable.startsWith("fraud.payment_by_"), entityTable);
+                Integer entityRows = jdbcTemplate.queryForObject("select count() from " + entityTable, Integer.class);
+                assertEquals(jdbcTemplate.queryForObject("select count() from fraud.payment", Integer.class),
+                        entityRows);
+                List<String> values = jdbcTemplate.queryForList(
+                        String.format("select distinct %s from fraud.payment", fieldName),
+                        String.class
+                );
+                for (String value : values) {
+                    List<Number> entityResult = aggregateGrouped(fieldName, value, partyId);
+                    ReflectionTestUtils.setField(paymentRepository, "entityTablesEnabled", false);
+                    try {
+                        assertEquals(aggregateGrouped(fieldName, value, partyId), entityResult,
+                                fieldName + "=" + value);
+                    } finally {
+                        ReflectionTestUtils.setField(paymentRepository, "entityTablesEnabled", true);
+                    }
+                }
+            }
+        } finally {
+            ReflectionTestUtils.setField(paymentRepository, "rollupEnabled", true);
+        }
+    }
+
+    @Test
+    public void entityTableQueryUsesPrimaryKeyTest() {
+        String table = EntityTableUtil.resolveTable("fraud.payment", EventField.email.name(), List.of());
+        assertEquals("fraud.payment_by_email", table);
+        List<AggregateWindow> windows = List.of(
+                AggregateWindow.builder().type(AggregateType.COUNT).from(FROM).to(TO).build()
+        );
+        String sql = AggregationUtil.buildWindowsQuery(table, EventField.email.name(), List.of(), windows);
+        List<Object> params = AggregationUtil.generateWindowsParams(EMAIL, List.of(), windows);
+
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN indexes = 1 " + sql, String.class, params.toArray())
+                .stream()
+                .map(String::trim)
+                .toList();
+
+        int primaryKey = plan.indexOf("PrimaryKey");
+        assertTrue(primaryKey >= 0, String.join("\n", plan));
+        List<String> keys = plan.subList(primaryKey, plan.size());
+        assertTrue(keys.contains(EventField.email.name()), String.join("\n", plan));
+        assertEquals("fraud.payment", EntityTableUtil.resolveTable("fraud.payment", EventField.email.name(),
+                List.of(), EventField.phone.name()));
+    }
+
+    private List<Number> aggregateGrouped(String fieldName, String value, FieldModel partyId) {
+        return List.of(
+                paymentRepository.countOperationByField(fieldName, value, FROM, TO),
+                paymentRepository.countOperationByFieldWithGroupBy(fieldName, value, FROM, TO, List.of(partyId)),
+                paymentRepository.sumOperationByFieldWithGroupBy(fieldName, value, FROM, TO, List.of(partyId)),
+                paymentRepository.countOperationErrorWithGroupBy(fieldName, value, FROM, TO, List.of(partyId), ""),
+                paymentRepository.uniqCountOperation(fieldName, value, EventField.fingerprint.name(), FROM, TO),
+                paymentRepository.uniqCountOperationWithGroupBy(fieldName, value, EventField.fingerprint.name(),
+                        FROM, TO, List.of(partyId)),
+                paymentRepository.aggregateWindows(fieldName, value, List.of(partyId), List.of(
+                        AggregateWindow.builder().type(AggregateType.COUNT).from(FROM).to(TO).build(),
+                        AggregateWindow.builder().type(AggregateType.SUM_SUCCESS).from(FROM).to(TO).build()
+                )).get(1)
+        );
+    }
+
+    private List<Number> aggregate(String fieldName, String value, long from, long to) {
+        return List.of(
+                paymentRepository.countOperationByField(fieldName, value, from, to),
+                paymentRepository.countOperationByFieldWithGroupBy(fieldName, value, from, to, List.of()),
+                paymentRepository.sumOperationByFieldWithGroupBy(fieldName, value, from, to, List.of()),
+                paymentRepository.countOperationSuccessWithGroupBy(fieldName, value, from, to, List.of()),
+                paymentRepository.countOperationPendingWithGroupBy(fieldName, value, from, to, List.of()),
+                paymentRepository.countOperationErrorWithGroupBy(fieldName, value, from, to, List.of()),
+                paymentRepository.sumOperationSuccessWithGroupBy(fieldName, value, from, to, List.of()),
+                paymentRepository.sumOperationErrorWithGroupBy(fieldName, value, from, to, List.of())
+        );
+    }
+
     public static class Initializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
         @SneakyThrows
         @Override
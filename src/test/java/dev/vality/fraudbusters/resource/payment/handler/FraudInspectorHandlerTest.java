@@ -1,5 +1,6 @@
 package dev.vality.fraudbusters.resource.payment.handler;
 
+import dev.vality.damsel.domain.RiskScore;
 import dev.vality.damsel.proxy_inspector.BlackListContext;
 import dev.vality.damsel.wb_list.ListNotFound;
 import dev.vality.damsel.wb_list.WbListServiceSrv;
@@ -8,7 +9,9 @@ import dev.vality.fraudbusters.converter.ContextToFraudRequestConverter;
 import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.domain.FraudResult;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.wblist.WbListReplica;
 import dev.vality.fraudbusters.stream.TemplateVisitor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.thrift.TException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,7 +46,10 @@ class FraudInspectorHandlerTest {
                 requestConverter,
                 templateVisitor,
                 kafkaFraudResultTemplate,
-                wbListServiceSrv
+                wbListServiceSrv,
+                new WbListReplica(0.01),
+                RiskScore.high,
+                new SimpleMeterRegistry()
         );
 
         when(wbListServiceSrv.isExist(any())).thenReturn(false);
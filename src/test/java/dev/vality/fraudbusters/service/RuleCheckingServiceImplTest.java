@@ -4,6 +4,7 @@ import dev.vality.fraudbusters.domain.CheckedResultModel;
 import dev.vality.fraudbusters.exception.InvalidTemplateException;
 import dev.vality.fraudbusters.fraud.FraudContextParser;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.PaymentTemplateInterner;
 import dev.vality.fraudbusters.fraud.payment.validator.PaymentTemplateValidator;
 import dev.vality.fraudbusters.pool.HistoricalPool;
 import dev.vality.fraudbusters.service.dto.CascadingTemplateDto;
@@ -32,7 +33,7 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest(classes = {RuleCheckingServiceImpl.class})
+@SpringBootTest(classes = {RuleCheckingServiceImpl.class, PaymentTemplateInterner.class})
 class RuleCheckingServiceImplTest {
 
     @Autowired
@@ -0,0 +1,89 @@
+package dev.vality.fraudbusters.stream;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AlterConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.TopologyDescription;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FullToCompactStreamFactoryTest {
+
+    private static final String FULL_TEMPLATE = "full_template";
+    private static final String TEMPLATE = "template";
+    private static final String TEMPLATE_STREAM = "template-stream";
+
+    private final FullToCompactStreamFactory fullToCompactStreamFactory = new FullToCompactStreamFactory();
+
+    @Test
+    void legacyOffsetsSeedFirstStart() throws Exception {
+        Admin admin = mock(Admin.class);
+        mockOffsets(admin, FullToCompactStreamFactory.STREAM_ID, Map.of());
+        mockOffsets(admin, TEMPLATE_STREAM, Map.of(
+                new TopicPartition(FULL_TEMPLATE, 0), new OffsetAndMetadata(42L),
+                new TopicPartition("template-stream-repartition", 0), new OffsetAndMetadata(7L)
+        ));
+        AlterConsumerGroupOffsetsResult alterResult = mock(AlterConsumerGroupOffsetsResult.class);
+        when(alterResult.all()).thenReturn(KafkaFuture.completedFuture(null));
+        when(admin.alterConsumerGroupOffsets(anyString(), anyMap())).thenReturn(alterResult);
+
+        fullToCompactStreamFactory.seedOffsets(admin, Map.of(FULL_TEMPLATE, TEMPLATE_STREAM));
+
+        verify(admin).alterConsumerGroupOffsets(
+                FullToCompactStreamFactory.STREAM_ID,
+                Map.of(new TopicPartition(FULL_TEMPLATE, 0), new OffsetAndMetadata(42L))
+        );
+    }
+
+    @Test
+    void committedApplicationIsNotSeeded() throws Exception {
+        Admin admin = mock(Admin.class);
+        mockOffsets(admin, FullToCompactStreamFactory.STREAM_ID, Map.of(
+                new TopicPartition(FULL_TEMPLATE, 0), new OffsetAndMetadata(50L)
+        ));
+
+        fullToCompactStreamFactory.seedOffsets(admin, Map.of(FULL_TEMPLATE, TEMPLATE_STREAM));
+
+        verify(admin, never()).listConsumerGroupOffsets(TEMPLATE_STREAM);
+        verify(admin, never()).alterConsumerGroupOffsets(anyString(), any());
+    }
+
+    @Test
+    void topologyForwardsFullTopicAndStoresCompactTopic() {
+        TopologyDescription description = fullToCompactStreamFactory
+                .topology(Map.of(FULL_TEMPLATE, TEMPLATE))
+                .describe();
+
+        Set<String> sourceTopics = description.subtopologies().stream()
+                .flatMap(subtopology -> subtopology.nodes().stream())
+                .filter(TopologyDescription.Source.class::isInstance)
+                .flatMap(node -> ((TopologyDescription.Source) node).topicSet().stream())
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(FULL_TEMPLATE), sourceTopics);
+        assertEquals(Set.of(TEMPLATE), description.globalStores().stream()
+                .flatMap(globalStore -> globalStore.source().topicSet().stream())
+                .collect(Collectors.toSet()));
+    }
+
+    private static void mockOffsets(Admin admin, String groupId, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        ListConsumerGroupOffsetsResult result = mock(ListConsumerGroupOffsetsResult.class);
+        when(result.partitionsToOffsetAndMetadata()).thenReturn(KafkaFuture.completedFuture(offsets));
+        when(admin.listConsumerGroupOffsets(groupId)).thenReturn(result);
+    }
+
+}
@@ -1,48 +1,93 @@
 package dev.vality.fraudbusters.stream;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import dev.vality.fraudbusters.constant.TemplateLevel;
 import dev.vality.fraudbusters.domain.CheckedResultModel;
+import dev.vality.fraudbusters.fraud.aggregate.AggregatePrefetcher;
+import dev.vality.fraudbusters.fraud.aggregate.AggregationContext;
+import dev.vality.fraudbusters.fraud.model.EvaluationPlan;
+import dev.vality.fraudbusters.fraud.model.ParsedTemplate;
 import dev.vality.fraudbusters.fraud.model.PaymentModel;
+import dev.vality.fraudbusters.fraud.payment.finder.ListLookupPrefetcher;
+import dev.vality.fraudbusters.pool.EvaluationPlanPool;
 import dev.vality.fraudbusters.pool.Pool;
 import dev.vality.fraudbusters.pool.PoolImpl;
+import dev.vality.fraudbusters.service.RuleSetMetricsService;
 import dev.vality.fraudbusters.stream.impl.RuleApplierImpl;
 import dev.vality.fraudbusters.stream.impl.TemplateVisitorImpl;
 import dev.vality.fraudbusters.util.ReferenceKeyGenerator;
 import dev.vality.fraudo.constant.ResultStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 @ExtendWith(MockitoExtension.class)
 public class TemplateVisitorImplTest {
 
     public static final String PARTY_ID = "party_id";
+    public static final String SHOP_ID = "shop_id";
     public static final String TEMPLATE_1 = "template_1";
+    public static final String TEMPLATE_2 = "template_2";
+    public static final String TEMPLATE_3 = "template_3";
+    public static final String GLOBAL_TEMPLATE = "global_template";
     public static final String GROUP_1 = "group_1";
     public static final String TRUE_TEMPL = "true_templ";
     TemplateVisitorImpl templateVisitor;
 
     @Mock
     private RuleApplierImpl ruleApplier;
+    @Mock
+    private AggregatePrefetcher aggregatePrefetcher;
+    @Mock
+    private ListLookupPrefetcher listLookupPrefetcher;
     private Pool<List<String>> groupPoolImpl;
     private Pool<String> referencePoolImpl;
     private Pool<String> groupReferencePoolImpl;
+    private Pool<ParserRuleContext> templatePoolImpl;
+    private EvaluationPlanPool evaluationPlanPool;
 
     @BeforeEach
     public void init() {
         groupPoolImpl = new PoolImpl<>("group");
         referencePoolImpl = new PoolImpl<>("reference");
         groupReferencePoolImpl = new PoolImpl<>("group-reference");
-
-        templateVisitor =
-                new TemplateVisitorImpl(ruleApplier, groupPoolImpl, referencePoolImpl, groupReferencePoolImpl);
+        templatePoolImpl = new PoolImpl<>("template");
+        Pool<ParsedTemplate> parsedTemplatePoolImpl = new PoolImpl<>("parsed-template");
+        templatePoolImpl.add(TEMPLATE_1, new ParserRuleContext());
+        templatePoolImpl.add(TEMPLATE_2, new ParserRuleContext());
+        templatePoolImpl.add(GLOBAL_TEMPLATE, new ParserRuleContext());
+        evaluationPlanPool = new EvaluationPlanPool(
+                groupPoolImpl,
+                referencePoolImpl,
+                groupReferencePoolImpl,
+                templatePoolImpl,
+                parsedTemplatePoolImpl,
+                new RuleSetMetricsService(new SimpleMeterRegistry())
+        );
+
+        templateVisitor = new TemplateVisitorImpl(
+                ruleApplier,
+                evaluationPlanPool,
+                new AggregationContext(MoreExecutors.newDirectExecutorService()),
+                aggregatePrefetcher,
+                listLookupPrefetcher
+        );
     }
 
     @Test
@@ -50,6 +95,8 @@ public class TemplateVisitorImplTest {
         //check empty pools
         PaymentModel paymentModel = new PaymentModel();
         paymentModel.setPartyId(PARTY_ID);
+        Mockito.doReturn(Optional.empty())
+                .when(ruleApplier).applyForAny(eq(paymentModel), any(EvaluationPlan.class));
         CheckedResultModel visit = templateVisitor.visit(paymentModel);
 
         assertEquals("RULE_NOT_CHECKED", visit.getCheckedTemplate());
@@ -60,25 +107,141 @@ public class TemplateVisitorImplTest {
         groupPoolImpl.add(GROUP_1, templateIds);
         String key = ReferenceKeyGenerator.generateTemplateKeyByList(PARTY_ID, null);
         groupReferencePoolImpl.add(key, GROUP_1);
+        evaluationPlanPool.publish();
         CheckedResultModel checkedResultModel = new CheckedResultModel();
         checkedResultModel.setCheckedTemplate(TRUE_TEMPL);
-        Mockito.when(ruleApplier.applyForAny(paymentModel, templateIds)).thenReturn(Optional.of(checkedResultModel));
+        Mockito.doAnswer(invocation -> applyIfContains(invocation.getArgument(1), TEMPLATE_1, checkedResultModel))
+                .when(ruleApplier).applyForAny(eq(paymentModel), any(EvaluationPlan.class));
 
         visit = templateVisitor.visit(paymentModel);
         assertEquals(TRUE_TEMPL, visit.getCheckedTemplate());
 
-        Mockito.when(ruleApplier.applyForAny(paymentModel, templateIds)).thenReturn(Optional.empty());
+        Mockito.doReturn(Optional.empty())
+                .when(ruleApplier).applyForAny(eq(paymentModel), any(EvaluationPlan.class));
 
         visit = templateVisitor.visit(paymentModel);
         assertEquals("RULE_NOT_CHECKED", visit.getCheckedTemplate());
         assertEquals(ResultStatus.THREE_DS, visit.getResultModel().getResultStatus());
 
         //check party pool
+        groupReferencePoolImpl.remove(key);
         referencePoolImpl.add(key, TEMPLATE_1);
-        Mockito.when(ruleApplier.apply(paymentModel, null)).thenReturn(Optional.empty());
-        Mockito.when(ruleApplier.apply(paymentModel, TEMPLATE_1)).thenReturn(Optional.of(checkedResultModel));
+        evaluationPlanPool.publish();
+        Mockito.doAnswer(invocation -> applyIfContains(invocation.getArgument(1), TEMPLATE_1, checkedResultModel))
+                .when(ruleApplier).applyForAny(eq(paymentModel), any(EvaluationPlan.class));
 
         visit = templateVisitor.visit(paymentModel);
         assertEquals(TRUE_TEMPL, visit.getCheckedTemplate());
     }
+
+    @Test
+    public void evaluationPlanOrder() {
+        referencePoolImpl.add(TemplateLevel.GLOBAL.name(), GLOBAL_TEMPLATE);
+        groupPoolImpl.add(GROUP_1, List.of(TEMPLATE_2, "unknown_template"));
+        groupReferencePoolImpl.add(ReferenceKeyGenerator.generateTemplateKeyByList(PARTY_ID, SHOP_ID), GROUP_1);
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_1);
+        evaluationPlanPool.publish();
+
+        EvaluationPlan plan = evaluationPlanPool.get(PARTY_ID, SHOP_ID);
+
+        assertEquals(List.of(GLOBAL_TEMPLATE, TEMPLATE_2, TEMPLATE_1), plan.getTemplateKeys());
+        assertEquals(List.of(
+                templatePoolImpl.get(GLOBAL_TEMPLATE),
+                templatePoolImpl.get(TEMPLATE_2),
+                templatePoolImpl.get(TEMPLATE_1)
+        ), plan.getContexts());
+        long generation = evaluationPlanPool.getGeneration();
+        templatePoolImpl.add(TEMPLATE_3, new ParserRuleContext());
+        evaluationPlanPool.publish();
+        assertTrue(evaluationPlanPool.getGeneration() > generation);
+        assertSame(plan, evaluationPlanPool.get(PARTY_ID, SHOP_ID));
+
+        groupPoolImpl.add(GROUP_1, List.of(TEMPLATE_2));
+        assertSame(plan, evaluationPlanPool.get(PARTY_ID, SHOP_ID));
+        evaluationPlanPool.publish();
+        assertNotSame(plan, evaluationPlanPool.get(PARTY_ID, SHOP_ID));
+    }
+
+    @Test
+    public void referenceWaitsForItsTemplate() {
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_1);
+        evaluationPlanPool.publish();
+        assertEquals(List.of(TEMPLATE_1), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getTemplateKeys());
+
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_3);
+        assertEquals(List.of(TEMPLATE_1), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getTemplateKeys());
+        evaluationPlanPool.publish();
+        assertEquals(List.of(TEMPLATE_1), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getTemplateKeys());
+
+        templatePoolImpl.add(TEMPLATE_3, new ParserRuleContext());
+        evaluationPlanPool.publish();
+        assertEquals(List.of(TEMPLATE_3), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getTemplateKeys());
+    }
+
+    @Test
+    public void templatesAreReadFromTheirGeneration() {
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_1);
+        evaluationPlanPool.publish();
+        ParserRuleContext published = templatePoolImpl.get(TEMPLATE_1);
+        ParserRuleContext replaced = new ParserRuleContext();
+
+        templatePoolImpl.add(TEMPLATE_1, replaced);
+        assertEquals(List.of(published), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getContexts());
+        evaluationPlanPool.publish();
+        assertEquals(List.of(replaced), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getContexts());
+    }
+
+    @Test
+    public void onlyChangedPlansAreRebuilt() {
+        referencePoolImpl.add(TemplateLevel.GLOBAL.name(), GLOBAL_TEMPLATE);
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_1);
+        referencePoolImpl.add("other_party", TEMPLATE_2);
+        evaluationPlanPool.publish();
+        EvaluationPlan plan = evaluationPlanPool.get(PARTY_ID, SHOP_ID);
+        EvaluationPlan otherPlan = evaluationPlanPool.get("other_party", SHOP_ID);
+        EvaluationPlan unknownPlan = evaluationPlanPool.get("unknown_party", SHOP_ID);
+
+        assertSame(plan, evaluationPlanPool.get(PARTY_ID, "unknown_shop"));
+        assertSame(unknownPlan, evaluationPlanPool.get("another_unknown_party", null));
+        assertEquals(List.of(GLOBAL_TEMPLATE), unknownPlan.getTemplateKeys());
+        assertEquals(3, evaluationPlanPool.size());
+
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_2);
+        evaluationPlanPool.publish();
+        assertEquals(List.of(GLOBAL_TEMPLATE, TEMPLATE_2), evaluationPlanPool.get(PARTY_ID, SHOP_ID).getTemplateKeys());
+        assertSame(otherPlan, evaluationPlanPool.get("other_party", SHOP_ID));
+        assertSame(unknownPlan, evaluationPlanPool.get("unknown_party", SHOP_ID));
+
+        templatePoolImpl.add(TEMPLATE_2, new ParserRuleContext());
+        evaluationPlanPool.publish();
+        assertNotSame(otherPlan, evaluationPlanPool.get("other_party", SHOP_ID));
+        assertSame(unknownPlan, evaluationPlanPool.get("unknown_party", SHOP_ID));
+    }
+
+    @Test
+    public void wholePlanIsPrefetchedUnlessLimited() {
+        referencePoolImpl.add(TemplateLevel.GLOBAL.name(), GLOBAL_TEMPLATE);
+        referencePoolImpl.add(PARTY_ID, TEMPLATE_1);
+        evaluationPlanPool.publish();
+        PaymentModel paymentModel = new PaymentModel();
+        paymentModel.setPartyId(PARTY_ID);
+        Mockito.doReturn(Optional.empty())
+                .when(ruleApplier).applyForAny(eq(paymentModel), any(EvaluationPlan.class));
+
+        templateVisitor.visit(paymentModel);
+        Mockito.verify(aggregatePrefetcher).prefetch(paymentModel, List.of(GLOBAL_TEMPLATE, TEMPLATE_1));
+        Mockito.verify(listLookupPrefetcher).prefetch(paymentModel, List.of(GLOBAL_TEMPLATE, TEMPLATE_1));
+
+        ReflectionTestUtils.setField(templateVisitor, "prefetchTemplates", 1);
+        templateVisitor.visit(paymentModel);
+        Mockito.verify(aggregatePrefetcher).prefetch(paymentModel, List.of(GLOBAL_TEMPLATE));
+        Mockito.verify(listLookupPrefetcher).prefetch(paymentModel, List.of(GLOBAL_TEMPLATE));
+    }
+
+    private Optional<CheckedResultModel> applyIfContains(
+            EvaluationPlan plan,
+            String templateKey,
+            CheckedResultModel checkedResultModel) {
+        return plan.getTemplateKeys().contains(templateKey) ? Optional.of(checkedResultModel) : Optional.empty();
+    }
 }
@@ -0,0 +1,394 @@
+DROP TABLE IF EXISTS fraud.payment_by_card_token_mv;
+DROP TABLE IF EXISTS fraud.payment_by_card_token;
+
+create table fraud.payment_by_card_token
+(
+    timestamp             Date,
+    eventTime             UInt64,
+    eventTimeHour         UInt64,
+
+    id                    String,
+
+    email                 String,
+    ip                    String,
+    fingerprint           String,
+
+    bin                   String,
+    cardToken             String,
+    paymentTool           String,
+
+    providerId            String,
+
+    partyId               String,
+    shopId                String,
+
+    amount                UInt64,
+    currency              String,
+
+    status                Enum8('pending' = 1, 'processed' = 2, 'captured' = 3, 'cancelled' = 4, 'failed' = 5),
+    errorCode             String
+) ENGINE = ReplacingMergeTree()
+PARTITION BY toYYYYMM (timestamp)
+PRIMARY KEY (cardToken, eventTimeHour)
+ORDER BY (cardToken, eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, fingerprint, id);
+
+CREATE MATERIALIZED VIEW fraud.payment_by_card_token_mv TO fraud.payment_by_card_token AS
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+INSERT INTO fraud.payment_by_card_token
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+DROP TABLE IF EXISTS fraud.payment_by_email_mv;
+DROP TABLE IF EXISTS fraud.payment_by_email;
+
+create table fraud.payment_by_email
+(
+    timestamp             Date,
+    eventTime             UInt64,
+    eventTimeHour         UInt64,
+
+    id                    String,
+
+    email                 String,
+    ip                    String,
+    fingerprint           String,
+
+    bin                   String,
+    cardToken             String,
+    paymentTool           String,
+
+    providerId            String,
+
+    partyId               String,
+    shopId                String,
+
+    amount                UInt64,
+    currency              String,
+
+    status                Enum8('pending' = 1, 'processed' = 2, 'captured' = 3, 'cancelled' = 4, 'failed' = 5),
+    errorCode             String
+) ENGINE = ReplacingMergeTree()
+PARTITION BY toYYYYMM (timestamp)
+PRIMARY KEY (email, eventTimeHour)
+ORDER BY (email, eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, fingerprint, cardToken, id);
+
+CREATE MATERIALIZED VIEW fraud.payment_by_email_mv TO fraud.payment_by_email AS
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+INSERT INTO fraud.payment_by_email
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+DROP TABLE IF EXISTS fraud.payment_by_fingerprint_mv;
+DROP TABLE IF EXISTS fraud.payment_by_fingerprint;
+
+create table fraud.payment_by_fingerprint
+(
+    timestamp             Date,
+    eventTime             UInt64,
+    eventTimeHour         UInt64,
+
+    id                    String,
+
+    email                 String,
+    ip                    String,
+    fingerprint           String,
+
+    bin                   String,
+    cardToken             String,
+    paymentTool           String,
+
+    providerId            String,
+
+    partyId               String,
+    shopId                String,
+
+    amount                UInt64,
+    currency              String,
+
+    status                Enum8('pending' = 1, 'processed' = 2, 'captured' = 3, 'cancelled' = 4, 'failed' = 5),
+    errorCode             String
+) ENGINE = ReplacingMergeTree()
+PARTITION BY toYYYYMM (timestamp)
+PRIMARY KEY (fingerprint, eventTimeHour)
+ORDER BY (fingerprint, eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, cardToken, id);
+
+CREATE MATERIALIZED VIEW fraud.payment_by_fingerprint_mv TO fraud.payment_by_fingerprint AS
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+INSERT INTO fraud.payment_by_fingerprint
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+DROP TABLE IF EXISTS fraud.payment_by_ip_mv;
+DROP TABLE IF EXISTS fraud.payment_by_ip;
+
+create table fraud.payment_by_ip
+(
+    timestamp             Date,
+    eventTime             UInt64,
+    eventTimeHour         UInt64,
+
+    id                    String,
+
+    email                 String,
+    ip                    String,
+    fingerprint           String,
+
+    bin                   String,
+    cardToken             String,
+    paymentTool           String,
+
+    providerId            String,
+
+    partyId               String,
+    shopId                String,
+
+    amount                UInt64,
+    currency              String,
+
+    status                Enum8('pending' = 1, 'processed' = 2, 'captured' = 3, 'cancelled' = 4, 'failed' = 5),
+    errorCode             String
+) ENGINE = ReplacingMergeTree()
+PARTITION BY toYYYYMM (timestamp)
+PRIMARY KEY (ip, eventTimeHour)
+ORDER BY (ip, eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, fingerprint, cardToken, id);
+
+CREATE MATERIALIZED VIEW fraud.payment_by_ip_mv TO fraud.payment_by_ip AS
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+INSERT INTO fraud.payment_by_ip
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+DROP TABLE IF EXISTS fraud.payment_by_bin_mv;
+DROP TABLE IF EXISTS fraud.payment_by_bin;
+
+create table fraud.payment_by_bin
+(
+    timestamp             Date,
+    eventTime             UInt64,
+    eventTimeHour         UInt64,
+
+    id                    String,
+
+    email                 String,
+    ip                    String,
+    fingerprint           String,
+
+    bin                   String,
+    cardToken             String,
+    paymentTool           String,
+
+    providerId            String,
+
+    partyId               String,
+    shopId                String,
+
+    amount                UInt64,
+    currency              String,
+
+    status                Enum8('pending' = 1, 'processed' = 2, 'captured' = 3, 'cancelled' = 4, 'failed' = 5),
+    errorCode             String
+) ENGINE = ReplacingMergeTree()
+PARTITION BY toYYYYMM (timestamp)
+PRIMARY KEY (bin, eventTimeHour)
+ORDER BY (bin, eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, fingerprint, cardToken, id);
+
+CREATE MATERIALIZED VIEW fraud.payment_by_bin_mv TO fraud.payment_by_bin AS
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+INSERT INTO fraud.payment_by_bin
+SELECT timestamp, eventTime, eventTimeHour, id, email, ip, fingerprint, bin, cardToken, paymentTool, providerId,
+       partyId, shopId, amount, currency, status, errorCode
+FROM fraud.payment;
+
+DROP TABLE IF EXISTS fraud.events_unique_by_card_token_mv;
+DROP TABLE IF EXISTS fraud.events_unique_by_card_token;
+
+create table fraud.events_unique_by_card_token
+(
+    timestamp             Date,
+    eventTimeHour         UInt64,
+    eventTime             UInt64,
+
+    partyId               String,
+    shopId                String,
+
+    ip                    String,
+    email                 String,
+    bin                   String,
+    fingerprint           String,
+    resultStatus          String,
+    amount                UInt64,
+    currency              String,
+    cardToken             String
+) ENGINE = MergeTree()
+PARTITION BY toYYYYMM (timestamp)
+ORDER BY (cardToken, eventTime)
+TTL timestamp + INTERVAL 3 MONTH;
+
+CREATE MATERIALIZED VIEW fraud.events_unique_by_card_token_mv TO fraud.events_unique_by_card_token AS
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+INSERT INTO fraud.events_unique_by_card_token
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+DROP TABLE IF EXISTS fraud.events_unique_by_email_mv;
+DROP TABLE IF EXISTS fraud.events_unique_by_email;
+
+create table fraud.events_unique_by_email
+(
+    timestamp             Date,
+    eventTimeHour         UInt64,
+    eventTime             UInt64,
+
+    partyId               String,
+    shopId                String,
+
+    ip                    String,
+    email                 String,
+    bin                   String,
+    fingerprint           String,
+    resultStatus          String,
+    amount                UInt64,
+    currency              String,
+    cardToken             String
+) ENGINE = MergeTree()
+PARTITION BY toYYYYMM (timestamp)
+ORDER BY (email, eventTime)
+TTL timestamp + INTERVAL 3 MONTH;
+
+CREATE MATERIALIZED VIEW fraud.events_unique_by_email_mv TO fraud.events_unique_by_email AS
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+INSERT INTO fraud.events_unique_by_email
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+DROP TABLE IF EXISTS fraud.events_unique_by_fingerprint_mv;
+DROP TABLE IF EXISTS fraud.events_unique_by_fingerprint;
+
+create table fraud.events_unique_by_fingerprint
+(
+    timestamp             Date,
+    eventTimeHour         UInt64,
+    eventTime             UInt64,
+
+    partyId               String,
+    shopId                String,
+
+    ip                    String,
+    email                 String,
+    bin                   String,
+    fingerprint           String,
+    resultStatus          String,
+    amount                UInt64,
+    currency              String,
+    cardToken             String
+) ENGINE = MergeTree()
+PARTITION BY toYYYYMM (timestamp)
+ORDER BY (fingerprint, eventTime)
+TTL timestamp + INTERVAL 3 MONTH;
+
+CREATE MATERIALIZED VIEW fraud.events_unique_by_fingerprint_mv TO fraud.events_unique_by_fingerprint AS
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+INSERT INTO fraud.events_unique_by_fingerprint
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+DROP TABLE IF EXISTS fraud.events_unique_by_ip_mv;
+DROP TABLE IF EXISTS fraud.events_unique_by_ip;
+
+create table fraud.events_unique_by_ip
+(
+    timestamp             Date,
+    eventTimeHour         UInt64,
+    eventTime             UInt64,
+
+    partyId               String,
+    shopId                String,
+
+    ip                    String,
+    email                 String,
+    bin                   String,
+    fingerprint           String,
+    resultStatus          String,
+    amount                UInt64,
+    currency              String,
+    cardToken             String
+) ENGINE = MergeTree()
+PARTITION BY toYYYYMM (timestamp)
+ORDER BY (ip, eventTime)
+TTL timestamp + INTERVAL 3 MONTH;
+
+CREATE MATERIALIZED VIEW fraud.events_unique_by_ip_mv TO fraud.events_unique_by_ip AS
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+INSERT INTO fraud.events_unique_by_ip
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+DROP TABLE IF EXISTS fraud.events_unique_by_bin_mv;
+DROP TABLE IF EXISTS fraud.events_unique_by_bin;
+
+create table fraud.events_unique_by_bin
+(
+    timestamp             Date,
+    eventTimeHour         UInt64,
+    eventTime             UInt64,
+
+    partyId               String,
+    shopId                String,
+
+    ip                    String,
+    email                 String,
+    bin                   String,
+    fingerprint           String,
+    resultStatus          String,
+    amount                UInt64,
+    currency              String,
+    cardToken             String
+) ENGINE = MergeTree()
+PARTITION BY toYYYYMM (timestamp)
+ORDER BY (bin, eventTime)
+TTL timestamp + INTERVAL 3 MONTH;
+
+CREATE MATERIALIZED VIEW fraud.events_unique_by_bin_mv TO fraud.events_unique_by_bin AS
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
+
+INSERT INTO fraud.events_unique_by_bin
+SELECT timestamp, eventTimeHour, eventTime, partyId, shopId, ip, email, bin, fingerprint, resultStatus, amount,
+       currency, cardToken
+FROM fraud.events_unique;
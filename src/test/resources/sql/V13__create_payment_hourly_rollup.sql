@@ -0,0 +1,48 @@
+DROP TABLE IF EXISTS fraud.payment_hourly_rollup_mv;
+DROP TABLE IF EXISTS fraud.payment_hourly_rollup;
+
+create table fraud.payment_hourly_rollup
+(
+    timestamp             Date,
+    hour                  UInt64,
+
+    field                 LowCardinality(String),
+    value                 String,
+
+    status                Enum8('pending' = 1, 'processed' = 2, 'captured' = 3, 'cancelled' = 4, 'failed' = 5),
+
+    cnt                   AggregateFunction(uniqExact, UInt64),
+    amounts               AggregateFunction(maxMap, Array(UInt64), Array(UInt64))
+) ENGINE = AggregatingMergeTree()
+PARTITION BY toYYYYMM (timestamp)
+ORDER BY (field, value, status, hour, timestamp);
+
+CREATE MATERIALIZED VIEW fraud.payment_hourly_rollup_mv TO fraud.payment_hourly_rollup AS
+WITH cityHash64(eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, fingerprint,
+                cardToken, id) AS paymentKey
+SELECT timestamp,
+       intDiv(eventTime, 3600) * 3600 AS hour,
+       field,
+       value,
+       status,
+       uniqExactState(paymentKey) AS cnt,
+       maxMapState([paymentKey], [amount]) AS amounts
+FROM fraud.payment
+ARRAY JOIN ['cardToken', 'email', 'fingerprint', 'ip', 'bin'] AS field,
+           [cardToken, email, fingerprint, ip, bin] AS value
+GROUP BY timestamp, hour, field, value, status;
+
+INSERT INTO fraud.payment_hourly_rollup
+WITH cityHash64(eventTimeHour, partyId, shopId, paymentTool, status, currency, providerId, fingerprint,
+                cardToken, id) AS paymentKey
+SELECT timestamp,
+       intDiv(eventTime, 3600) * 3600 AS hour,
+       field,
+       value,
+       status,
+       uniqExactState(paymentKey) AS cnt,
+       maxMapState([paymentKey], [amount]) AS amounts
+FROM fraud.payment
+ARRAY JOIN ['cardToken', 'email', 'fingerprint', 'ip', 'bin'] AS field,
+           [cardToken, email, fingerprint, ip, bin] AS value
+GROUP BY timestamp, hour, field, value, status;
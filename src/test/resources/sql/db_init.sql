@@ -1,5 +1,7 @@
 CREATE DATABASE IF NOT EXISTS fraud;
 
+DROP TABLE IF EXISTS fraud.payment_hourly_rollup_mv;
+
 DROP TABLE IF EXISTS fraud.events_unique;
 
 create table fraud.events_unique (